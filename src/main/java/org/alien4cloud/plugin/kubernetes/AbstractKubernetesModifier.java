@@ -1,32 +1,38 @@
 package org.alien4cloud.plugin.kubernetes;
 
 import static alien4cloud.utils.AlienUtils.safe;
+import static org.alien4cloud.plugin.kubernetes.csar.Version.K8S_CSAR_VERSION;
 import static org.alien4cloud.plugin.kubernetes.modifier.KubeTopologyUtils.K8S_TYPES_DEPLOYMENT;
 import static org.alien4cloud.plugin.kubernetes.modifier.KubernetesAdapterModifier.K8S_TYPES_KUBEDEPLOYMENT;
 
 import java.util.*;
 import java.util.function.Consumer;
 
-import alien4cloud.common.MetaPropertiesService;
-import alien4cloud.model.common.MetaPropertyTarget;
-import alien4cloud.model.orchestrators.locations.Location;
 import alien4cloud.tosca.context.ToscaContext;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
-import org.alien4cloud.alm.deployment.configuration.flow.EnvironmentContext;
 import org.alien4cloud.alm.deployment.configuration.flow.FlowExecutionContext;
 import org.alien4cloud.alm.deployment.configuration.flow.TopologyModifierSupport;
-import org.alien4cloud.plugin.kubernetes.modifier.KubeTopologyUtils;
-import org.alien4cloud.tosca.exceptions.InvalidPropertyValueException;
+import org.alien4cloud.plugin.kubernetes.modifier.KubeMetaPropertyKeys;
+import org.alien4cloud.plugin.kubernetes.modifier.KubeMetaPropertySnapshot;
+import org.alien4cloud.plugin.kubernetes.modifier.KubeModifierRunCache;
+import org.alien4cloud.plugin.kubernetes.modifier.KubeNameAllocator;
+import org.alien4cloud.plugin.kubernetes.modifier.KubePropertyTransformer;
+import org.alien4cloud.plugin.kubernetes.modifier.KubeSpecSerializer;
+import org.alien4cloud.plugin.kubernetes.modifier.KubernetesModifierContext;
+import org.alien4cloud.plugin.kubernetes.modifier.PropertyPath;
+import org.alien4cloud.plugin.kubernetes.modifier.ResourceDocument;
+import org.alien4cloud.plugin.kubernetes.modifier.generators.ResourceGenerationContext;
+import org.alien4cloud.tosca.model.definitions.AbstractPropertyValue;
 import org.alien4cloud.tosca.model.definitions.PropertyDefinition;
-import org.alien4cloud.tosca.model.definitions.PropertyValue;
+import org.alien4cloud.tosca.model.definitions.ScalarPropertyValue;
+import org.alien4cloud.tosca.model.templates.AbstractTemplate;
 import org.alien4cloud.tosca.model.templates.NodeTemplate;
 import org.alien4cloud.tosca.model.templates.PolicyTemplate;
+import org.alien4cloud.tosca.model.templates.RelationshipTemplate;
 import org.alien4cloud.tosca.model.templates.Topology;
 import org.alien4cloud.tosca.model.types.DataType;
-import org.alien4cloud.tosca.normative.primitives.Size;
-import org.alien4cloud.tosca.normative.primitives.SizeUnit;
-import org.alien4cloud.tosca.normative.types.SizeType;
+import org.alien4cloud.tosca.normative.constants.NormativeRelationshipConstants;
 import org.alien4cloud.tosca.normative.types.ToscaTypes;
 import org.alien4cloud.tosca.utils.TopologyNavigationUtil;
 import org.apache.commons.lang.StringUtils;
@@ -41,57 +47,142 @@ public abstract class AbstractKubernetesModifier extends TopologyModifierSupport
     protected static final String A4C_KUBERNETES_MODIFIER_TAG_EXPOSED_AS_CAPA = AbstractKubernetesModifier.A4C_KUBERNETES_MODIFIER_TAG + "_exposedAs";
     protected static final String A4C_KUBERNETES_MODIFIER_TAG_SERVICE_ENDPOINT_PORT = A4C_KUBERNETES_MODIFIER_TAG_SERVICE_ENDPOINT + "_port";
     protected static final String A4C_KUBERNETES_MODIFIER_TAG_SERVICE_ENDPOINT_PORT_NAME = A4C_KUBERNETES_MODIFIER_TAG_SERVICE_ENDPOINT + "_portName";
-    private static Map<String, AbstractKubernetesModifier.Parser> k8sParsers = Maps.newHashMap();
-    protected static final String K8S_NAMESPACE_METAPROP_NAME = "K8S_NAMESPACE";
-    protected static final String K8S_PREFIX_METAPROP_NAME = "K8S_PREFIX";
 
-    private static String FLOW_CACHE_KEY_K8S_PREFIX = AbstractKubernetesModifier.class.getName() + "K8S_PREFIX";
+    private static final PropertyPath RESOURCE_DEF_METADATA_NAMESPACE = PropertyPath.of("resource_def.metadata.namespace");
 
     @Resource
-    protected MetaPropertiesService metaPropertiesService;
+    protected KubeMetaPropertyKeys metaPropertyKeys;
 
-    static {
-        k8sParsers.put(ToscaTypes.SIZE, new AbstractKubernetesModifier.SizeParser(ToscaTypes.SIZE));
-    }
+    @Resource
+    protected KubeModifierRunCache runCache;
+
+    @Resource
+    protected KubeSpecSerializer specSerializer;
+
+    @Resource
+    protected KubePropertyTransformer propertyTransformer;
 
     /**
-     * Search for a K8S_NAMESPACE meta-properties value in application or location. If a value is found in both, the location takes the precedence.
+     * Get the K8S_NAMESPACE and K8S_PREFIX meta-properties of the flow, loaded once for all the modifiers of the flow.
      *
      * @param context Execution context that allows modifiers to access some useful contextual information
-     * @return the value of a meta-property corresponding to a namespace specification ("K8S_NAMESPACE").
+     * @return the meta-properties provided by the application or the location of the flow.
      */
-    protected String getProvidedMetaproperty(FlowExecutionContext context, String metaPropertyName) {
-        Optional<EnvironmentContext> ec = context.getEnvironmentContext();
-        String applicationNamespaceMetaPropertyKey = this.metaPropertiesService.getMetapropertykeyByName(metaPropertyName, MetaPropertyTarget.APPLICATION);
-        String locationNamespaceMetaPropertyKey = this.metaPropertiesService.getMetapropertykeyByName(metaPropertyName, MetaPropertyTarget.LOCATION);
-
-        // first, get the namespace using the value of a meta property on application
-        String providedNamespace = null;
-        if (ec.isPresent() && applicationNamespaceMetaPropertyKey != null) {
-            EnvironmentContext env = ec.get();
-            Map<String, String> metaProperties = safe(env.getApplication().getMetaProperties());
-            String applicationProvidedNamespace = metaProperties.get(applicationNamespaceMetaPropertyKey);
-            if (StringUtils.isNotEmpty(applicationProvidedNamespace)) {
-                providedNamespace = applicationProvidedNamespace;
-            }
+    protected KubeMetaPropertySnapshot getMetaProperties(FlowExecutionContext context) {
+        return KubeMetaPropertySnapshot.get(context, metaPropertyKeys);
+    }
+
+    /**
+     * Get the key of a run of the given modifier in the run cache : the input topology, the environment (the names of the resources are specific
+     * to an environment) and the meta-properties that affect the run.
+     *
+     * @return the key or null if the run cache is disabled.
+     */
+    protected String getRunCacheKey(String modifierName, Topology topology, FlowExecutionContext context) {
+        if (!runCache.isEnabled()) {
+            return null;
         }
-        // if defined, use the the value of a meta property of the targeted location
-        if (locationNamespaceMetaPropertyKey != null) {
-            Object deploymentLocation = context.getExecutionCache().get(FlowExecutionContext.DEPLOYMENT_LOCATIONS_MAP_CACHE_KEY);
-            if (deploymentLocation != null && deploymentLocation instanceof Map) {
-                Map<String, Location> locations = (Map<String, Location>)deploymentLocation;
-                if (locations != null) {
-                    Optional<Location> location = locations.values().stream().findFirst();
-                    if (location.isPresent()) {
-                        String locationProvidedNamespace = safe(location.get().getMetaProperties()).get(locationNamespaceMetaPropertyKey);
-                        if (StringUtils.isNotEmpty(locationProvidedNamespace)) {
-                            providedNamespace = locationProvidedNamespace;
-                        }
-                    }
+        KubeMetaPropertySnapshot metaProperties = getMetaProperties(context);
+        return runCache.getKey(modifierName, topology, KubeNameAllocator.getScope(context), metaProperties.getNamespace(), metaProperties.getPrefix());
+    }
+
+    /**
+     * Set the 'resource_spec' property of the given resources with the JSON content of their resource specification (or "N/A" if they have none).
+     * <p>
+     * The specs are serialized in parallel, then written back in the order of the resource names.
+     */
+    protected void setResourceSpecs(KubernetesModifierContext context, Set<NodeTemplate> resourceNodes, String providedNamespace) {
+        List<NodeTemplate> sortedResourceNodes = Lists.newArrayList(resourceNodes);
+        sortedResourceNodes.sort(Comparator.comparing(NodeTemplate::getName));
+
+        List<String> namesToSerialize = Lists.newArrayList();
+        List<Object> resourceDefsToSerialize = Lists.newArrayList();
+        for (NodeTemplate resourceNode : sortedResourceNodes) {
+            ResourceDocument resourceNodeProperties = context.getYamlResources().get(resourceNode.getName());
+            if (resourceNodeProperties != null && resourceNodeProperties.containsKey("resource_def")) {
+                if (providedNamespace != null) {
+                    RESOURCE_DEF_METADATA_NAMESPACE.set(resourceNodeProperties, providedNamespace);
                 }
+                namesToSerialize.add(resourceNode.getName());
+                resourceDefsToSerialize.add(resourceNodeProperties.get("resource_def"));
             }
         }
-        return providedNamespace;
+
+        String[] serializedSpecs = specSerializer.serialize(resourceDefsToSerialize);
+        Map<String, String> specs = Maps.newHashMap();
+        for (int i = 0; i < serializedSpecs.length; i++) {
+            specs.put(namesToSerialize.get(i), serializedSpecs[i]);
+        }
+
+        for (NodeTemplate resourceNode : sortedResourceNodes) {
+            String spec = specs.containsKey(resourceNode.getName()) ? specs.get(resourceNode.getName()) : "N/A";
+            setNodePropertyPathValue(context.getCsar(), context.getTopology(), resourceNode, "resource_spec", new ScalarPropertyValue(spec));
+            if (providedNamespace != null) {
+                setNodePropertyPathValue(context.getCsar(), context.getTopology(), resourceNode, "namespace", new ScalarPropertyValue(providedNamespace));
+            }
+        }
+    }
+
+    /**
+     * Add a node template to the topology of the context and register it in the context's index.
+     */
+    protected NodeTemplate addNodeTemplate(KubernetesModifierContext context, String desiredNodeName, String nodeType, String nodeVersion) {
+        NodeTemplate nodeTemplate = addNodeTemplate(context.getCsar(), context.getTopology(), desiredNodeName, nodeType, nodeVersion);
+        context.getIndex().add(nodeTemplate);
+        return nodeTemplate;
+    }
+
+    /**
+     * Remove a node template from the topology of the context and from the context's indexes.
+     */
+    protected void removeNode(KubernetesModifierContext context, NodeTemplate nodeTemplate) {
+        removeNode(context.getTopology(), nodeTemplate);
+        context.getIndex().remove(nodeTemplate.getName());
+        context.getRelationshipIndex().removeNode(nodeTemplate.getName());
+        context.getHostChains().invalidate(nodeTemplate.getName());
+    }
+
+    /**
+     * Replace a node template by a node of another type (keeping its name) and update the context's indexes.
+     */
+    protected NodeTemplate replaceNode(KubernetesModifierContext context, NodeTemplate nodeTemplate, String nodeType, String nodeVersion) {
+        Set<String> previousRelationships = new HashSet<>(safe(nodeTemplate.getRelationships()).keySet());
+        NodeTemplate replacementNode = replaceNode(context.getCsar(), context.getTopology(), nodeTemplate, nodeType, nodeVersion);
+        previousRelationships.forEach(relationshipName -> context.getRelationshipIndex().removeRelationship(nodeTemplate.getName(), relationshipName));
+        safe(replacementNode.getRelationships()).values()
+                .forEach(relationshipTemplate -> context.getRelationshipIndex().addRelationship(replacementNode.getName(), relationshipTemplate));
+        context.getIndex().add(replacementNode);
+        context.getHostChains().invalidate(nodeTemplate.getName());
+        return replacementNode;
+    }
+
+    /**
+     * Add a relationship (if the source node doesn't already have a relationship for the same requirement targeting the same capability) and register
+     * it in the context's relationship index.
+     */
+    protected RelationshipTemplate addRelationshipTemplate(KubernetesModifierContext context, NodeTemplate sourceNode, String targetNodeName,
+                                                           String relationshipTypeName, String requirementName, String capabilityName) {
+
+        Set<RelationshipTemplate> targetRelationships = TopologyNavigationUtil.getTargetRelationships(sourceNode, requirementName);
+        for (RelationshipTemplate relationshipTemplate : targetRelationships) {
+            if (relationshipTemplate.getTarget().equals(targetNodeName) && relationshipTemplate.getTargetedCapabilityName().equals(capabilityName)) {
+                return relationshipTemplate;
+            }
+        }
+        RelationshipTemplate relationshipTemplate = addRelationshipTemplate(context.getCsar(), context.getTopology(), sourceNode, targetNodeName, relationshipTypeName,
+                requirementName, capabilityName);
+        context.getRelationshipIndex().addRelationship(sourceNode.getName(), relationshipTemplate);
+        context.getHostChains().invalidate(sourceNode.getName());
+        return relationshipTemplate;
+    }
+
+    /**
+     * Remove a relationship from the topology of the context and from the context's relationship index.
+     */
+    protected void removeRelationship(KubernetesModifierContext context, String nodeName, String relationshipName) {
+        removeRelationship(context.getCsar(), context.getTopology(), nodeName, relationshipName);
+        context.getRelationshipIndex().removeRelationship(nodeName, relationshipName);
+        context.getHostChains().invalidate(nodeName);
     }
 
     protected Set<NodeTemplate> getValidTargets(PolicyTemplate policyTemplate, Topology topology,String typename, Consumer<String> invalidTargetConsumer) {
@@ -121,106 +212,109 @@ public abstract class AbstractKubernetesModifier extends TopologyModifierSupport
      * Transform the object by replacing eventual PropertyValue found by it's value.
      */
     protected Object getTransformedValue(Object value, PropertyDefinition propertyDefinition, String path) {
-        if (value == null) {
-            return null;
-        } else if (value instanceof PropertyValue) {
-            return getTransformedValue(((PropertyValue) value).getValue(), propertyDefinition, path);
-        } else if (value instanceof Map<?, ?>) {
-            Map<String, Object> newMap = Maps.newHashMap();
-            if (!ToscaTypes.isPrimitive(propertyDefinition.getType())) {
-                DataType dataType = ToscaContext.get(DataType.class, propertyDefinition.getType());
-                for (Map.Entry<String, Object> entry : ((Map<String, Object>) value).entrySet()) {
-                    PropertyDefinition pd = dataType.getProperties().get(entry.getKey());
-                    String innerPath = (path.equals("")) ? entry.getKey() : path + "." + entry.getKey();
-                    Object entryValue = getTransformedValue(entry.getValue(), pd, innerPath);
-                    newMap.put(entry.getKey(), entryValue);
-                }
-            } else if (ToscaTypes.MAP.equals(propertyDefinition.getType())) {
-                PropertyDefinition pd = propertyDefinition.getEntrySchema();
-                for (Map.Entry<String, Object> entry : ((Map<String, Object>) value).entrySet()) {
-                    String innerPath = (path.equals("")) ? entry.getKey() : path + "." + entry.getKey();
-                    Object entryValue = getTransformedValue(entry.getValue(), pd, innerPath);
-                    newMap.put(entry.getKey(), entryValue);
-                }
-            }
-            return newMap;
-        } else if (value instanceof List<?>) {
-            PropertyDefinition pd = propertyDefinition.getEntrySchema();
-            List<Object> newList = Lists.newArrayList();
-            for (Object entry : (List<Object>) value) {
-                Object entryValue = getTransformedValue(entry, pd, path);
-                newList.add(entryValue);
-            }
-            return newList;
-        } else {
-            if (ToscaTypes.isSimple(propertyDefinition.getType())) {
-                String valueAsString = value.toString();
-                if (k8sParsers.containsKey(propertyDefinition.getType())) {
-                    return k8sParsers.get(propertyDefinition.getType()).parseValue(valueAsString);
-                } else {
-                    switch (propertyDefinition.getType()) {
-                        case ToscaTypes.INTEGER:
-                            return Integer.parseInt(valueAsString);
-                        case ToscaTypes.FLOAT:
-                            return Float.parseFloat(valueAsString);
-                        case ToscaTypes.BOOLEAN:
-                            return Boolean.parseBoolean(valueAsString);
-                        default:
-                            return valueAsString;
-                    }
-                }
-            } else {
-                return value;
-            }
-        }
+        return propertyTransformer.transform(value, propertyDefinition);
     }
 
-    protected String generateUniqueKubeName(FlowExecutionContext ctx, String prefix) {
+    /**
+     * @param role the kind of object named, one of the <code>KubeNameAllocator.ROLE_</code> constants.
+     * @param prefix the name of the node the object is made for.
+     */
+    protected String generateUniqueKubeName(FlowExecutionContext ctx, String role, String prefix) {
         // if a metaprop is defined at application or location level, use it as a prefix.
-        String k8sPrefix = null;
-        Object o = ctx.getExecutionCache().get(FLOW_CACHE_KEY_K8S_PREFIX);
-        if (o == null) {
-            k8sPrefix = getProvidedMetaproperty(ctx, K8S_PREFIX_METAPROP_NAME);
-            if (k8sPrefix == null) {
-                // No meteprop is defined but to avoid futur search, let's put an empty string in the cache
-                k8sPrefix = "";
-            }
-            ctx.getExecutionCache().put(FLOW_CACHE_KEY_K8S_PREFIX, k8sPrefix);
-        } else {
-            k8sPrefix = o.toString();
-        }
-        // TODO: better unique generation (we hashCode the UUID, we know that we have some collision risk, but for the moment we accept)
-        String kubeName = KubeTopologyUtils.generateKubeName(k8sPrefix + prefix + "-" + UUID.randomUUID().toString().hashCode());
-        // length should be < 63 (Kube rule)
-        kubeName = org.apache.commons.lang3.StringUtils.abbreviateMiddle(kubeName, "-", 63);
-        return kubeName;
+        String k8sPrefix = StringUtils.defaultString(getMetaProperties(ctx).getPrefix());
+        // the same node of the same environment gets the same name on every run
+        return KubeNameAllocator.get(ctx).allocate(role, k8sPrefix + prefix);
     }
 
-    private static abstract class Parser {
-        private String type;
+    /**
+     * @return the tag of the modifier, used to tag the nodes it creates.
+     */
+    protected String getModifierTag() {
+        return A4C_KUBERNETES_MODIFIER_TAG;
+    }
 
-        public Parser(String type) {
-            this.type = type;
-        }
+    /**
+     * Initialize a resource node added by a {@link org.alien4cloud.plugin.kubernetes.modifier.generators.ResourceGenerator}.
+     */
+    protected void initResourceNode(KubernetesModifierContext context, NodeTemplate resourceNode) {
+    }
 
-        public abstract Object parseValue(String value);
+    /**
+     * @return the node (deployment, job, statefulset ...) that controls the given container, null if none.
+     */
+    protected NodeTemplate getControllerNode(KubernetesModifierContext context, NodeTemplate containerNode) {
+        return context.getHostChains().getImmediateHost(containerNode);
+    }
+
+    /**
+     * @return the context given to the resource generators, backed by this modifier.
+     */
+    protected ResourceGenerationContext getGenerationContext(KubernetesModifierContext context) {
+        return new ModifierGenerationContext(context);
     }
 
-    private static class SizeParser extends Parser {
-        public SizeParser(String type) {
-            super(type);
+    private class ModifierGenerationContext implements ResourceGenerationContext {
+        private final KubernetesModifierContext context;
+
+        private ModifierGenerationContext(KubernetesModifierContext context) {
+            this.context = context;
         }
 
         @Override
-        public Object parseValue(String value) {
-            SizeType sizeType = new SizeType();
-            try {
-                Size size = sizeType.parse(value);
-                Double d = size.convert(SizeUnit.B.toString());
-                return d.longValue();
-            } catch (InvalidPropertyValueException e) {
-                return value;
-            }
+        public KubernetesModifierContext getContext() {
+            return context;
+        }
+
+        @Override
+        public String getModifierTag() {
+            return AbstractKubernetesModifier.this.getModifierTag();
+        }
+
+        @Override
+        public NodeTemplate getControllerNode(NodeTemplate containerNode) {
+            return AbstractKubernetesModifier.this.getControllerNode(context, containerNode);
+        }
+
+        @Override
+        public NodeTemplate addResourceNode(String desiredNodeName, String nodeType) {
+            NodeTemplate resourceNode = addNodeTemplate(context, desiredNodeName, nodeType, K8S_CSAR_VERSION);
+            initResourceNode(context, resourceNode);
+            return resourceNode;
+        }
+
+        @Override
+        public void removeNode(NodeTemplate nodeTemplate) {
+            AbstractKubernetesModifier.this.removeNode(context, nodeTemplate);
+        }
+
+        @Override
+        public RelationshipTemplate addDependency(NodeTemplate sourceNode, String targetNodeName) {
+            return addRelationshipTemplate(context, sourceNode, targetNodeName, NormativeRelationshipConstants.DEPENDS_ON, "dependency", "feature");
+        }
+
+        @Override
+        public void setNodePropertyPathValue(NodeTemplate nodeTemplate, String propertyPath, AbstractPropertyValue propertyValue) {
+            AbstractKubernetesModifier.this.setNodePropertyPathValue(context.getCsar(), context.getTopology(), nodeTemplate, propertyPath, propertyValue);
+        }
+
+        @Override
+        public void appendNodePropertyPathValue(NodeTemplate nodeTemplate, String propertyPath, AbstractPropertyValue propertyValue) {
+            AbstractKubernetesModifier.this.appendNodePropertyPathValue(context.getCsar(), context.getTopology(), nodeTemplate, propertyPath, propertyValue);
+        }
+
+        @Override
+        public void setNodeTagValue(AbstractTemplate template, String name, String value) {
+            AbstractKubernetesModifier.this.setNodeTagValue(template, name, value);
+        }
+
+        @Override
+        public String generateUniqueKubeName(String role, String prefix) {
+            return AbstractKubernetesModifier.this.generateUniqueKubeName(context.getFlowExecutionContext(), role, prefix);
+        }
+
+        @Override
+        public Object getTransformedValue(Object value, PropertyDefinition propertyDefinition, String path) {
+            return AbstractKubernetesModifier.this.getTransformedValue(value, propertyDefinition, path);
         }
     }
 
@@ -0,0 +1,114 @@
+package org.alien4cloud.plugin.kubernetes.modifier;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.alien4cloud.tosca.model.definitions.PropertyValue;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * A copy-on-write view of a tree of property values, maps and lists, that is shared with other views or with the topology and is never
+ * modified.
+ * <p>
+ * Creating a view copies nothing. Before a map or a list is modified using the view, the containers on its path are copied (shallowly, property
+ * values are unwrapped), once per view : the rest of the tree stays shared. The path elements are map keys or list indexes.
+ */
+public final class CopyOnWritePropertyTree {
+
+    private Object root;
+
+    /** The containers copied by this view, that can be modified. */
+    private final Set<Object> owned = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    private CopyOnWritePropertyTree(Object root) {
+        this.root = root;
+    }
+
+    public static CopyOnWritePropertyTree of(Object tree) {
+        return new CopyOnWritePropertyTree(tree);
+    }
+
+    /**
+     * @return the tree as seen by this view, which shares the containers that were not modified.
+     */
+    public Object getRoot() {
+        return root;
+    }
+
+    /**
+     * @return the value found at the given path (property values are unwrapped), null if none.
+     */
+    public Object get(Object... path) {
+        Object value = unwrap(root);
+        for (int i = 0; i < path.length && value != null; i++) {
+            value = unwrap(getChild(value, path[i]));
+        }
+        return value;
+    }
+
+    /**
+     * @return the map found at the given path, that can be modified without modifying the shared tree.
+     */
+    public Map<String, Object> editMap(Object... path) {
+        return (Map<String, Object>) edit(path);
+    }
+
+    /**
+     * @return the list found at the given path, that can be modified without modifying the shared tree.
+     */
+    public List<Object> editList(Object... path) {
+        return (List<Object>) edit(path);
+    }
+
+    private Object edit(Object... path) {
+        root = own(root);
+        Object current = root;
+        for (Object element : path) {
+            Object child = own(getChild(current, element));
+            if (current instanceof Map) {
+                ((Map<String, Object>) current).put((String) element, child);
+            } else {
+                ((List<Object>) current).set((Integer) element, child);
+            }
+            current = child;
+        }
+        return current;
+    }
+
+    private Object own(Object value) {
+        if (owned.contains(value)) {
+            return value;
+        }
+        value = unwrap(value);
+        Object copy;
+        if (value instanceof Map) {
+            copy = Maps.newHashMap((Map<String, Object>) value);
+        } else if (value instanceof List) {
+            copy = Lists.newArrayList((List<Object>) value);
+        } else {
+            throw new IllegalArgumentException("Only maps and lists can be modified, found <" + value + ">");
+        }
+        owned.add(copy);
+        return copy;
+    }
+
+    private static Object getChild(Object container, Object element) {
+        if (container instanceof Map) {
+            return ((Map<?, ?>) container).get(element);
+        } else if (container instanceof List && element instanceof Integer) {
+            List<?> list = (List<?>) container;
+            int index = (Integer) element;
+            return index < list.size() ? list.get(index) : null;
+        }
+        return null;
+    }
+
+    private static Object unwrap(Object value) {
+        return value instanceof PropertyValue ? ((PropertyValue) value).getValue() : value;
+    }
+}
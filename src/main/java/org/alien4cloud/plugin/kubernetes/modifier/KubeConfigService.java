@@ -0,0 +1,160 @@
+package org.alien4cloud.plugin.kubernetes.modifier;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.io.BaseEncoding;
+
+import alien4cloud.utils.YamlParserUtil;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Read and rewrite the kube configs of the clusters.
+ * <p>
+ * Each distinct kube config is parsed once : the parsed configs are cached by the hash of their content, as the rewritten configs (by the hash
+ * of the config, the context and the namespace). The configs hold the credentials of the clusters : the least recently used ones are evicted
+ * once too many are cached, and the ones not used for a while are evicted. The parsed configs are never modified, a rewrite copies the path to
+ * the changed context.
+ * <p>
+ * The active context is the one named by <code>current-context</code>, or the first one when the config has no current context. A config that
+ * can't be parsed, or that has no such context, is used as it is.
+ */
+@Slf4j
+public final class KubeConfigService {
+
+    private static final int MAX_CACHED_CONFIGS = 64;
+
+    private static final int MAX_CACHED_REWRITES = 256;
+
+    private static final long CACHE_EXPIRATION_MINUTES = 10;
+
+    /** Config hash -> parsed config, or {@link #UNPARSEABLE}. */
+    private static final Cache<String, Object> CONFIGS = CacheBuilder.newBuilder().maximumSize(MAX_CACHED_CONFIGS)
+            .expireAfterAccess(CACHE_EXPIRATION_MINUTES, TimeUnit.MINUTES).build();
+
+    /** Config hash, context and namespace -> rewritten config. */
+    private static final Cache<String, String> REWRITES = CacheBuilder.newBuilder().maximumSize(MAX_CACHED_REWRITES)
+            .expireAfterAccess(CACHE_EXPIRATION_MINUTES, TimeUnit.MINUTES).build();
+
+    private static final Object UNPARSEABLE = new Object();
+
+    private KubeConfigService() {
+    }
+
+    /**
+     * @return the name of the active context of the kube config, null if it has none.
+     */
+    public static String getCurrentContext(String kubeConfig) {
+        Map<String, Object> context = getContext(getConfig(hash(kubeConfig), kubeConfig), null);
+        return context == null ? null : (String) context.get("name");
+    }
+
+    /**
+     * @return the kube config in which the namespace of the active context is the given one.
+     */
+    public static String withNamespace(String kubeConfig, String namespace) {
+        return withNamespace(kubeConfig, null, namespace);
+    }
+
+    /**
+     * @param contextName the name of the context to change, the active context if null.
+     * @return the kube config in which the namespace of the given context is the given one.
+     */
+    public static String withNamespace(String kubeConfig, String contextName, String namespace) {
+        String hash = hash(kubeConfig);
+        String rewriteKey = hash + "/" + contextName + "/" + namespace;
+        String rewritten = REWRITES.getIfPresent(rewriteKey);
+        if (rewritten == null) {
+            rewritten = rewrite(kubeConfig, getConfig(hash, kubeConfig), contextName, namespace);
+            REWRITES.put(rewriteKey, rewritten);
+        }
+        return rewritten;
+    }
+
+    private static String rewrite(String kubeConfig, Map<String, Object> config, String contextName, String namespace) {
+        Map<String, Object> context = getContext(config, contextName);
+        if (context == null) {
+            log.warn("No context {} found in the kube config, the namespace {} is not set in the kube config", contextName == null ? "" : contextName,
+                    namespace);
+            return kubeConfig;
+        }
+        Map<String, Object> contextSpec = context.get("context") instanceof Map ? (Map<String, Object>) context.get("context") : null;
+        if (contextSpec != null && Objects.equals(namespace, contextSpec.get("namespace"))) {
+            return kubeConfig;
+        }
+        // copy the path to the namespace, the parsed config is shared
+        Map<String, Object> rewrittenSpec = contextSpec == null ? Maps.newLinkedHashMap() : Maps.newLinkedHashMap(contextSpec);
+        rewrittenSpec.put("namespace", namespace);
+        Map<String, Object> rewrittenContext = Maps.newLinkedHashMap(context);
+        rewrittenContext.put("context", rewrittenSpec);
+        List<Object> rewrittenContexts = Lists.newArrayList((List<Object>) config.get("contexts"));
+        rewrittenContexts.set(rewrittenContexts.indexOf(context), rewrittenContext);
+        Map<String, Object> rewrittenConfig = Maps.newLinkedHashMap(config);
+        rewrittenConfig.put("contexts", rewrittenContexts);
+        try {
+            return YamlParserUtil.toYaml(rewrittenConfig);
+        } catch (Exception e) {
+            log.error("Not able to write the kube config, the namespace {} is not set in the kube config", namespace, e);
+            return kubeConfig;
+        }
+    }
+
+    /**
+     * @return the context of the config named contextName (the active context if null), null if not found.
+     */
+    private static Map<String, Object> getContext(Map<String, Object> config, String contextName) {
+        if (config == null || !(config.get("contexts") instanceof List)) {
+            return null;
+        }
+        String name = contextName == null ? (String) config.get("current-context") : contextName;
+        Map<String, Object> first = null;
+        for (Object context : (List<Object>) config.get("contexts")) {
+            if (context instanceof Map) {
+                Map<String, Object> contextMap = (Map<String, Object>) context;
+                if (name != null && name.equals(contextMap.get("name"))) {
+                    return contextMap;
+                }
+                if (first == null) {
+                    first = contextMap;
+                }
+            }
+        }
+        // without current context, the first one is used
+        return contextName == null && name == null ? first : null;
+    }
+
+    /**
+     * @return the parsed config, null if it can't be parsed.
+     */
+    private static Map<String, Object> getConfig(String hash, String kubeConfig) {
+        Object config = CONFIGS.getIfPresent(hash);
+        if (config == null) {
+            config = parse(kubeConfig);
+            CONFIGS.put(hash, config);
+        }
+        return config == UNPARSEABLE ? null : (Map<String, Object>) config;
+    }
+
+    private static Object parse(String kubeConfig) {
+        try {
+            Object config = YamlParserUtil.load(kubeConfig);
+            if (config instanceof Map) {
+                return config;
+            }
+            log.warn("The kube config is not a YAML map, it is used as it is");
+        } catch (RuntimeException e) {
+            log.warn("Not able to parse the kube config, it is used as it is", e);
+        }
+        return UNPARSEABLE;
+    }
+
+    private static String hash(String kubeConfig) {
+        return BaseEncoding.base16().lowerCase().encode(KubeNameService.sha256(kubeConfig));
+    }
+}
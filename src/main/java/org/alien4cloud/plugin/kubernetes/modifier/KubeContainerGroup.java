@@ -0,0 +1,111 @@
+package org.alien4cloud.plugin.kubernetes.modifier;
+
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+import org.alien4cloud.tosca.model.definitions.AbstractPropertyValue;
+import org.alien4cloud.tosca.model.templates.NodeTemplate;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import lombok.Getter;
+
+/**
+ * The containers hosted on a given controller resource (deployment, statefulset, job ...).
+ * <p>
+ * The inputs of the containers of a group are resolved concurrently with the ones of the other groups, so each group owns its service IP
+ * lookup table : the <code>SERVICE_IP_LOOKUPn</code> placeholders of a controller resource are numbered following the order of its
+ * containers (sorted by name) and of their inputs, whatever the scheduling of the threads.
+ * <p>
+ * The resolution only reads the topology and records the resolved values and the warnings, they are applied (and logged) afterwards on
+ * the calling thread.
+ */
+@Getter
+public class KubeContainerGroup {
+
+    private final NodeTemplate controllerResource;
+
+    /** The containers, sorted by name. */
+    private final List<NodeTemplate> containerNodes = Lists.newArrayList();
+
+    /** Controller resource name -> names of the services which IP is looked up (a single entry, for the controller resource). */
+    private final Map<String, List<String>> serviceIpAddressesPerDeploymentResource = Maps.newHashMap();
+
+    /** Container name -> resolved inputs, in the order of the inputs. */
+    private final Map<String, List<ResolvedInput>> resolvedInputs = Maps.newHashMap();
+
+    private KubeContainerGroup(NodeTemplate controllerResource) {
+        this.controllerResource = controllerResource;
+    }
+
+    /**
+     * Group the given containers by the resource that replaced their host.
+     *
+     * @return the groups, sorted by controller resource name.
+     */
+    public static List<KubeContainerGroup> groupByControllerResource(KubernetesModifierContext context, Collection<NodeTemplate> containerNodes) {
+        Map<String, KubeContainerGroup> groups = Maps.newTreeMap();
+        containerNodes.stream().sorted(Comparator.comparing(NodeTemplate::getName)).forEach(containerNode -> {
+            NodeTemplate controllerNode = context.getHostChains().getImmediateHost(containerNode);
+            NodeTemplate controllerResource = context.getReplacements().get(controllerNode.getName());
+            groups.computeIfAbsent(controllerResource.getName(), s -> new KubeContainerGroup(controllerResource)).containerNodes.add(containerNode);
+        });
+        return Lists.newArrayList(groups.values());
+    }
+
+    public List<ResolvedInput> getResolvedInputs(NodeTemplate containerNode) {
+        return resolvedInputs.computeIfAbsent(containerNode.getName(), s -> Lists.newArrayList());
+    }
+
+    /**
+     * @return the value of the <code>service_dependency_lookups</code> property of the controller resource and of its config maps, null if the
+     *         containers don't look up any service.
+     */
+    public String getServiceDependencyLookups() {
+        List<String> ipAddressLookups = serviceIpAddressesPerDeploymentResource.get(controllerResource.getName());
+        if (ipAddressLookups == null) {
+            return null;
+        }
+        StringBuilder serviceDependencyDefinitionsValue = new StringBuilder();
+        for (int i = 0; i < ipAddressLookups.size(); i++) {
+            if (i > 0) {
+                serviceDependencyDefinitionsValue.append(",");
+            }
+            serviceDependencyDefinitionsValue.append("SERVICE_IP_LOOKUP").append(i);
+            serviceDependencyDefinitionsValue.append(":").append(ipAddressLookups.get(i));
+        }
+        return serviceDependencyDefinitionsValue.toString();
+    }
+
+    /**
+     * An input of the image operation of a container, and the value it resolved to.
+     */
+    @Getter
+    public static class ResolvedInput {
+        /** The node declaring the input (the container itself or the docker container it hosts). */
+        private final NodeTemplate sourceNode;
+        private final String inputName;
+        private final Object inputValue;
+        /** Null if the input could not be resolved. */
+        private AbstractPropertyValue value;
+        /** The warnings raised while resolving the input, logged when the value is applied. */
+        private final List<String> warnings = Lists.newArrayList();
+
+        public ResolvedInput(NodeTemplate sourceNode, String inputName, Object inputValue) {
+            this.sourceNode = sourceNode;
+            this.inputName = inputName;
+            this.inputValue = inputValue;
+        }
+
+        public void setValue(AbstractPropertyValue value) {
+            this.value = value;
+        }
+
+        public void warn(String warning) {
+            warnings.add(warning);
+        }
+    }
+}
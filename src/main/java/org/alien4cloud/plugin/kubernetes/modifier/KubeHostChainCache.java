@@ -0,0 +1,147 @@
+package org.alien4cloud.plugin.kubernetes.modifier;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import org.alien4cloud.tosca.model.templates.NodeTemplate;
+import org.alien4cloud.tosca.model.templates.Topology;
+import org.alien4cloud.tosca.utils.TopologyNavigationUtil;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import static alien4cloud.utils.AlienUtils.safe;
+
+/**
+ * Cache of the hosting hierarchy of the nodes of a topology, built lazily during a flow.
+ * <p>
+ * The host chain of a node (the node itself, its host, the host of its host ...) is computed once and the nearest host of a given type
+ * is memoized per node, so that containers, volumes and function resolutions don't walk the <code>host</code> requirements again and
+ * again. An entry is invalidated (together with the entries of all the nodes hosted on it) when the node is replaced or removed, or when
+ * its relationships change (see <code>AbstractKubernetesModifier</code> methods using a {@link KubernetesModifierContext}).
+ * <p>
+ * Lookups have the same semantic than <code>TopologyNavigationUtil.getImmediateHostTemplate</code> and
+ * <code>TopologyNavigationUtil.getHostOfTypeInHostingHierarchy</code>. They are synchronized, so that the function resolutions running
+ * concurrently (one task per controller resource) can share the cache.
+ */
+public class KubeHostChainCache {
+
+    private final Topology topology;
+
+    private final KubeTypeRegistry types;
+
+    /** Node name -> names of the node and of all its hosts, the nearest first. */
+    private final Map<String, List<String>> hostChains = Maps.newHashMap();
+
+    /** Node name -> type name -> name of the nearest node of this type in the host chain (empty if none). */
+    private final Map<String, Map<String, Optional<String>>> nearestHostsOfType = Maps.newHashMap();
+
+    /** Node name -> names of the nodes having this node in their cached host chain. */
+    private final Map<String, Set<String>> hostedNodes = Maps.newHashMap();
+
+    public KubeHostChainCache(Topology topology, KubeTypeRegistry types) {
+        this.topology = topology;
+        this.types = types;
+    }
+
+    /**
+     * Get the node that hosts the given one.
+     */
+    public synchronized NodeTemplate getImmediateHost(NodeTemplate nodeTemplate) {
+        if (nodeTemplate == null) {
+            return null;
+        }
+        List<String> hostChain = getHostChain(nodeTemplate);
+        return hostChain.size() > 1 ? getNode(hostChain.get(1)) : null;
+    }
+
+    /**
+     * Get the nearest node of the given type in the hosting hierarchy of the given node (including itself).
+     */
+    public synchronized NodeTemplate getHostOfType(NodeTemplate nodeTemplate, String type) {
+        if (nodeTemplate == null) {
+            return null;
+        }
+        Map<String, Optional<String>> nearestHosts = nearestHostsOfType.computeIfAbsent(nodeTemplate.getName(), s -> Maps.newHashMap());
+        Optional<String> nearestHost = nearestHosts.get(type);
+        if (nearestHost == null) {
+            nearestHost = Optional.empty();
+            for (String nodeName : getHostChain(nodeTemplate)) {
+                NodeTemplate candidate = getNode(nodeName);
+                if (candidate != null && types.isNodeOfType(candidate.getType(), type)) {
+                    nearestHost = Optional.of(nodeName);
+                    break;
+                }
+            }
+            nearestHosts.put(type, nearestHost);
+        }
+        return nearestHost.map(this::getNode).orElse(null);
+    }
+
+    /**
+     * Forget what is known about the given node and about all the nodes it hosts (directly or not).
+     */
+    public synchronized void invalidate(String nodeName) {
+        Set<String> nodesToInvalidate = Sets.newHashSet(nodeName);
+        Set<String> hosted = hostedNodes.remove(nodeName);
+        if (hosted != null) {
+            nodesToInvalidate.addAll(hosted);
+        }
+        for (String name : nodesToInvalidate) {
+            nearestHostsOfType.remove(name);
+            List<String> hostChain = hostChains.remove(name);
+            if (hostChain == null) {
+                continue;
+            }
+            for (String host : hostChain) {
+                Set<String> nodesOfHost = hostedNodes.get(host);
+                if (nodesOfHost != null) {
+                    nodesOfHost.remove(name);
+                    if (nodesOfHost.isEmpty()) {
+                        hostedNodes.remove(host);
+                    }
+                }
+            }
+        }
+    }
+
+    private List<String> getHostChain(NodeTemplate nodeTemplate) {
+        List<String> hostChain = hostChains.get(nodeTemplate.getName());
+        if (hostChain != null) {
+            return hostChain;
+        }
+        // walk the hosts until we find one which chain is already known
+        List<String> walked = Lists.newArrayList();
+        List<String> knownChain = Collections.emptyList();
+        NodeTemplate current = nodeTemplate;
+        while (current != null && !walked.contains(current.getName())) {
+            List<String> currentChain = hostChains.get(current.getName());
+            if (currentChain != null) {
+                knownChain = currentChain;
+                break;
+            }
+            walked.add(current.getName());
+            current = TopologyNavigationUtil.getImmediateHostTemplate(topology, current);
+        }
+        // then register the chains of the walked nodes, from the farthest one
+        for (int i = walked.size() - 1; i >= 0; i--) {
+            List<String> chain = Lists.newArrayListWithCapacity(knownChain.size() + 1);
+            chain.add(walked.get(i));
+            chain.addAll(knownChain);
+            chain = Collections.unmodifiableList(chain);
+            hostChains.put(walked.get(i), chain);
+            for (String host : chain) {
+                hostedNodes.computeIfAbsent(host, s -> Sets.newHashSet()).add(walked.get(i));
+            }
+            knownChain = chain;
+        }
+        return knownChain;
+    }
+
+    private NodeTemplate getNode(String nodeName) {
+        return safe(topology.getNodeTemplates()).get(nodeName);
+    }
+}
@@ -0,0 +1,140 @@
+package org.alien4cloud.plugin.kubernetes.modifier;
+
+import java.io.CharArrayWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+import org.alien4cloud.tosca.model.definitions.PropertyValue;
+import org.alien4cloud.tosca.model.definitions.ScalarPropertyValue;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Write <code>resource_def</code> trees (property values, maps, lists and scalars) as JSON, walking the tree directly instead of copying it
+ * into plain maps and lists first (as <code>KubeTopologyUtils.getValue</code> does before a <code>PropertyUtil.serializePropertyValue</code>).
+ * <p>
+ * Each thread writes into its own buffer, reused from one tree to the next. Leaves that are neither property values, maps, lists, strings,
+ * numbers nor booleans are written by a Jackson object mapper, as the copy would have been.
+ * <p>
+ * The canonical form of a tree is written without whitespace and with the keys of its objects sorted (by their UTF-16 code units), so that
+ * the same tree is always written the same way, whatever the order of its maps.
+ */
+@Slf4j
+public final class KubeJsonWriter {
+
+    /** A buffer that grew above this number of chars (a huge config map ...) is not kept for the next trees. */
+    private static final int MAX_RETAINED_BUFFER_SIZE = 1 << 20;
+
+    private static final JsonFactory FACTORY = new ObjectMapper().getFactory();
+
+    private static final Comparator<Map.Entry<?, ?>> BY_KEY = Comparator.comparing(entry -> String.valueOf(entry.getKey()));
+
+    private static final ThreadLocal<CharArrayWriter> BUFFERS = ThreadLocal.withInitial(() -> new CharArrayWriter(8192));
+
+    private KubeJsonWriter() {
+    }
+
+    /**
+     * @return the JSON serialization of the tree, null if it can't be serialized.
+     */
+    public static String toJson(Object value) {
+        return toJson(value, false);
+    }
+
+    /**
+     * @return the canonical JSON serialization of the tree, null if it can't be serialized.
+     */
+    public static String toCanonicalJson(Object value) {
+        return toJson(value, true);
+    }
+
+    /**
+     * Write the canonical JSON serialization of the tree, UTF-8 encoded, into the stream.
+     */
+    public static void writeCanonical(OutputStream out, Object value) throws IOException {
+        try (JsonGenerator generator = FACTORY.createGenerator(out)) {
+            write(generator, value, true);
+        }
+    }
+
+    private static String toJson(Object value, boolean canonical) {
+        CharArrayWriter buffer = BUFFERS.get();
+        try (JsonGenerator generator = FACTORY.createGenerator(buffer)) {
+            write(generator, value, canonical);
+            generator.flush();
+            return buffer.toString();
+        } catch (IOException e) {
+            log.error("Not able to serialize resource definition", e);
+            return null;
+        } finally {
+            if (buffer.size() > MAX_RETAINED_BUFFER_SIZE) {
+                BUFFERS.remove();
+            } else {
+                buffer.reset();
+            }
+        }
+    }
+
+    /**
+     * Write the tree using the given generator.
+     */
+    public static void write(JsonGenerator generator, Object value) throws IOException {
+        write(generator, value, false);
+    }
+
+    /**
+     * Write the tree, or its canonical form, using the given generator.
+     */
+    public static void write(JsonGenerator generator, Object value, boolean canonical) throws IOException {
+        if (value == null) {
+            generator.writeNull();
+        } else if (value instanceof ScalarPropertyValue) {
+            generator.writeString(((ScalarPropertyValue) value).getValue());
+        } else if (value instanceof PropertyValue) {
+            write(generator, ((PropertyValue) value).getValue(), canonical);
+        } else if (value instanceof String) {
+            generator.writeString((String) value);
+        } else if (value instanceof ResourceDocument) {
+            ((ResourceDocument) value).write(generator, canonical);
+        } else if (value instanceof ResourceDocument.Array) {
+            ((ResourceDocument.Array) value).write(generator, canonical);
+        } else if (value instanceof Map<?, ?>) {
+            Iterable<? extends Map.Entry<?, ?>> entries = ((Map<?, ?>) value).entrySet();
+            if (canonical) {
+                Map.Entry<?, ?>[] sorted = ((Map<?, ?>) value).entrySet().toArray(new Map.Entry<?, ?>[0]);
+                Arrays.sort(sorted, BY_KEY);
+                entries = Arrays.asList(sorted);
+            }
+            generator.writeStartObject();
+            for (Map.Entry<?, ?> entry : entries) {
+                generator.writeFieldName(String.valueOf(entry.getKey()));
+                write(generator, entry.getValue(), canonical);
+            }
+            generator.writeEndObject();
+        } else if (value instanceof List<?>) {
+            generator.writeStartArray();
+            for (Object entry : (List<?>) value) {
+                write(generator, entry, canonical);
+            }
+            generator.writeEndArray();
+        } else if (value instanceof Integer || value instanceof Long) {
+            generator.writeNumber(((Number) value).longValue());
+        } else if (value instanceof Float) {
+            generator.writeNumber((Float) value);
+        } else if (value instanceof Double) {
+            generator.writeNumber((Double) value);
+        } else if (value instanceof Boolean) {
+            generator.writeBoolean((Boolean) value);
+        } else {
+            generator.writeObject(value);
+        }
+    }
+}
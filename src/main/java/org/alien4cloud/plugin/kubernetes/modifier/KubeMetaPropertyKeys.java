@@ -0,0 +1,54 @@
+package org.alien4cloud.plugin.kubernetes.modifier;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.annotation.Resource;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import alien4cloud.common.MetaPropertiesService;
+import alien4cloud.model.common.MetaPropertyTarget;
+import lombok.AllArgsConstructor;
+
+/**
+ * Plugin wide cache of the keys of the meta-properties, resolved from their names and targets.
+ * <p>
+ * Resolving a key is an index lookup, the keys are shared by all the flows. The plugin is not notified when the meta-property definitions
+ * change (a meta-property is created, renamed or deleted) : the resolved keys, including the absence of key, expire after
+ * <code>kubernetes.modifiers.metaproperties.keysTtl</code> ms (0 disables the cache). This expiration is the only invalidation.
+ */
+@Component
+public class KubeMetaPropertyKeys {
+
+    @Resource
+    private MetaPropertiesService metaPropertiesService;
+
+    @Value("${kubernetes.modifiers.metaproperties.keysTtl:30000}")
+    private long ttl;
+
+    private final Map<String, CachedKey> keys = new ConcurrentHashMap<>();
+
+    /**
+     * @return the key of the meta-property of the given target named <code>name</code>, or null if there is none.
+     */
+    public String getKey(String name, MetaPropertyTarget target) {
+        String cacheKey = target + ":" + name;
+        long now = System.currentTimeMillis();
+        CachedKey cached = keys.get(cacheKey);
+        if (cached == null || cached.expiresAt <= now) {
+            cached = new CachedKey(metaPropertiesService.getMetapropertykeyByName(name, target), now + ttl);
+            if (ttl > 0) {
+                keys.put(cacheKey, cached);
+            }
+        }
+        return cached.key;
+    }
+
+    @AllArgsConstructor
+    private static class CachedKey {
+        private final String key;
+        private final long expiresAt;
+    }
+}
@@ -0,0 +1,93 @@
+package org.alien4cloud.plugin.kubernetes.modifier;
+
+import static alien4cloud.utils.AlienUtils.safe;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Optional;
+
+import org.alien4cloud.alm.deployment.configuration.flow.EnvironmentContext;
+import org.alien4cloud.alm.deployment.configuration.flow.FlowExecutionContext;
+import org.apache.commons.lang.StringUtils;
+
+import alien4cloud.model.common.MetaPropertyTarget;
+import alien4cloud.model.orchestrators.locations.Location;
+import lombok.Getter;
+
+/**
+ * The values of the <code>K8S_*</code> meta-properties for a flow, loaded once and shared by all the modifiers of the flow (it is stored in the
+ * flow execution cache).
+ * <p>
+ * A value is searched in the application and in the location of the deployment. If a value is found in both, the location takes the
+ * precedence.
+ */
+@Getter
+public class KubeMetaPropertySnapshot {
+
+    public static final String K8S_NAMESPACE_METAPROP_NAME = "K8S_NAMESPACE";
+    public static final String K8S_PREFIX_METAPROP_NAME = "K8S_PREFIX";
+
+    private static final String FLOW_CACHE_KEY_META_PROPERTIES = KubeMetaPropertySnapshot.class.getName() + "META_PROPERTIES";
+
+    /** The namespace in which all the resources are created, null if not provided. */
+    private final String namespace;
+
+    /** The prefix of the names of the resources, null if not provided. */
+    private final String prefix;
+
+    public KubeMetaPropertySnapshot(String namespace, String prefix) {
+        this.namespace = namespace;
+        this.prefix = prefix;
+    }
+
+    /**
+     * Get the meta-properties of the flow, loading them if needed.
+     */
+    public static KubeMetaPropertySnapshot get(FlowExecutionContext context, KubeMetaPropertyKeys keys) {
+        Object o = context.getExecutionCache().get(FLOW_CACHE_KEY_META_PROPERTIES);
+        if (o instanceof KubeMetaPropertySnapshot) {
+            return (KubeMetaPropertySnapshot) o;
+        }
+        Map<String, String> applicationMetaProperties = getApplicationMetaProperties(context);
+        Map<String, String> locationMetaProperties = getLocationMetaProperties(context);
+        KubeMetaPropertySnapshot snapshot = new KubeMetaPropertySnapshot(
+                getValue(keys, K8S_NAMESPACE_METAPROP_NAME, applicationMetaProperties, locationMetaProperties),
+                getValue(keys, K8S_PREFIX_METAPROP_NAME, applicationMetaProperties, locationMetaProperties));
+        context.getExecutionCache().put(FLOW_CACHE_KEY_META_PROPERTIES, snapshot);
+        return snapshot;
+    }
+
+    private static String getValue(KubeMetaPropertyKeys keys, String name, Map<String, String> applicationMetaProperties,
+            Map<String, String> locationMetaProperties) {
+        String value = null;
+        String applicationKey = keys.getKey(name, MetaPropertyTarget.APPLICATION);
+        if (applicationKey != null && StringUtils.isNotEmpty(applicationMetaProperties.get(applicationKey))) {
+            value = applicationMetaProperties.get(applicationKey);
+        }
+        String locationKey = keys.getKey(name, MetaPropertyTarget.LOCATION);
+        if (locationKey != null && StringUtils.isNotEmpty(locationMetaProperties.get(locationKey))) {
+            value = locationMetaProperties.get(locationKey);
+        }
+        return value;
+    }
+
+    private static Map<String, String> getApplicationMetaProperties(FlowExecutionContext context) {
+        Optional<EnvironmentContext> ec = context.getEnvironmentContext();
+        if (ec.isPresent()) {
+            return safe(ec.get().getApplication().getMetaProperties());
+        }
+        return Collections.emptyMap();
+    }
+
+    private static Map<String, String> getLocationMetaProperties(FlowExecutionContext context) {
+        Object deploymentLocation = context.getExecutionCache().get(FlowExecutionContext.DEPLOYMENT_LOCATIONS_MAP_CACHE_KEY);
+        if (deploymentLocation instanceof Map) {
+            Map<String, Location> locations = (Map<String, Location>) deploymentLocation;
+            Optional<Location> location = locations.values().stream().findFirst();
+            if (location.isPresent()) {
+                return safe(location.get().getMetaProperties());
+            }
+        }
+        return Collections.emptyMap();
+    }
+}
@@ -0,0 +1,205 @@
+package org.alien4cloud.plugin.kubernetes.modifier;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Explicit pipeline of the named stages of a modifier.
+ * <p>
+ * Each stage declares the data it reads and the data it writes. Stages run in declaration order, except consecutive concurrent stages that
+ * don't conflict (none of them writes what another one reads or writes) : they are prepared in parallel on the {@link KubeStageExecutor}, then
+ * their results are applied one after the other, in declaration order, on the calling thread.
+ * <p>
+ * The preparation of a concurrent stage must only read the context (no topology change, no log, no lazily filled cache such as the host
+ * chains or the type registry), everything else goes in the returned write-back.
+ * <p>
+ * The duration of each stage is logged (debug) and kept in {@link #getStageTimings()}.
+ */
+@Slf4j
+public class KubeModifierPipeline {
+
+    /**
+     * Data read or written by the stages.
+     */
+    public enum Data {
+        /** The nodes and relationships of the topology. */
+        TOPOLOGY,
+        /** The namespace of the topology and the related resources. */
+        NAMESPACE,
+        /** The policies of the topology. */
+        POLICIES,
+        ENDPOINT_RESOURCES,
+        SERVICE_RESOURCES,
+        INGRESS_RESOURCES,
+        /** Deployment, statefulset and job resources. */
+        CONTROLLER_RESOURCES,
+        /** The containers of the controller resources, and the config maps / secrets they use. */
+        CONTAINERS,
+        /** The volumes of the controller resources, and the volume resources. */
+        VOLUMES,
+        /** The node affinity section of the controller resources. */
+        NODE_AFFINITY,
+        /** The pod anti-affinity section of the controller resources. */
+        POD_ANTI_AFFINITY,
+        AUTOSCALER_RESOURCES,
+        /** The resources of the generators applied to a type of source node. */
+        CUSTOM_RESOURCES,
+        /** The serialized specs of the resources. */
+        RESOURCE_SPECS
+    }
+
+    private final String name;
+
+    private final List<Stage> stages = Lists.newArrayList();
+
+    private final Map<String, Long> stageTimings = Maps.newLinkedHashMap();
+
+    public KubeModifierPipeline(String name) {
+        this.name = name;
+    }
+
+    public static Set<Data> data(Data... data) {
+        return data.length == 0 ? Collections.emptySet() : EnumSet.of(data[0], data);
+    }
+
+    /**
+     * Add a stage that runs alone, on the calling thread.
+     */
+    public KubeModifierPipeline stage(String stageName, Set<Data> reads, Set<Data> writes, Consumer<KubernetesModifierContext> action) {
+        stages.add(new Stage(stageName, reads, writes, false, context -> {
+            action.accept(context);
+            return null;
+        }));
+        return this;
+    }
+
+    /**
+     * Add a stage that may run concurrently with its neighbours : <code>prepare</code> only reads the context and returns the write-back to
+     * apply on the calling thread (or null if there is nothing to apply).
+     */
+    public KubeModifierPipeline concurrentStage(String stageName, Set<Data> reads, Set<Data> writes,
+            Function<KubernetesModifierContext, Consumer<KubernetesModifierContext>> prepare) {
+        stages.add(new Stage(stageName, reads, writes, true, prepare));
+        return this;
+    }
+
+    public void run(KubernetesModifierContext context, KubeStageExecutor executor) {
+        int i = 0;
+        while (i < stages.size()) {
+            List<Stage> group = Lists.newArrayList(stages.get(i++));
+            if (group.get(0).concurrent) {
+                while (i < stages.size() && stages.get(i).concurrent && !conflicts(group, stages.get(i))) {
+                    group.add(stages.get(i++));
+                }
+            }
+            if (group.size() == 1) {
+                runStage(context, group.get(0));
+            } else {
+                runConcurrently(context, group, executor);
+            }
+        }
+        log.debug("Pipeline {} stage timings (ms) : {}", name, stageTimings);
+    }
+
+    public Map<String, Long> getStageTimings() {
+        return Collections.unmodifiableMap(stageTimings);
+    }
+
+    private void runStage(KubernetesModifierContext context, Stage stage) {
+        long start = System.nanoTime();
+        Consumer<KubernetesModifierContext> writeBack = stage.prepare.apply(context);
+        if (writeBack != null) {
+            writeBack.accept(context);
+        }
+        recordTiming(stage, System.nanoTime() - start);
+    }
+
+    private void runConcurrently(KubernetesModifierContext context, List<Stage> group, KubeStageExecutor executor) {
+        List<Future<PreparedStage>> futures = Lists.newArrayList();
+        for (Stage stage : group) {
+            futures.add(executor.submit(() -> {
+                long start = System.nanoTime();
+                Consumer<KubernetesModifierContext> writeBack = stage.prepare.apply(context);
+                return new PreparedStage(writeBack, System.nanoTime() - start);
+            }));
+        }
+        for (int i = 0; i < group.size(); i++) {
+            PreparedStage prepared = getPreparedStage(group.get(i), futures.get(i));
+            long start = System.nanoTime();
+            if (prepared.writeBack != null) {
+                prepared.writeBack.accept(context);
+            }
+            recordTiming(group.get(i), prepared.duration + System.nanoTime() - start);
+        }
+    }
+
+    private PreparedStage getPreparedStage(Stage stage, Future<PreparedStage> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while running stage <" + stage.name + "> of pipeline " + name, e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException("Stage <" + stage.name + "> of pipeline " + name + " failed", e.getCause());
+        }
+    }
+
+    private void recordTiming(Stage stage, long durationNanos) {
+        long durationMillis = durationNanos / 1000000;
+        stageTimings.put(stage.name, durationMillis);
+        log.debug("Pipeline {} : stage <{}> took {} ms", name, stage.name, durationMillis);
+    }
+
+    private static boolean conflicts(List<Stage> group, Stage candidate) {
+        for (Stage stage : group) {
+            if (!Sets.intersection(stage.writes, Sets.union(candidate.reads, candidate.writes)).isEmpty()
+                    || !Sets.intersection(candidate.writes, stage.reads).isEmpty()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static class Stage {
+        private final String name;
+        private final Set<Data> reads;
+        private final Set<Data> writes;
+        private final boolean concurrent;
+        private final Function<KubernetesModifierContext, Consumer<KubernetesModifierContext>> prepare;
+
+        private Stage(String name, Set<Data> reads, Set<Data> writes, boolean concurrent,
+                Function<KubernetesModifierContext, Consumer<KubernetesModifierContext>> prepare) {
+            this.name = name;
+            this.reads = reads;
+            this.writes = writes;
+            this.concurrent = concurrent;
+            this.prepare = prepare;
+        }
+    }
+
+    private static class PreparedStage {
+        private final Consumer<KubernetesModifierContext> writeBack;
+        private final long duration;
+
+        private PreparedStage(Consumer<KubernetesModifierContext> writeBack, long duration) {
+            this.writeBack = writeBack;
+            this.duration = duration;
+        }
+    }
+}
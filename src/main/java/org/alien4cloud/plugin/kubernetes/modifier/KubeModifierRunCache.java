@@ -0,0 +1,184 @@
+package org.alien4cloud.plugin.kubernetes.modifier;
+
+import static org.alien4cloud.plugin.kubernetes.csar.Version.K8S_CSAR_VERSION;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.PostConstruct;
+
+import org.alien4cloud.alm.deployment.configuration.flow.FlowExecutionContext;
+import org.alien4cloud.alm.deployment.configuration.flow.FlowExecutionLog;
+import org.alien4cloud.tosca.model.templates.Topology;
+import org.springframework.beans.BeanUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import alien4cloud.utils.CloneUtil;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Opt-in cache of whole modifier runs.
+ * <p>
+ * The key of a run is a SHA-256 hash of the modifier name, the plugin version, the values the run depends on (deployment environment, namespace
+ * and prefix meta-properties) and a canonical JSON serialization (sorted properties and map keys) of the input topology. The kube config is part of the topology (config
+ * property of the <code>KubeCluster</code> node) so it is part of the key. When a run with the same key has already been processed, the stored
+ * output topology is replayed instead of processing the topology again.
+ * <p>
+ * Only the output topology is replayed, not the messages logged in the flow : the runs that log errors or warnings are not stored.
+ * <p>
+ * Enabled using <code>kubernetes.modifiers.cache.enabled</code>, the number of stored runs is bounded by
+ * <code>kubernetes.modifiers.cache.maxEntries</code> (least recently used runs are evicted first). The stored topologies hold the kube config
+ * of the cluster, so a run is also evicted when it has not been replayed for <code>kubernetes.modifiers.cache.expireAfterAccessMinutes</code>.
+ */
+@Slf4j
+@Component
+public class KubeModifierRunCache {
+
+    @Value("${kubernetes.modifiers.cache.enabled:false}")
+    private boolean enabled;
+
+    @Value("${kubernetes.modifiers.cache.maxEntries:32}")
+    private int maxEntries;
+
+    @Value("${kubernetes.modifiers.cache.expireAfterAccessMinutes:10}")
+    private long expireAfterAccessMinutes;
+
+    private Cache<String, Topology> entries;
+
+    private final AtomicLong hitCount = new AtomicLong();
+
+    private final AtomicLong missCount = new AtomicLong();
+
+    private final ObjectMapper mapper = new ObjectMapper().configure(MapperFeature.SORT_PROPERTIES_ALPHABETICALLY, true)
+            .configure(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS, true).configure(SerializationFeature.FAIL_ON_EMPTY_BEANS, false)
+            .addMixIn(Topology.class, TopologyKeyMixIn.class);
+
+    @PostConstruct
+    public void init() {
+        // a single segment, so that the least recently used run of the whole cache is the one evicted
+        entries = CacheBuilder.newBuilder().concurrencyLevel(1).maximumSize(maxEntries)
+                .expireAfterAccess(expireAfterAccessMinutes, TimeUnit.MINUTES).build();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Compute the key of a run.
+     *
+     * @param modifierName the name of the modifier.
+     * @param topology the input topology.
+     * @param parameters the other values the run depends on.
+     * @return the key of the run, or null if the cache is disabled or the topology can't be hashed.
+     */
+    public String getKey(String modifierName, Topology topology, String... parameters) {
+        if (!enabled) {
+            return null;
+        }
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            update(digest, modifierName);
+            update(digest, K8S_CSAR_VERSION);
+            for (String parameter : parameters) {
+                update(digest, parameter);
+            }
+            digest.update(mapper.writeValueAsBytes(topology));
+            StringBuilder key = new StringBuilder();
+            for (byte b : digest.digest()) {
+                key.append(String.format("%02x", b));
+            }
+            return key.toString();
+        } catch (NoSuchAlgorithmException | JsonProcessingException e) {
+            log.warn("Not able to compute the cache key of topology " + topology.getId() + ", the run will not be cached", e);
+            return null;
+        }
+    }
+
+    /**
+     * Replace the content of the given topology by the output of a previous run having the same key.
+     *
+     * @return true if a previous run was found.
+     */
+    public boolean replay(String key, Topology topology) {
+        if (key == null) {
+            return false;
+        }
+        Topology output = entries.getIfPresent(key);
+        if (output == null) {
+            missCount.incrementAndGet();
+            return false;
+        }
+        hitCount.incrementAndGet();
+        BeanUtils.copyProperties(CloneUtil.clone(output), topology);
+        return true;
+    }
+
+    /**
+     * Store the output topology of a run, unless the run logged errors or warnings (a replay would not log them again).
+     *
+     * @param problemCount the number of errors and warnings logged in the flow before the run (see {@link #getProblemCount(FlowExecutionContext)}).
+     */
+    public void store(String key, Topology topology, FlowExecutionContext context, int problemCount) {
+        if (key == null) {
+            return;
+        }
+        if (getProblemCount(context) != problemCount) {
+            log.debug("The run of topology " + topology.getId() + " logged errors or warnings, it is not stored");
+            return;
+        }
+        entries.put(key, CloneUtil.clone(topology));
+    }
+
+    /**
+     * @return the number of errors and warnings logged so far in the flow.
+     */
+    public static int getProblemCount(FlowExecutionContext context) {
+        FlowExecutionLog flowLog = context.log();
+        return flowLog.getErrors().size() + flowLog.getWarnings().size();
+    }
+
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    public long size() {
+        entries.cleanUp();
+        return entries.size();
+    }
+
+    public void clear() {
+        entries.invalidateAll();
+    }
+
+    private static void update(MessageDigest digest, String value) {
+        if (value != null) {
+            digest.update(value.getBytes(StandardCharsets.UTF_8));
+        }
+        // separator, so that (a, bc) and (ab, c) don't give the same key
+        digest.update((byte) 0);
+    }
+
+    /**
+     * Dates don't change the result of a run.
+     */
+    @JsonIgnoreProperties({ "creationDate", "lastUpdateDate" })
+    private static abstract class TopologyKeyMixIn {
+    }
+}
@@ -0,0 +1,116 @@
+package org.alien4cloud.plugin.kubernetes.modifier;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import org.alien4cloud.alm.deployment.configuration.flow.EnvironmentContext;
+import org.alien4cloud.alm.deployment.configuration.flow.FlowExecutionContext;
+
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.io.BaseEncoding;
+
+/**
+ * Allocate the kubernetes names of the generated objects (deployments, services, config maps, secrets, claims, autoscalers ...) of a flow.
+ * <p>
+ * A name is the sanitized prefix followed by a hash of the scope of the flow (the deployment environment, or the topology when the flow is not
+ * related to an environment), of the role of the name (the kind of object it names) and of the prefix (made of the node name) : the same
+ * logical node of the same environment gets the same name on every run, whatever the other names requested in the flow, so that kubernetes
+ * updates its objects instead of recreating them. An identity (role and prefix) requested again in the flow gets the name it already got. Names
+ * are at most {@link #MAX_LENGTH} chars long, the prefix being abbreviated if needed.
+ * <p>
+ * The names of a flow are unique : in the unlikely case two identities give the same name, the next one is hashed again with an attempt counter
+ * (which stays deterministic as long as the names are requested in the same order).
+ */
+public class KubeNameAllocator {
+
+    public static final String ROLE_DEPLOYMENT = "deployment";
+
+    public static final String ROLE_JOB = "job";
+
+    public static final String ROLE_CONTAINER = "container";
+
+    public static final String ROLE_SERVICE = "service";
+
+    public static final String ROLE_CONFIG_MAP = "configmap";
+
+    public static final String ROLE_SECRET = "secret";
+
+    public static final String ROLE_VOLUME_CLAIM = "claim";
+
+    public static final String ROLE_INGRESS = "ingress";
+
+    public static final String ROLE_AUTOSCALER = "autoscaler";
+
+    /** Max length of a kubernetes name (DNS label). */
+    public static final int MAX_LENGTH = 63;
+
+    /** Number of bytes of the hash appended to the names. */
+    private static final int HASH_BYTES = 4;
+
+    private static final int HASH_LENGTH = HASH_BYTES * 2;
+
+    private static final String FLOW_CACHE_KEY_NAME_ALLOCATOR = KubeNameAllocator.class.getName() + "NAME_ALLOCATOR";
+
+    private final String scope;
+
+    /** Identity (role and prefix) -> name allocated for it. */
+    private final Map<String, String> allocated = Maps.newHashMap();
+
+    /** The names allocated in the flow. */
+    private final Set<String> names = Sets.newHashSet();
+
+    public KubeNameAllocator(String scope) {
+        this.scope = scope == null ? "" : scope;
+    }
+
+    /**
+     * Get the name allocator of the flow, creating it if needed.
+     */
+    public static KubeNameAllocator get(FlowExecutionContext context) {
+        Object o = context.getExecutionCache().get(FLOW_CACHE_KEY_NAME_ALLOCATOR);
+        if (o instanceof KubeNameAllocator) {
+            return (KubeNameAllocator) o;
+        }
+        KubeNameAllocator allocator = new KubeNameAllocator(getScope(context));
+        context.getExecutionCache().put(FLOW_CACHE_KEY_NAME_ALLOCATOR, allocator);
+        return allocator;
+    }
+
+    /**
+     * @param role the kind of object named (one of the ROLE_ constants), distinct objects made for the same node must have distinct roles.
+     * @param prefix the prefix of the name, made of the name of the node the object is made for.
+     * @return the name of the given identity, the same one each time it is requested in the flow.
+     */
+    public synchronized String allocate(String role, String prefix) {
+        String key = role + "/" + prefix;
+        String name = allocated.get(key);
+        if (name != null) {
+            return name;
+        }
+        String base = KubeNameService.toLabel(prefix, MAX_LENGTH - HASH_LENGTH - 1);
+        for (int attempt = 0;; attempt++) {
+            name = base + "-" + hash(attempt == 0 ? key : key + "#" + attempt);
+            if (names.add(name)) {
+                allocated.put(key, name);
+                return name;
+            }
+        }
+    }
+
+    private String hash(String key) {
+        return BaseEncoding.base16().lowerCase().encode(KubeNameService.sha256(scope, key), 0, HASH_BYTES);
+    }
+
+    /**
+     * @return the scope of the names of the flow : the id of its deployment environment, or of its topology if it has no environment.
+     */
+    public static String getScope(FlowExecutionContext context) {
+        Optional<EnvironmentContext> ec = context.getEnvironmentContext();
+        if (ec.isPresent() && ec.get().getEnvironment() != null) {
+            return ec.get().getEnvironment().getId();
+        }
+        return context.getTopology() == null ? null : context.getTopology().getId();
+    }
+}
@@ -0,0 +1,195 @@
+package org.alien4cloud.plugin.kubernetes.modifier;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+
+/**
+ * Sanitize and validate the names of the kubernetes objects.
+ * <p>
+ * Names are DNS labels (RFC 1123) : at most {@link #MAX_LABEL_LENGTH} lower case alphanumeric chars or <code>-</code>, starting and ending with
+ * an alphanumeric char. Candidates (node names, prefixes ...) are sanitized in a single pass over their chars : upper case letters are lower
+ * cased, other invalid chars (<code>_</code>, <code>.</code> ...) are replaced by <code>-</code>, leading and trailing dashes are removed and
+ * the middle of a too long name is abbreviated.
+ * <p>
+ * The labels of the most recently used candidates are cached (the least recently used ones are evicted). The digests used to hash the names are kept per
+ * thread.
+ */
+public final class KubeNameService {
+
+    /** Max length of a DNS label. */
+    public static final int MAX_LABEL_LENGTH = 63;
+
+    /** Max length of a DNS subdomain. */
+    public static final int MAX_SUBDOMAIN_LENGTH = 253;
+
+    /** The label of a candidate without any valid char. */
+    private static final String EMPTY_LABEL = "a4c";
+
+    private static final int MAX_CACHED_CANDIDATES = 4096;
+
+    private static final LoadingCache<String, String> LABELS = CacheBuilder.newBuilder().maximumSize(MAX_CACHED_CANDIDATES)
+            .build(CacheLoader.from(KubeNameService::sanitize));
+
+    private static final ThreadLocal<MessageDigest> SHA_1 = ThreadLocal.withInitial(() -> getDigest("SHA-1"));
+
+    private static final ThreadLocal<MessageDigest> SHA_256 = ThreadLocal.withInitial(() -> getDigest("SHA-256"));
+
+    private KubeNameService() {
+    }
+
+    /**
+     * @return the DNS label of the candidate.
+     */
+    public static String toLabel(String candidate) {
+        return LABELS.getUnchecked(candidate);
+    }
+
+    /**
+     * @return the DNS label of the candidate, which middle is abbreviated if it is longer than the given length.
+     */
+    public static String toLabel(String candidate, int maxLength) {
+        return abbreviate(toLabel(candidate), maxLength);
+    }
+
+    /**
+     * Keep the beginning and the end of the label, separated by a dash, without dashes at the boundaries.
+     */
+    private static String abbreviate(String label, int maxLength) {
+        if (label.length() <= maxLength) {
+            return label;
+        }
+        int tailLength = (maxLength - 1) / 2;
+        int headLength = maxLength - 1 - tailLength;
+        StringBuilder abbreviated = new StringBuilder(maxLength).append(label, 0, headLength);
+        trimTrailingDashes(abbreviated);
+        abbreviated.append('-');
+        int tailStart = label.length() - tailLength;
+        while (tailStart < label.length() && label.charAt(tailStart) == '-') {
+            tailStart++;
+        }
+        return abbreviated.append(label, tailStart, label.length()).toString();
+    }
+
+    /**
+     * @return the DNS label of the candidate followed by a hash of the candidate : the same candidate always gets the same name, and two
+     *         candidates only differing by their invalid chars get distinct names.
+     */
+    public static String toConsistentLabel(String candidate) {
+        byte[] hash = SHA_1.get().digest(candidate.getBytes(StandardCharsets.UTF_8));
+        long value = 0;
+        for (int i = 0; i < 6; i++) {
+            value = (value << 8) | (hash[i] & 0xFF);
+        }
+        return toLabel(candidate + "-" + Long.toHexString(value));
+    }
+
+    /**
+     * @return the SHA-256 of the given parts (separated by a zero byte, so that (a, bc) and (ab, c) don't give the same hash).
+     */
+    public static byte[] sha256(String... parts) {
+        MessageDigest digest = SHA_256.get();
+        for (int i = 0; i < parts.length; i++) {
+            if (i > 0) {
+                digest.update((byte) 0);
+            }
+            digest.update(parts[i].getBytes(StandardCharsets.UTF_8));
+        }
+        return digest.digest();
+    }
+
+    /**
+     * @return the key of a node label as it is used by the affinity policies : lower cased, with dashes instead of underscores (other chars,
+     *         like the <code>/</code> of the prefix, are kept).
+     */
+    public static String toLabelKey(String candidate) {
+        char[] key = candidate.toCharArray();
+        for (int i = 0; i < key.length; i++) {
+            key[i] = key[i] == '_' ? '-' : Character.toLowerCase(key[i]);
+        }
+        return new String(key);
+    }
+
+    /**
+     * @return true if the name is a DNS label.
+     */
+    public static boolean isValidLabel(String name) {
+        return name != null && name.length() <= MAX_LABEL_LENGTH && isValidLabel(name, 0, name.length());
+    }
+
+    /**
+     * @return true if the name is a DNS subdomain : DNS labels separated by dots.
+     */
+    public static boolean isValidSubdomain(String name) {
+        if (name == null || name.length() > MAX_SUBDOMAIN_LENGTH) {
+            return false;
+        }
+        int start = 0;
+        for (int i = 0; i <= name.length(); i++) {
+            if (i == name.length() || name.charAt(i) == '.') {
+                if (!isValidLabel(name, start, i)) {
+                    return false;
+                }
+                start = i + 1;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isValidLabel(String name, int start, int end) {
+        if (start >= end || !isAlphanumeric(name.charAt(start)) || !isAlphanumeric(name.charAt(end - 1))) {
+            return false;
+        }
+        for (int i = start + 1; i < end - 1; i++) {
+            char c = name.charAt(i);
+            if (c != '-' && !isAlphanumeric(c)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String sanitize(String candidate) {
+        StringBuilder label = new StringBuilder(candidate.length());
+        for (int i = 0; i < candidate.length(); i++) {
+            char c = candidate.charAt(i);
+            if (c >= 'A' && c <= 'Z') {
+                label.append((char) (c + ('a' - 'A')));
+            } else if (isAlphanumeric(c)) {
+                label.append(c);
+            } else if (label.length() > 0) {
+                // no leading dash
+                label.append('-');
+            }
+        }
+        trimTrailingDashes(label);
+        if (label.length() == 0) {
+            return EMPTY_LABEL;
+        }
+        return abbreviate(label.toString(), MAX_LABEL_LENGTH);
+    }
+
+    private static void trimTrailingDashes(StringBuilder label) {
+        int length = label.length();
+        while (length > 0 && label.charAt(length - 1) == '-') {
+            length--;
+        }
+        label.setLength(length);
+    }
+
+    private static boolean isAlphanumeric(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9');
+    }
+
+    private static MessageDigest getDigest(String algorithm) {
+        try {
+            return MessageDigest.getInstance(algorithm);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(algorithm + " is not available", e);
+        }
+    }
+}
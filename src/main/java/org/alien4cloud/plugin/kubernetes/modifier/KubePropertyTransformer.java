@@ -0,0 +1,179 @@
+package org.alien4cloud.plugin.kubernetes.modifier;
+
+import static alien4cloud.utils.AlienUtils.safe;
+import static org.alien4cloud.plugin.kubernetes.modifier.KubeTopologyUtils.K8S_DATATYPES_CPU_QUANTITY;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+import org.alien4cloud.tosca.model.definitions.PropertyDefinition;
+import org.alien4cloud.tosca.model.definitions.PropertyValue;
+import org.alien4cloud.tosca.model.types.DataType;
+import org.alien4cloud.tosca.normative.types.ToscaTypes;
+import org.springframework.stereotype.Component;
+
+import com.google.common.collect.Maps;
+
+import alien4cloud.tosca.context.ToscaContext;
+
+/**
+ * Transform property values as they should be found in a JSON spec : property values are replaced by their value, and scalars are parsed
+ * according to their TOSCA type (sizes are converted to bytes, CPU quantities to their canonical form, integers, floats and booleans are no
+ * longer strings). Maps and lists are transformed into {@link ResourceDocument}s, so the scalars are stored unboxed in the generated resources.
+ * <p>
+ * The first transformation of a value of a given property definition compiles a plan : the plans of the properties of its data type, the plan
+ * of its entry schema and the parser of its leaves. Plans are cached for the life of the plugin, keyed by the id (name and archive version) of
+ * the data types resolved in the current TOSCA context, so that a data type updated in a new archive version gets a new plan. The next
+ * transformations only resolve the data type of the definition, then walk the values.
+ */
+@Component
+public class KubePropertyTransformer {
+
+    /** Plan of the values without definition : a property value is replaced by its value, which is kept as is. */
+    private static final Plan UNDEFINED = new Plan();
+
+    private static final Map<String, Function<String, Object>> PARSERS = Maps.newHashMap();
+
+    static {
+        PARSERS.put(ToscaTypes.SIZE, KubeQuantity::toBytes);
+        PARSERS.put(K8S_DATATYPES_CPU_QUANTITY, KubeQuantity::toCpu);
+        PARSERS.put(ToscaTypes.INTEGER, Integer::parseInt);
+        PARSERS.put(ToscaTypes.FLOAT, Float::parseFloat);
+        PARSERS.put(ToscaTypes.BOOLEAN, Boolean::parseBoolean);
+    }
+
+    private final Map<String, Plan> plans = new ConcurrentHashMap<>();
+
+    /**
+     * Transform the object by replacing eventual PropertyValue found by it's value.
+     */
+    public Object transform(Object value, PropertyDefinition propertyDefinition) {
+        if (value == null) {
+            return null;
+        }
+        return getPlan(propertyDefinition).transform(value);
+    }
+
+    private Plan getPlan(PropertyDefinition propertyDefinition) {
+        if (propertyDefinition == null) {
+            return UNDEFINED;
+        }
+        Plan plan = plans.get(getKey(propertyDefinition));
+        if (plan == null) {
+            Map<String, Plan> compiled = Maps.newHashMap();
+            plan = compile(propertyDefinition, compiled);
+            // plans referring to a data type that is not found in the current context are not kept
+            if (compiled.values().stream().allMatch(compiledPlan -> compiledPlan.resolved)) {
+                plans.putAll(compiled);
+            }
+        }
+        return plan;
+    }
+
+    /**
+     * @param compiled the plans compiled by this compilation, so that recursive data types refer to the plan being compiled.
+     */
+    private Plan compile(PropertyDefinition propertyDefinition, Map<String, Plan> compiled) {
+        if (propertyDefinition == null) {
+            return UNDEFINED;
+        }
+        String key = getKey(propertyDefinition);
+        Plan plan = plans.get(key);
+        if (plan == null) {
+            plan = compiled.get(key);
+        }
+        if (plan != null) {
+            return plan;
+        }
+        plan = new Plan();
+        compiled.put(key, plan);
+
+        String type = propertyDefinition.getType();
+        plan.parser = PARSERS.get(type);
+        if (plan.parser == null && ToscaTypes.isSimple(type)) {
+            plan.parser = String::valueOf;
+        }
+        if (plan.parser == null && !ToscaTypes.isPrimitive(type)) {
+            DataType dataType = ToscaContext.get(DataType.class, type);
+            plan.resolved = dataType != null;
+            plan.properties = Maps.newHashMap();
+            if (dataType != null) {
+                for (Map.Entry<String, PropertyDefinition> property : safe(dataType.getProperties()).entrySet()) {
+                    plan.properties.put(property.getKey(), compile(property.getValue(), compiled));
+                }
+            }
+        } else if (ToscaTypes.MAP.equals(type)) {
+            plan.mapEntries = compile(propertyDefinition.getEntrySchema(), compiled);
+        }
+        plan.listEntries = compile(propertyDefinition.getEntrySchema(), compiled);
+        return plan;
+    }
+
+    private static String getKey(PropertyDefinition propertyDefinition) {
+        if (propertyDefinition.getEntrySchema() == null) {
+            return getTypeKey(propertyDefinition.getType());
+        }
+        return getTypeKey(propertyDefinition.getType()) + "<" + getKey(propertyDefinition.getEntrySchema()) + ">";
+    }
+
+    /**
+     * @return the id of the data type found in the current context, or the type itself if it is parsed or primitive (or not found).
+     */
+    private static String getTypeKey(String type) {
+        if (PARSERS.containsKey(type) || ToscaTypes.isPrimitive(type)) {
+            return type;
+        }
+        DataType dataType = ToscaContext.get(DataType.class, type);
+        return dataType == null ? type : dataType.getId();
+    }
+
+    /**
+     * The transformation of the values of a property definition.
+     */
+    private static class Plan {
+        /** False if the data type of the definition was not found. */
+        private boolean resolved = true;
+        /** The parser of the scalar values, null to keep them as is. */
+        private Function<String, Object> parser;
+        /** The plans of the properties of the data type, null if the definition is not a data type. */
+        private Map<String, Plan> properties;
+        /** The plan of the entries of a map, null if the definition is not a map. */
+        private Plan mapEntries;
+        /** The plan of the entries of a list. */
+        private Plan listEntries = UNDEFINED;
+
+        private Object transform(Object value) {
+            if (value == null) {
+                return null;
+            } else if (value instanceof PropertyValue) {
+                return transform(((PropertyValue) value).getValue());
+            } else if (this == UNDEFINED) {
+                return value;
+            } else if (value instanceof Map<?, ?>) {
+                ResourceDocument newMap = new ResourceDocument();
+                if (properties != null) {
+                    for (Map.Entry<String, Object> entry : ((Map<String, Object>) value).entrySet()) {
+                        newMap.put(entry.getKey(), properties.getOrDefault(entry.getKey(), UNDEFINED).transform(entry.getValue()));
+                    }
+                } else if (mapEntries != null) {
+                    for (Map.Entry<String, Object> entry : ((Map<String, Object>) value).entrySet()) {
+                        newMap.put(entry.getKey(), mapEntries.transform(entry.getValue()));
+                    }
+                }
+                return newMap;
+            } else if (value instanceof List<?>) {
+                ResourceDocument.Array newList = new ResourceDocument.Array();
+                for (Object entry : (List<Object>) value) {
+                    newList.add(listEntries.transform(entry));
+                }
+                return newList;
+            } else if (parser != null) {
+                return parser.apply(value.toString());
+            } else {
+                return value;
+            }
+        }
+    }
+}
@@ -0,0 +1,239 @@
+package org.alien4cloud.plugin.kubernetes.modifier;
+
+/**
+ * Parse TOSCA sizes (<code>512 MiB</code>, <code>1 GB</code>) and Kubernetes quantities (<code>128Mi</code>, <code>1G</code>, <code>500m</code>,
+ * <code>1e3</code>) in a single pass over the literal, into primitive longs.
+ * <p>
+ * Sizes with a byte unit (<code>B</code>) follow TOSCA : the unit is case insensitive, <code>kB</code> is 1000 bytes and <code>KiB</code> 1024
+ * bytes. Other suffixes follow Kubernetes : they are case sensitive, <code>m</code> is milli and <code>M</code> mega. As Kubernetes does,
+ * fractions of the target unit (a byte, a millicore) are rounded up.
+ * <p>
+ * Parsing doesn't allocate, so the canonical values are not cached.
+ */
+public final class KubeQuantity {
+
+    /** Returned by the parse methods for literals that are not quantities (or that overflow). */
+    public static final long INVALID = Long.MIN_VALUE;
+
+    private static final long[] POWERS_OF_TEN = new long[19];
+
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
+
+    private KubeQuantity() {
+    }
+
+    /**
+     * @return the number of bytes of the given size or memory quantity, {@link #INVALID} if it is not a quantity.
+     */
+    public static long parseBytes(String value) {
+        return parse(value, 0, true);
+    }
+
+    /**
+     * @return the number of millicores of the given CPU quantity (<code>0.5</code>, <code>500m</code>), {@link #INVALID} if it is not a
+     *         quantity.
+     */
+    public static long parseMillicores(String value) {
+        return parse(value, 3, false);
+    }
+
+    /**
+     * @return the number of bytes (a Long) of the given size, or the value itself if it is not a size.
+     */
+    public static Object toBytes(String value) {
+        long bytes = parseBytes(value);
+        return bytes == INVALID ? value : Long.valueOf(bytes);
+    }
+
+    /**
+     * @return the canonical Kubernetes quantity of the given CPU quantity (<code>2</code> or <code>500m</code>), or the value itself if it is
+     *         not a quantity.
+     */
+    public static Object toCpu(String value) {
+        long millicores = parseMillicores(value);
+        if (millicores == INVALID) {
+            return value;
+        } else if (millicores % 1000 == 0) {
+            return String.valueOf(millicores / 1000);
+        }
+        return millicores + "m";
+    }
+
+    /**
+     * @param scale the power of ten of the target unit (3 for millis).
+     * @param bytes true to accept the TOSCA byte units.
+     */
+    private static long parse(String value, int scale, boolean bytes) {
+        if (value == null) {
+            return INVALID;
+        }
+        int end = value.length();
+        int i = 0;
+        while (i < end && value.charAt(i) == ' ') {
+            i++;
+        }
+        while (end > i && value.charAt(end - 1) == ' ') {
+            end--;
+        }
+        boolean negative = false;
+        if (i < end && (value.charAt(i) == '-' || value.charAt(i) == '+')) {
+            negative = value.charAt(i) == '-';
+            i++;
+        }
+
+        // the number : digits, with an optional fraction
+        long digits = 0;
+        int digitCount = 0;
+        int fractionDigits = 0;
+        boolean fraction = false;
+        for (; i < end; i++) {
+            char c = value.charAt(i);
+            if (c >= '0' && c <= '9') {
+                if (digits > (Long.MAX_VALUE - 9) / 10) {
+                    return INVALID;
+                }
+                digits = digits * 10 + (c - '0');
+                digitCount++;
+                if (fraction) {
+                    fractionDigits++;
+                }
+            } else if (c == '.' && !fraction) {
+                fraction = true;
+            } else {
+                break;
+            }
+        }
+        if (digitCount == 0) {
+            return INVALID;
+        }
+
+        // the exponent : e or E followed by digits (E alone is the exa suffix)
+        int exponent = 0;
+        if (i < end && (value.charAt(i) == 'e' || value.charAt(i) == 'E') && isExponent(value, i + 1, end)) {
+            i++;
+            boolean negativeExponent = value.charAt(i) == '-';
+            if (value.charAt(i) == '-' || value.charAt(i) == '+') {
+                i++;
+            }
+            for (; i < end && value.charAt(i) >= '0' && value.charAt(i) <= '9'; i++) {
+                exponent = exponent * 10 + (value.charAt(i) - '0');
+                if (exponent > 100) {
+                    return INVALID;
+                }
+            }
+            if (negativeExponent) {
+                exponent = -exponent;
+            }
+        }
+        while (i < end && value.charAt(i) == ' ') {
+            i++;
+        }
+
+        // the unit
+        long multiplier;
+        if (bytes && end > i && (value.charAt(end - 1) == 'B' || value.charAt(end - 1) == 'b')) {
+            // TOSCA : case insensitive prefix, then B
+            int prefixLength = end - 1 - i;
+            if (prefixLength == 0) {
+                multiplier = 1;
+            } else if (prefixLength == 1) {
+                int power = getPower(Character.toUpperCase(value.charAt(i)));
+                if (power <= 0) {
+                    return INVALID;
+                }
+                multiplier = 1;
+                exponent += power * 3;
+            } else if (prefixLength == 2 && (value.charAt(i + 1) == 'i' || value.charAt(i + 1) == 'I')) {
+                int power = getPower(Character.toUpperCase(value.charAt(i)));
+                if (power <= 0) {
+                    return INVALID;
+                }
+                multiplier = 1L << (10 * power);
+            } else {
+                return INVALID;
+            }
+        } else {
+            // Kubernetes : case sensitive suffix
+            int suffixLength = end - i;
+            if (suffixLength == 0) {
+                multiplier = 1;
+            } else if (suffixLength == 1) {
+                char suffix = value.charAt(i);
+                int power = suffix == 'k' ? 1 : suffix == 'K' ? 0 : getPower(suffix);
+                if (power == 0) {
+                    return INVALID;
+                }
+                multiplier = 1;
+                exponent += power * 3;
+            } else if (suffixLength == 2 && value.charAt(i + 1) == 'i') {
+                int power = getPower(value.charAt(i));
+                if (power <= 0) {
+                    return INVALID;
+                }
+                multiplier = 1L << (10 * power);
+            } else {
+                return INVALID;
+            }
+        }
+
+        int power = exponent + scale - fractionDigits;
+        long result;
+        try {
+            result = Math.multiplyExact(digits, multiplier);
+            if (power >= 0) {
+                if (power >= POWERS_OF_TEN.length) {
+                    return result == 0 ? 0 : INVALID;
+                }
+                result = Math.multiplyExact(result, POWERS_OF_TEN[power]);
+            } else if (-power >= POWERS_OF_TEN.length) {
+                result = result == 0 ? 0 : 1;
+            } else {
+                long divisor = POWERS_OF_TEN[-power];
+                result = result / divisor + (result % divisor == 0 ? 0 : 1);
+            }
+        } catch (ArithmeticException e) {
+            return INVALID;
+        }
+        return negative ? -result : result;
+    }
+
+    private static boolean isExponent(String value, int i, int end) {
+        if (i < end && (value.charAt(i) == '-' || value.charAt(i) == '+')) {
+            i++;
+        }
+        return i < end && value.charAt(i) >= '0' && value.charAt(i) <= '9';
+    }
+
+    /**
+     * @return the power of 1000 (or of 1024 for binary units) of the given prefix : K (or k) 1, M 2 ... E 6, n -3, u -2, m -1, 0 if unknown.
+     */
+    private static int getPower(char prefix) {
+        switch (prefix) {
+        case 'K':
+            return 1;
+        case 'M':
+            return 2;
+        case 'G':
+            return 3;
+        case 'T':
+            return 4;
+        case 'P':
+            return 5;
+        case 'E':
+            return 6;
+        case 'n':
+            return -3;
+        case 'u':
+            return -2;
+        case 'm':
+            return -1;
+        default:
+            return 0;
+        }
+    }
+}
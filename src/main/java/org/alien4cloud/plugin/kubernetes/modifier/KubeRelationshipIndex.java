@@ -0,0 +1,186 @@
+package org.alien4cloud.plugin.kubernetes.modifier;
+
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import org.alien4cloud.tosca.model.templates.NodeTemplate;
+import org.alien4cloud.tosca.model.templates.RelationshipTemplate;
+import org.alien4cloud.tosca.model.templates.Topology;
+import org.alien4cloud.tosca.normative.constants.NormativeRelationshipConstants;
+
+import java.util.Map;
+import java.util.Set;
+
+import static alien4cloud.utils.AlienUtils.safe;
+
+/**
+ * Inverse adjacency index of the relationships of a topology, built once per flow : for each target node, the relationships
+ * that target it are stored by targeted capability name and by relationship type.
+ * <p>
+ * This avoid scanning all the relationships of all the nodes each time we need the sources of a node. The index must be kept
+ * up to date when relationships or nodes are added or removed (see <code>AbstractKubernetesModifier</code> methods using a
+ * {@link KubernetesModifierContext}).
+ * <p>
+ * Lookups have the same semantic than <code>TopologyNavigationUtil.getSourceNodes</code> and
+ * <code>TopologyNavigationUtil.getSourceNodesByRelationshipType</code>.
+ */
+public class KubeRelationshipIndex {
+
+    private final Topology topology;
+
+    private final KubeTypeRegistry types;
+
+    /** Target node name -> targeted capability name -> relationship type -> relationships. */
+    private final Map<String, Map<String, Map<String, Set<Edge>>>> incoming = Maps.newHashMap();
+
+    /** Source node name -> relationship name -> relationship. */
+    private final Map<String, Map<String, Edge>> outgoing = Maps.newHashMap();
+
+    public KubeRelationshipIndex(Topology topology, KubeTypeRegistry types) {
+        this.topology = topology;
+        this.types = types;
+        safe(topology.getNodeTemplates()).values().forEach(nodeTemplate -> {
+            safe(nodeTemplate.getRelationships()).values().forEach(relationshipTemplate -> addRelationship(nodeTemplate.getName(), relationshipTemplate));
+        });
+    }
+
+    /**
+     * Register a relationship of the given source node.
+     */
+    public void addRelationship(String sourceNodeName, RelationshipTemplate relationshipTemplate) {
+        if (relationshipTemplate == null) {
+            return;
+        }
+        removeRelationship(sourceNodeName, relationshipTemplate.getName());
+        Edge edge = new Edge(sourceNodeName, relationshipTemplate.getName(), relationshipTemplate.getTarget(), relationshipTemplate.getTargetedCapabilityName(),
+                relationshipTemplate.getType());
+        outgoing.computeIfAbsent(sourceNodeName, s -> Maps.newLinkedHashMap()).put(edge.name, edge);
+        incoming.computeIfAbsent(edge.target, s -> Maps.newHashMap()).computeIfAbsent(edge.capability, s -> Maps.newHashMap())
+                .computeIfAbsent(edge.type, s -> Sets.newLinkedHashSet()).add(edge);
+    }
+
+    /**
+     * Unregister a relationship of the given source node.
+     */
+    public void removeRelationship(String sourceNodeName, String relationshipName) {
+        Map<String, Edge> sourceEdges = outgoing.get(sourceNodeName);
+        if (sourceEdges == null) {
+            return;
+        }
+        Edge edge = sourceEdges.remove(relationshipName);
+        if (sourceEdges.isEmpty()) {
+            outgoing.remove(sourceNodeName);
+        }
+        if (edge == null) {
+            return;
+        }
+        Map<String, Map<String, Set<Edge>>> byCapability = incoming.get(edge.target);
+        Map<String, Set<Edge>> byType = byCapability == null ? null : byCapability.get(edge.capability);
+        Set<Edge> edges = byType == null ? null : byType.get(edge.type);
+        if (edges == null) {
+            return;
+        }
+        edges.remove(edge);
+        if (edges.isEmpty()) {
+            byType.remove(edge.type);
+            if (byType.isEmpty()) {
+                byCapability.remove(edge.capability);
+                if (byCapability.isEmpty()) {
+                    incoming.remove(edge.target);
+                }
+            }
+        }
+    }
+
+    /**
+     * Unregister a node : both its own relationships and the relationships that target it are removed from the index (as they are removed from the
+     * topology when the node is removed).
+     */
+    public void removeNode(String nodeName) {
+        Map<String, Edge> sourceEdges = outgoing.get(nodeName);
+        if (sourceEdges != null) {
+            Sets.newHashSet(sourceEdges.keySet()).forEach(relationshipName -> removeRelationship(nodeName, relationshipName));
+        }
+        Map<String, Map<String, Set<Edge>>> byCapability = incoming.remove(nodeName);
+        if (byCapability != null) {
+            byCapability.values().forEach(byType -> byType.values().forEach(edges -> edges.forEach(edge -> {
+                Map<String, Edge> edgesOfSource = outgoing.get(edge.source);
+                if (edgesOfSource != null) {
+                    edgesOfSource.remove(edge.name);
+                    if (edgesOfSource.isEmpty()) {
+                        outgoing.remove(edge.source);
+                    }
+                }
+            })));
+        }
+    }
+
+    /**
+     * Get the nodes having a relationship that targets the given capability of the given node.
+     */
+    public Set<NodeTemplate> getSourceNodes(NodeTemplate nodeTemplate, String capabilityName) {
+        Set<NodeTemplate> result = Sets.newLinkedHashSet();
+        Map<String, Map<String, Set<Edge>>> byCapability = incoming.get(nodeTemplate.getName());
+        if (byCapability != null) {
+            safe(byCapability.get(capabilityName)).values().forEach(edges -> collect(result, edges));
+        }
+        return result;
+    }
+
+    /**
+     * Get the nodes having a relationship of the given type (or derived from it) that targets the given node.
+     */
+    public Set<NodeTemplate> getSourceNodesByRelationshipType(NodeTemplate nodeTemplate, String relationshipType) {
+        Set<NodeTemplate> result = Sets.newLinkedHashSet();
+        Map<String, Map<String, Set<Edge>>> byCapability = incoming.get(nodeTemplate.getName());
+        if (byCapability != null) {
+            for (Map<String, Set<Edge>> byType : byCapability.values()) {
+                for (Map.Entry<String, Set<Edge>> e : byType.entrySet()) {
+                    if (isOfType(e.getKey(), relationshipType)) {
+                        collect(result, e.getValue());
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return true if at least one relationship targets the given node.
+     */
+    public boolean isTargeted(String nodeName) {
+        return incoming.containsKey(nodeName);
+    }
+
+    private void collect(Set<NodeTemplate> result, Set<Edge> edges) {
+        for (Edge edge : edges) {
+            NodeTemplate sourceNode = safe(topology.getNodeTemplates()).get(edge.source);
+            if (sourceNode != null) {
+                result.add(sourceNode);
+            }
+        }
+    }
+
+    private boolean isOfType(String relationshipTypeName, String expectedType) {
+        if (NormativeRelationshipConstants.ROOT.equals(expectedType) || expectedType.equals(relationshipTypeName)) {
+            // all relationship types derive from the root one
+            return true;
+        }
+        return types.isRelationshipOfType(relationshipTypeName, expectedType);
+    }
+
+    private static class Edge {
+        private final String source;
+        private final String name;
+        private final String target;
+        private final String capability;
+        private final String type;
+
+        private Edge(String source, String name, String target, String capability, String type) {
+            this.source = source;
+            this.name = name;
+            this.target = target;
+            this.capability = capability;
+            this.type = type;
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package org.alien4cloud.plugin.kubernetes.modifier;
+
+import static alien4cloud.utils.AlienUtils.safe;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.alien4cloud.tosca.model.templates.NodeTemplate;
+import org.alien4cloud.tosca.model.templates.RelationshipTemplate;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+/**
+ * Group the resources that are applied together (bundle mode) into dependency waves.
+ * <p>
+ * A wave holds the resources that only depend (through their relationships) on resources of the previous waves : all the resources of a wave
+ * can be applied at once, in a single multi-document manifest, once the resources of the previous wave are ready. A resource also depends on
+ * the resources it reaches through nodes that are not bundled (config map factories, services ...) : these nodes are applied between the
+ * bundles of both resources.
+ */
+public final class KubeResourceBundles {
+
+    /** The marker that starts each document of a manifest. */
+    public static final String DOCUMENT_START = "---\n";
+
+    private KubeResourceBundles() {
+    }
+
+    /**
+     * @param nodes the bundled nodes.
+     * @param nodeTemplates all the nodes of the topology, by name.
+     * @return the waves of the given nodes, in the order they must be applied, the nodes of a wave being sorted by name. Null if the relationships
+     *         between the given nodes have a cycle.
+     */
+    public static List<List<NodeTemplate>> getWaves(Collection<NodeTemplate> nodes, Map<String, NodeTemplate> nodeTemplates) {
+        Map<String, NodeTemplate> nodesByName = Maps.newHashMap();
+        nodes.forEach(nodeTemplate -> nodesByName.put(nodeTemplate.getName(), nodeTemplate));
+
+        // the bundled nodes each node depends on, and the bundled nodes that depend on each node
+        Map<String, Integer> dependencyCounts = Maps.newHashMap();
+        Map<String, List<String>> dependents = Maps.newHashMap();
+        for (NodeTemplate nodeTemplate : nodesByName.values()) {
+            Set<String> dependencies = getBundledDependencies(nodeTemplate, nodesByName, nodeTemplates);
+            dependencies.forEach(target -> dependents.computeIfAbsent(target, name -> Lists.newArrayList()).add(nodeTemplate.getName()));
+            dependencyCounts.put(nodeTemplate.getName(), dependencies.size());
+        }
+
+        List<List<NodeTemplate>> waves = Lists.newArrayList();
+        List<NodeTemplate> wave = Lists.newArrayList();
+        dependencyCounts.forEach((name, count) -> {
+            if (count == 0) {
+                wave.add(nodesByName.get(name));
+            }
+        });
+        int placed = 0;
+        while (!wave.isEmpty()) {
+            wave.sort(Comparator.comparing(NodeTemplate::getName));
+            waves.add(Lists.newArrayList(wave));
+            placed += wave.size();
+            List<NodeTemplate> nextWave = Lists.newArrayList();
+            for (NodeTemplate nodeTemplate : wave) {
+                for (String dependent : dependents.getOrDefault(nodeTemplate.getName(), Lists.newArrayList())) {
+                    if (dependencyCounts.merge(dependent, -1, Integer::sum) == 0) {
+                        nextWave.add(nodesByName.get(dependent));
+                    }
+                }
+            }
+            wave.clear();
+            wave.addAll(nextWave);
+        }
+        return placed == nodesByName.size() ? waves : null;
+    }
+
+    /**
+     * @return the bundled nodes the given node depends on, directly or through nodes that are not bundled.
+     */
+    private static Set<String> getBundledDependencies(NodeTemplate nodeTemplate, Map<String, NodeTemplate> bundledNodes,
+            Map<String, NodeTemplate> nodeTemplates) {
+        Set<String> dependencies = Sets.newHashSet();
+        Set<String> visited = Sets.newHashSet(nodeTemplate.getName());
+        Deque<NodeTemplate> toVisit = new ArrayDeque<>();
+        toVisit.push(nodeTemplate);
+        while (!toVisit.isEmpty()) {
+            for (RelationshipTemplate relationshipTemplate : safe(toVisit.pop().getRelationships()).values()) {
+                String target = relationshipTemplate.getTarget();
+                if (!visited.add(target)) {
+                    continue;
+                }
+                if (bundledNodes.containsKey(target)) {
+                    dependencies.add(target);
+                } else if (nodeTemplates.containsKey(target)) {
+                    toVisit.push(nodeTemplates.get(target));
+                }
+            }
+        }
+        return dependencies;
+    }
+
+    /**
+     * Check the topology as it is once the relationships from and to the bundled nodes are moved to the bundles, each bundle depending on the
+     * bundle of the previous wave.
+     *
+     * @param waves the waves of the bundled nodes.
+     * @param nodeTemplates all the nodes of the topology, by name.
+     * @return true if the relationships of this topology have no cycle.
+     */
+    public static boolean isAcyclicOnceBundled(List<List<NodeTemplate>> waves, Map<String, NodeTemplate> nodeTemplates) {
+        // bundled node name -> its bundle, named after its wave (node names have no spaces)
+        Map<String, String> bundles = Maps.newHashMap();
+        for (int i = 0; i < waves.size(); i++) {
+            String bundle = "wave " + i;
+            waves.get(i).forEach(nodeTemplate -> bundles.put(nodeTemplate.getName(), bundle));
+        }
+        Map<String, Set<String>> dependencies = Maps.newHashMap();
+        for (NodeTemplate nodeTemplate : nodeTemplates.values()) {
+            String source = bundles.getOrDefault(nodeTemplate.getName(), nodeTemplate.getName());
+            for (RelationshipTemplate relationshipTemplate : safe(nodeTemplate.getRelationships()).values()) {
+                String target = bundles.getOrDefault(relationshipTemplate.getTarget(), relationshipTemplate.getTarget());
+                if (!source.equals(target)) {
+                    dependencies.computeIfAbsent(source, name -> Sets.newHashSet()).add(target);
+                }
+            }
+        }
+        for (int i = 1; i < waves.size(); i++) {
+            dependencies.computeIfAbsent("wave " + i, name -> Sets.newHashSet()).add("wave " + (i - 1));
+        }
+
+        // remove the nodes no other node depends on until none is left, unless there is a cycle
+        Map<String, Integer> dependentCounts = Maps.newHashMap();
+        dependencies.forEach((source, targets) -> {
+            dependentCounts.putIfAbsent(source, 0);
+            targets.forEach(target -> dependentCounts.merge(target, 1, Integer::sum));
+        });
+        Deque<String> removable = new ArrayDeque<>();
+        dependentCounts.forEach((name, count) -> {
+            if (count == 0) {
+                removable.push(name);
+            }
+        });
+        int removed = 0;
+        while (!removable.isEmpty()) {
+            removed++;
+            for (String target : dependencies.getOrDefault(removable.pop(), Collections.emptySet())) {
+                if (dependentCounts.merge(target, -1, Integer::sum) == 0) {
+                    removable.push(target);
+                }
+            }
+        }
+        return removed == dependentCounts.size();
+    }
+
+    /**
+     * @return the multi-document manifest made of the given specs. Each document is started by a marker, even the first one : the specs are JSON
+     *         documents, kubectl would read the manifest as a single JSON stream if it started with one of them.
+     */
+    public static String toManifest(List<String> specs) {
+        StringBuilder manifest = new StringBuilder();
+        specs.forEach(spec -> manifest.append(DOCUMENT_START).append(spec).append('\n'));
+        return manifest.toString();
+    }
+}
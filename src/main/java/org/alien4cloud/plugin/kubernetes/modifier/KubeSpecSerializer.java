@@ -0,0 +1,144 @@
+package org.alien4cloud.plugin.kubernetes.modifier;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.alien4cloud.tosca.model.definitions.PropertyValue;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.google.common.io.BaseEncoding;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Serialize the <code>resource_def</code> structures of the resources into their JSON <code>resource_spec</code>.
+ * <p>
+ * Each resource tree is independent, so the trees are serialized in parallel in a dedicated fork-join pool. The results are returned in the
+ * order of the given trees, so that callers can write them back in a deterministic order. The trees are streamed to JSON by
+ * {@link KubeJsonWriter}, without being copied first.
+ * <p>
+ * Specs are canonical JSON (keys sorted, no whitespace) : a resource which tree didn't change always gets the same spec. The SHA-256 of the
+ * canonical form is added to the spec as the <code>a4c_spec_hash</code> annotation, so that the scripts can skip the creation of a resource
+ * which live object already carries the same hash.
+ * <p>
+ * The parallelism of the pool is configured using <code>kubernetes.modifiers.serialization.poolSize</code> (the number of available processors
+ * when not set or not positive).
+ */
+@Slf4j
+@Component
+public class KubeSpecSerializer {
+
+    public static final String SPEC_HASH_ANNOTATION = "a4c_spec_hash";
+
+    private static final PropertyPath METADATA_ANNOTATIONS_SPEC_HASH = PropertyPath.of("metadata.annotations." + SPEC_HASH_ANNOTATION);
+
+    /** Below this number of trees, a task serializes them itself instead of forking. */
+    private static final int SEQUENTIAL_THRESHOLD = 4;
+
+    @Value("${kubernetes.modifiers.serialization.poolSize:0}")
+    private int poolSize;
+
+    private ForkJoinPool pool;
+
+    @PostConstruct
+    public void init() {
+        pool = new ForkJoinPool(poolSize > 0 ? poolSize : Runtime.getRuntime().availableProcessors());
+    }
+
+    @PreDestroy
+    public void destroy() {
+        pool.shutdownNow();
+    }
+
+    /**
+     * Annotate the <code>resource_def</code> with the hash of its canonical form (with an empty hash annotation).
+     *
+     * @return the canonical JSON serialization of the annotated <code>resource_def</code>, null if it can't be serialized.
+     */
+    public static String toSpec(Object resourceDef) {
+        Object tree = resourceDef instanceof PropertyValue ? ((PropertyValue) resourceDef).getValue() : resourceDef;
+        if (tree instanceof Map) {
+            // the hash is computed with an empty annotation, so that hashing an annotated tree again gives the same hash
+            METADATA_ANNOTATIONS_SPEC_HASH.set((Map<String, ?>) tree, "");
+            String hash = hash(tree);
+            if (hash != null) {
+                METADATA_ANNOTATIONS_SPEC_HASH.set((Map<String, ?>) tree, hash);
+            }
+        }
+        return KubeJsonWriter.toCanonicalJson(tree);
+    }
+
+    /**
+     * @return the hex encoded SHA-256 of the canonical form of the tree, null if it can't be serialized.
+     */
+    private static String hash(Object tree) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            KubeJsonWriter.writeCanonical(new OutputStream() {
+                @Override
+                public void write(int b) {
+                    digest.update((byte) b);
+                }
+
+                @Override
+                public void write(byte[] b, int off, int len) {
+                    digest.update(b, off, len);
+                }
+            }, tree);
+            return BaseEncoding.base16().lowerCase().encode(digest.digest());
+        } catch (NoSuchAlgorithmException | IOException e) {
+            log.error("Not able to hash resource definition", e);
+            return null;
+        }
+    }
+
+    /**
+     * @param resourceDefs the <code>resource_def</code> structures (property values, maps, lists and scalars).
+     * @return the JSON specs (see {@link #toSpec(Object)}), in the same order.
+     */
+    public String[] serialize(List<Object> resourceDefs) {
+        String[] specs = new String[resourceDefs.size()];
+        if (specs.length <= SEQUENTIAL_THRESHOLD) {
+            new SerializeTask(resourceDefs, specs, 0, specs.length).compute();
+        } else {
+            pool.invoke(new SerializeTask(resourceDefs, specs, 0, specs.length));
+        }
+        return specs;
+    }
+
+    private static class SerializeTask extends RecursiveAction {
+        private final List<Object> resourceDefs;
+        private final String[] specs;
+        private final int from;
+        private final int to;
+
+        private SerializeTask(List<Object> resourceDefs, String[] specs, int from, int to) {
+            this.resourceDefs = resourceDefs;
+            this.specs = specs;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= SEQUENTIAL_THRESHOLD) {
+                for (int i = from; i < to; i++) {
+                    specs[i] = toSpec(resourceDefs.get(i));
+                }
+            } else {
+                int middle = (from + to) >>> 1;
+                invokeAll(new SerializeTask(resourceDefs, specs, from, middle), new SerializeTask(resourceDefs, specs, middle, to));
+            }
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package org.alien4cloud.plugin.kubernetes.modifier;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import alien4cloud.tosca.context.ToscaContext;
+
+/**
+ * Bounded pool used to run the concurrent stages of the modifier pipelines.
+ * <p>
+ * The {@link ToscaContext} is thread bound and its type cache is not thread safe : each task runs with its own context, initialized with the
+ * dependencies of the context of the submitting thread.
+ * <p>
+ * The number of threads is configured using <code>kubernetes.modifiers.pipeline.poolSize</code>.
+ */
+@Component
+public class KubeStageExecutor {
+
+    @Value("${kubernetes.modifiers.pipeline.poolSize:4}")
+    private int poolSize;
+
+    private ExecutorService executorService;
+
+    @PostConstruct
+    public void init() {
+        executorService = Executors.newFixedThreadPool(Math.max(1, poolSize),
+                new ThreadFactoryBuilder().setNameFormat("kubernetes-modifier-stage-%d").setDaemon(true).build());
+    }
+
+    @PreDestroy
+    public void destroy() {
+        executorService.shutdownNow();
+    }
+
+    /**
+     * Submit a task that will run with a copy of the tosca context of the current thread.
+     */
+    public <T> Future<T> submit(Callable<T> task) {
+        ToscaContext.Context toscaContext = ToscaContext.get();
+        return executorService.submit(() -> {
+            if (toscaContext == null) {
+                return task.call();
+            }
+            ToscaContext.init(toscaContext.getDependencies());
+            try {
+                return task.call();
+            } finally {
+                ToscaContext.destroy();
+            }
+        });
+    }
+
+    /**
+     * Submit the given tasks and wait for all of them.
+     *
+     * @return the results, in the order of the tasks.
+     */
+    public <T> List<T> invokeAll(List<Callable<T>> tasks) {
+        List<Future<T>> futures = Lists.newArrayList();
+        tasks.forEach(task -> futures.add(submit(task)));
+        List<T> results = Lists.newArrayList();
+        for (Future<T> future : futures) {
+            try {
+                results.add(future.get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for a task", e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw new IllegalStateException("Task failed", e.getCause());
+            }
+        }
+        return results;
+    }
+}
@@ -0,0 +1,131 @@
+package org.alien4cloud.plugin.kubernetes.modifier;
+
+import alien4cloud.tosca.context.ToscaContext;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import org.alien4cloud.tosca.model.templates.NodeTemplate;
+import org.alien4cloud.tosca.model.templates.Topology;
+import org.alien4cloud.tosca.model.types.NodeType;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static alien4cloud.utils.AlienUtils.safe;
+
+/**
+ * Index of the node templates of a topology by type, built once per flow.
+ * <p>
+ * Each node is registered under its own type and under all the types it derives from, so that the nodes of a given type
+ * can be found without scanning the whole topology and resolving each node type from the {@link ToscaContext} again.
+ * The index must be kept up to date when nodes are added or removed (see <code>AbstractKubernetesModifier.addNodeTemplate</code>
+ * and <code>AbstractKubernetesModifier.removeNode</code> using a {@link KubernetesModifierContext}).
+ * <p>
+ * Lookups have the same semantic than <code>TopologyNavigationUtil.getNodesOfType</code>.
+ */
+public class KubeTopologyIndex {
+
+    private final Topology topology;
+
+    /** Type name -> names of the nodes that are exactly of this type. */
+    private final Map<String, Set<String>> nodesByType = Maps.newHashMap();
+
+    /** Type name -> names of the nodes that are of a type derived from this one. */
+    private final Map<String, Set<String>> nodesByParentType = Maps.newHashMap();
+
+    /** Node name -> resolved type of the node as it was indexed. */
+    private final Map<String, IndexedNode> indexedNodes = Maps.newHashMap();
+
+    public KubeTopologyIndex(Topology topology) {
+        this.topology = topology;
+        safe(topology.getNodeTemplates()).values().forEach(this::add);
+    }
+
+    /**
+     * Register a node in the index. If a node with the same name was already indexed it is replaced.
+     */
+    public void add(NodeTemplate nodeTemplate) {
+        if (nodeTemplate == null) {
+            return;
+        }
+        remove(nodeTemplate.getName());
+        NodeType nodeType = ToscaContext.get(NodeType.class, nodeTemplate.getType());
+        IndexedNode indexedNode = new IndexedNode(nodeTemplate.getType(), nodeType != null && nodeType.isAbstract(),
+                nodeType == null || nodeType.getDerivedFrom() == null ? Collections.<String> emptyList() : nodeType.getDerivedFrom());
+        indexedNodes.put(nodeTemplate.getName(), indexedNode);
+        nodesByType.computeIfAbsent(indexedNode.type, s -> Sets.newLinkedHashSet()).add(nodeTemplate.getName());
+        for (String parentType : indexedNode.parentTypes) {
+            nodesByParentType.computeIfAbsent(parentType, s -> Sets.newLinkedHashSet()).add(nodeTemplate.getName());
+        }
+    }
+
+    /**
+     * Unregister a node from the index.
+     */
+    public void remove(String nodeName) {
+        IndexedNode indexedNode = indexedNodes.remove(nodeName);
+        if (indexedNode == null) {
+            return;
+        }
+        removeFrom(nodesByType, indexedNode.type, nodeName);
+        for (String parentType : indexedNode.parentTypes) {
+            removeFrom(nodesByParentType, parentType, nodeName);
+        }
+    }
+
+    public Set<NodeTemplate> getNodesOfType(String type, boolean manageSubstitution) {
+        return getNodesOfType(type, manageSubstitution, true);
+    }
+
+    /**
+     * Get the nodes of the given type.
+     *
+     * @param type the type name.
+     * @param manageSubstitution when true, the nodes having a type derived from the given one are also returned.
+     * @param includeAbstractNodes when false, the nodes having an abstract type are ignored.
+     * @return a new set (that can be safely used while adding or removing nodes) of the matching nodes.
+     */
+    public Set<NodeTemplate> getNodesOfType(String type, boolean manageSubstitution, boolean includeAbstractNodes) {
+        Set<NodeTemplate> result = Sets.newLinkedHashSet();
+        collect(result, nodesByType.get(type), includeAbstractNodes);
+        if (manageSubstitution) {
+            collect(result, nodesByParentType.get(type), includeAbstractNodes);
+        }
+        return result;
+    }
+
+    private void collect(Set<NodeTemplate> result, Set<String> nodeNames, boolean includeAbstractNodes) {
+        for (String nodeName : safe(nodeNames)) {
+            if (!includeAbstractNodes && indexedNodes.get(nodeName).abstractType) {
+                continue;
+            }
+            NodeTemplate nodeTemplate = safe(topology.getNodeTemplates()).get(nodeName);
+            if (nodeTemplate != null) {
+                result.add(nodeTemplate);
+            }
+        }
+    }
+
+    private static void removeFrom(Map<String, Set<String>> index, String type, String nodeName) {
+        Set<String> nodeNames = index.get(type);
+        if (nodeNames != null) {
+            nodeNames.remove(nodeName);
+            if (nodeNames.isEmpty()) {
+                index.remove(type);
+            }
+        }
+    }
+
+    private static class IndexedNode {
+        private final String type;
+        private final boolean abstractType;
+        private final List<String> parentTypes;
+
+        private IndexedNode(String type, boolean abstractType, List<String> parentTypes) {
+            this.type = type;
+            this.abstractType = abstractType;
+            this.parentTypes = parentTypes;
+        }
+    }
+}
@@ -1,13 +1,9 @@
 package org.alien4cloud.plugin.kubernetes.modifier;
 
 import static alien4cloud.utils.AlienUtils.safe;
-import static org.alien4cloud.tosca.utils.ToscaTypeUtils.isOfType;
 
 import java.util.*;
-import java.math.BigInteger;
-import java.security.MessageDigest;
 
-import org.alien4cloud.alm.deployment.configuration.flow.TopologyModifierSupport;
 import org.alien4cloud.plugin.kubernetes.AbstractKubernetesModifier;
 import org.alien4cloud.tosca.model.definitions.*;
 import org.alien4cloud.tosca.model.templates.*;
@@ -15,7 +11,6 @@ import org.alien4cloud.tosca.model.types.NodeType;
 import org.alien4cloud.tosca.normative.constants.ToscaFunctionConstants;
 import org.alien4cloud.tosca.utils.InterfaceUtils;
 import org.alien4cloud.tosca.utils.TopologyNavigationUtil;
-import org.alien4cloud.tosca.utils.ToscaTypeUtils;
 import org.elasticsearch.common.collect.Lists;
 import org.elasticsearch.common.collect.Maps;
 
@@ -69,9 +64,30 @@ public class KubeTopologyUtils {
     public static final String K8S_TYPES_ENDPOINT_RESOURCE = "org.alien4cloud.kubernetes.api.types.EndpointResource";
     public static final String K8S_TYPES_CONFIG_MAP_FACTORY = "org.alien4cloud.kubernetes.api.types.ConfigMapFactory";
     public static final String K8S_TYPES_SECRET_FACTORY = "org.alien4cloud.kubernetes.api.types.SecretFactory";
+    public static final String K8S_TYPES_KUBE_CONFIG_STORE = "org.alien4cloud.kubernetes.api.types.KubeConfigStore";
+    public static final String K8S_TYPES_RESOURCE_BUNDLE = "org.alien4cloud.kubernetes.api.types.ResourceBundle";
+    // K8S data types
+    public static final String K8S_DATATYPES_CPU_QUANTITY = "org.alien4cloud.kubernetes.api.datatypes.CpuQuantity";
     // K8S relationships
     public static final String K8S_TYPES_RSENDPOINT = "org.alien4cloud.kubernetes.api.relationships.K8SEndpointConnectToEndpoint";
 
+    // property paths
+    public static final PropertyPath CONTAINER_NAME = PropertyPath.of("container.name");
+    public static final PropertyPath METADATA_NAME = PropertyPath.of("metadata.name");
+    public static final PropertyPath RESOURCE_DEF_API_VERSION = PropertyPath.of("resource_def.apiVersion");
+    public static final PropertyPath RESOURCE_DEF_DATA = PropertyPath.of("resource_def.data");
+    public static final PropertyPath RESOURCE_DEF_KIND = PropertyPath.of("resource_def.kind");
+    public static final PropertyPath RESOURCE_DEF_METADATA = PropertyPath.of("resource_def.metadata");
+    public static final PropertyPath RESOURCE_DEF_METADATA_LABELS_A4C_ID = PropertyPath.of("resource_def.metadata.labels.a4c_id");
+    public static final PropertyPath RESOURCE_DEF_METADATA_NAME = PropertyPath.of("resource_def.metadata.name");
+    public static final PropertyPath RESOURCE_DEF_SPEC = PropertyPath.of("resource_def.spec");
+    public static final PropertyPath RESOURCE_DEF_SPEC_RULES = PropertyPath.of("resource_def.spec.rules");
+    public static final PropertyPath RESOURCE_DEF_SPEC_TEMPLATE_SPEC_CONTAINERS = PropertyPath.of("resource_def.spec.template.spec.containers");
+    public static final PropertyPath RESOURCE_DEF_SPEC_TEMPLATE_SPEC_VOLUMES = PropertyPath.of("resource_def.spec.template.spec.volumes");
+    public static final PropertyPath RESOURCE_DEF_SPEC_TLS = PropertyPath.of("resource_def.spec.tls");
+    public static final PropertyPath RESOURCE_DEF_TYPE = PropertyPath.of("resource_def.type");
+    public static final PropertyPath SPEC_PORTS = PropertyPath.of("spec.ports");
+
     /**
      * Get the image name from the type implementation artifact file.
      */
@@ -97,24 +113,17 @@ public class KubeTopologyUtils {
     }
 
     /**
-     * K8S names must be in lower case and can't contain _
+     * K8S names must be valid DNS labels, see {@link KubeNameService#toLabel(String)}.
      */
     public static String generateKubeName(String candidate) {
-        return candidate.toLowerCase().replaceAll("_", "-");
+        return KubeNameService.toLabel(candidate);
     }
 
     /**
-     * Generate a consistent kubernetes name using sha1 algorithm from a string
+     * Generate a consistent kubernetes name using sha1 algorithm from a string, see {@link KubeNameService#toConsistentLabel(String)}.
      */
-    public static String generateConsistentKubeName(String resourceName){
-        try{
-            MessageDigest md = MessageDigest.getInstance("SHA-1");
-            byte[] b = md.digest(resourceName.getBytes());
-            
-            return generateKubeName(String.format("%s-%X", resourceName, new BigInteger(1, Arrays.copyOfRange(b, 0, 6))) );
-        }catch(Exception e){
-            throw new RuntimeException(e);
-        }
+    public static String generateConsistentKubeName(String resourceName) {
+        return KubeNameService.toConsistentLabel(resourceName);
     }
 
     /**
@@ -186,7 +195,7 @@ public class KubeTopologyUtils {
         return null;
     }
 
-    public static Optional<String> getDependencyIpAddress(Topology topology, NodeTemplate sourceNodeTemplate, IValue inputParameterValue, Map<String, List<String>> serviceIpAddressesPerDeploymentResource, String deploymentResourceName) {
+    public static Optional<String> getDependencyIpAddress(KubernetesModifierContext context, NodeTemplate sourceNodeTemplate, IValue inputParameterValue, Map<String, List<String>> serviceIpAddressesPerDeploymentResource, String deploymentResourceName) {
         String result = null;
 
         // a get_attribute that searchs an ip_address on a requirement that targets a Docker Container should return true
@@ -199,9 +208,9 @@ public class KubeTopologyUtils {
                 String requirement = evaluatedFunction.getCapabilityOrRequirementName();
                 String capabilityName = getCapabilityName(evaluatedFunction);
                 if (requirement != null) {
-                    Set<NodeTemplate> targetNodes = TopologyNavigationUtil.getTargetNodes(topology, sourceNodeTemplate, requirement);
+                    Set<NodeTemplate> targetNodes = TopologyNavigationUtil.getTargetNodes(context.getTopology(), sourceNodeTemplate, requirement);
                     for (NodeTemplate targetNode : targetNodes) {
-                        return Optional.ofNullable(resolveIpAddress(topology, sourceNodeTemplate, targetNode, capabilityName, serviceIpAddressesPerDeploymentResource, deploymentResourceName));
+                        return Optional.ofNullable(resolveIpAddress(context, sourceNodeTemplate, targetNode, capabilityName, serviceIpAddressesPerDeploymentResource, deploymentResourceName));
                     }
                 }
             }
@@ -209,41 +218,37 @@ public class KubeTopologyUtils {
         return Optional.ofNullable(result);
     }
 
-    private static String resolveIpAddress(Topology topology, NodeTemplate sourceNode, NodeTemplate targetNode, String capabilityName, Map<String, List<String>> serviceIpAddressesPerDeploymentResource, String deploymentResourceName) {
-        NodeType targetNodeType = ToscaContext.get(NodeType.class, targetNode.getType());
-        if (isOfType(targetNodeType, A4C_TYPES_APPLICATION_DOCKER_CONTAINER)) {
+    private static String resolveIpAddress(KubernetesModifierContext context, NodeTemplate sourceNode, NodeTemplate targetNode, String capabilityName, Map<String, List<String>> serviceIpAddressesPerDeploymentResource, String deploymentResourceName) {
+        if (context.getTypes().isNodeOfType(targetNode.getType(), A4C_TYPES_APPLICATION_DOCKER_CONTAINER)) {
             if (targetNode instanceof ServiceNodeTemplate) {
                 // this a container exposed as a service
                 return resolveDependency(targetNode, serviceIpAddressesPerDeploymentResource, deploymentResourceName);
             } else {
                 // this a regular container, also deployed in this deployemnt
                 // find the deployment that host this container
-                NodeTemplate deploymentNode = TopologyNavigationUtil.getHostOfTypeInHostingHierarchy(topology, targetNode,
-                        K8S_TYPES_DEPLOYMENT);
+                NodeTemplate deploymentNode = context.getHostChains().getHostOfType(targetNode, K8S_TYPES_DEPLOYMENT);
                 if (deploymentNode != null) {
                     // if the deployment host is the same than me then just return 'localhost'
-                    NodeTemplate sourceDeploymentNode = TopologyNavigationUtil.getHostOfTypeInHostingHierarchy(topology, sourceNode,
-                            K8S_TYPES_DEPLOYMENT);
+                    NodeTemplate sourceDeploymentNode = context.getHostChains().getHostOfType(sourceNode, K8S_TYPES_DEPLOYMENT);
                     if (sourceDeploymentNode == deploymentNode) {
                         // the target and the source are on the same deploymentunit, 'localhost' can be used;
                         return "localhost";
                     } else {
                         // find the service that is behind the exposed container
-                        NodeTemplate service = getServiceRelatedToDeployment(topology, deploymentNode, capabilityName);
+                        NodeTemplate service = getServiceRelatedToDeployment(context, deploymentNode, capabilityName);
                         return resolveDependency(service, serviceIpAddressesPerDeploymentResource, deploymentResourceName);
                     }
                 }
             }
         } else {
             // the target is not a container, so we should find a service that proxy the endpoint
-            Set<NodeTemplate> endpoints = TopologyNavigationUtil.getSourceNodesByRelationshipType(topology, targetNode,
+            Set<NodeTemplate> endpoints = context.getRelationshipIndex().getSourceNodesByRelationshipType(targetNode,
                     K8S_TYPES_RSENDPOINT);
             if (endpoints.size() > 0) {
                 NodeTemplate endpointNode = endpoints.iterator().next();
-                Set<NodeTemplate> services = TopologyNavigationUtil.getSourceNodes(topology, endpointNode, "feature");
+                Set<NodeTemplate> services = context.getRelationshipIndex().getSourceNodes(endpointNode, "feature");
                 NodeTemplate service = services.stream().filter(nodeTemplate -> {
-                    NodeType nodeType = ToscaContext.get(NodeType.class, nodeTemplate.getType());
-                    return ToscaTypeUtils.isOfType(nodeType, K8S_TYPES_SERVICE);
+                    return context.getTypes().isNodeOfType(nodeTemplate.getType(), K8S_TYPES_SERVICE);
                 }).findFirst().get();
                 resolveDependency(service, serviceIpAddressesPerDeploymentResource, deploymentResourceName);
             }
@@ -253,8 +258,7 @@ public class KubeTopologyUtils {
 
     public static String resolveDependency(NodeTemplate serviceTemplate, Map<String, List<String>> serviceIpAddressesPerDeploymentResource, String deploymentResourceName) {
 
-        AbstractPropertyValue serviceNameValue = PropertyUtil
-                .getPropertyValueFromPath(serviceTemplate.getProperties(), "metadata.name");
+        AbstractPropertyValue serviceNameValue = METADATA_NAME.get(serviceTemplate.getProperties());
         String serviceName = PropertyUtil.getScalarValue(serviceNameValue);
 
         List<String> serviceIpAddresses = serviceIpAddressesPerDeploymentResource.get(deploymentResourceName);
@@ -275,8 +279,8 @@ public class KubeTopologyUtils {
     /**
      * For a given deployment node, returns the service that depends on this deployment considering a given endpoint name.
      */
-    public static NodeTemplate getServiceRelatedToDeployment(Topology topology, NodeTemplate deploymentNodeTemplate, String endpointName) {
-        Set<NodeTemplate> sourceNodes = TopologyNavigationUtil.getSourceNodes(topology, deploymentNodeTemplate, "feature");
+    public static NodeTemplate getServiceRelatedToDeployment(KubernetesModifierContext context, NodeTemplate deploymentNodeTemplate, String endpointName) {
+        Set<NodeTemplate> sourceNodes = context.getRelationshipIndex().getSourceNodes(deploymentNodeTemplate, "feature");
         for (NodeTemplate sourceNode : sourceNodes) {
             Collection<Tag> sourceNodeTags = safe(sourceNode.getTags());
             for (Tag tag : sourceNodeTags) {
@@ -295,14 +299,17 @@ public class KubeTopologyUtils {
     }
 
     public static ScalarPropertyValue portNameFromService(NodeTemplate node) {
-        ListPropertyValue ports = (ListPropertyValue) PropertyUtil.getPropertyValueFromPath(safe(node.getProperties()), "spec.ports");
+        ListPropertyValue ports = (ListPropertyValue) SPEC_PORTS.get(safe(node.getProperties()));
         ComplexPropertyValue port = (ComplexPropertyValue) ports.getValue().get(0);
         return (ScalarPropertyValue) port.getValue().get("name");
     }
 
-    public static void copyProperty(NodeTemplate sourceTemplate, String sourcePath, Map<String, AbstractPropertyValue> propertyValues, String targetPath) {
+    /**
+     * Copy a property of the source node into the document : the value is copied, so modifying the document doesn't modify the node.
+     */
+    public static void copyProperty(NodeTemplate sourceTemplate, String sourcePath, ResourceDocument document, PropertyPath targetPath) {
         AbstractPropertyValue propertyValue = PropertyUtil.getPropertyValueFromPath(safe(sourceTemplate.getProperties()), sourcePath);
-        TopologyModifierSupport.feedPropertyValue(propertyValues, targetPath, propertyValue, false);
+        targetPath.set(document, ResourceDocument.of(propertyValue));
     }
 
     public static void renameProperty(Object propertyValue, String propertyPath, String newName) {
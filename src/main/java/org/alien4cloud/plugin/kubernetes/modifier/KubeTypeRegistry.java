@@ -0,0 +1,94 @@
+package org.alien4cloud.plugin.kubernetes.modifier;
+
+import alien4cloud.tosca.context.ToscaContext;
+import com.google.common.collect.Maps;
+import org.alien4cloud.alm.deployment.configuration.flow.FlowExecutionContext;
+import org.alien4cloud.tosca.model.types.AbstractInheritableToscaType;
+import org.alien4cloud.tosca.model.types.CapabilityType;
+import org.alien4cloud.tosca.model.types.NodeType;
+import org.alien4cloud.tosca.model.types.RelationshipType;
+
+import java.util.BitSet;
+import java.util.Map;
+
+/**
+ * Registry of the node, capability and relationship types used during a flow, shared by all the modifiers of the flow (it is stored in
+ * the flow execution cache).
+ * <p>
+ * Each type name gets a dense integer id and, the first time a type is checked, it is resolved once from the {@link ToscaContext} and its
+ * ancestors (itself and the types it derives from) are stored as a {@link BitSet}. A type check is then a single bit test.
+ * <p>
+ * Checks have the same semantic than <code>ToscaTypeUtils.isOfType</code> : false when the type can't be resolved. Checks are synchronized
+ * since the concurrent stages of the modifiers share the registry.
+ */
+public class KubeTypeRegistry {
+
+    private static final String FLOW_CACHE_KEY_TYPE_REGISTRY = KubeTypeRegistry.class.getName() + "TYPE_REGISTRY";
+
+    private final Map<Class<? extends AbstractInheritableToscaType>, TypeHierarchy> hierarchies = Maps.newHashMap();
+
+    /**
+     * Get the type registry of the flow, creating it if needed.
+     */
+    public static KubeTypeRegistry get(FlowExecutionContext context) {
+        Object o = context.getExecutionCache().get(FLOW_CACHE_KEY_TYPE_REGISTRY);
+        if (o instanceof KubeTypeRegistry) {
+            return (KubeTypeRegistry) o;
+        }
+        KubeTypeRegistry registry = new KubeTypeRegistry();
+        context.getExecutionCache().put(FLOW_CACHE_KEY_TYPE_REGISTRY, registry);
+        return registry;
+    }
+
+    public boolean isNodeOfType(String nodeTypeName, String expectedType) {
+        return isOfType(NodeType.class, nodeTypeName, expectedType);
+    }
+
+    public boolean isCapabilityOfType(String capabilityTypeName, String expectedType) {
+        return isOfType(CapabilityType.class, capabilityTypeName, expectedType);
+    }
+
+    public boolean isRelationshipOfType(String relationshipTypeName, String expectedType) {
+        return isOfType(RelationshipType.class, relationshipTypeName, expectedType);
+    }
+
+    /**
+     * @return true if the type of the given class named <code>typeName</code> is (or derives from) <code>expectedType</code>.
+     */
+    public synchronized boolean isOfType(Class<? extends AbstractInheritableToscaType> typeClass, String typeName, String expectedType) {
+        if (typeName == null) {
+            return false;
+        }
+        TypeHierarchy hierarchy = hierarchies.computeIfAbsent(typeClass, c -> new TypeHierarchy());
+        BitSet ancestors = hierarchy.ancestors.get(typeName);
+        if (ancestors == null) {
+            ancestors = new BitSet();
+            AbstractInheritableToscaType type = ToscaContext.get(typeClass, typeName);
+            if (type != null) {
+                ancestors.set(hierarchy.getId(typeName));
+                if (type.getDerivedFrom() != null) {
+                    for (String parentType : type.getDerivedFrom()) {
+                        ancestors.set(hierarchy.getId(parentType));
+                    }
+                }
+            }
+            hierarchy.ancestors.put(typeName, ancestors);
+        }
+        Integer expectedTypeId = hierarchy.ids.get(expectedType);
+        return expectedTypeId != null && ancestors.get(expectedTypeId);
+    }
+
+    /**
+     * Ids and ancestors of the types of a given kind.
+     */
+    private static class TypeHierarchy {
+        /** Type name -> dense id. */
+        private final Map<String, Integer> ids = Maps.newHashMap();
+        /** Type name -> ids of the type and of all its parents (empty when the type can't be resolved). */
+        private final Map<String, BitSet> ancestors = Maps.newHashMap();
+
+        private int getId(String typeName) {
+            return ids.computeIfAbsent(typeName, s -> ids.size());
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package org.alien4cloud.plugin.kubernetes.modifier;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.alien4cloud.tosca.model.definitions.PropertyValue;
+
+/**
+ * Hash-consing of the finished parts of the generated specs : identical sub-trees (resource blocks, probes, ports ...) and leaves are stored
+ * once per modifier run.
+ * <p>
+ * The trees are interned bottom-up : the children of a map or a list are interned first, so two containers are identical when their children
+ * are the same instances (or equal numbers and booleans, which the documents don't box), and comparing them doesn't walk their sub-trees. The
+ * maps and lists are interned as {@link ResourceDocument}s and {@link ResourceDocument.Array}s (property values are unwrapped), so they are
+ * written as the other parts of the resources. They are frozen since they may be shared by several resources : only intern the trees that are
+ * not modified afterwards.
+ */
+public class KubeValueInterner {
+
+    /** String, map key or list key -> canonical instance. */
+    private final Map<Object, Object> canonicals = new ConcurrentHashMap<>();
+
+    /**
+     * @return the canonical instance of the given tree.
+     */
+    public Object intern(Object value) {
+        if (value instanceof PropertyValue) {
+            return intern(((PropertyValue) value).getValue());
+        } else if (value instanceof Map<?, ?>) {
+            ResourceDocument interned = new ResourceDocument();
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                interned.put((String) intern(String.valueOf(entry.getKey())), intern(entry.getValue()));
+            }
+            interned.freeze();
+            return canonicals.computeIfAbsent(new MapKey(interned), key -> interned);
+        } else if (value instanceof List<?>) {
+            ResourceDocument.Array interned = new ResourceDocument.Array();
+            for (Object entry : (List<?>) value) {
+                interned.add(intern(entry));
+            }
+            interned.freeze();
+            return canonicals.computeIfAbsent(new ListKey(interned), key -> interned);
+        } else if (value instanceof String) {
+            return canonicals.computeIfAbsent(value, leaf -> leaf);
+        }
+        // numbers and booleans are not boxed by the documents
+        return value;
+    }
+
+    /**
+     * @return true if the given children of interned trees are the same.
+     */
+    private static boolean same(Object left, Object right) {
+        return left == right || (isPrimitive(left) && left.equals(right));
+    }
+
+    private static int hash(Object child) {
+        return isPrimitive(child) ? child.hashCode() : System.identityHashCode(child);
+    }
+
+    private static boolean isPrimitive(Object child) {
+        return child instanceof Number || child instanceof Boolean;
+    }
+
+    /**
+     * A map which values are canonical instances.
+     */
+    private static final class MapKey {
+        private final ResourceDocument map;
+        private final int hash;
+
+        private MapKey(ResourceDocument map) {
+            this.map = map;
+            int h = 0;
+            for (Map.Entry<String, Object> entry : map.entrySet()) {
+                h += entry.getKey().hashCode() ^ hash(entry.getValue());
+            }
+            this.hash = h;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof MapKey)) {
+                return false;
+            }
+            ResourceDocument other = ((MapKey) obj).map;
+            if (other.size() != map.size()) {
+                return false;
+            }
+            for (Map.Entry<String, Object> entry : map.entrySet()) {
+                Object otherValue = other.get(entry.getKey());
+                if (!same(otherValue, entry.getValue()) || (otherValue == null && !other.containsKey(entry.getKey()))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * A list which entries are canonical instances.
+     */
+    private static final class ListKey {
+        private final ResourceDocument.Array list;
+        private final int hash;
+
+        private ListKey(ResourceDocument.Array list) {
+            this.list = list;
+            int h = 1;
+            for (Object entry : list) {
+                h = 31 * h + hash(entry);
+            }
+            this.hash = h;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof ListKey)) {
+                return false;
+            }
+            ResourceDocument.Array other = ((ListKey) obj).list;
+            if (other.size() != list.size()) {
+                return false;
+            }
+            for (int i = 0; i < list.size(); i++) {
+                if (!same(other.get(i), list.get(i))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -9,18 +9,19 @@ import alien4cloud.tosca.context.ToscaContext;
 import alien4cloud.tosca.context.ToscaContextual;
 import alien4cloud.tosca.parser.ToscaParser;
 import alien4cloud.tosca.serializer.ToscaPropertySerializerUtils;
-import alien4cloud.utils.CloneUtil;
-import alien4cloud.utils.MapUtil;
 import alien4cloud.utils.PropertyUtil;
-import alien4cloud.utils.YamlParserUtil;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
+import com.google.common.io.BaseEncoding;
 import lombok.extern.java.Log;
 import lombok.extern.slf4j.Slf4j;
 import org.alien4cloud.alm.deployment.configuration.flow.FlowExecutionContext;
-import org.alien4cloud.alm.deployment.configuration.flow.TopologyModifierSupport;
 import org.alien4cloud.plugin.kubernetes.AbstractKubernetesModifier;
+import org.alien4cloud.plugin.kubernetes.modifier.generators.EndpointsGenerator;
+import org.alien4cloud.plugin.kubernetes.modifier.generators.HorizontalPodAutoscalerGenerator;
+import org.alien4cloud.plugin.kubernetes.modifier.generators.ResourceGenerators;
+import org.alien4cloud.plugin.kubernetes.modifier.generators.VolumeGenerator;
 import org.alien4cloud.plugin.kubernetes.modifier.helpers.AffinitiyHelper;
 import org.alien4cloud.plugin.kubernetes.modifier.helpers.AntiAffinityHelper;
 import org.alien4cloud.plugin.kubernetes.policies.KubePoliciesConstants;
@@ -28,29 +29,32 @@ import org.alien4cloud.tosca.model.Csar;
 import org.alien4cloud.tosca.model.definitions.*;
 import org.alien4cloud.tosca.model.templates.*;
 import org.alien4cloud.tosca.model.types.AbstractToscaType;
-import org.alien4cloud.tosca.model.types.CapabilityType;
 import org.alien4cloud.tosca.model.types.NodeType;
-import org.alien4cloud.tosca.model.types.PolicyType;
 import org.alien4cloud.tosca.normative.constants.NormativeCapabilityTypes;
 import org.alien4cloud.tosca.normative.constants.NormativeRelationshipConstants;
 import org.alien4cloud.tosca.normative.constants.ToscaFunctionConstants;
 import org.alien4cloud.tosca.utils.*;
 import org.apache.commons.collections4.CollectionUtils;
 import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import javax.annotation.Resource;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.function.Consumer;
 import java.util.logging.Level;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import static alien4cloud.utils.AlienUtils.safe;
 import static org.alien4cloud.plugin.kubernetes.csar.Version.K8S_CSAR_VERSION;
+import static org.alien4cloud.plugin.kubernetes.modifier.KubeModifierPipeline.Data.*;
+import static org.alien4cloud.plugin.kubernetes.modifier.KubeModifierPipeline.data;
 import static org.alien4cloud.plugin.kubernetes.modifier.KubeTopologyUtils.*;
 import static org.alien4cloud.plugin.kubernetes.policies.KubePoliciesConstants.K8S_POLICIES_ANTI_AFFINITY_LABEL;
 import static org.alien4cloud.plugin.kubernetes.policies.KubePoliciesConstants.K8S_POLICIES_AUTO_SCALING;
 import static org.alien4cloud.plugin.kubernetes.policies.KubePoliciesConstants.K8S_POLICIES_NODE_AFFINITY_LABEL;
-import static org.alien4cloud.tosca.utils.ToscaTypeUtils.isOfType;
 
 /**
  * Transform a K8S topology containing <code>KubeContainer</code>s, <code>KubeDeployment</code>s, <code>KubeService</code>s
@@ -79,6 +83,14 @@ public class KubernetesAdapterModifier extends AbstractKubernetesModifier {
     public static final String K8S_TYPES_KUBE_NAMESPACE = "org.alien4cloud.kubernetes.api.types.KubeNamespace";
 
     public static final String NAMESPACE_RESOURCE_NAME = "NamespaceManager";
+    public static final String KUBE_CONFIG_STORE_NAME = "KubeConfigStore";
+    public static final String RESOURCE_BUNDLE_NAME = "ResourceBundle_";
+
+    private static final PropertyPath RESOURCE_DEF_SPEC_REPLICAS = PropertyPath.of("resource_def.spec.replicas");
+    private static final PropertyPath RESOURCE_DEF_PREFERRED_NODE_AFFINITY = PropertyPath
+            .of("resource_def.spec.template.spec.affinity.nodeAffinity.preferredDuringSchedulingIgnoredDuringExecution");
+    private static final PropertyPath RESOURCE_DEF_PREFERRED_POD_ANTI_AFFINITY = PropertyPath
+            .of("resource_def.spec.template.spec.affinity.podAntiAffinity.preferredDuringSchedulingIgnoredDuringExecution");
 
     @Resource
     private WorkflowSimplifyService workflowSimplifyService;
@@ -86,6 +98,25 @@ public class KubernetesAdapterModifier extends AbstractKubernetesModifier {
     @Resource
     private WorkflowsBuilderService workflowBuilderService;
 
+    @Resource
+    private KubeStageExecutor stageExecutor;
+
+    @Resource
+    private ResourceGenerators resourceGenerators;
+
+    @Resource
+    private EndpointsGenerator endpointsGenerator;
+
+    @Resource
+    private VolumeGenerator volumeGenerator;
+
+    @Resource
+    private HorizontalPodAutoscalerGenerator horizontalPodAutoscalerGenerator;
+
+    /** When enabled, the deployments and simple resources are applied by dependency waves, in one manifest per wave. */
+    @Value("${kubernetes.modifiers.bundle.enabled:false}")
+    private boolean bundleEnabled;
+
     @Override
     @ToscaContextual
     public void process(Topology topology, FlowExecutionContext context) {
@@ -93,6 +124,12 @@ public class KubernetesAdapterModifier extends AbstractKubernetesModifier {
 
         try {
             WorkflowValidator.disableValidationThreadLocal.set(true);
+            String runCacheKey = getRunCacheKey(A4C_KUBERNETES_ADAPTER_MODIFIER_TAG, topology, context);
+            if (runCache.replay(runCacheKey, topology)) {
+                log.info("Topology " + topology.getId() + " has already been processed, replaying the previous result");
+                return;
+            }
+            int problemCount = KubeModifierRunCache.getProblemCount(context);
             doProcess(new KubernetesModifierContext(topology, context));
             TopologyContext topologyContext = workflowBuilderService.buildCachedTopologyContext(new TopologyContext() {
                 @Override
@@ -112,6 +149,7 @@ public class KubernetesAdapterModifier extends AbstractKubernetesModifier {
             });
             // TODO: should be done in the deployment flow instead of here
             workflowSimplifyService.reentrantSimplifyWorklow(topologyContext, topology.getWorkflows().keySet());
+            runCache.store(runCacheKey, topology, context, problemCount);
         } catch (Exception e) {
             context.getLog().error("Couldn't process " + A4C_KUBERNETES_ADAPTER_MODIFIER_TAG);
             log.warn("Couldn't process " + A4C_KUBERNETES_ADAPTER_MODIFIER_TAG, e);
@@ -119,15 +157,105 @@ public class KubernetesAdapterModifier extends AbstractKubernetesModifier {
             WorkflowValidator.disableValidationThreadLocal.remove();
         }
     }
+
+    @Override
+    protected String getModifierTag() {
+        return A4C_KUBERNETES_ADAPTER_MODIFIER_TAG;
+    }
+
+    /**
+     * The resources created by the generators are deployed on the cluster of the topology, as the ones created by this modifier.
+     */
+    @Override
+    protected void initResourceNode(KubernetesModifierContext context, NodeTemplate resourceNode) {
+        setKubeConfig(context, resourceNode);
+    }
     private void doProcess(KubernetesModifierContext context) {
+        KubeTopologyIndex index = context.getIndex();
+
+        // the nodes found by a stage and used by the next ones
+        Set<NodeTemplate> containerNodes = Sets.newHashSet();
+        Set<NodeTemplate> deploymentNodes = Sets.newHashSet();
+        Set<NodeTemplate> services = Sets.newHashSet();
+        Set<NodeTemplate> ingress = Sets.newHashSet();
+        Set<NodeTemplate> volumeNodes = Sets.newHashSet();
+
+        new KubeModifierPipeline(A4C_KUBERNETES_ADAPTER_MODIFIER_TAG)
+                .stage("namespace", data(TOPOLOGY), data(TOPOLOGY, NAMESPACE), this::manageNamespace)
+                .stage("endpoints", data(TOPOLOGY), data(ENDPOINT_RESOURCES),
+                        c -> index.getNodesOfType(K8S_TYPES_ENDPOINT_RESOURCE, false, true).forEach(nodeTemplate -> endpointsGenerator.generate(getGenerationContext(c), nodeTemplate)))
+                .stage("direct connections", data(TOPOLOGY), data(TOPOLOGY), c -> {
+                    containerNodes.addAll(index.getNodesOfType(K8S_TYPES_KUBECONTAINER, true));
+                    containerNodes.forEach(nodeTemplate -> manageContainersDirectConnection(c, nodeTemplate));
+                })
+                .stage("deployments", data(TOPOLOGY, NAMESPACE), data(CONTROLLER_RESOURCES), c -> {
+                    // Create DeploymentResource for each Deployment
+                    deploymentNodes.addAll(index.getNodesOfType(K8S_TYPES_KUBEDEPLOYMENT, false));
+                    deploymentNodes.forEach(nodeTemplate -> createDeploymentResource(c, nodeTemplate));
+                })
+                .stage("services", data(TOPOLOGY, NAMESPACE, CONTROLLER_RESOURCES), data(TOPOLOGY, SERVICE_RESOURCES), c -> {
+                    services.addAll(safe(index.getNodesOfType(K8S_TYPES_KUBE_SERVICE, true, false)));
+                    services.forEach(nodeTemplate -> manageServiceRelationship(c, nodeTemplate));
+                    services.forEach(nodeTemplate -> createServiceResource(c, nodeTemplate));
+                })
+                .stage("ingress", data(TOPOLOGY, NAMESPACE, SERVICE_RESOURCES), data(INGRESS_RESOURCES), c -> {
+                    ingress.addAll(index.getNodesOfType(K8S_TYPES_KUBE_INGRESS, true, false));
+                    ingress.forEach(nodeTemplate -> createIngress(c, nodeTemplate));
+                })
+                .stage("volume attachments", data(TOPOLOGY), data(TOPOLOGY), c -> {
+                    // Replace all occurences of org.alien4cloud.nodes.DockerExtVolume by k8s abstract volumes
+                    volumeNodes.addAll(index.getNodesOfType(K8S_TYPES_VOLUME_BASE, true));
+                    volumeNodes.forEach(nodeTemplate -> manageVolumesAtachment(c, nodeTemplate));
+                })
+                .stage("containers", data(TOPOLOGY, NAMESPACE, CONTROLLER_RESOURCES, SERVICE_RESOURCES), data(CONTAINERS),
+                        c -> manageContainers(c, containerNodes))
+                .stage("volumes", data(TOPOLOGY, NAMESPACE, CONTROLLER_RESOURCES), data(VOLUMES),
+                        // For each volume node, populate the 'volumes' property of the corresponding deployment resource
+                        c -> volumeNodes.forEach(nodeTemplate -> volumeGenerator.generate(getGenerationContext(c), nodeTemplate)))
+                .stage("custom resources", data(TOPOLOGY, NAMESPACE, CONTROLLER_RESOURCES), data(CUSTOM_RESOURCES),
+                        c -> resourceGenerators.generateCustomResources(getGenerationContext(c)))
+                .concurrentStage("affinity", data(TOPOLOGY, POLICIES, CONTROLLER_RESOURCES), data(NODE_AFFINITY), this::prepareAffinity)
+                .concurrentStage("anti-affinity", data(TOPOLOGY, POLICIES, CONTROLLER_RESOURCES), data(POD_ANTI_AFFINITY), this::prepareAntiAffinity)
+                .concurrentStage("autoscaling", data(TOPOLOGY, NAMESPACE, POLICIES, CONTROLLER_RESOURCES), data(AUTOSCALER_RESOURCES), this::prepareAutoScaling)
+                .stage("cleanup", data(TOPOLOGY), data(TOPOLOGY), c -> {
+                    // remove useless nodes
+                    // TODO bug on node matching view since these nodes are the real matched ones
+                    // TODO then find a way to delete servicesNodes and deloymentNodes as they are not used
+                    services.forEach(nodeTemplate -> removeNode(c, nodeTemplate));
+                    ingress.forEach(nodeTemplate -> removeNode(c, nodeTemplate));
+
+                    deploymentNodes.forEach(nodeTemplate -> removeNode(c, nodeTemplate));
+
+                    Set<NodeTemplate> volumes = index.getNodesOfType(K8S_TYPES_VOLUME_BASE, true);
+                    volumes.forEach(nodeTemplate -> removeNode(c, nodeTemplate));
+
+                    Set<NodeTemplate> containers = index.getNodesOfType(A4C_TYPES_APPLICATION_DOCKER_CONTAINER, true, false);
+                    safe(containers).forEach(nodeTemplate -> removeNode(c, nodeTemplate));
+                })
+                .stage("serialization", data(NAMESPACE, ENDPOINT_RESOURCES, SERVICE_RESOURCES, INGRESS_RESOURCES, CONTROLLER_RESOURCES, CONTAINERS,
+                        VOLUMES, NODE_AFFINITY, POD_ANTI_AFFINITY, AUTOSCALER_RESOURCES, CUSTOM_RESOURCES), data(RESOURCE_SPECS), this::serializeResourceSpecs)
+                .stage("bundles", data(TOPOLOGY, RESOURCE_SPECS), data(TOPOLOGY), c -> {
+                    if (bundleEnabled) {
+                        bundleResources(c);
+                    }
+                })
+                .stage("services cleanup", data(TOPOLOGY), data(TOPOLOGY), this::removeUnusedServices)
+                .run(context, stageExecutor);
+    }
+
+    /**
+     * If a node of type KubeNamespace is found in the topology, get the namespace and create the resource that will create it.
+     */
+    private void manageNamespace(KubernetesModifierContext context) {
         Topology topology = context.getTopology();
+        KubeTopologyIndex index = context.getIndex();
 
         // If a node of type KubeNamespace is found in the topology, get the namespace and keep the node for relationships
         NodeTemplate kubeNSNode = null;
         NodeTemplate kubeNSResourceNode = null;
         String namespace = null;
         AbstractPropertyValue nsConfigPV = null;
-        Set<NodeTemplate> kubeNSNodes = TopologyNavigationUtil.getNodesOfType(topology, K8S_TYPES_KUBE_NAMESPACE, false);
+        Set<NodeTemplate> kubeNSNodes = index.getNodesOfType(K8S_TYPES_KUBE_NAMESPACE, false);
         if (kubeNSNodes != null && !kubeNSNodes.isEmpty()) {
             if (kubeNSNodes.size() > 1) {
                 context.log().warn("More than one KubeNamespace node have been found, juste taking the first one");
@@ -140,7 +268,7 @@ public class KubernetesAdapterModifier extends AbstractKubernetesModifier {
         }
 
         // If a node of type KubeCluster is found in the topology, get the config and store it in the context for later usage
-        Set<NodeTemplate> kubeClusterNodes = TopologyNavigationUtil.getNodesOfType(topology, K8S_TYPES_KUBE_CLUSTER, false);
+        Set<NodeTemplate> kubeClusterNodes = index.getNodesOfType(K8S_TYPES_KUBE_CLUSTER, false);
         if (kubeClusterNodes != null && !kubeClusterNodes.isEmpty()) {
             if (kubeClusterNodes.size() > 1) {
                 context.log().warn("More than one KubeCluster node have been found, juste taking the first one");
@@ -151,38 +279,29 @@ public class KubernetesAdapterModifier extends AbstractKubernetesModifier {
                 String kubeConfig = ((ScalarPropertyValue)configPV).getValue();
                 if (StringUtils.isNotEmpty(kubeConfig)) {
                     nsConfigPV = configPV;
-                    if (StringUtils.isNotEmpty(namespace)) { 
-                       // update namespace in kube config if any
-                       Map<String, Object> kubeConf = (Map<String, Object>)YamlParserUtil.load(kubeConfig);
-                       List ct = (List)kubeConf.get("contexts");
-                       Map<String,Object> ct0 = (Map<String,Object>)((Map<String,Object>)ct.get(0)).get("context");
-                       ct0.put("namespace", namespace);
-                       try {
-                          kubeConfig = YamlParserUtil.toYaml(kubeConf);
-                       } catch (Exception e) {
-                          log.error (e.getMessage());
-                       }
+                    if (StringUtils.isNotEmpty(namespace)) {
+                       // update namespace of the active context in kube config if any
+                       kubeConfig = KubeConfigService.withNamespace(kubeConfig, namespace);
                     }
-                    // Store the kube config using this key for later usage
-                    context.getFlowExecutionContext().getExecutionCache().put(K8S_TYPES_KUBE_CLUSTER, kubeConfig);
+                    storeKubeConfig(context, kubeConfig);
                 }
             }
         }
 
         if (StringUtils.isNotEmpty(namespace)) {
            /* add resource node to create namespace */
-           kubeNSResourceNode = addNodeTemplate(null, topology, NAMESPACE_RESOURCE_NAME, K8S_TYPES_SIMPLE_RESOURCE, K8S_CSAR_VERSION);
+           kubeNSResourceNode = addNodeTemplate(context, NAMESPACE_RESOURCE_NAME, K8S_TYPES_SIMPLE_RESOURCE, K8S_CSAR_VERSION);
            /* store node name in cache to be used for relations */
            context.getFlowExecutionContext().getExecutionCache().put(NAMESPACE_RESOURCE_NAME, NAMESPACE_RESOURCE_NAME);
 
            setNodePropertyPathValue(null,topology,kubeNSResourceNode,"resource_type",new ScalarPropertyValue("namespaces"));
 
-           Map<String, AbstractPropertyValue> namespaceProperties = Maps.newHashMap();
-           copyProperty(kubeNSNode, "apiVersion", namespaceProperties, "resource_def.apiVersion");
-           copyProperty(kubeNSNode, "kind", namespaceProperties, "resource_def.kind");
-           copyProperty(kubeNSNode, "metadata", namespaceProperties, "resource_def.metadata");
-           copyProperty(kubeNSNode, "namespace", namespaceProperties, "resource_def.metadata.name");
-           feedPropertyValue(namespaceProperties, "resource_def.metadata.labels.a4c_id", ((ScalarPropertyValue)kubeNSNode.getProperties().get("namespace")).getValue(), false);
+           ResourceDocument namespaceProperties = new ResourceDocument();
+           copyProperty(kubeNSNode, "apiVersion", namespaceProperties, RESOURCE_DEF_API_VERSION);
+           copyProperty(kubeNSNode, "kind", namespaceProperties, RESOURCE_DEF_KIND);
+           copyProperty(kubeNSNode, "metadata", namespaceProperties, RESOURCE_DEF_METADATA);
+           copyProperty(kubeNSNode, "namespace", namespaceProperties, RESOURCE_DEF_METADATA_NAME);
+           RESOURCE_DEF_METADATA_LABELS_A4C_ID.set(namespaceProperties, ((ScalarPropertyValue)kubeNSNode.getProperties().get("namespace")).getValue());
            /* properties map stored in cache will be used later to generate resource_def node property */
            context.getYamlResources().put(NAMESPACE_RESOURCE_NAME, namespaceProperties);
 
@@ -191,121 +310,166 @@ public class KubernetesAdapterModifier extends AbstractKubernetesModifier {
            setNodePropertyPathValue(null, topology, kubeNSResourceNode, "kube_config", nsConfigPV);
 
            /* remove namespace node */
-           removeNode (topology, kubeNSNode);
+           removeNode(context, kubeNSNode);
         }
+        context.setNamespace(namespace);
+    }
 
-        // Endpoints
-        Set<NodeTemplate> endpointNodes = TopologyNavigationUtil.getNodesOfType(topology, K8S_TYPES_ENDPOINT_RESOURCE, false, true);
-        endpointNodes.forEach(nodeTemplate -> manageEndpoints(context,  nodeTemplate));
-
-        // Direct Connection
-        Set<NodeTemplate> containerNodes = TopologyNavigationUtil.getNodesOfType(topology, K8S_TYPES_KUBECONTAINER, true);
-        containerNodes.forEach(nodeTemplate -> manageContainersDirectConnection(context, nodeTemplate));
-
-        // Create DeploymentResource for each Deployment
-        Set<NodeTemplate> deploymentNodes = TopologyNavigationUtil.getNodesOfType(topology, K8S_TYPES_KUBEDEPLOYMENT, false);
-        deploymentNodes.forEach(nodeTemplate -> createDeploymentResource(context, nodeTemplate));
-
-        // Manage Services
-        Set<NodeTemplate> services = TopologyNavigationUtil.getNodesOfType(topology, K8S_TYPES_KUBE_SERVICE, true, false);
-        safe(services).forEach(nodeTemplate -> manageServiceRelationship(context, nodeTemplate));
-        services.forEach(nodeTemplate -> createServiceResource(context, nodeTemplate));
-
-        Set<NodeTemplate> ingress = TopologyNavigationUtil.getNodesOfType(topology, K8S_TYPES_KUBE_INGRESS, true, false);
-        ingress.forEach(nodeTemplate -> createIngress(context,nodeTemplate));
-
-        //        // for each Job create a node of type JobResource
-        //        Set<NodeTemplate> jobNodes = TopologyNavigationUtil.getNodesOfType(topology, K8S_TYPES_JOB, false);
-        //        jobNodes.forEach(nodeTemplate -> createJobResource(context, nodeTemplate));
-
-        // Replace all occurences of org.alien4cloud.nodes.DockerExtVolume by k8s abstract volumes
-        Set<NodeTemplate> volumeNodes = TopologyNavigationUtil.getNodesOfType(topology, K8S_TYPES_VOLUME_BASE, true);
-        volumeNodes.forEach(nodeTemplate -> manageVolumesAtachment(context, nodeTemplate));
-
-        // A function evaluator context will be useful
-        FunctionEvaluatorContext functionEvaluatorContext = new FunctionEvaluatorContext(topology, Maps.newHashMap());
-        Map<String, List<String>> serviceIpAddressesPerDeploymentResource = Maps.newHashMap();
-
-        // For each container,
-        containerNodes.forEach(
-                nodeTemplate -> manageContainer(context, nodeTemplate, functionEvaluatorContext, serviceIpAddressesPerDeploymentResource)
-        );
-
-        // For each volume node, populate the 'volumes' property of the corresponding deployment resource
-        volumeNodes.forEach(nodeTemplate -> manageVolume(context, nodeTemplate));
-
-        // Manage Affinity Policies
-        TopologyNavigationUtil.getPoliciesOfType(context.getTopology(), K8S_POLICIES_NODE_AFFINITY_LABEL, true).forEach(
-                policyTemplate -> manageAffinity(context, policyTemplate)
-        );
-
-        // Manage Anti-Affinity Policies
-        TopologyNavigationUtil.getPoliciesOfType(context.getTopology(), K8S_POLICIES_ANTI_AFFINITY_LABEL, true).forEach(
-                policyTemplate -> manageAntiAffinity(context, policyTemplate)
-        );
-
-        // Check auto-scaling policies and build the equiv node
-        TopologyNavigationUtil.getPoliciesOfType(topology, K8S_POLICIES_AUTO_SCALING, true).forEach(
-                policyTemplate -> manageAutoScaling(context, policyTemplate)
-        );
-
-        // remove useless nodes
-        // TODO bug on node matching view since these nodes are the real matched ones
-        // TODO then find a way to delete servicesNodes and deloymentNodes as they are not used
-        services.forEach(nodeTemplate -> removeNode(topology, nodeTemplate));
-        ingress.forEach(nodeTemplate -> removeNode(topology, nodeTemplate));
-
-        deploymentNodes.forEach(nodeTemplate -> removeNode(topology, nodeTemplate));
-//      jobNodes.forEach(nodeTemplate -> removeNode(topology, nodeTemplate));
-
-        Set<NodeTemplate> volumes = TopologyNavigationUtil.getNodesOfType(topology, K8S_TYPES_VOLUME_BASE, true);
-        volumes.forEach(nodeTemplate -> removeNode(topology, nodeTemplate));
-
-        Set<NodeTemplate> containers = TopologyNavigationUtil.getNodesOfType(topology, A4C_TYPES_APPLICATION_DOCKER_CONTAINER, true, false);
-        safe(containers).forEach(nodeTemplate -> removeNode(topology, nodeTemplate));
+    private void manageContainers(KubernetesModifierContext context, Set<NodeTemplate> containerNodes) {
+        // For each container, grouped by controller resource
+        List<KubeContainerGroup> groups = KubeContainerGroup.groupByControllerResource(context, containerNodes);
+
+        // First the topology changes (name, endpoints, config maps), in a deterministic order
+        Map<String, Map<String, List<NodeTemplate>>> configMapFactoriesPerContainer = Maps.newHashMap();
+        groups.forEach(group -> group.getContainerNodes().forEach(containerNode -> configMapFactoriesPerContainer.put(containerNode.getName(),
+                prepareContainer(context, containerNode, group.getControllerResource()))));
+
+        // Then resolve the inputs of the containers, concurrently for each controller resource
+        List<Callable<KubeContainerGroup>> resolutions = groups.stream().map(group -> (Callable<KubeContainerGroup>) () -> {
+            // A function evaluator context will be useful
+            FunctionEvaluatorContext functionEvaluatorContext = new FunctionEvaluatorContext(context.getTopology(), Maps.newHashMap());
+            group.getContainerNodes().forEach(containerNode -> resolveContainerInputs(context, group, containerNode, functionEvaluatorContext));
+            return group;
+        }).collect(Collectors.toList());
+        stageExecutor.invokeAll(resolutions);
+
+        // And finally apply them, in the same order
+        groups.forEach(group -> {
+            group.getContainerNodes().forEach(containerNode -> completeContainer(context, group, containerNode,
+                    configMapFactoriesPerContainer.get(containerNode.getName())));
+            // populate the service_dependency_lookups property of the controller resource node
+            String serviceDependencyLookups = group.getServiceDependencyLookups();
+            if (serviceDependencyLookups != null) {
+                setNodePropertyPathValue(context.getCsar(), context.getTopology(), group.getControllerResource(), "service_dependency_lookups",
+                        new ScalarPropertyValue(serviceDependencyLookups));
+            }
+        });
+    }
 
-        String providedNamespace = getProvidedMetaproperty(context.getFlowExecutionContext(), K8S_NAMESPACE_METAPROP_NAME);
+    /**
+     * Set the 'resource_spec' property of each resource with the JSON content of the resource specification.
+     */
+    private void serializeResourceSpecs(KubernetesModifierContext context) {
+        String providedNamespace = getMetaProperties(context.getFlowExecutionContext()).getNamespace();
         if (providedNamespace != null) {
             context.log().info("All resources will be created into the namespace <" + providedNamespace + ">");
         }
 
-        // finally set the 'resource_spec' property with the JSON content of the resource specification
-        Set<NodeTemplate> resourceNodes = TopologyNavigationUtil.getNodesOfType(topology, K8S_TYPES_BASE_RESOURCE, true);
+        Set<NodeTemplate> resourceNodes = context.getIndex().getNodesOfType(K8S_TYPES_BASE_RESOURCE, true);
         // also treat job resources
-        //        Set<NodeTemplate> jobResourceNodes = TopologyNavigationUtil.getNodesOfType(topology, K8S_TYPES_BASE_JOB_RESOURCE, true);
+        //        Set<NodeTemplate> jobResourceNodes = index.getNodesOfType(K8S_TYPES_BASE_JOB_RESOURCE, true);
         //        for (NodeTemplate jobResourceNode : jobResourceNodes) {
         //            resourceNodes.add(jobResourceNode);
         //        }
 
-        for (NodeTemplate resourceNode : resourceNodes) {
-            Map<String, AbstractPropertyValue> resourceNodeProperties = context.getYamlResources().get(resourceNode.getName());
-            if (resourceNodeProperties != null && resourceNodeProperties.containsKey("resource_def")) {
-                if (providedNamespace != null) {
-                    feedPropertyValue(resourceNodeProperties, "resource_def.metadata.namespace", providedNamespace, false);
-                    setNodePropertyPathValue(context.getCsar(), topology, resourceNode, "namespace", new ScalarPropertyValue(providedNamespace));
+        setResourceSpecs(context, resourceNodes, providedNamespace);
+    }
+
+    /**
+     * Replace the deployment and simple resources by one bundle node per dependency wave (see {@link KubeResourceBundles}) : the specs of the
+     * resources of a wave are applied by a single kubectl call, then the bundle waits for all of them to be ready.
+     * <p>
+     * The resources which spec is completed by their scripts (service dependencies), and the ones that use their own kube config (namespace),
+     * are not bundled. The relationships from and to the bundled resources are moved to the bundles : nothing is bundled when the bundles would
+     * then depend on each other.
+     */
+    private void bundleResources(KubernetesModifierContext context) {
+        Topology topology = context.getTopology();
+        Set<NodeTemplate> resourceNodes = Sets.newHashSet();
+        resourceNodes.addAll(context.getIndex().getNodesOfType(K8S_TYPES_DEPLOYMENT_RESOURCE, false));
+        resourceNodes.addAll(context.getIndex().getNodesOfType(K8S_TYPES_SIMPLE_RESOURCE, false));
+        resourceNodes.removeIf(nodeTemplate -> !isBundleable(nodeTemplate));
+        if (resourceNodes.isEmpty()) {
+            return;
+        }
+        List<List<NodeTemplate>> waves = KubeResourceBundles.getWaves(resourceNodes, topology.getNodeTemplates());
+        if (waves == null) {
+            context.log().warn("The resources depend on each other, they are not bundled");
+            return;
+        }
+        if (!KubeResourceBundles.isAcyclicOnceBundled(waves, topology.getNodeTemplates())) {
+            context.log().warn("The bundles of the resources would depend on each other, the resources are not bundled");
+            return;
+        }
+
+        // bundled resource name -> name of its bundle
+        Map<String, String> bundles = Maps.newHashMap();
+        NodeTemplate previousBundleNode = null;
+        for (int i = 0; i < waves.size(); i++) {
+            NodeTemplate bundleNode = addNodeTemplate(context, RESOURCE_BUNDLE_NAME + (i + 1), K8S_TYPES_RESOURCE_BUNDLE, K8S_CSAR_VERSION);
+            List<String> specs = Lists.newArrayList();
+            List<String> deployments = Lists.newArrayList();
+            List<String> conditions = Lists.newArrayList();
+            for (NodeTemplate resourceNode : waves.get(i)) {
+                specs.add(getScalarProperty(resourceNode, "resource_spec"));
+                String resourceId = getScalarProperty(resourceNode, "resource_id");
+                if (K8S_TYPES_DEPLOYMENT_RESOURCE.equals(resourceNode.getType())) {
+                    deployments.add(resourceId);
+                } else if (StringUtils.isNotEmpty(getScalarProperty(resourceNode, "json_path_expr"))) {
+                    conditions.add(String.join(" ", getScalarProperty(resourceNode, "resource_type"), resourceId,
+                            getScalarProperty(resourceNode, "json_path_value"), getScalarProperty(resourceNode, "json_path_expr")));
                 }
-                Object propertyValue = getValue(resourceNodeProperties.get("resource_def"));
-                String serializedPropertyValue = PropertyUtil.serializePropertyValue(propertyValue);
-                setNodePropertyPathValue(context.getCsar(), topology, resourceNode, "resource_spec", new ScalarPropertyValue(serializedPropertyValue));
-            } else {
-                setNodePropertyPathValue(context.getCsar(), topology, resourceNode, "resource_spec", new ScalarPropertyValue("N/A"));
+                if (resourceNode.getProperties().get("namespace") != null) {
+                    setNodePropertyPathValue(context.getCsar(), topology, bundleNode, "namespace", resourceNode.getProperties().get("namespace"));
+                }
+                bundles.put(resourceNode.getName(), bundleNode.getName());
+            }
+            setNodePropertyPathValue(context.getCsar(), topology, bundleNode, "manifest", new ScalarPropertyValue(KubeResourceBundles.toManifest(specs)));
+            if (!deployments.isEmpty()) {
+                setNodePropertyPathValue(context.getCsar(), topology, bundleNode, "wait_deployments", new ScalarPropertyValue(String.join(" ", deployments)));
+            }
+            if (!conditions.isEmpty()) {
+                setNodePropertyPathValue(context.getCsar(), topology, bundleNode, "wait_conditions", new ScalarPropertyValue(String.join("\n", conditions)));
             }
-            if (providedNamespace != null) {
-                setNodePropertyPathValue(context.getCsar(), topology, resourceNode, "namespace", new ScalarPropertyValue(providedNamespace));
+            setKubeConfig(context, bundleNode);
+            if (previousBundleNode != null) {
+                addRelationshipTemplate(context, bundleNode, previousBundleNode.getName(), NormativeRelationshipConstants.DEPENDS_ON, "dependency", "feature");
             }
+            previousBundleNode = bundleNode;
         }
 
-        // remove services that are no more target of relationships
+        // move the relationships to the bundles
+        for (NodeTemplate nodeTemplate : Lists.newArrayList(topology.getNodeTemplates().values())) {
+            String sourceBundle = bundles.get(nodeTemplate.getName());
+            NodeTemplate sourceNode = sourceBundle == null ? nodeTemplate : topology.getNodeTemplates().get(sourceBundle);
+            for (RelationshipTemplate relationshipTemplate : Lists.newArrayList(safe(nodeTemplate.getRelationships()).values())) {
+                String target = bundles.getOrDefault(relationshipTemplate.getTarget(), relationshipTemplate.getTarget());
+                if (sourceBundle == null && !target.equals(relationshipTemplate.getTarget())) {
+                    removeRelationship(context, nodeTemplate.getName(), relationshipTemplate.getName());
+                }
+                if ((sourceBundle != null || !target.equals(relationshipTemplate.getTarget())) && !target.equals(sourceNode.getName())) {
+                    addRelationshipTemplate(context, sourceNode, target, NormativeRelationshipConstants.DEPENDS_ON, "dependency", "feature");
+                }
+            }
+        }
+        resourceNodes.forEach(nodeTemplate -> removeNode(context, nodeTemplate));
+        context.log().info(resourceNodes.size() + " resources are applied in " + waves.size() + " bundles");
+    }
+
+    private boolean isBundleable(NodeTemplate resourceNode) {
+        String spec = getScalarProperty(resourceNode, "resource_spec");
+        return StringUtils.isNotEmpty(spec) && !"N/A".equals(spec) && StringUtils.isEmpty(getScalarProperty(resourceNode, "kube_config"))
+                && StringUtils.isEmpty(getScalarProperty(resourceNode, "service_dependency_lookups"));
+    }
+
+    private static String getScalarProperty(NodeTemplate nodeTemplate, String propertyName) {
+        AbstractPropertyValue propertyValue = safe(nodeTemplate.getProperties()).get(propertyName);
+        return propertyValue instanceof ScalarPropertyValue ? ((ScalarPropertyValue) propertyValue).getValue() : null;
+    }
+
+    /**
+     * Remove services that are no more target of relationships.
+     */
+    private void removeUnusedServices(KubernetesModifierContext context) {
         Set<NodeTemplate> servicesToRemove = Sets.newHashSet();
-        for (NodeTemplate node : topology.getNodeTemplates().values()) {
+        for (NodeTemplate node : context.getTopology().getNodeTemplates().values()) {
             if (node instanceof ServiceNodeTemplate) {
-                Set<NodeTemplate> sourceNodes = TopologyNavigationUtil.getSourceNodesByRelationshipType(topology, node, NormativeRelationshipConstants.ROOT);
-                if (sourceNodes.isEmpty()) {
+                if (!context.getRelationshipIndex().isTargeted(node.getName())) {
                     servicesToRemove.add(node);
                 }
             }
         }
-        servicesToRemove.stream().forEach(nodeTemplate -> removeNode(topology, nodeTemplate));
+        servicesToRemove.stream().forEach(nodeTemplate -> removeNode(context, nodeTemplate));
     }
 
     /**
@@ -313,20 +477,18 @@ public class KubernetesAdapterModifier extends AbstractKubernetesModifier {
      * we create a service of type ClusterIP between them.
      */
     private void manageContainersDirectConnection(KubernetesModifierContext context, NodeTemplate nodeTemplate) {
-        NodeTemplate sourceDeploymentNode = TopologyNavigationUtil.getImmediateHostTemplate(context.getTopology(), nodeTemplate);
+        NodeTemplate sourceDeploymentNode = context.getHostChains().getImmediateHost(nodeTemplate);
         Set<RelationshipTemplate> relationsShips = Sets.newHashSet();
         nodeTemplate.getRelationships().forEach((t, relationshipTemplate) -> {
             String targetNode = relationshipTemplate.getTarget();
             NodeTemplate targetNodeTemplate = context.getTopology().getNodeTemplates().get(targetNode);
-            NodeType nodeType = ToscaContext.get(NodeType.class, targetNodeTemplate.getType());
-            if (isOfType(nodeType, K8S_TYPES_KUBECONTAINER)) {
-                NodeTemplate targetDeploymentNode = TopologyNavigationUtil.getImmediateHostTemplate(context.getTopology(), targetNodeTemplate);
+            if (context.getTypes().isNodeOfType(targetNodeTemplate.getType(), K8S_TYPES_KUBECONTAINER)) {
+                NodeTemplate targetDeploymentNode = context.getHostChains().getImmediateHost(targetNodeTemplate);
                 if (targetDeploymentNode != sourceDeploymentNode) {
                     // containers are not co-hosted
                     String targetCapabilityName = relationshipTemplate.getTargetedCapabilityName();
                     Capability targetCapability = targetNodeTemplate.getCapabilities().get(targetCapabilityName);
-                    CapabilityType targetCapabilityType = ToscaContext.get(CapabilityType.class, targetCapability.getType());
-                    if (isOfType(targetCapabilityType, K8S_TYPES_KUBE_CONTAINER_ENDPOINT)) {
+                    if (context.getTypes().isCapabilityOfType(targetCapability.getType(), K8S_TYPES_KUBE_CONTAINER_ENDPOINT)) {
                         // containers are directly connected but not co-hosted, we add a service between them
                         relationsShips.add(relationshipTemplate);
                     }
@@ -335,11 +497,11 @@ public class KubernetesAdapterModifier extends AbstractKubernetesModifier {
         });
         relationsShips.stream().forEach(relationshipTemplate -> {
             // remove the relationship
-            removeRelationship(context.getCsar(), context.getTopology(), nodeTemplate.getName(), relationshipTemplate.getName());
+            removeRelationship(context, nodeTemplate.getName(), relationshipTemplate.getName());
             String targetCapabilityName = relationshipTemplate.getTargetedCapabilityName();
             NodeTemplate targetNodeTemplate = context.getTopology().getNodeTemplates().get(relationshipTemplate.getTarget());
             // add a service
-            NodeTemplate serviceNode = addNodeTemplate(context.getCsar(),context.getTopology(), nodeTemplate.getName() + "_" + relationshipTemplate.getRequirementName() + "_" + targetNodeTemplate.getName() + "_" + targetCapabilityName + "_Service",
+            NodeTemplate serviceNode = addNodeTemplate(context, nodeTemplate.getName() + "_" + relationshipTemplate.getRequirementName() + "_" + targetNodeTemplate.getName() + "_" + targetCapabilityName + "_Service",
                     K8S_TYPES_KUBE_SERVICE, K8S_CSAR_VERSION);
             setNodePropertyPathValue(context.getCsar(), context.getTopology(), serviceNode, "spec.service_type", new ScalarPropertyValue("ClusterIP"));
             // add a relation between the service and the target container
@@ -400,12 +562,12 @@ public class KubernetesAdapterModifier extends AbstractKubernetesModifier {
         NodeTemplate targetContainer = context.getTopology().getNodeTemplates().get(relationshipTemplate.getTarget());
         Capability targetCapability = targetContainer.getCapabilities().get(relationshipTemplate.getTargetedCapabilityName());
         // get the hosting node
-        NodeTemplate controllerNode = TopologyNavigationUtil.getImmediateHostTemplate(context.getTopology(), targetContainer);
+        NodeTemplate controllerNode = context.getHostChains().getImmediateHost(targetContainer);
 
         // fill properties of service
-        setNodePropertyPathValue(context.getCsar(), context.getTopology(), serviceNode, "metadata.name", new ScalarPropertyValue(generateUniqueKubeName(context.getFlowExecutionContext(), serviceNode.getName())));
+        setNodePropertyPathValue(context.getCsar(), context.getTopology(), serviceNode, "metadata.name", new ScalarPropertyValue(generateUniqueKubeName(context.getFlowExecutionContext(), KubeNameAllocator.ROLE_SERVICE, serviceNode.getName())));
         // get the "pod name"
-        AbstractPropertyValue podName = PropertyUtil.getPropertyValueFromPath(safe(controllerNode.getProperties()), "metadata.name");
+        AbstractPropertyValue podName = METADATA_NAME.get(safe(controllerNode.getProperties()));
         setNodePropertyPathValue(context.getCsar(), context.getTopology(), serviceNode, "spec.selector.app", podName);
 
         AbstractPropertyValue port = targetCapability.getProperties().get("port");
@@ -421,281 +583,26 @@ public class KubernetesAdapterModifier extends AbstractKubernetesModifier {
     }
 
     /**
-     * When several abstract services have been matched to the same named service (service with a fixed service name), we only want one to be created.
+     * Check auto-scaling policies and build the equiv nodes : the policies are resolved when the stage is prepared, the nodes are added on
+     * write-back.
      */
-    private Set<NodeTemplate> demultiplexServices(Csar csar, Topology topology, Set<NodeTemplate> serviceNodes, FlowExecutionContext context) {
-
-        // feed a map of service_name -> nodes
-        Map<String, Set<NodeTemplate>> servicesNamesByName = Maps.newHashMap();
-        for (NodeTemplate serviceNode : serviceNodes) {
-            AbstractPropertyValue serviceNamePV = PropertyUtil.getPropertyValueFromPath(safe(serviceNode.getProperties()), "service_name");
-            if (serviceNamePV != null && serviceNamePV instanceof ScalarPropertyValue) {
-                String serviceName = ((ScalarPropertyValue)serviceNamePV).getValue();
-                if (StringUtils.isNotEmpty(serviceName)) {
-                    Set<NodeTemplate> namedNodes = servicesNamesByName.get(serviceName);
-                    if (namedNodes == null) {
-                        namedNodes = Sets.newHashSet();
-                        servicesNamesByName.put(serviceName, namedNodes);
-                    }
-                    namedNodes.add(serviceNode);
-                }
-            }
-        }
-        // remove all entries that only contains 1 element
-        Stream<Map.Entry<String, Set<NodeTemplate>>> servicesToDemultiplex = servicesNamesByName.entrySet().stream().filter(e -> e.getValue().size() > 1);
-
-        servicesToDemultiplex.forEach(e -> {
-            // if services for a same node target a different container this is wrong
-            final Set<NodeTemplate> nodesToRemove = Sets.newHashSet();
-
-            // we well know we have more than 1 node in this iterator
-            NodeTemplate nodeToKeep = null;
-            for (NodeTemplate nodeToKeepCandidate : e.getValue()) {
-                // we prefer to keep a node that have consumer since we are not able to move relationship
-                Set<NodeTemplate> consumers = TopologyNavigationUtil.getSourceNodesByRelationshipType(topology, nodeToKeepCandidate, NormativeRelationshipConstants.DEPENDS_ON);
-                if (consumers != null && !consumers.isEmpty()) {
-                    nodeToKeep = nodeToKeepCandidate;
-                    break;
-                }
-            }
-            if (nodeToKeep == null) {
-                nodeToKeep = e.getValue().stream().findFirst().get();
-            }
-
-            String nodeToKeepServiceType = PropertyUtil.getScalarPropertyValueFromPath(safe(nodeToKeep.getProperties()), "spec.service_type");
-
-            Set<RelationshipTemplate> relationships = TopologyNavigationUtil.getTargetRelationships(nodeToKeep, "dependency");
-            // we know we have 1 and only 1 relationship (1 service per endpoint)
-            RelationshipTemplate relationshipTemplate = relationships.stream().findFirst().get();
-            String deploymentUnitNodeName = relationshipTemplate.getTarget();
-            StringBuilder nodeToKeepServiceEndpointTag = new StringBuilder("");
-
-            for (NodeTemplate nodeToRemoveCandidate : e.getValue()) {
-
-                if (nodeToRemoveCandidate == nodeToKeep) {
-                    continue;
-                }
-
-                NodeTemplate nodeToRemove = nodeToRemoveCandidate;
-                // check that services with same service name target the same deployment container
-                RelationshipTemplate relationshipToRemove = TopologyNavigationUtil.getTargetRelationships(nodeToKeep, "dependency").iterator().next();
-                if (!relationshipToRemove.getTarget().equals(deploymentUnitNodeName)) {
-                    String msg = String.format("Same service name (%s) used for services that target different deployment units (at least %s and %s), please review your matching !", e.getKey(), nodeToKeep.getName(), nodeToRemove.getName());
-                    context.getLog().error(msg);
-                    throw new UnsupportedOperationException();
-                }
-                // check that services with same service name are of the same type
-                String nodeToRemoveServiceType = PropertyUtil.getScalarPropertyValueFromPath(safe(nodeToRemove.getProperties()), "spec.service_type");
-                if (!StringUtils.equals(nodeToKeepServiceType, nodeToRemoveServiceType)) {
-                    String msg = String.format("Same service name (%s) used for services that are different service types (%s (%s) != %s (%s)), please review your matching !", e.getKey(), nodeToKeep.getName(), nodeToKeepServiceType, nodeToRemove.getName(), nodeToRemoveServiceType);
-                    context.getLog().error(msg);
-                    throw new UnsupportedOperationException();
-                }
-
-                AbstractPropertyValue serviceNamePV = PropertyUtil.getPropertyValueFromPath(safe(nodeToRemove.getProperties()), "spec.ports");
-                if (serviceNamePV instanceof ListPropertyValue) {
-                    List<Object> ports = ((ListPropertyValue)serviceNamePV).getValue();
-                    if (!ports.isEmpty()) {
-                        Object port = ports.iterator().next();
-                        feedPropertyValue(nodeToKeep.getProperties(), "spec.ports", port, true);
-                        nodesToRemove.add(nodeToRemove);
-                        // since this tag is used by modifier elsewhere, we use it's value to set a tag on the node we keep
-                        String serviceEndpointTag = getNodeTagValueOrNull(nodeToRemove, A4C_KUBERNETES_MODIFIER_TAG_SERVICE_ENDPOINT);
-                        nodeToKeepServiceEndpointTag.append(",").append(serviceEndpointTag);
-
-                    }
-                }
-            }
-            nodesToRemove.stream().forEach(s -> {
-                serviceNodes.remove(s);
-                // if the node to remove is the target of dependsOn relationship (a consumer), let's move it to the node we keep
-                removeNode(topology, s);
-            });
-
-            setNodeTagValue(nodeToKeep, A4C_KUBERNETES_MODIFIER_TAG_SERVICE_ENDPOINTS, nodeToKeepServiceEndpointTag.toString());
-        });
-
-        return serviceNodes;
-    }
-
-    protected RelationshipTemplate addRelationshipTemplate(KubernetesModifierContext context, NodeTemplate sourceNode, String targetNodeName,
-                                                           String relationshipTypeName, String requirementName, String capabilityName) {
-
-        Set<RelationshipTemplate> targetRelationships = TopologyNavigationUtil.getTargetRelationships(sourceNode, requirementName);
-        for (RelationshipTemplate relationshipTemplate : targetRelationships) {
-            if (relationshipTemplate.getTarget().equals(targetNodeName) && relationshipTemplate.getTargetedCapabilityName().equals(capabilityName)) {
-                return relationshipTemplate;
-            }
-        }
-        return super.addRelationshipTemplate(context.getCsar(), context.getTopology(), sourceNode, targetNodeName, relationshipTypeName, requirementName, capabilityName);
-    }
-
-    private void manageEndpoints(KubernetesModifierContext context, NodeTemplate endpointNode) {
-        // and enpoint is connected to a regular node (not a container), but maybe to a service that has been matched
-        // we just ensure the port is up-to-date now (after matching)
-        // so we set port property on Endpoint node and the service node that both proxy the a4c service node
-        Set<RelationshipTemplate> targetRelationships = TopologyNavigationUtil.getTargetRelationships(endpointNode, "endpoint");
-        if (targetRelationships == null || targetRelationships.size() > 1) {
-            // should never occur
-            return;
-        }
-        RelationshipTemplate targetRelationship = targetRelationships.iterator().next();
-        NodeTemplate targetNodeTemplate = context.getTopology().getNodeTemplates().get(targetRelationship.getTarget());
-        AbstractPropertyValue port = TopologyNavigationUtil.getNodeCapabilityPropertyValue(targetNodeTemplate, targetRelationship.getTargetedCapabilityName(), "port");
-        if (port == null) {
-            context.log().error("Connecting container to an external service requires its endpoint port to be defined. Port of [" + targetNodeTemplate.getName()
-                    + ".capabilities." + targetRelationship.getTargetedCapabilityName() + "] is not defined.");
-            return;
-        }
-
-        Set<NodeTemplate> targetEndpointNodes = TopologyNavigationUtil.getTargetNodes(context.getTopology(), endpointNode, "endpoint");
-        if (targetEndpointNodes == null || targetEndpointNodes.size() > 1) {
-            // should never occur
-            return;
-        }
-        // this is the K8S targeted service node (maybe an abstract service that has now been matched)
-        NodeTemplate targetEndpointNode = targetEndpointNodes.iterator().next();
-        // now search for the service that depends on this endpoint
-        Set<NodeTemplate> targetServiceNodes = TopologyNavigationUtil.getSourceNodes(context.getTopology(), endpointNode, "feature");
-        if (targetServiceNodes == null || targetServiceNodes.size() > 1) {
-            // should never occur
-            return;
-        }
-        NodeTemplate targetServiceNode = targetServiceNodes.iterator().next();
-
-        // fill service property
-        Map<String, Object> portEntry = Maps.newHashMap();
-        portEntry.put("port", port);
-        ComplexPropertyValue complexPropertyValue = new ComplexPropertyValue(portEntry);
-        appendNodePropertyPathValue(context.getCsar(), context.getTopology(), targetServiceNode, "spec.ports", complexPropertyValue);
-
-        String ipAddress = "#{TARGET_IP_ADDRESS}";
-        if (targetEndpointNode instanceof ServiceNodeTemplate) {
-            ServiceNodeTemplate serviceNodeTemplate = (ServiceNodeTemplate)targetEndpointNode;
-            ipAddress = safe(serviceNodeTemplate.getAttributeValues()).get("capabilities." + targetRelationship.getTargetedCapabilityName() + ".ip_address");
-        }
-
-        // fill endpoint subsets property
-        Map<String, Object> subsetEntry = Maps.newHashMap();
-        Map<String, Object> addresses = Maps.newHashMap();
-        addresses.put("ip", ipAddress);
-        subsetEntry.put("addresses", new ListPropertyValue(Lists.newArrayList(addresses)));
-        Map<String, Object> ports = Maps.newHashMap();
-        ports.put("port", port);
-        subsetEntry.put("ports", new ListPropertyValue(Lists.newArrayList(ports)));
-        ComplexPropertyValue subsetComplexPropertyValue = new ComplexPropertyValue(subsetEntry);
-        ListPropertyValue subsets = new ListPropertyValue(Lists.newArrayList(subsetComplexPropertyValue));
-        setNodePropertyPathValue(context.getCsar(), context.getTopology(), endpointNode, "subsets", subsets);
-    }
-
-    private void manageVolume(KubernetesModifierContext context, NodeTemplate volumeNode) {
-
-        // FIXME : doesn't support many attachement (1 volume -> many containers) ?)
-        Optional<RelationshipTemplate> relationshipTemplate = TopologyNavigationUtil.getTargetRelationships(volumeNode, "attachment").stream().findFirst();
-        if (!relationshipTemplate.isPresent()) {
-            return;
-        }
-        NodeTemplate targetContainer = context.getTopology().getNodeTemplates().get(relationshipTemplate.get().getTarget());
-        // find the deployment that hosts this container
-        NodeTemplate deploymentContainer = TopologyNavigationUtil.getImmediateHostTemplate(context.getTopology(), targetContainer);
-        // get the deployment resource corresponding to this deployment
-        NodeTemplate deploymentResourceNode = context.getReplacements().get(deploymentContainer.getName());
-
-        // get the volume name
-        AbstractPropertyValue name = PropertyUtil.getPropertyValueFromPath(volumeNode.getProperties(), "name");
-
-        managePersistentVolumeClaim(context, volumeNode, deploymentResourceNode);
-
-        Map<String, AbstractPropertyValue> deploymentResourceNodeProperties = context.getYamlResources().get(deploymentResourceNode.getName());
-        Map<String, Object> volumeEntry = Maps.newHashMap();
-
-        AbstractPropertyValue volume_type = PropertyUtil.getPropertyValueFromPath(volumeNode.getProperties(), "volume_type");
-        AbstractPropertyValue volume_spec = PropertyUtil.getPropertyValueFromPath(volumeNode.getProperties(), "spec");
-        volumeEntry.put("name", name);
-        Object volumeSpecObject = volume_spec;
-        if (volume_spec == null) {
-            // if the volume spec is null, we want an empty object (JSON : {}) in the map
-            Map<String, Object> map = Maps.newHashMap();
-            volumeSpecObject = map;
-        }
-        volumeEntry.put(PropertyUtil.getScalarValue(volume_type), volumeSpecObject);
-        feedPropertyValue(deploymentResourceNodeProperties, "resource_def.spec.template.spec.volumes", volumeEntry, true);
-
-        NodeType volumeNodeType = ToscaContext.get(NodeType.class, volumeNode.getType());
-        if (ToscaTypeUtils.isOfType(volumeNodeType, KubeTopologyUtils.K8S_TYPES_SECRET_VOLUME)) {
-            // we must create a secret, the deployment should depend on it
-            NodeTemplate secretFactory = addNodeTemplate(context.getCsar(),context.getTopology(), volumeNode.getName() + "_Secret", KubeTopologyUtils.K8S_TYPES_SECRET_FACTORY,
-                    K8S_CSAR_VERSION);
-            setKubeConfig(context, secretFactory);
-            String secretName = generateUniqueKubeName(context.getFlowExecutionContext(), volumeNode.getName());
-            setNodePropertyPathValue(context.getCsar(), context.getTopology(), secretFactory, "name", new ScalarPropertyValue(secretName));
-            // we must also define the secretName of the secret
-            TopologyModifierSupport.feedMapOrComplexPropertyEntry(volumeSpecObject, "secretName", secretName);
-
-            Map<String, DeploymentArtifact> artifacts = secretFactory.getArtifacts();
-            if (artifacts == null) {
-                artifacts = Maps.newHashMap();
-                secretFactory.setArtifacts(artifacts);
-            }
-            artifacts.put("resources", volumeNode.getArtifacts().get("resources"));
-            addRelationshipTemplate(context, deploymentResourceNode, secretFactory.getName(), NormativeRelationshipConstants.DEPENDS_ON, "dependency", "feature");
-        }
-    }
-
-    private void managePersistentVolumeClaim(KubernetesModifierContext context, NodeTemplate volumeNode, NodeTemplate deploymentResourceNode) {
-        // in case of empty claimName for a PersistentVolumeClaimSource then create a node of type PersistentVolumeClaim
-        NodeType volumeNodeType = ToscaContext.get(NodeType.class, volumeNode.getType());
-        if (ToscaTypeUtils.isOfType(volumeNodeType, KubeTopologyUtils.K8S_TYPES_VOLUMES_CLAIM)) {
-            AbstractPropertyValue claimNamePV = PropertyUtil.getPropertyValueFromPath(volumeNode.getProperties(), "spec.claimName");
-            if (claimNamePV == null) {
-                NodeTemplate volumeClaimResource = addNodeTemplate(context.getCsar(),context.getTopology(), volumeNode.getName() + "_PVC", KubeTopologyUtils.K8S_TYPES_SIMPLE_RESOURCE,
-                        K8S_CSAR_VERSION);
-                setKubeConfig(context, volumeClaimResource);
-
-                Map<String, AbstractPropertyValue> volumeClaimResourceNodeProperties = Maps.newHashMap();
-                context.getYamlResources().put(volumeClaimResource.getName(), volumeClaimResourceNodeProperties);
-
-                String claimName = generateUniqueKubeName(context.getFlowExecutionContext(), volumeNode.getName());
-                // fill the node properties
-                feedPropertyValue(volumeClaimResource.getProperties(), "resource_type", new ScalarPropertyValue("pvc"), false);
-                feedPropertyValue(volumeClaimResource.getProperties(), "resource_id", new ScalarPropertyValue(claimName), false);
-                feedPropertyValue(volumeClaimResource.getProperties(), "json_path_expr", new ScalarPropertyValue(".items[0].status.phase"), false);
-                feedPropertyValue(volumeClaimResource.getProperties(), "json_path_value", new ScalarPropertyValue("Bound"), false);
-                // fill the future JSON spec
-                feedPropertyValue(volumeClaimResourceNodeProperties, "resource_def.kind", "PersistentVolumeClaim", false);
-                feedPropertyValue(volumeClaimResourceNodeProperties, "resource_def.apiVersion", "v1", false);
-                feedPropertyValue(volumeClaimResourceNodeProperties, "resource_def.metadata.name", claimName, false);
-                feedPropertyValue(volumeClaimResourceNodeProperties, "resource_def.metadata.labels.a4c_id", claimName, false);
-                AbstractPropertyValue accessModesProperty = PropertyUtil.getPropertyValueFromPath(volumeNode.getProperties(), "accessModes");
-                feedPropertyValue(volumeClaimResourceNodeProperties, "resource_def.spec.accessModes", accessModesProperty, true);
-                // get the size of the volume to define claim storage size
-                NodeType nodeType = ToscaContext.get(NodeType.class, volumeNode.getType());
-                AbstractPropertyValue size = PropertyUtil.getPropertyValueFromPath(volumeNode.getProperties(), "size");
-                PropertyDefinition propertyDefinition = nodeType.getProperties().get("size");
-                Object transformedSize = getTransformedValue(size, propertyDefinition, "");
-                feedPropertyValue(volumeClaimResourceNodeProperties, "resource_def.spec.resources.requests.storage", transformedSize, false);
-                if (ToscaTypeUtils.isOfType(volumeNodeType, KubeTopologyUtils.K8S_TYPES_VOLUMES_CLAIM_SC)) {
-                    // add the storage class name to the claim
-                    AbstractPropertyValue storageClassNameProperty = PropertyUtil.getPropertyValueFromPath(volumeNode.getProperties(), "storageClassName");
-                    feedPropertyValue(volumeClaimResourceNodeProperties, "resource_def.spec.storageClassName", storageClassNameProperty, false);
-                }
-                // finally set the claimName of the volume node
-                feedPropertyValue(volumeNode.getProperties(), "spec.claimName", claimName, false);
-                // add a relationship between the deployment and this claim
-                addRelationshipTemplate(context, deploymentResourceNode, volumeClaimResource.getName(), NormativeRelationshipConstants.DEPENDS_ON, "dependency", "feature");
-            }
-        }
+    private Consumer<KubernetesModifierContext> prepareAutoScaling(KubernetesModifierContext context) {
+        List<Consumer<KubernetesModifierContext>> writeBacks = Lists.newArrayList();
+        TopologyNavigationUtil.getPoliciesOfType(context.getTopology(), K8S_POLICIES_AUTO_SCALING, true).forEach(
+                policyTemplate -> prepareAutoScaling(context, policyTemplate, writeBacks)
+        );
+        return c -> writeBacks.forEach(writeBack -> writeBack.accept(c));
     }
 
-    private void manageAutoScaling(KubernetesModifierContext context, PolicyTemplate policyTemplate) {
+    private void prepareAutoScaling(KubernetesModifierContext context, PolicyTemplate policyTemplate, List<Consumer<KubernetesModifierContext>> writeBacks) {
 
         if (CollectionUtils.isEmpty(policyTemplate.getTargets())) {
-            context.log().warn("Auto-scaling policy <{}> is not correctly configured, at least 1 targets is required. It will be ignored.", policyTemplate.getName());
+            writeBacks.add(c -> c.log().warn("Auto-scaling policy <{}> is not correctly configured, at least 1 targets is required. It will be ignored.", policyTemplate.getName()));
             return;
         }
 
         if (safe(policyTemplate.getProperties()).get("spec") == null) {
-            context.log().warn("Auto-scaling policy <{}> is not correctly configured, property \"spec\" is required. It will be ignored.", policyTemplate.getName());
+            writeBacks.add(c -> c.log().warn("Auto-scaling policy <{}> is not correctly configured, property \"spec\" is required. It will be ignored.", policyTemplate.getName()));
             return;
         }
 
@@ -703,63 +610,33 @@ public class KubernetesAdapterModifier extends AbstractKubernetesModifier {
                 policyTemplate,
                 context.getTopology(),
                 K8S_TYPES_KUBEDEPLOYMENT,
-                invalidName -> context.log().warn("Auto-scaling policy <{}>: will ignore target <{}> as it IS NOT an instance of <{}>.",
+                invalidName -> writeBacks.add(c -> c.log().warn("Auto-scaling policy <{}>: will ignore target <{}> as it IS NOT an instance of <{}>.",
                     policyTemplate.getName(),
                     invalidName,
                     K8S_TYPES_KUBEDEPLOYMENT
-                ));
+                )));
 
         // for each target, add a SimpleResource for HorizontaPodAutoScaler, targeting the related DeploymentResource
-        validTargets.forEach(nodeTemplate -> addHorizontalPodAutoScalingResource(context, policyTemplate, nodeTemplate));
+        // the spec is transformed once, each resource gets a copy-on-write view of it
+        Map<String, Object> transformed = horizontalPodAutoscalerGenerator.getTransformedSpec(getGenerationContext(context), policyTemplate);
+        validTargets.forEach(nodeTemplate -> writeBacks
+                .add(c -> horizontalPodAutoscalerGenerator.generate(getGenerationContext(c), policyTemplate, nodeTemplate, transformed)));
     }
 
-
-    private void addHorizontalPodAutoScalingResource(KubernetesModifierContext context, PolicyTemplate policyTemplate, NodeTemplate target) {
-        String resourceBaseName = target.getName() + "_" + policyTemplate.getName();
-        NodeTemplate podAutoScalerResourceNode = addNodeTemplate(context.getCsar(),context.getTopology(), resourceBaseName + "_Resource", K8S_TYPES_SIMPLE_RESOURCE, K8S_CSAR_VERSION);
-        setKubeConfig(context, podAutoScalerResourceNode);
-
-        Map<String, AbstractPropertyValue> podAutoScalerResourceNodeProperties = Maps.newHashMap();
-        context.getYamlResources().put(podAutoScalerResourceNode.getName(), podAutoScalerResourceNodeProperties);
-
-        NodeTemplate targetDeploymentResourceNode = context.getReplacements().get(target.getName());
-        Map<String, AbstractPropertyValue> targetDeploymentResourceNodeProps = context.getYamlResources().get(targetDeploymentResourceNode.getName());
-        String podAutoScalerName = generateUniqueKubeName(context.getFlowExecutionContext(), resourceBaseName);
-
-        feedPropertyValue(podAutoScalerResourceNode.getProperties(), "resource_type", new ScalarPropertyValue("hpa"), false);
-        feedPropertyValue(podAutoScalerResourceNode.getProperties(), "resource_id", new ScalarPropertyValue(podAutoScalerName), false);
-
-        // fill the future JSON spec
-        feedPropertyValue(podAutoScalerResourceNodeProperties, "resource_def.kind", "HorizontalPodAutoscaler", false);
-        feedPropertyValue(podAutoScalerResourceNodeProperties, "resource_def.apiVersion", "autoscaling/v2beta1", false);
-        feedPropertyValue(podAutoScalerResourceNodeProperties, "resource_def.metadata.name", podAutoScalerName, false);
-        feedPropertyValue(podAutoScalerResourceNodeProperties, "resource_def.metadata.labels.a4c_id", podAutoScalerName, false);
-
-        // Do this to make sure integer values are not serialized as string
-        ComplexPropertyValue spec = CloneUtil.clone((ComplexPropertyValue) policyTemplate.getProperties().get("spec"));
-        PolicyType policyType = ToscaContext.get(PolicyType.class, policyTemplate.getType());
-        PropertyDefinition propertyDefinition = policyType.getProperties().get("spec");
-        Map<String, Object> transformed = safe((Map<String, Object>) getTransformedValue(spec, propertyDefinition, ""));
-
-        // get targeted resource identification properties
-        AbstractPropertyValue apiVersionProperty = PropertyUtil.getPropertyValueFromPath(targetDeploymentResourceNodeProps, "resource_def.apiVersion");
-        feedPropertyValue(podAutoScalerResourceNodeProperties, "resource_def.spec.scaleTargetRef.apiVersion", apiVersionProperty, false);
-        AbstractPropertyValue kindProperty = PropertyUtil.getPropertyValueFromPath(targetDeploymentResourceNodeProps, "resource_def.kind");
-        feedPropertyValue(podAutoScalerResourceNodeProperties, "resource_def.spec.scaleTargetRef.kind", kindProperty, false);
-        AbstractPropertyValue nameProperty = PropertyUtil.getPropertyValueFromPath(targetDeploymentResourceNodeProps, "resource_def.metadata.name");
-        feedPropertyValue(podAutoScalerResourceNodeProperties, "resource_def.spec.scaleTargetRef.name", nameProperty, false);
-
-        // min and max replicas from the policy template
-        feedPropertyValue(podAutoScalerResourceNodeProperties, "resource_def.spec.minReplicas", transformed.get("minReplicas"), false);
-        feedPropertyValue(podAutoScalerResourceNodeProperties, "resource_def.spec.maxReplicas", transformed.get("maxReplicas"), false);
-
-        // clear metrics and add
-        feedPropertyValue(podAutoScalerResourceNodeProperties, "resource_def.spec.metrics", cleanMetricsBaseOnType((List<Object>) transformed.get("metrics")), false);
+    /**
+     * Manage affinity policies : the sections are built when the stage is prepared, and added to the resources on write-back.
+     */
+    private Consumer<KubernetesModifierContext> prepareAffinity(KubernetesModifierContext context) {
+        List<Consumer<KubernetesModifierContext>> writeBacks = Lists.newArrayList();
+        TopologyNavigationUtil.getPoliciesOfType(context.getTopology(), K8S_POLICIES_NODE_AFFINITY_LABEL, true).forEach(
+                policyTemplate -> prepareAffinity(context, policyTemplate, writeBacks)
+        );
+        return c -> writeBacks.forEach(writeBack -> writeBack.accept(c));
     }
 
-    private void manageAffinity(KubernetesModifierContext context, PolicyTemplate policyTemplate) {
+    private void prepareAffinity(KubernetesModifierContext context, PolicyTemplate policyTemplate, List<Consumer<KubernetesModifierContext>> writeBacks) {
         if (CollectionUtils.isEmpty(policyTemplate.getTargets())) {
-            context.log().warn("Affinity policy <{}> is not correctly configured, at least 1 targets is required. It will be ignored.", policyTemplate.getName());
+            writeBacks.add(c -> c.log().warn("Affinity policy <{}> is not correctly configured, at least 1 targets is required. It will be ignored.", policyTemplate.getName()));
             return;
         }
 
@@ -767,38 +644,51 @@ public class KubernetesAdapterModifier extends AbstractKubernetesModifier {
                 policyTemplate,
                 context.getTopology(),
                 K8S_TYPES_KUBEDEPLOYMENT,
-                invalidName -> context.log().warn("Auto-scaling policy <{}>: will ignore target <{}> as it IS NOT an instance of <{}>.",
+                invalidName -> writeBacks.add(c -> c.log().warn("Auto-scaling policy <{}>: will ignore target <{}> as it IS NOT an instance of <{}>.",
                         policyTemplate.getName(),
                         invalidName,
                         K8S_TYPES_KUBEDEPLOYMENT
-                ));
+                )));
 
         List<Object> expr = AffinitiyHelper.buildExpression(policyTemplate);
         if (expr == null) {
-            context.log().warn(
+            writeBacks.add(c -> c.log().warn(
                     "Node label Placement policy <{}> is not correctly configured, either \"labels\" or \"matchExpressions\" property is required. It will be ignored.",
                     policyTemplate.getName()
-            );
+            ));
         }
-        validTargets.forEach(nodeTemplate -> addAffinity(context, policyTemplate, nodeTemplate,expr));
+        validTargets.forEach(nodeTemplate -> {
+            Map<String,Object> affinitySection = AffinitiyHelper.buildAffinitySection(context,nodeTemplate,expr);
+            writeBacks.add(c -> addAffinity(c, policyTemplate, nodeTemplate, affinitySection));
+        });
     }
 
-    private void addAffinity(KubernetesModifierContext context, PolicyTemplate policy, NodeTemplate target,List<Object> expr) {
+    private void addAffinity(KubernetesModifierContext context, PolicyTemplate policy, NodeTemplate target, Map<String,Object> affinitySection) {
         context.log().info("Node label placement policy <{}>: configured for node {}", policy.getName(), target.getName());
         log.debug("Node label placement policy <{}>: configured for node {}", policy.getName(), target.getName());
 
-        Map<String,Object> affinitySection = AffinitiyHelper.buildAffinitySection(context,target,expr);
         log.info("Value: {}",affinitySection);
 
         NodeTemplate resource = context.getReplacements().get(target.getName());
-        Map<String, AbstractPropertyValue> yaml = context.getYamlResources().get(resource.getName());
+        ResourceDocument yaml = context.getYamlResources().get(resource.getName());
 
-        feedPropertyValue(yaml, "resource_def.spec.template.spec.affinity.nodeAffinity.preferredDuringSchedulingIgnoredDuringExecution", affinitySection, true);
+        RESOURCE_DEF_PREFERRED_NODE_AFFINITY.append(yaml, affinitySection);
+    }
+
+    /**
+     * Manage anti-affinity policies : the sections are built when the stage is prepared, and added to the resources on write-back.
+     */
+    private Consumer<KubernetesModifierContext> prepareAntiAffinity(KubernetesModifierContext context) {
+        List<Consumer<KubernetesModifierContext>> writeBacks = Lists.newArrayList();
+        TopologyNavigationUtil.getPoliciesOfType(context.getTopology(), K8S_POLICIES_ANTI_AFFINITY_LABEL, true).forEach(
+                policyTemplate -> prepareAntiAffinity(context, policyTemplate, writeBacks)
+        );
+        return c -> writeBacks.forEach(writeBack -> writeBack.accept(c));
     }
 
-    private void manageAntiAffinity(KubernetesModifierContext context, PolicyTemplate policyTemplate) {
+    private void prepareAntiAffinity(KubernetesModifierContext context, PolicyTemplate policyTemplate, List<Consumer<KubernetesModifierContext>> writeBacks) {
         if (safe(policyTemplate.getTargets()).size() < 2) {
-            context.log().warn("Anti-affinity policy <{}> is not correctly configured, at least 2 targets are required. It will be ignored.", policyTemplate.getName());
+            writeBacks.add(c -> c.log().warn("Anti-affinity policy <{}> is not correctly configured, at least 2 targets are required. It will be ignored.", policyTemplate.getName()));
             return;
         }
 
@@ -806,67 +696,51 @@ public class KubernetesAdapterModifier extends AbstractKubernetesModifier {
                 policyTemplate,
                 context.getTopology(),
                 K8S_TYPES_KUBEDEPLOYMENT,
-                invalidName -> context.log().warn("Anti-affinity policy <{}>: will ignore target <{}> as it IS NOT an instance of <{}>.",
+                invalidName -> writeBacks.add(c -> c.log().warn("Anti-affinity policy <{}>: will ignore target <{}> as it IS NOT an instance of <{}>.",
                         policyTemplate.getName(),
                         invalidName,
                         K8S_TYPES_KUBEDEPLOYMENT
-                ));
+                )));
 
-        validTargets.forEach(nodeTemplate -> addAntiAffinity(context, policyTemplate, nodeTemplate, validTargets));
+        String level = PropertyUtil.getScalarValue(safe(policyTemplate.getProperties()).get("level"));
+        validTargets.forEach(nodeTemplate -> {
+            Map<String,Object> antiAffinitySection = AntiAffinityHelper.buildAntiAffinitySection(context,level,nodeTemplate,validTargets);
+            writeBacks.add(c -> addAntiAffinity(c, policyTemplate, nodeTemplate, antiAffinitySection));
+        });
     }
 
-    private void addAntiAffinity(KubernetesModifierContext context, PolicyTemplate policy, NodeTemplate target,Set<NodeTemplate> allTargets) {
-        String labelName = generateKubeName(policy.getName());
-        String labelValue = PropertyUtil.getScalarValue(PropertyUtil.getPropertyValueFromPath(target.getProperties(), "metadata.name"));
-
-        String level = PropertyUtil.getScalarValue(safe(policy.getProperties()).get("level"));
-
-        Map<String,Object> antiAffinitySection = AntiAffinityHelper.buildAntiAffinitySection(context,level,target,allTargets);
-
+    private void addAntiAffinity(KubernetesModifierContext context, PolicyTemplate policy, NodeTemplate target, Map<String,Object> antiAffinitySection) {
         context.log().info("Anti-affinity policy <{}>: configured for node {}", policy.getName(), target.getName());
         log.debug("Anti-affinity policy <{}>: configured for node {}", policy.getName(), target.getName());
 
         NodeTemplate resource = context.getReplacements().get(target.getName());
-        Map<String, AbstractPropertyValue> yaml = context.getYamlResources().get(resource.getName());
-
-        feedPropertyValue(yaml, "resource_def.spec.template.spec.affinity.podAntiAffinity.preferredDuringSchedulingIgnoredDuringExecution", antiAffinitySection, true);
-    }
+        ResourceDocument yaml = context.getYamlResources().get(resource.getName());
 
-    private List<Object> cleanMetricsBaseOnType(List<Object> metrics) {
-        if (metrics != null) {
-            metrics.forEach(metric -> {
-                String type = (String) MapUtil.get(metric, "type");
-                // remove all entry that does not match the type defined.
-                // see org.alien4cloud.kubernetes.api.datatypes.autoscaler.MetricSpec for details
-                ((Map<String, Object>) metric).entrySet()
-                        .removeIf(entry -> !"type".equals(entry.getKey()) && !StringUtils.equalsAnyIgnoreCase(entry.getKey(), type));
-            });
-        }
-        return metrics;
+        RESOURCE_DEF_PREFERRED_POD_ANTI_AFFINITY.append(yaml, antiAffinitySection);
     }
 
-    private AbstractPropertyValue resolveContainerInput(Topology topology, NodeTemplate deploymentResource, NodeTemplate nodeTemplate,
+    private AbstractPropertyValue resolveContainerInput(KubernetesModifierContext context, NodeTemplate deploymentResource, NodeTemplate nodeTemplate,
             FunctionEvaluatorContext functionEvaluatorContext, Map<String,
             List<String>> serviceIpAddressesPerDeploymentResource, String inputName,
-            AbstractPropertyValue iValue, FlowExecutionContext context) {
+            AbstractPropertyValue iValue, List<String> warnings) {
         if (iValue instanceof ConcatPropertyValue) {
             ConcatPropertyValue cpv = (ConcatPropertyValue) iValue;
             StringBuilder sb = new StringBuilder();
             for (AbstractPropertyValue param : cpv.getParameters()) {
-                AbstractPropertyValue v = resolveContainerInput(topology, deploymentResource, nodeTemplate, functionEvaluatorContext,
-                        serviceIpAddressesPerDeploymentResource, inputName, param, context);
+                AbstractPropertyValue v = resolveContainerInput(context, deploymentResource, nodeTemplate, functionEvaluatorContext,
+                        serviceIpAddressesPerDeploymentResource, inputName, param, warnings);
                 if (v instanceof ScalarPropertyValue) {
                     sb.append(PropertyUtil.getScalarValue(v));
                 } else {
                     // TODO: we need a AbstractPropertyValue serializer
-                    context.getLog().warn("Some element in concat operation for input <" + inputName + "> (" + serializePropertyValue(param)+ ") of container <" + nodeTemplate.getName() + "> resolved to a complex result. Let's ignore it.");
+                    warnings.add("Some element in concat operation for input <" + inputName + "> (" + serializePropertyValue(param)+ ") of container <" + nodeTemplate.getName() + "> resolved to a complex result. Let's ignore it.");
                 }
             }
             return new ScalarPropertyValue(sb.toString());
         }
         if (iValue instanceof FunctionPropertyValue && ((FunctionPropertyValue)iValue).getTemplateName().endsWith(ToscaFunctionConstants.TARGET)) {
             FunctionPropertyValue fpv = (FunctionPropertyValue)iValue;
-            Optional<AbstractPropertyValue> pv = resolveTargetFunction(topology, deploymentResource, nodeTemplate, functionEvaluatorContext, serviceIpAddressesPerDeploymentResource, fpv, context);
+            Optional<AbstractPropertyValue> pv = resolveTargetFunction(context, deploymentResource, nodeTemplate, functionEvaluatorContext, serviceIpAddressesPerDeploymentResource, fpv);
             if (pv.isPresent()) {
                 return pv.get();
             }
@@ -878,18 +752,18 @@ public class KubernetesAdapterModifier extends AbstractKubernetesModifier {
                 if (propertyValue instanceof PropertyValue) {
                     return propertyValue;
                 } else {
-                    context.getLog().warn("Property is not PropertyValue but <" + propertyValue.getClass() + "> for input <" + inputName + "> (" + serializePropertyValue(propertyValue)+ ") of container <" + nodeTemplate.getName() + ">");
+                    warnings.add("Property is not PropertyValue but <" + propertyValue.getClass() + "> for input <" + inputName + "> (" + serializePropertyValue(propertyValue)+ ") of container <" + nodeTemplate.getName() + ">");
                 }
             }
         } catch (IllegalArgumentException iae) {
-            context.getLog().warn("Can't resolve value for input <" + inputName + "> (" + serializePropertyValue(iValue)+ ") of container <" + nodeTemplate.getName() + ">, error was : " + iae.getMessage());
+            warnings.add("Can't resolve value for input <" + inputName + "> (" + serializePropertyValue(iValue)+ ") of container <" + nodeTemplate.getName() + ">, error was : " + iae.getMessage());
         }
         return null;
     }
 
-    private Optional<AbstractPropertyValue> resolveTargetFunction(Topology topology, NodeTemplate deploymentResource, NodeTemplate nodeTemplate,
+    private Optional<AbstractPropertyValue> resolveTargetFunction(KubernetesModifierContext context, NodeTemplate deploymentResource, NodeTemplate nodeTemplate,
                                                                   FunctionEvaluatorContext functionEvaluatorContext, Map<String, List<String>> serviceIpAddressesPerDeploymentResource,
-                                                                  FunctionPropertyValue fpv, FlowExecutionContext context) {
+                                                                  FunctionPropertyValue fpv) {
         Optional<AbstractPropertyValue> result = Optional.empty();
         if (fpv.getParameters().size() < 3) {
             // we have an issue
@@ -905,27 +779,26 @@ public class KubernetesAdapterModifier extends AbstractKubernetesModifier {
         }
         // we take the first node in target list
         RelationshipTemplate targetRelationship = targetRelationships.iterator().next();
-        NodeTemplate targetNode = topology.getNodeTemplates().get(targetRelationship.getTarget());
-        NodeType targetNodeType = ToscaContext.get(NodeType.class, targetNode.getType());
+        NodeTemplate targetNode = context.getTopology().getNodeTemplates().get(targetRelationship.getTarget());
+        KubeTypeRegistry types = context.getTypes();
         Capability targetCapability = targetNode.getCapabilities().get(targetRelationship.getTargetedCapabilityName());
         String elementNameToFetch = fpv.getElementNameToFetch();
         boolean searchForCapabilityElement = fpv.getParameters().size() == 4;
         if (elementNameToFetch.equals("ip_address")) {
             // resolve ip_address
-            String ip_address = resolveIpAddress(functionEvaluatorContext, nodeTemplate, targetNode, targetNodeType, targetRelationship, serviceIpAddressesPerDeploymentResource, deploymentResource);
+            String ip_address = resolveIpAddress(context, nodeTemplate, targetNode, targetRelationship, serviceIpAddressesPerDeploymentResource, deploymentResource);
             if (ip_address != null) {
                 return Optional.of(new ScalarPropertyValue(ip_address));
             }
         }
 
-        CapabilityType capabilityType = ToscaContext.get(CapabilityType.class, targetCapability.getType());
-        if (ToscaTypeUtils.isOfType(capabilityType, A4C_CAPABILITIES_PROXY)) {
+        if (types.isCapabilityOfType(targetCapability.getType(), A4C_CAPABILITIES_PROXY)) {
             // The targeted capability is of type proxy
             // we are looking for
             //  - a capability element but it doesn't exist in the proxy capability
             //  - a node element but it doesn't exist in the target node
             // So we recursively resolve real target behind this proxy capability
-            AbstractPropertyValue pv = resolveProxyfiedTargetFunction(fpv, functionEvaluatorContext, targetNode, targetCapability, targetRelationship, elementNameToFetch, searchForCapabilityElement);
+            AbstractPropertyValue pv = resolveProxyfiedTargetFunction(types, fpv, functionEvaluatorContext, targetNode, targetCapability, targetRelationship, elementNameToFetch, searchForCapabilityElement);
             if (pv != null) {
                 return Optional.of(pv);
             }
@@ -943,18 +816,18 @@ public class KubernetesAdapterModifier extends AbstractKubernetesModifier {
         return Optional.empty();
     }
 
-    private String resolveIpAddress(FunctionEvaluatorContext functionEvaluatorContext, NodeTemplate sourceNode, NodeTemplate targetNode, NodeType targetNodeType, RelationshipTemplate targetRelationship, Map<String, List<String>> serviceIpAddressesPerDeploymentResource, NodeTemplate deploymentResource) {
-        if (ToscaTypeUtils.isOfType(targetNodeType, K8S_TYPES_KUBECONTAINER)) {
+    private String resolveIpAddress(KubernetesModifierContext context, NodeTemplate sourceNode, NodeTemplate targetNode, RelationshipTemplate targetRelationship, Map<String, List<String>> serviceIpAddressesPerDeploymentResource, NodeTemplate deploymentResource) {
+        KubeTypeRegistry types = context.getTypes();
+        if (types.isNodeOfType(targetNode.getType(), K8S_TYPES_KUBECONTAINER)) {
             // the target is a container
-            if (TopologyNavigationUtil.getImmediateHostTemplate(functionEvaluatorContext.getTopology(), sourceNode)
-                    == TopologyNavigationUtil.getImmediateHostTemplate(functionEvaluatorContext.getTopology(), targetNode)) {
+            if (context.getHostChains().getImmediateHost(sourceNode) == context.getHostChains().getImmediateHost(targetNode)) {
                 // both containers are on the same deployment, they can communicate using 'localhost'
                 return "localhost";
             } else {
                 // both container are in different deployments, they can not be linked directly
                 // a service has been previously created so will never occur
             }
-        } else if (ToscaTypeUtils.isOfType(targetNodeType, K8S_TYPES_KUBE_SERVICE)) {
+        } else if (types.isNodeOfType(targetNode.getType(), K8S_TYPES_KUBE_SERVICE)) {
             return resolveDependency(targetNode, serviceIpAddressesPerDeploymentResource, deploymentResource.getName());
         } else if (targetNode instanceof ServiceNodeTemplate) {
             String attributeName = "capabilities." + targetRelationship.getTargetedCapabilityName() + ".ip_address";
@@ -965,7 +838,7 @@ public class KubernetesAdapterModifier extends AbstractKubernetesModifier {
         return null;
     }
 
-    private AbstractPropertyValue resolveProxyfiedTargetFunction(FunctionPropertyValue fpv, FunctionEvaluatorContext functionEvaluatorContext, NodeTemplate node, Capability capability, RelationshipTemplate relationship, String elementNameToFetch, boolean searchForCapabilityElement) {
+    private AbstractPropertyValue resolveProxyfiedTargetFunction(KubeTypeRegistry types, FunctionPropertyValue fpv, FunctionEvaluatorContext functionEvaluatorContext, NodeTemplate node, Capability capability, RelationshipTemplate relationship, String elementNameToFetch, boolean searchForCapabilityElement) {
         // a proxy capability proxify a requirement having the same name (by convention)
         // TODO: secure it !
         String proxyfiedRequirement = ((ScalarPropertyValue)capability.getProperties().get("proxy_for")).getValue();
@@ -977,8 +850,7 @@ public class KubernetesAdapterModifier extends AbstractKubernetesModifier {
         RelationshipTemplate targetRelationship = targetRelationships.iterator().next();
         NodeTemplate targetNode = functionEvaluatorContext.getTopology().getNodeTemplates().get(targetRelationship.getTarget());
         Capability targetCapability = targetNode.getCapabilities().get(targetRelationship.getTargetedCapabilityName());
-        CapabilityType capabilityType = ToscaContext.get(CapabilityType.class, targetCapability.getType());
-        if (ToscaTypeUtils.isOfType(capabilityType, A4C_CAPABILITIES_PROXY)
+        if (types.isCapabilityOfType(targetCapability.getType(), A4C_CAPABILITIES_PROXY)
                 && ((searchForCapabilityElement && !targetCapability.getProperties().containsKey(elementNameToFetch))
                 || (!searchForCapabilityElement && !targetNode.getProperties().containsKey(elementNameToFetch)))) {
             // The targeted capability is of type proxy
@@ -986,7 +858,7 @@ public class KubernetesAdapterModifier extends AbstractKubernetesModifier {
             //  - a capability element but it doesn't exist in the proxy capability
             //  - a node element but it doesn't exist in the target node
             // So we recursively resolve real target behind this proxy capability
-            return resolveProxyfiedTargetFunction(fpv, functionEvaluatorContext, targetNode, targetCapability, targetRelationship, elementNameToFetch, searchForCapabilityElement);
+            return resolveProxyfiedTargetFunction(types, fpv, functionEvaluatorContext, targetNode, targetCapability, targetRelationship, elementNameToFetch, searchForCapabilityElement);
         } else {
             // The real proxyfied target has been found, let's resolve the element we are looking for
             List<String> params = new ArrayList<>();
@@ -1006,204 +878,202 @@ public class KubernetesAdapterModifier extends AbstractKubernetesModifier {
         }
     }
 
-    private void manageContainer(KubernetesModifierContext context, NodeTemplate containerNode, FunctionEvaluatorContext functionEvaluatorContext, Map<String, List<String>> serviceIpAddressesPerDeploymentResource) {  {
-            String containerK8sName = generateUniqueKubeName(context.getFlowExecutionContext(), containerNode.getName());
+    /**
+     * Change the topology for the given container : name, endpoints and config maps.
+     *
+     * @return the config map factories of the container, per input prefix.
+     */
+    private Map<String, List<NodeTemplate>> prepareContainer(KubernetesModifierContext context, NodeTemplate containerNode, NodeTemplate controllerResource) {
+        String containerK8sName = generateUniqueKubeName(context.getFlowExecutionContext(), KubeNameAllocator.ROLE_CONTAINER, containerNode.getName());
 
-            // build and set a unique name for the container
-            setNodePropertyPathValue(context.getCsar(), context.getTopology(), containerNode, "container.name", new ScalarPropertyValue(containerK8sName));
+        // build and set a unique name for the container
+        setNodePropertyPathValue(context.getCsar(), context.getTopology(), containerNode, "container.name", new ScalarPropertyValue(containerK8sName));
 
-            // exposed enpoint ports
-            manageContainerEndpoints(context.getCsar(), context.getTopology(), containerNode, context.getFlowExecutionContext());
+        // exposed enpoint ports
+        manageContainerEndpoints(context.getCsar(), context.getTopology(), containerNode, context.getFlowExecutionContext());
 
-            // get the hosting node
-            NodeTemplate controllerNode = TopologyNavigationUtil.getImmediateHostTemplate(context.getTopology(), containerNode);
-            // find the replacer
-            NodeTemplate controllerResource = context.getReplacements().get(controllerNode.getName());
-            Map<String, AbstractPropertyValue> controllerResourceNodeProperties = context.getYamlResources().get(controllerResource.getName());
+        ResourceDocument controllerResourceNodeProperties = context.getYamlResources().get(controllerResource.getName());
 
-            setNodeTagValue(controllerResource, A4C_KUBERNETES_ADAPTER_MODIFIER_TAG_CONTAINER + containerNode.getName(), containerK8sName);
+        setNodeTagValue(controllerResource, A4C_KUBERNETES_ADAPTER_MODIFIER_TAG_CONTAINER + containerNode.getName(), containerK8sName);
 
         // if the container if of type ConfigurableDockerContainer we must create a ConfigMapFactory per config_settings entry
-            // a map of input_prefix -> List<NodeTemplate> (where NodeTemplate is an instance of ConfigMapFactory)
-            // we can have several configMapFactory using the same prefix
-            Map<String, List<NodeTemplate>> configMapFactories = Maps.newHashMap();
-
-            // resolve env variables
-//            Set<NodeTemplate> hostedContainers = TopologyNavigationUtil.getSourceNodes(topology, containerNode, "host");
-//            for (NodeTemplate nodeTemplate : hostedContainers) {
-                // we should have a single hosted docker container
-
-//                AbstractPropertyValue propertyValue = PropertyUtil.getPropertyValueFromPath(safe(nodeTemplate.getProperties()), "docker_run_args");
-//                if (propertyValue != null) {
-//                    if (propertyValue instanceof ListPropertyValue) {
-//                        setNodePropertyPathValue(csar, topology, containerNode, "container.args", propertyValue);
-//                    } else {
-//                        context.getLog().warn("Ignoring args for container <" + nodeTemplate.getName() + ">, it should be a list but it is not");
-//                    }
-//                }
-
-                NodeType containerType = ToscaContext.get(NodeType.class, containerNode.getType());
-                if (ToscaTypeUtils.isOfType(containerType, K8S_TYPES_CONFIGURABLE_KUBE_CONTAINER)) {
-                    AbstractPropertyValue config_settings = safe(containerNode.getProperties()).get("config_settings");
-                    if (config_settings != null && config_settings instanceof ListPropertyValue) {
-                        ListPropertyValue config_settings_list = (ListPropertyValue)config_settings;
-                        for (Object config_setting_obj : config_settings_list.getValue()) {
-                            if (config_setting_obj instanceof Map) {
-                                Map<String, String> config_setting_map = (Map<String, String>)config_setting_obj;
-                                String mount_path = config_setting_map.get("mount_path");
-                                String mount_subPath = config_setting_map.get("mount_subPath");
-                                String input_prefix = config_setting_map.get("input_prefix");
-                                String config_path = config_setting_map.get("config_path");
-
-                                NodeTemplate configMapFactoryNode = addNodeTemplate(context.getCsar(),context.getTopology(), containerNode.getName() + "_ConfigMap_" + input_prefix, KubeTopologyUtils.K8S_TYPES_CONFIG_MAP_FACTORY,
-                                        K8S_CSAR_VERSION);
-                                setKubeConfig(context, configMapFactoryNode);
-
-                                AbstractPropertyValue containerNameAPV = PropertyUtil.getPropertyValueFromPath(safe(containerNode.getProperties()), "container.name");
-                                String containerName = ((ScalarPropertyValue)containerNameAPV).getValue();
-                                String configMapName = generateUniqueKubeName(context.getFlowExecutionContext(), containerName + "_ConfigMap_" + input_prefix);
-                                configMapName = configMapName.replaceAll("--", "-");
-                                configMapName = configMapName.replaceAll("\\.", "-");
-                                if (configMapName.endsWith("-")) {
-                                    configMapName = configMapName.substring(0, configMapName.length() -1);
-                                }
-                                setNodePropertyPathValue(context.getCsar(), context.getTopology(), configMapFactoryNode, "name", new ScalarPropertyValue(configMapName));
-                                DeploymentArtifact configsArtifact = configMapFactoryNode.getArtifacts().get("configs");
-                                configsArtifact.setArchiveName(context.getTopology().getArchiveName());
-                                configsArtifact.setArchiveVersion(context.getTopology().getArchiveVersion());
-                                configsArtifact.setArtifactRepository(ArtifactRepositoryConstants.ALIEN_TOPOLOGY_REPOSITORY);
-                                // the artifact ref using the value found in setting
-                                configsArtifact.setArtifactRef(config_path);
-
-                                List<NodeTemplate> configMapFactoryList = configMapFactories.get(input_prefix);
-                                if (!configMapFactories.containsKey(input_prefix)) {
-                                    configMapFactories.put(input_prefix, Lists.newArrayList());
-                                }
-                                configMapFactories.get(input_prefix).add(configMapFactoryNode);
-
-                                // add the configMap to the deployment
-                                Map<String, Object> volumeEntry = Maps.newHashMap();
-                                Map<String, Object> volumeSpec = Maps.newHashMap();
-                                volumeSpec.put("name", configMapName);
-                                volumeEntry.put("name", configMapName);
-                                volumeEntry.put("configMap", volumeSpec);
-                                feedPropertyValue(controllerResourceNodeProperties, "resource_def.spec.template.spec.volumes", volumeEntry, true);
-
-                                // add the volume to the container
-                                Map<String, Object> containerVolumeEntry = Maps.newHashMap();
-                                containerVolumeEntry.put("name", configMapName);
-                                containerVolumeEntry.put("mountPath", mount_path);
-                                if (StringUtils.isNotEmpty(mount_subPath)) {
-                                    containerVolumeEntry.put("subPath", mount_subPath);
-                                }
-                                appendNodePropertyPathValue(context.getCsar(), context.getTopology(), containerNode, "container.volumeMounts", new ComplexPropertyValue(containerVolumeEntry));
-
-                                // add all a dependsOn relationship between the configMapFactory and each dependsOn target of deploymentResource
-                                Set<RelationshipTemplate> dependsOnRelationships = TopologyNavigationUtil.getTargetRelationships(controllerResource, "dependency");
-                                dependsOnRelationships.forEach(dependsOnRelationship -> {
-                                    addRelationshipTemplate(context, configMapFactoryNode, dependsOnRelationship.getTarget(),
-                                            NormativeRelationshipConstants.DEPENDS_ON, "dependency", "feature");
-                                    removeRelationship(context.getCsar(), context.getTopology(), controllerResource.getName(), dependsOnRelationship.getName());
-                                });
-                                // and finally add a dependsOn between the deploymentResource and the configMapFactory
-                                addRelationshipTemplate(context, controllerResource, configMapFactoryNode.getName(),
-                                        NormativeRelationshipConstants.DEPENDS_ON, "dependency", "feature");
-                            }
+        // a map of input_prefix -> List<NodeTemplate> (where NodeTemplate is an instance of ConfigMapFactory)
+        // we can have several configMapFactory using the same prefix
+        Map<String, List<NodeTemplate>> configMapFactories = Maps.newHashMap();
+
+        if (context.getTypes().isNodeOfType(containerNode.getType(), K8S_TYPES_CONFIGURABLE_KUBE_CONTAINER)) {
+            AbstractPropertyValue config_settings = safe(containerNode.getProperties()).get("config_settings");
+            if (config_settings != null && config_settings instanceof ListPropertyValue) {
+                ListPropertyValue config_settings_list = (ListPropertyValue)config_settings;
+                for (Object config_setting_obj : config_settings_list.getValue()) {
+                    if (config_setting_obj instanceof Map) {
+                        Map<String, String> config_setting_map = (Map<String, String>)config_setting_obj;
+                        String mount_path = config_setting_map.get("mount_path");
+                        String mount_subPath = config_setting_map.get("mount_subPath");
+                        String input_prefix = config_setting_map.get("input_prefix");
+                        String config_path = config_setting_map.get("config_path");
+
+                        NodeTemplate configMapFactoryNode = addNodeTemplate(context, containerNode.getName() + "_ConfigMap_" + input_prefix, KubeTopologyUtils.K8S_TYPES_CONFIG_MAP_FACTORY,
+                                K8S_CSAR_VERSION);
+                        setKubeConfig(context, configMapFactoryNode);
+
+                        AbstractPropertyValue containerNameAPV = CONTAINER_NAME.get(safe(containerNode.getProperties()));
+                        String containerName = ((ScalarPropertyValue)containerNameAPV).getValue();
+                        String configMapName = generateUniqueKubeName(context.getFlowExecutionContext(), KubeNameAllocator.ROLE_CONFIG_MAP, containerName + "_ConfigMap_" + input_prefix);
+                        setNodePropertyPathValue(context.getCsar(), context.getTopology(), configMapFactoryNode, "name", new ScalarPropertyValue(configMapName));
+                        DeploymentArtifact configsArtifact = configMapFactoryNode.getArtifacts().get("configs");
+                        configsArtifact.setArchiveName(context.getTopology().getArchiveName());
+                        configsArtifact.setArchiveVersion(context.getTopology().getArchiveVersion());
+                        configsArtifact.setArtifactRepository(ArtifactRepositoryConstants.ALIEN_TOPOLOGY_REPOSITORY);
+                        // the artifact ref using the value found in setting
+                        configsArtifact.setArtifactRef(config_path);
+
+                        List<NodeTemplate> configMapFactoryList = configMapFactories.get(input_prefix);
+                        if (!configMapFactories.containsKey(input_prefix)) {
+                            configMapFactories.put(input_prefix, Lists.newArrayList());
                         }
+                        configMapFactories.get(input_prefix).add(configMapFactoryNode);
+
+                        // add the configMap to the deployment
+                        Map<String, Object> volumeEntry = Maps.newHashMap();
+                        Map<String, Object> volumeSpec = Maps.newHashMap();
+                        volumeSpec.put("name", configMapName);
+                        volumeEntry.put("name", configMapName);
+                        volumeEntry.put("configMap", volumeSpec);
+                        RESOURCE_DEF_SPEC_TEMPLATE_SPEC_VOLUMES.append(controllerResourceNodeProperties, volumeEntry);
+
+                        // add the volume to the container
+                        Map<String, Object> containerVolumeEntry = Maps.newHashMap();
+                        containerVolumeEntry.put("name", configMapName);
+                        containerVolumeEntry.put("mountPath", mount_path);
+                        if (StringUtils.isNotEmpty(mount_subPath)) {
+                            containerVolumeEntry.put("subPath", mount_subPath);
+                        }
+                        appendNodePropertyPathValue(context.getCsar(), context.getTopology(), containerNode, "container.volumeMounts", new ComplexPropertyValue(containerVolumeEntry));
+
+                        // add all a dependsOn relationship between the configMapFactory and each dependsOn target of deploymentResource
+                        Set<RelationshipTemplate> dependsOnRelationships = TopologyNavigationUtil.getTargetRelationships(controllerResource, "dependency");
+                        dependsOnRelationships.forEach(dependsOnRelationship -> {
+                            addRelationshipTemplate(context, configMapFactoryNode, dependsOnRelationship.getTarget(),
+                                    NormativeRelationshipConstants.DEPENDS_ON, "dependency", "feature");
+                            removeRelationship(context, controllerResource.getName(), dependsOnRelationship.getName());
+                        });
+                        // and finally add a dependsOn between the deploymentResource and the configMapFactory
+                        addRelationshipTemplate(context, controllerResource, configMapFactoryNode.getName(),
+                                NormativeRelationshipConstants.DEPENDS_ON, "dependency", "feature");
                     }
                 }
+            }
+        }
 
-                Operation createOp = KubeTopologyUtils.getContainerImageOperation(containerNode);
-                if (createOp != null) {
-                    safe(createOp.getInputParameters()).forEach((inputName, iValue) -> {
-                        if (iValue instanceof AbstractPropertyValue) {
-                            AbstractPropertyValue v =
-                                    resolveContainerInput(context.getTopology(), controllerResource, containerNode, functionEvaluatorContext,
-                                            serviceIpAddressesPerDeploymentResource, inputName, (AbstractPropertyValue) iValue, context.getFlowExecutionContext());
-                            if (v != null) {
-                                if (inputName.startsWith("ENV_")) {
-                                    String envKey = inputName.substring(4);
-                                    ComplexPropertyValue envEntry = new ComplexPropertyValue();
-                                    envEntry.setValue(Maps.newHashMap());
-                                    envEntry.getValue().put("name", envKey);
-                                    envEntry.getValue().put("value", v);
-                                    try {
-                                        appendNodePropertyPathValue(context.getCsar(), context.getTopology(), containerNode, "container.env", envEntry);
-                                        context.log().info("Env variable <" + envKey + "> for container <" + containerNode.getName() + "> set to value <" + serializePropertyValue(v) + ">");
-                                    } catch(Exception e) {
-                                        context.log().warn("Not able to set env variable <" + envKey + "> to value <" + serializePropertyValue(v) + "> for container <" + containerNode.getName() + ">, error was : " + e.getMessage());
-                                    }
-                                } else if (!configMapFactories.isEmpty()) {
-                                    // maybe it's a config that should be associated with a configMap
-                                    for (Map.Entry<String, List<NodeTemplate>> configMapFactoryEntry : configMapFactories.entrySet()) {
-                                        String inputPrefix = configMapFactoryEntry.getKey();
-                                        if (inputName.startsWith(inputPrefix)) {
-                                            // ok this input is related to this configMapFactory
-                                            String varName = inputName.substring(inputPrefix.length());
-                                            if (!(v instanceof ScalarPropertyValue)) {
-                                                context.log().warn("Ignoring INPUT named <" + inputName + "> for container <" + containerNode.getName() + "> because the value is not a scalar (" + serializePropertyValue(v) + ") and cannot be added to a configMap");
-                                            } else {
-                                                for (NodeTemplate configMapFactory : configMapFactoryEntry.getValue()) {
-                                                    try {
-                                                        setNodePropertyPathValue(context.getCsar(), context.getTopology(), configMapFactory, "input_variables." + varName, v);
-                                                        context.log().info("Successfully set INPUT named <" + inputName + "> with value <" + serializePropertyValue(v) + "> to configMap <" + configMapFactory.getName() + "> for container <" + containerNode.getName() + ">");
-                                                    } catch(Exception e) {
-                                                        context.log().warn("Not able to set INPUT named <" + inputName + "> with value <" + serializePropertyValue(v) + "> to configMap, <" + configMapFactory.getName() + "> for container <" + containerNode.getName() + ">, error was : " + e.getMessage());
-                                                    }
-                                                }
-                                            }
-                                            break;
+        return configMapFactories;
+    }
+
+    /**
+     * Resolve the inputs of the given container. Only reads the topology, so that the containers of different controller resources can be
+     * resolved concurrently.
+     */
+    private void resolveContainerInputs(KubernetesModifierContext context, KubeContainerGroup group, NodeTemplate containerNode,
+            FunctionEvaluatorContext functionEvaluatorContext) {
+        List<KubeContainerGroup.ResolvedInput> resolvedInputs = group.getResolvedInputs(containerNode);
+        Operation createOp = KubeTopologyUtils.getContainerImageOperation(containerNode);
+        if (createOp != null) {
+            safe(createOp.getInputParameters()).forEach((inputName, iValue) -> {
+                KubeContainerGroup.ResolvedInput resolvedInput = new KubeContainerGroup.ResolvedInput(containerNode, inputName, iValue);
+                if (iValue instanceof AbstractPropertyValue) {
+                    resolvedInput.setValue(resolveContainerInput(context, group.getControllerResource(), containerNode, functionEvaluatorContext,
+                            group.getServiceIpAddressesPerDeploymentResource(), inputName, (AbstractPropertyValue) iValue, resolvedInput.getWarnings()));
+                }
+                resolvedInputs.add(resolvedInput);
+            });
+        }
+    }
+
+    /**
+     * Apply the resolved inputs of the given container, then add it to its controller resource.
+     */
+    private void completeContainer(KubernetesModifierContext context, KubeContainerGroup group, NodeTemplate containerNode,
+            Map<String, List<NodeTemplate>> configMapFactories) {
+        NodeTemplate controllerResource = group.getControllerResource();
+        ResourceDocument controllerResourceNodeProperties = context.getYamlResources().get(controllerResource.getName());
+
+        // set env variables
+        for (KubeContainerGroup.ResolvedInput resolvedInput : group.getResolvedInputs(containerNode)) {
+            String inputName = resolvedInput.getInputName();
+            Object iValue = resolvedInput.getInputValue();
+            resolvedInput.getWarnings().forEach(warning -> context.log().warn(warning));
+            if (iValue instanceof AbstractPropertyValue) {
+                AbstractPropertyValue v = resolvedInput.getValue();
+                if (v != null) {
+                    if (inputName.startsWith("ENV_")) {
+                        String envKey = inputName.substring(4);
+                        ComplexPropertyValue envEntry = new ComplexPropertyValue();
+                        envEntry.setValue(Maps.newHashMap());
+                        envEntry.getValue().put("name", envKey);
+                        envEntry.getValue().put("value", v);
+                        try {
+                            appendNodePropertyPathValue(context.getCsar(), context.getTopology(), containerNode, "container.env", envEntry);
+                            context.log().info("Env variable <" + envKey + "> for container <" + containerNode.getName() + "> set to value <" + serializePropertyValue(v) + ">");
+                        } catch(Exception e) {
+                            context.log().warn("Not able to set env variable <" + envKey + "> to value <" + serializePropertyValue(v) + "> for container <" + containerNode.getName() + ">, error was : " + e.getMessage());
+                        }
+                    } else if (!configMapFactories.isEmpty()) {
+                        // maybe it's a config that should be associated with a configMap
+                        for (Map.Entry<String, List<NodeTemplate>> configMapFactoryEntry : configMapFactories.entrySet()) {
+                            String inputPrefix = configMapFactoryEntry.getKey();
+                            if (inputName.startsWith(inputPrefix)) {
+                                // ok this input is related to this configMapFactory
+                                String varName = inputName.substring(inputPrefix.length());
+                                if (!(v instanceof ScalarPropertyValue)) {
+                                    context.log().warn("Ignoring INPUT named <" + inputName + "> for container <" + containerNode.getName() + "> because the value is not a scalar (" + serializePropertyValue(v) + ") and cannot be added to a configMap");
+                                } else {
+                                    for (NodeTemplate configMapFactory : configMapFactoryEntry.getValue()) {
+                                        try {
+                                            setNodePropertyPathValue(context.getCsar(), context.getTopology(), configMapFactory, "input_variables." + varName, v);
+                                            context.log().info("Successfully set INPUT named <" + inputName + "> with value <" + serializePropertyValue(v) + "> to configMap <" + configMapFactory.getName() + "> for container <" + containerNode.getName() + ">");
+                                        } catch(Exception e) {
+                                            context.log().warn("Not able to set INPUT named <" + inputName + "> with value <" + serializePropertyValue(v) + "> to configMap, <" + configMapFactory.getName() + "> for container <" + containerNode.getName() + ">, error was : " + e.getMessage());
                                         }
                                     }
                                 }
-                            } else {
-                                context.log().warn("Not able to define value for input <" + inputName + "> (" + serializePropertyValue((AbstractPropertyValue)iValue) + ") of container <" + containerNode.getName() + ">");
+                                break;
                             }
-                        } else {
-                            context.log().warn("Input <" + inputName + "> of container <" + containerNode.getName() + "> is ignored since it's not of type AbstractPropertyValue but " + iValue.getClass().getSimpleName());
                         }
-                    });
-                }
-
-//            }
-
-            // populate the service_dependency_lookups property of the deployment resource nodes
-            serviceIpAddressesPerDeploymentResource.forEach((deploymentResourceNodeName, ipAddressLookups) -> {
-                NodeTemplate deploymentResourceNode = context.getTopology().getNodeTemplates().get(deploymentResourceNodeName);
-                StringBuilder serviceDependencyDefinitionsValue = new StringBuilder();
-                for (int i = 0; i < ipAddressLookups.size(); i++) {
-                    if (i > 0) {
-                        serviceDependencyDefinitionsValue.append(",");
                     }
-                    serviceDependencyDefinitionsValue.append("SERVICE_IP_LOOKUP").append(i);
-                    serviceDependencyDefinitionsValue.append(":").append(ipAddressLookups.get(i));
+                } else {
+                    context.log().warn("Not able to define value for input <" + inputName + "> (" + serializePropertyValue((AbstractPropertyValue)iValue) + ") of container <" + containerNode.getName() + ">");
                 }
-                setNodePropertyPathValue(context.getCsar(), context.getTopology(), deploymentResourceNode, "service_dependency_lookups",
-                        new ScalarPropertyValue(serviceDependencyDefinitionsValue.toString()));
-                // we set the same property for each configMapFactory if any
-                configMapFactories.forEach((input_prefix, configMapFactoryNodeTemplate) -> {
-                    configMapFactoryNodeTemplate.iterator().forEachRemaining(nodeTemplate -> {
-                        setNodePropertyPathValue(context.getCsar(), context.getTopology(), nodeTemplate, "service_dependency_lookups",
-                                new ScalarPropertyValue(serviceDependencyDefinitionsValue.toString()));
-                    });
+            } else {
+                context.log().warn("Input <" + inputName + "> of container <" + containerNode.getName() + "> is ignored since it's not of type AbstractPropertyValue but " + iValue.getClass().getSimpleName());
+            }
+        }
+
+        // we set the service_dependency_lookups property of the controller resource for each configMapFactory if any
+        String serviceDependencyLookups = group.getServiceDependencyLookups();
+        if (serviceDependencyLookups != null) {
+            configMapFactories.forEach((input_prefix, configMapFactoryNodeTemplate) -> {
+                configMapFactoryNodeTemplate.iterator().forEachRemaining(nodeTemplate -> {
+                    setNodePropertyPathValue(context.getCsar(), context.getTopology(), nodeTemplate, "service_dependency_lookups",
+                            new ScalarPropertyValue(serviceDependencyLookups));
                 });
             });
+        }
 
-            // add an entry in the deployment resource
-            AbstractPropertyValue propertyValue = PropertyUtil.getPropertyValueFromPath(safe(containerNode.getProperties()), "container");
-            // if a repository is defined concat the repo to the image
-            AbstractPropertyValue repositoryPropertyValue = PropertyUtil.getPropertyValueFromPath(safe(containerNode.getProperties()), "repository");
-            if (repositoryPropertyValue instanceof ScalarPropertyValue && propertyValue instanceof ComplexPropertyValue) {
-                ScalarPropertyValue imagePropValue = (ScalarPropertyValue) ((ComplexPropertyValue) propertyValue).getValue().get("image");
-                String image = ((ScalarPropertyValue) repositoryPropertyValue).getValue() + "/" + imagePropValue.getValue();
-                imagePropValue.setValue(image);
-            }
-            // transform data
-            NodeType nodeType = ToscaContext.get(NodeType.class, containerNode.getType());
-            PropertyDefinition propertyDefinition = nodeType.getProperties().get("container");
-            Object transformedValue = getTransformedValue(propertyValue, propertyDefinition, "");
-            feedPropertyValue(controllerResourceNodeProperties, "resource_def.spec.template.spec.containers", transformedValue, true);
+        // add an entry in the deployment resource
+        AbstractPropertyValue propertyValue = PropertyUtil.getPropertyValueFromPath(safe(containerNode.getProperties()), "container");
+        // if a repository is defined concat the repo to the image
+        AbstractPropertyValue repositoryPropertyValue = PropertyUtil.getPropertyValueFromPath(safe(containerNode.getProperties()), "repository");
+        if (repositoryPropertyValue instanceof ScalarPropertyValue && propertyValue instanceof ComplexPropertyValue) {
+            ScalarPropertyValue imagePropValue = (ScalarPropertyValue) ((ComplexPropertyValue) propertyValue).getValue().get("image");
+            String image = ((ScalarPropertyValue) repositoryPropertyValue).getValue() + "/" + imagePropValue.getValue();
+            imagePropValue.setValue(image);
         }
+        // transform data
+        NodeType nodeType = ToscaContext.get(NodeType.class, containerNode.getType());
+        PropertyDefinition propertyDefinition = nodeType.getProperties().get("container");
+        Object transformedValue = getTransformedValue(propertyValue, propertyDefinition, "");
+        // the container spec is finished : its blocks (resources, probes ...) are shared with the identical ones of the other containers
+        RESOURCE_DEF_SPEC_TEMPLATE_SPEC_CONTAINERS.append(controllerResourceNodeProperties, context.getInterner().intern(transformedValue));
     }
 
     /**
@@ -1211,10 +1081,10 @@ public class KubernetesAdapterModifier extends AbstractKubernetesModifier {
      */
     private void manageContainerEndpoints(Csar csar, Topology topology, NodeTemplate containerNodeTemplate, FlowExecutionContext context) {
         // find every endpoint
+        KubeTypeRegistry types = KubeTypeRegistry.get(context);
         Set<String> endpointNames = Sets.newHashSet();
         for (Map.Entry<String, Capability> e : safe(containerNodeTemplate.getCapabilities()).entrySet()) {
-            CapabilityType capabilityType = ToscaContext.get(CapabilityType.class, e.getValue().getType());
-            if (isOfType(capabilityType, NormativeCapabilityTypes.ENDPOINT)) {
+            if (types.isCapabilityOfType(e.getValue().getType(), NormativeCapabilityTypes.ENDPOINT)) {
                 endpointNames.add(e.getKey());
             }
         }
@@ -1238,37 +1108,15 @@ public class KubernetesAdapterModifier extends AbstractKubernetesModifier {
         appendNodePropertyPathValue(csar, topology, containerNodeTemplate, "container.ports", portPropertyValue);
     }
 
-    private void createJobResource(KubernetesModifierContext context, NodeTemplate jobNode) {
-        NodeTemplate jobResourceNode = addNodeTemplate(context.getCsar(),context.getTopology(), jobNode.getName() + "_Resource", K8S_TYPES_JOB_RESOURCE,
-                K8S_CSAR_VERSION);
-        setKubeConfig(context, jobResourceNode);
-        context.getReplacements().put(jobNode.getName(), jobResourceNode);
-        setNodeTagValue(jobResourceNode, A4C_KUBERNETES_ADAPTER_MODIFIER_TAG + "_created_from", jobNode.getName());
-
-        Map<String, AbstractPropertyValue> jobResourceNodeProperties = Maps.newHashMap();
-        context.getYamlResources().put(jobResourceNode.getName(), jobResourceNodeProperties);
-
-        copyProperty(jobNode, "apiVersion", jobResourceNodeProperties, "resource_def.apiVersion");
-        copyProperty(jobNode, "kind", jobResourceNodeProperties, "resource_def.kind");
-        copyProperty(jobNode, "metadata", jobResourceNodeProperties, "resource_def.metadata");
-
-        AbstractPropertyValue propertyValue = PropertyUtil.getPropertyValueFromPath(safe(jobNode.getProperties()), "spec");
-        NodeType nodeType = ToscaContext.get(NodeType.class, jobNode.getType());
-        PropertyDefinition propertyDefinition = nodeType.getProperties().get("spec");
-        Object transformedValue = getTransformedValue(propertyValue, propertyDefinition, "");
-        feedPropertyValue(jobResourceNodeProperties, "resource_def.spec", transformedValue, false);
-
-    }
-
     private void createDeploymentResource(KubernetesModifierContext context,NodeTemplate deploymentNode) {
 
         // define the name of the deployment
-        ScalarPropertyValue deploymentName = new ScalarPropertyValue(generateUniqueKubeName(context.getFlowExecutionContext(), deploymentNode.getName()));
+        ScalarPropertyValue deploymentName = new ScalarPropertyValue(generateUniqueKubeName(context.getFlowExecutionContext(), KubeNameAllocator.ROLE_DEPLOYMENT, deploymentNode.getName()));
         setNodePropertyPathValue(context.getCsar(), context.getTopology(), deploymentNode, "metadata.name", deploymentName);
         setNodePropertyPathValue(context.getCsar(), context.getTopology(), deploymentNode, "spec.template.metadata.labels.app", deploymentName);
         setNodePropertyPathValue(context.getCsar(), context.getTopology(), deploymentNode, "spec.selector.matchLabels.app", deploymentName);
 
-        NodeTemplate deploymentResourceNode = addNodeTemplate(context.getCsar(),context.getTopology(), deploymentNode.getName() + "_Resource", K8S_TYPES_DEPLOYMENT_RESOURCE,
+        NodeTemplate deploymentResourceNode = addNodeTemplate(context, deploymentNode.getName() + "_Resource", K8S_TYPES_DEPLOYMENT_RESOURCE,
                 K8S_CSAR_VERSION);
         setKubeConfig(context, deploymentResourceNode);
         context.getReplacements().put(deploymentNode.getName(), deploymentResourceNode);
@@ -1278,21 +1126,21 @@ public class KubernetesAdapterModifier extends AbstractKubernetesModifier {
         // not very necessary because the policy here doesn't mean nothing ...
         // changePolicyTarget(topology, deploymentNode, deploymentResourceNode);
 
-        Map<String, AbstractPropertyValue> deploymentResourceNodeProperties = Maps.newHashMap();
+        ResourceDocument deploymentResourceNodeProperties = new ResourceDocument();
         context.getYamlResources().put(deploymentResourceNode.getName(), deploymentResourceNodeProperties);
 
-        copyProperty(deploymentNode, "apiVersion", deploymentResourceNodeProperties, "resource_def.apiVersion");
-        copyProperty(deploymentNode, "kind", deploymentResourceNodeProperties, "resource_def.kind");
-        copyProperty(deploymentNode, "metadata", deploymentResourceNodeProperties, "resource_def.metadata");
+        copyProperty(deploymentNode, "apiVersion", deploymentResourceNodeProperties, RESOURCE_DEF_API_VERSION);
+        copyProperty(deploymentNode, "kind", deploymentResourceNodeProperties, RESOURCE_DEF_KIND);
+        copyProperty(deploymentNode, "metadata", deploymentResourceNodeProperties, RESOURCE_DEF_METADATA);
 
-        AbstractPropertyValue resource_id = PropertyUtil.getPropertyValueFromPath(safe(deploymentNode.getProperties()), "metadata.name");
+        AbstractPropertyValue resource_id = METADATA_NAME.get(safe(deploymentNode.getProperties()));
         setNodePropertyPathValue(context.getCsar(), context.getTopology(), deploymentResourceNode, "resource_id", resource_id);
 
         AbstractPropertyValue propertyValue = PropertyUtil.getPropertyValueFromPath(safe(deploymentNode.getProperties()), "spec");
         NodeType nodeType = ToscaContext.get(NodeType.class, deploymentNode.getType());
         PropertyDefinition propertyDefinition = nodeType.getProperties().get("spec");
         Object transformedValue = getTransformedValue(propertyValue, propertyDefinition, "");
-        feedPropertyValue(deploymentResourceNodeProperties, "resource_def.spec", transformedValue, false);
+        RESOURCE_DEF_SPEC.set(deploymentResourceNodeProperties, transformedValue);
 
         // Copy scalable property of the deployment node into the cluster controller capability of the deployment node.
         Capability scalableCapability = safe(deploymentNode.getCapabilities()).get("scalable");
@@ -1301,7 +1149,7 @@ public class KubernetesAdapterModifier extends AbstractKubernetesModifier {
             if (instPV != null) {
                 PropertyDefinition replicasDef = getInnerPropertyDefinition(propertyDefinition,"replicas");
                 transformedValue = getTransformedValue(instPV, replicasDef, "");
-                feedPropertyValue(deploymentResourceNodeProperties, "resource_def.spec.replicas", transformedValue, false);
+                RESOURCE_DEF_SPEC_REPLICAS.set(deploymentResourceNodeProperties, transformedValue);
             }
         }
 
@@ -1317,12 +1165,32 @@ public class KubernetesAdapterModifier extends AbstractKubernetesModifier {
         }
     }
 
+    /**
+     * Store the kube config once in the topology : a single node holds the config and writes it, on the orchestrator host, in a file named by
+     * its hash. The resource nodes only hold this hash (see {@link #setKubeConfig(KubernetesModifierContext, NodeTemplate)}). The file is
+     * referenced by the environment, so that it is removed once no environment uses it.
+     */
+    private void storeKubeConfig(KubernetesModifierContext context, String kubeConfig) {
+        String kubeConfigRef = BaseEncoding.base16().lowerCase().encode(KubeNameService.sha256(kubeConfig));
+        NodeTemplate kubeConfigStoreNode = addNodeTemplate(context, KUBE_CONFIG_STORE_NAME, K8S_TYPES_KUBE_CONFIG_STORE, K8S_CSAR_VERSION);
+        setNodePropertyPathValue(context.getCsar(), context.getTopology(), kubeConfigStoreNode, "config", new ScalarPropertyValue(kubeConfig));
+        setNodePropertyPathValue(context.getCsar(), context.getTopology(), kubeConfigStoreNode, "config_hash", new ScalarPropertyValue(kubeConfigRef));
+        setNodePropertyPathValue(context.getCsar(), context.getTopology(), kubeConfigStoreNode, "store_ref",
+                new ScalarPropertyValue(StringUtils.defaultString(KubeNameAllocator.getScope(context.getFlowExecutionContext()), kubeConfigRef)));
+        // Store the reference to the kube config and the name of the node that stores it using these keys for later usage
+        context.getFlowExecutionContext().getExecutionCache().put(K8S_TYPES_KUBE_CLUSTER, kubeConfigRef);
+        context.getFlowExecutionContext().getExecutionCache().put(KUBE_CONFIG_STORE_NAME, kubeConfigStoreNode.getName());
+    }
+
     private void setKubeConfig(KubernetesModifierContext context, NodeTemplate resourceNode) {
         Object o = context.getFlowExecutionContext().getExecutionCache().get(K8S_TYPES_KUBE_CLUSTER);
         if (o != null) {
-            String kubeConfig = o.toString();
-            if (StringUtils.isNotEmpty(kubeConfig)) {
-                setNodePropertyPathValue(context.getCsar(), context.getTopology(), resourceNode, "kube_config", new ScalarPropertyValue(kubeConfig));
+            String kubeConfigRef = o.toString();
+            if (StringUtils.isNotEmpty(kubeConfigRef)) {
+                setNodePropertyPathValue(context.getCsar(), context.getTopology(), resourceNode, "kube_config_ref", new ScalarPropertyValue(kubeConfigRef));
+                // the kube config must be stored before the resource is created
+                String kubeConfigStoreNode = (String) context.getFlowExecutionContext().getExecutionCache().get(KUBE_CONFIG_STORE_NAME);
+                addRelationshipTemplate(context, resourceNode, kubeConfigStoreNode, NormativeRelationshipConstants.DEPENDS_ON, "dependency", "feature");
             }
         }
     }
@@ -1334,11 +1202,11 @@ public class KubernetesAdapterModifier extends AbstractKubernetesModifier {
         if (serviceNamePV != null && serviceNamePV instanceof ScalarPropertyValue) {
             String serviceName = ((ScalarPropertyValue)serviceNamePV).getValue();
             if (StringUtils.isNoneEmpty(serviceName)) {
-                feedPropertyValue(safe(serviceNode.getProperties()), "metadata.name", serviceName, false);
+                METADATA_NAME.set(safe(serviceNode.getProperties()), serviceName);
             }
         }
 
-        NodeTemplate serviceResourceNode = addNodeTemplate(context.getCsar(),context.getTopology(), serviceNode.getName() + "_Resource", K8S_TYPES_SERVICE_RESOURCE, K8S_CSAR_VERSION);
+        NodeTemplate serviceResourceNode = addNodeTemplate(context, serviceNode.getName() + "_Resource", K8S_TYPES_SERVICE_RESOURCE, K8S_CSAR_VERSION);
         setKubeConfig(context, serviceResourceNode);
         setNodeTagValue(serviceResourceNode, A4C_KUBERNETES_ADAPTER_MODIFIER_TAG_REPLACEMENT_NODE_FOR, serviceNode.getName());
 
@@ -1380,14 +1248,14 @@ public class KubernetesAdapterModifier extends AbstractKubernetesModifier {
 
         context.getReplacements().put(serviceNode.getName(), serviceResourceNode);
         setNodeTagValue(serviceResourceNode, A4C_KUBERNETES_ADAPTER_MODIFIER_TAG + "_created_from", serviceNode.getName());
-        Map<String, AbstractPropertyValue> serviceResourceNodeProperties = Maps.newHashMap();
+        ResourceDocument serviceResourceNodeProperties = new ResourceDocument();
         context.getYamlResources().put(serviceResourceNode.getName(), serviceResourceNodeProperties);
 
-        copyProperty(serviceNode, "apiVersion", serviceResourceNodeProperties, "resource_def.apiVersion");
-        copyProperty(serviceNode, "kind", serviceResourceNodeProperties, "resource_def.kind");
-        copyProperty(serviceNode, "metadata", serviceResourceNodeProperties, "resource_def.metadata");
+        copyProperty(serviceNode, "apiVersion", serviceResourceNodeProperties, RESOURCE_DEF_API_VERSION);
+        copyProperty(serviceNode, "kind", serviceResourceNodeProperties, RESOURCE_DEF_KIND);
+        copyProperty(serviceNode, "metadata", serviceResourceNodeProperties, RESOURCE_DEF_METADATA);
 
-        AbstractPropertyValue namePropertyValue = PropertyUtil.getPropertyValueFromPath(safe(serviceNode.getProperties()), "metadata.name");
+        AbstractPropertyValue namePropertyValue = METADATA_NAME.get(safe(serviceNode.getProperties()));
         setNodePropertyPathValue(context.getCsar(), context.getTopology(), serviceResourceNode, "service_name", namePropertyValue);
 
         AbstractPropertyValue propertyValue = PropertyUtil.getPropertyValueFromPath(safe(serviceNode.getProperties()), "spec");
@@ -1396,23 +1264,22 @@ public class KubernetesAdapterModifier extends AbstractKubernetesModifier {
         Object transformedValue = getTransformedValue(propertyValue, propertyDefinition, "");
         // rename entry service_type to type
         renameProperty(transformedValue, "service_type", "type");
-        feedPropertyValue(serviceResourceNodeProperties, "resource_def.spec", transformedValue, false);
+        RESOURCE_DEF_SPEC.set(serviceResourceNodeProperties, transformedValue);
 
         // a connection between a service and a container is transformed into a dependency with the deployment
         Set<NodeTemplate> dependencyTargets = TopologyNavigationUtil.getTargetNodes(context.getTopology(), serviceNode, "expose");
         for (NodeTemplate dependencyTarget : dependencyTargets) {
-            NodeTemplate controllerNode = TopologyNavigationUtil.getImmediateHostTemplate(context.getTopology(), dependencyTarget);
+            NodeTemplate controllerNode = context.getHostChains().getImmediateHost(dependencyTarget);
             NodeTemplate controllerResourceNode = context.getReplacements().get(controllerNode.getName());
             addRelationshipTemplate(context, serviceResourceNode, controllerResourceNode.getName(), NormativeRelationshipConstants.DEPENDS_ON,
                         "dependency", "feature");
         }
         // explore all nodes that connect to this service
-        Set<NodeTemplate> connectedSourceNodes = TopologyNavigationUtil.getSourceNodes(context.getTopology(), serviceNode, "service_endpoint");
+        Set<NodeTemplate> connectedSourceNodes = context.getRelationshipIndex().getSourceNodes(serviceNode, "service_endpoint");
         for (NodeTemplate connectedSourceNode : connectedSourceNodes) {
-            NodeType connectedSourceNodeType = ToscaContext.get(NodeType.class, connectedSourceNode.getType());
-            if (ToscaTypeUtils.isOfType(connectedSourceNodeType, K8S_TYPES_KUBECONTAINER)) {
+            if (context.getTypes().isNodeOfType(connectedSourceNode.getType(), K8S_TYPES_KUBECONTAINER)) {
                 // if they are containers, then add a relationship between the deployment and the service resource.
-                NodeTemplate controllerNode = TopologyNavigationUtil.getImmediateHostTemplate(context.getTopology(), connectedSourceNode);
+                NodeTemplate controllerNode = context.getHostChains().getImmediateHost(connectedSourceNode);
                 NodeTemplate controllerResourceNode = context.getReplacements().get(controllerNode.getName());
                 addRelationshipTemplate(context, controllerResourceNode, serviceResourceNode.getName(), NormativeRelationshipConstants.DEPENDS_ON,
                         "dependency", "feature");
@@ -1435,28 +1302,28 @@ public class KubernetesAdapterModifier extends AbstractKubernetesModifier {
     private void createIngress(KubernetesModifierContext context, NodeTemplate ingressNode) {
         Set<RelationshipTemplate> relationshipTemplates = TopologyNavigationUtil.getTargetRelationships(ingressNode,"expose");
 
-        NodeTemplate ingressResourceNode = addNodeTemplate(context.getCsar(),context.getTopology(), ingressNode.getName() + "_Resource", K8S_TYPES_SIMPLE_RESOURCE, K8S_CSAR_VERSION);
+        NodeTemplate ingressResourceNode = addNodeTemplate(context, ingressNode.getName() + "_Resource", K8S_TYPES_SIMPLE_RESOURCE, K8S_CSAR_VERSION);
         setKubeConfig(context, ingressResourceNode);
         setNodeTagValue(ingressResourceNode, A4C_KUBERNETES_ADAPTER_MODIFIER_TAG_REPLACEMENT_NODE_FOR, ingressNode.getName());
 
-        Map<String, AbstractPropertyValue> ingressResourceNodeProperties = Maps.newHashMap();
+        ResourceDocument ingressResourceNodeProperties = new ResourceDocument();
         context.getYamlResources().put(ingressResourceNode.getName(), ingressResourceNodeProperties);
 
-        String ingressName = generateUniqueKubeName(context.getFlowExecutionContext(), ingressResourceNode.getName());
+        String ingressName = generateUniqueKubeName(context.getFlowExecutionContext(), KubeNameAllocator.ROLE_INGRESS, ingressResourceNode.getName());
 
         feedPropertyValue(ingressResourceNode.getProperties(), "resource_type", new ScalarPropertyValue("ing"), false);
         feedPropertyValue(ingressResourceNode.getProperties(), "resource_id", new ScalarPropertyValue(ingressName), false);
 
         // fill the future JSON spec
-        feedPropertyValue(ingressResourceNodeProperties, "resource_def.kind", "Ingress", false);
-        feedPropertyValue(ingressResourceNodeProperties, "resource_def.apiVersion", "extensions/v1beta1", false);
-        feedPropertyValue(ingressResourceNodeProperties, "resource_def.metadata.name", ingressName, false);
-        feedPropertyValue(ingressResourceNodeProperties, "resource_def.metadata.labels.a4c_id", ingressName, false);
+        RESOURCE_DEF_KIND.set(ingressResourceNodeProperties, "Ingress");
+        RESOURCE_DEF_API_VERSION.set(ingressResourceNodeProperties, "extensions/v1beta1");
+        RESOURCE_DEF_METADATA_NAME.set(ingressResourceNodeProperties, ingressName);
+        RESOURCE_DEF_METADATA_LABELS_A4C_ID.set(ingressResourceNodeProperties, ingressName);
 
         Map<String,Map<String,Object>> hostMap = Maps.newHashMap();
         List<Object> rules = Lists.newArrayList();
 
-        feedPropertyValue(ingressResourceNodeProperties, "resource_def.spec.rules", rules, false);
+        RESOURCE_DEF_SPEC_RULES.set(ingressResourceNodeProperties, rules);
 
         for (RelationshipTemplate r : relationshipTemplates) {
             AbstractPropertyValue hostProp = PropertyUtil.getPropertyValueFromPath(r.getProperties(), "host");
@@ -1487,7 +1354,7 @@ public class KubernetesAdapterModifier extends AbstractKubernetesModifier {
             NodeTemplate serviceNode = context.getTopology().getNodeTemplates().get(r.getTarget());
             NodeTemplate serviceResourceNode = context.getReplacements().get(serviceNode.getName());
 
-            AbstractPropertyValue svcName = PropertyUtil.getPropertyValueFromPath(safe(serviceNode.getProperties()), "metadata.name");
+            AbstractPropertyValue svcName = METADATA_NAME.get(safe(serviceNode.getProperties()));
             AbstractPropertyValue svcPort = portNameFromService(serviceNode);
 
             Map<String,Object> path = Maps.newHashMap();
@@ -1516,13 +1383,13 @@ public class KubernetesAdapterModifier extends AbstractKubernetesModifier {
 
         if (StringUtils.isNoneEmpty(ingressCrt) && StringUtils.isNoneEmpty(ingressKey)) {
             // create the secret
-            NodeTemplate secretResourceNode = addNodeTemplate(context.getCsar(),context.getTopology(), ingressNode.getName() + "_Secret", K8S_TYPES_SIMPLE_RESOURCE, K8S_CSAR_VERSION);
+            NodeTemplate secretResourceNode = addNodeTemplate(context, ingressNode.getName() + "_Secret", K8S_TYPES_SIMPLE_RESOURCE, K8S_CSAR_VERSION);
             setKubeConfig(context, secretResourceNode);
 
-            Map<String, AbstractPropertyValue> ingressSecretResourceNodeProperties = Maps.newHashMap();
+            ResourceDocument ingressSecretResourceNodeProperties = new ResourceDocument();
             context.getYamlResources().put(secretResourceNode.getName(), ingressSecretResourceNodeProperties);
 
-            String ingressSecretName = generateUniqueKubeName(context.getFlowExecutionContext(), secretResourceNode.getName());
+            String ingressSecretName = generateUniqueKubeName(context.getFlowExecutionContext(), KubeNameAllocator.ROLE_SECRET, secretResourceNode.getName());
 
             feedPropertyValue(secretResourceNode.getProperties(), "resource_type", new ScalarPropertyValue("secrets"), false);
             feedPropertyValue(secretResourceNode.getProperties(), "resource_id", new ScalarPropertyValue(ingressSecretName), false);
@@ -1544,17 +1411,17 @@ public class KubernetesAdapterModifier extends AbstractKubernetesModifier {
             data.put("tls.key", ingressKey);
 
             // fill the future JSON spec
-            feedPropertyValue(ingressSecretResourceNodeProperties, "resource_def.kind", "Secret", false);
-            feedPropertyValue(ingressSecretResourceNodeProperties, "resource_def.apiVersion", "v1", false);
-            feedPropertyValue(ingressSecretResourceNodeProperties, "resource_def.metadata.name", ingressSecretName, false);
-            feedPropertyValue(ingressSecretResourceNodeProperties, "resource_def.metadata.labels.a4c_id", ingressSecretName, false);
-            feedPropertyValue(ingressSecretResourceNodeProperties, "resource_def.type", "Opaque", false);
-            feedPropertyValue(ingressSecretResourceNodeProperties, "resource_def.data", data, false);
+            RESOURCE_DEF_KIND.set(ingressSecretResourceNodeProperties, "Secret");
+            RESOURCE_DEF_API_VERSION.set(ingressSecretResourceNodeProperties, "v1");
+            RESOURCE_DEF_METADATA_NAME.set(ingressSecretResourceNodeProperties, ingressSecretName);
+            RESOURCE_DEF_METADATA_LABELS_A4C_ID.set(ingressSecretResourceNodeProperties, ingressSecretName);
+            RESOURCE_DEF_TYPE.set(ingressSecretResourceNodeProperties, "Opaque");
+            RESOURCE_DEF_DATA.set(ingressSecretResourceNodeProperties, data);
 
             // Add the TLS config to the Ingress
             Map<String, Object> tls = Maps.newHashMap();
             tls.put("secretName", ingressSecretName);
-            feedPropertyValue(ingressResourceNodeProperties, "resource_def.spec.tls", tls, true);
+            RESOURCE_DEF_SPEC_TLS.append(ingressResourceNodeProperties, tls);
 
             // add a relation between the Ingress and the secret
             addRelationshipTemplate(context, ingressResourceNode, secretResourceNode.getName(), NormativeRelationshipConstants.DEPENDS_ON, "dependency", "feature");
@@ -2,7 +2,19 @@ package org.alien4cloud.plugin.kubernetes.modifier;
 
 import static alien4cloud.utils.AlienUtils.safe;
 import static org.alien4cloud.plugin.kubernetes.csar.Version.K8S_CSAR_VERSION;
+import static org.alien4cloud.plugin.kubernetes.modifier.KubeModifierPipeline.Data.AUTOSCALER_RESOURCES;
+import static org.alien4cloud.plugin.kubernetes.modifier.KubeModifierPipeline.Data.CONTAINERS;
+import static org.alien4cloud.plugin.kubernetes.modifier.KubeModifierPipeline.Data.CONTROLLER_RESOURCES;
+import static org.alien4cloud.plugin.kubernetes.modifier.KubeModifierPipeline.Data.CUSTOM_RESOURCES;
+import static org.alien4cloud.plugin.kubernetes.modifier.KubeModifierPipeline.Data.ENDPOINT_RESOURCES;
+import static org.alien4cloud.plugin.kubernetes.modifier.KubeModifierPipeline.Data.POLICIES;
+import static org.alien4cloud.plugin.kubernetes.modifier.KubeModifierPipeline.Data.RESOURCE_SPECS;
+import static org.alien4cloud.plugin.kubernetes.modifier.KubeModifierPipeline.Data.SERVICE_RESOURCES;
+import static org.alien4cloud.plugin.kubernetes.modifier.KubeModifierPipeline.Data.TOPOLOGY;
+import static org.alien4cloud.plugin.kubernetes.modifier.KubeModifierPipeline.Data.VOLUMES;
+import static org.alien4cloud.plugin.kubernetes.modifier.KubeModifierPipeline.data;
 import static org.alien4cloud.plugin.kubernetes.modifier.KubeTopologyUtils.A4C_TYPES_APPLICATION_DOCKER_CONTAINER;
+import static org.alien4cloud.plugin.kubernetes.modifier.KubeTopologyUtils.CONTAINER_NAME;
 import static org.alien4cloud.plugin.kubernetes.modifier.KubeTopologyUtils.K8S_TYPES_BASE_JOB_RESOURCE;
 import static org.alien4cloud.plugin.kubernetes.modifier.KubeTopologyUtils.K8S_TYPES_BASE_RESOURCE;
 import static org.alien4cloud.plugin.kubernetes.modifier.KubeTopologyUtils.K8S_TYPES_CONTAINER;
@@ -10,7 +22,6 @@ import static org.alien4cloud.plugin.kubernetes.modifier.KubeTopologyUtils.K8S_T
 import static org.alien4cloud.plugin.kubernetes.modifier.KubeTopologyUtils.K8S_TYPES_DEPLOYMENT_RESOURCE;
 import static org.alien4cloud.plugin.kubernetes.modifier.KubeTopologyUtils.K8S_TYPES_ENDPOINT_RESOURCE;
 import static org.alien4cloud.plugin.kubernetes.modifier.KubeTopologyUtils.K8S_TYPES_JOB;
-import static org.alien4cloud.plugin.kubernetes.modifier.KubeTopologyUtils.K8S_TYPES_JOB_RESOURCE;
 import static org.alien4cloud.plugin.kubernetes.modifier.KubeTopologyUtils.K8S_TYPES_SERVICE;
 import static org.alien4cloud.plugin.kubernetes.modifier.KubeTopologyUtils.K8S_TYPES_SERVICE_INGRESS;
 import static org.alien4cloud.plugin.kubernetes.modifier.KubeTopologyUtils.K8S_TYPES_SERVICE_RESOURCE;
@@ -18,15 +29,34 @@ import static org.alien4cloud.plugin.kubernetes.modifier.KubeTopologyUtils.K8S_T
 import static org.alien4cloud.plugin.kubernetes.modifier.KubeTopologyUtils.K8S_TYPES_STATEFULSET;
 import static org.alien4cloud.plugin.kubernetes.modifier.KubeTopologyUtils.K8S_TYPES_STATEFULSET_RESOURCE;
 import static org.alien4cloud.plugin.kubernetes.modifier.KubeTopologyUtils.K8S_TYPES_VOLUME_BASE;
+import static org.alien4cloud.plugin.kubernetes.modifier.KubeTopologyUtils.METADATA_NAME;
+import static org.alien4cloud.plugin.kubernetes.modifier.KubeTopologyUtils.RESOURCE_DEF_API_VERSION;
+import static org.alien4cloud.plugin.kubernetes.modifier.KubeTopologyUtils.RESOURCE_DEF_DATA;
+import static org.alien4cloud.plugin.kubernetes.modifier.KubeTopologyUtils.RESOURCE_DEF_KIND;
+import static org.alien4cloud.plugin.kubernetes.modifier.KubeTopologyUtils.RESOURCE_DEF_METADATA;
+import static org.alien4cloud.plugin.kubernetes.modifier.KubeTopologyUtils.RESOURCE_DEF_METADATA_LABELS_A4C_ID;
+import static org.alien4cloud.plugin.kubernetes.modifier.KubeTopologyUtils.RESOURCE_DEF_METADATA_NAME;
+import static org.alien4cloud.plugin.kubernetes.modifier.KubeTopologyUtils.RESOURCE_DEF_SPEC;
+import static org.alien4cloud.plugin.kubernetes.modifier.KubeTopologyUtils.RESOURCE_DEF_SPEC_RULES;
+import static org.alien4cloud.plugin.kubernetes.modifier.KubeTopologyUtils.RESOURCE_DEF_SPEC_TEMPLATE_SPEC_CONTAINERS;
+import static org.alien4cloud.plugin.kubernetes.modifier.KubeTopologyUtils.RESOURCE_DEF_SPEC_TEMPLATE_SPEC_VOLUMES;
+import static org.alien4cloud.plugin.kubernetes.modifier.KubeTopologyUtils.RESOURCE_DEF_SPEC_TLS;
+import static org.alien4cloud.plugin.kubernetes.modifier.KubeTopologyUtils.RESOURCE_DEF_TYPE;
+import static org.alien4cloud.plugin.kubernetes.modifier.KubeTopologyUtils.SPEC_PORTS;
+import static org.alien4cloud.plugin.kubernetes.modifier.KubeTopologyUtils.copyProperty;
 import static org.alien4cloud.plugin.kubernetes.modifier.KubeTopologyUtils.generateConsistentKubeName;
-import static org.alien4cloud.plugin.kubernetes.modifier.KubeTopologyUtils.getValue;
 import static org.alien4cloud.plugin.kubernetes.policies.KubePoliciesConstants.K8S_POLICIES_AUTO_SCALING;
 
+import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.function.Consumer;
 import java.util.logging.Level;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import javax.annotation.Resource;
@@ -36,9 +66,12 @@ import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 
 import org.alien4cloud.alm.deployment.configuration.flow.FlowExecutionContext;
-import org.alien4cloud.alm.deployment.configuration.flow.TopologyModifierSupport;
 import org.alien4cloud.plugin.kubernetes.AbstractKubernetesModifier;
-import org.alien4cloud.tosca.model.Csar;
+import org.alien4cloud.plugin.kubernetes.modifier.generators.EndpointsGenerator;
+import org.alien4cloud.plugin.kubernetes.modifier.generators.HorizontalPodAutoscalerGenerator;
+import org.alien4cloud.plugin.kubernetes.modifier.generators.JobGenerator;
+import org.alien4cloud.plugin.kubernetes.modifier.generators.ResourceGenerators;
+import org.alien4cloud.plugin.kubernetes.modifier.generators.VolumeGenerator;
 import org.alien4cloud.tosca.model.definitions.AbstractPropertyValue;
 import org.alien4cloud.tosca.model.definitions.ComplexPropertyValue;
 import org.alien4cloud.tosca.model.definitions.ConcatPropertyValue;
@@ -57,14 +90,12 @@ import org.alien4cloud.tosca.model.templates.SubstitutionTarget;
 import org.alien4cloud.tosca.model.templates.Topology;
 import org.alien4cloud.tosca.model.types.AbstractToscaType;
 import org.alien4cloud.tosca.model.types.NodeType;
-import org.alien4cloud.tosca.model.types.PolicyType;
 import org.alien4cloud.tosca.normative.constants.AlienCapabilityTypes;
 import org.alien4cloud.tosca.normative.constants.NormativeRelationshipConstants;
 import org.alien4cloud.tosca.utils.FunctionEvaluator;
 import org.alien4cloud.tosca.utils.FunctionEvaluatorContext;
 import org.alien4cloud.tosca.utils.NodeTemplateUtils;
 import org.alien4cloud.tosca.utils.TopologyNavigationUtil;
-import org.alien4cloud.tosca.utils.ToscaTypeUtils;
 import org.apache.commons.collections4.CollectionUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.stereotype.Component;
@@ -79,7 +110,6 @@ import alien4cloud.tosca.context.ToscaContextual;
 import alien4cloud.tosca.parser.ToscaParser;
 import alien4cloud.tosca.serializer.ToscaPropertySerializerUtils;
 import alien4cloud.utils.CloneUtil;
-import alien4cloud.utils.MapUtil;
 import alien4cloud.utils.PropertyUtil;
 import lombok.extern.java.Log;
 
@@ -95,12 +125,33 @@ public class KubernetesFinalTopologyModifier extends AbstractKubernetesModifier
 
     public static final String A4C_KUBERNETES_MODIFIER_TAG = "a4c_kubernetes-final-modifier";
 
+    private static final PropertyPath RESOURCE_DEF_SPEC_SELECTOR_APP = PropertyPath.of("resource_def.spec.selector.app");
+    private static final PropertyPath SPEC_TEMPLATE_METADATA_LABELS_APP = PropertyPath.of("spec.template.metadata.labels.app");
+
     @Resource
     private WorkflowSimplifyService workflowSimplifyService;
 
     @Resource
     private WorkflowsBuilderService workflowBuilderService;
 
+    @Resource
+    private KubeStageExecutor stageExecutor;
+
+    @Resource
+    private ResourceGenerators resourceGenerators;
+
+    @Resource
+    private EndpointsGenerator endpointsGenerator;
+
+    @Resource
+    private JobGenerator jobGenerator;
+
+    @Resource
+    private VolumeGenerator volumeGenerator;
+
+    @Resource
+    private HorizontalPodAutoscalerGenerator horizontalPodAutoscalerGenerator;
+
     @Override
     @ToscaContextual
     public void process(Topology topology, FlowExecutionContext context) {
@@ -108,7 +159,13 @@ public class KubernetesFinalTopologyModifier extends AbstractKubernetesModifier
 
         try {
             WorkflowValidator.disableValidationThreadLocal.set(true);
-            doProcess(topology, context);
+            String runCacheKey = getRunCacheKey(A4C_KUBERNETES_MODIFIER_TAG, topology, context);
+            if (runCache.replay(runCacheKey, topology)) {
+                log.info("Topology " + topology.getId() + " has already been processed, replaying the previous result");
+                return;
+            }
+            int problemCount = KubeModifierRunCache.getProblemCount(context);
+            doProcess(new KubernetesModifierContext(topology, context));
             TopologyContext topologyContext = workflowBuilderService.buildCachedTopologyContext(new TopologyContext() {
                 @Override
                 public String getDSLVersion() {
@@ -127,6 +184,7 @@ public class KubernetesFinalTopologyModifier extends AbstractKubernetesModifier
             });
             // TODO: should be done in the deployment flow instead of here
             workflowSimplifyService.reentrantSimplifyWorklow(topologyContext, topology.getWorkflows().keySet());
+            runCache.store(runCacheKey, topology, context, problemCount);
         } catch (Exception e) {
             context.getLog().error("Couldn't process " + A4C_KUBERNETES_MODIFIER_TAG);
             log.log(Level.WARNING, "Couldn't process " + A4C_KUBERNETES_MODIFIER_TAG, e);
@@ -135,117 +193,143 @@ public class KubernetesFinalTopologyModifier extends AbstractKubernetesModifier
         }
     }
 
-    private void doProcess(Topology topology, FlowExecutionContext context) {
-        Csar csar = new Csar(topology.getArchiveName(), topology.getArchiveVersion());
-
-        Set<NodeTemplate> endpointNodes = TopologyNavigationUtil.getNodesOfType(topology, K8S_TYPES_ENDPOINT_RESOURCE, false, true);
-        endpointNodes.forEach(nodeTemplate -> manageEndpoints(context, csar, topology, nodeTemplate));
-
-        // just a map that store the node name as key and the replacement node as value
-        Map<String, NodeTemplate> nodeReplacementMap = Maps.newHashMap();
-
-        // store the yaml structure for each resources
-        // these yaml structure will become the JSON resource spec after JSON serialization
-        // these yaml structures can not be stored in node since they can't respect any TOSCA contract
-        Map<String, Map<String, AbstractPropertyValue>> resourceNodeYamlStructures = Maps.newHashMap();
-
-        // for each Service create a node of type ServiceResource
-        Set<NodeTemplate> serviceNodes = TopologyNavigationUtil.getNodesOfType(topology, K8S_TYPES_SERVICE, true);
-        serviceNodes = demultiplexServices(csar, topology, serviceNodes, context);
-        serviceNodes.forEach(nodeTemplate -> createServiceResource(csar, topology, nodeTemplate, nodeReplacementMap, resourceNodeYamlStructures, context));
-
-        // for each Deployment create a node of type DeploymentResource
-        Set<NodeTemplate> deploymentNodes = TopologyNavigationUtil.getNodesOfType(topology, K8S_TYPES_DEPLOYMENT, false);
-        deploymentNodes.forEach(nodeTemplate -> createDeploymentResource(csar, topology, nodeTemplate, nodeReplacementMap, resourceNodeYamlStructures));
-
-        // for each StatefulSet create a node of type StatefulSetResource
-        Set<NodeTemplate> statefulSetNodes = TopologyNavigationUtil.getNodesOfType(topology, K8S_TYPES_STATEFULSET, false);
-        statefulSetNodes.forEach(nodeTemplate -> createStatefulSetResource(csar, topology, nodeTemplate, nodeReplacementMap, resourceNodeYamlStructures, context));
-
-        // for each Job create a node of type JobResource
-        Set<NodeTemplate> jobNodes = TopologyNavigationUtil.getNodesOfType(topology, K8S_TYPES_JOB, false);
-        jobNodes.forEach(nodeTemplate -> createJobResource(csar, topology, nodeTemplate, nodeReplacementMap, resourceNodeYamlStructures));
-
-        // A function evaluator context will be usefull
-        // FIXME: use topology inputs ?
-        Map<String, AbstractPropertyValue> inputValues = Maps.newHashMap();
-        FunctionEvaluatorContext functionEvaluatorContext = new FunctionEvaluatorContext(topology, inputValues);
-
-        Map<String, List<String>> serviceIpAddressesPerDeploymentResource = Maps.newHashMap();
-
-        // for each container,
-        Set<NodeTemplate> containerNodes = TopologyNavigationUtil.getNodesOfType(topology, K8S_TYPES_CONTAINER, false);
-        containerNodes.forEach(
-                nodeTemplate -> manageContainer(csar, topology, nodeTemplate, nodeReplacementMap, resourceNodeYamlStructures, functionEvaluatorContext,
-                        serviceIpAddressesPerDeploymentResource, context));
-
-        // for each volume node, populate the 'volumes' property of the corresponding deployment resource
-        Set<NodeTemplate> volumeNodes = TopologyNavigationUtil.getNodesOfType(topology, K8S_TYPES_VOLUME_BASE, true);
-        volumeNodes.forEach(nodeTemplate -> manageVolume(context, csar, topology, nodeTemplate, nodeReplacementMap, resourceNodeYamlStructures));
-
-        // check auto-scaling policies and build the equiv node
-        Set<PolicyTemplate> policies = TopologyNavigationUtil.getPoliciesOfType(topology, K8S_POLICIES_AUTO_SCALING, true);
-        policies.forEach(policyTemplate -> manageAutoScaling(csar, topology, policyTemplate, nodeReplacementMap, resourceNodeYamlStructures, context));
-
-        // remove useless nodes
-        // TODO bug on node matching view since these nodes are the real matched ones
-        // TODO then find a way to delete servicesNodes and deloymentNodes as they are not used
-        serviceNodes.forEach(nodeTemplate -> removeNode(topology, nodeTemplate));
-        deploymentNodes.forEach(nodeTemplate -> removeNode(topology, nodeTemplate));
-        jobNodes.forEach(nodeTemplate -> removeNode(topology, nodeTemplate));
-        statefulSetNodes.forEach(nodeTemplate -> removeNode(topology, nodeTemplate));
-        Set<NodeTemplate> volumes = TopologyNavigationUtil.getNodesOfType(topology, K8S_TYPES_VOLUME_BASE, true);
-        volumes.forEach(nodeTemplate -> removeNode(topology, nodeTemplate));
-        Set<NodeTemplate> containers = TopologyNavigationUtil.getNodesOfType(topology, A4C_TYPES_APPLICATION_DOCKER_CONTAINER, true, false);
-        safe(containers).forEach(nodeTemplate -> removeNode(topology, nodeTemplate));
-
-        String providedNamespace = getProvidedMetaproperty(context, K8S_NAMESPACE_METAPROP_NAME);
+    @Override
+    protected String getModifierTag() {
+        return A4C_KUBERNETES_MODIFIER_TAG;
+    }
+
+    /**
+     * The container may be hosted on a docker container : search the deployment, then the job, then the statefulset that hosts it.
+     */
+    @Override
+    protected NodeTemplate getControllerNode(KubernetesModifierContext context, NodeTemplate containerNode) {
+        return Stream.of(K8S_TYPES_DEPLOYMENT, K8S_TYPES_JOB, K8S_TYPES_STATEFULSET).map(type -> context.getHostChains().getHostOfType(containerNode, type))
+                .filter(Objects::nonNull).findFirst().orElse(null);
+    }
+
+    private void doProcess(KubernetesModifierContext context) {
+        KubeTopologyIndex index = context.getIndex();
+
+        // the nodes replaced by resources, removed once all the resources are generated
+        Set<NodeTemplate> serviceNodes = Sets.newHashSet();
+        Set<NodeTemplate> deploymentNodes = Sets.newHashSet();
+        Set<NodeTemplate> statefulSetNodes = Sets.newHashSet();
+        Set<NodeTemplate> jobNodes = Sets.newHashSet();
+
+        new KubeModifierPipeline(A4C_KUBERNETES_MODIFIER_TAG)
+                .stage("endpoints", data(TOPOLOGY), data(ENDPOINT_RESOURCES),
+                        c -> index.getNodesOfType(K8S_TYPES_ENDPOINT_RESOURCE, false, true).forEach(nodeTemplate -> endpointsGenerator.generate(getGenerationContext(c), nodeTemplate)))
+                .stage("services", data(TOPOLOGY), data(TOPOLOGY, SERVICE_RESOURCES), c -> {
+                    // for each Service create a node of type ServiceResource
+                    serviceNodes.addAll(demultiplexServices(c, index.getNodesOfType(K8S_TYPES_SERVICE, true)));
+                    serviceNodes.forEach(nodeTemplate -> createServiceResource(c, nodeTemplate));
+                })
+                .stage("deployments", data(TOPOLOGY, SERVICE_RESOURCES), data(CONTROLLER_RESOURCES), c -> {
+                    // for each Deployment create a node of type DeploymentResource
+                    deploymentNodes.addAll(index.getNodesOfType(K8S_TYPES_DEPLOYMENT, false));
+                    deploymentNodes.forEach(nodeTemplate -> createDeploymentResource(c, nodeTemplate));
+                    // for each StatefulSet create a node of type StatefulSetResource
+                    statefulSetNodes.addAll(index.getNodesOfType(K8S_TYPES_STATEFULSET, false));
+                    statefulSetNodes.forEach(nodeTemplate -> createStatefulSetResource(c, nodeTemplate));
+                    // for each Job create a node of type JobResource
+                    jobNodes.addAll(index.getNodesOfType(K8S_TYPES_JOB, false));
+                    jobNodes.forEach(nodeTemplate -> jobGenerator.generate(getGenerationContext(c), nodeTemplate));
+                })
+                .stage("containers", data(TOPOLOGY, CONTROLLER_RESOURCES, SERVICE_RESOURCES), data(CONTAINERS), this::manageContainers)
+                .stage("volumes", data(TOPOLOGY, CONTROLLER_RESOURCES), data(VOLUMES),
+                        // for each volume node, populate the 'volumes' property of the corresponding deployment resource
+                        c -> index.getNodesOfType(K8S_TYPES_VOLUME_BASE, true).forEach(nodeTemplate -> volumeGenerator.generate(getGenerationContext(c), nodeTemplate)))
+                .stage("custom resources", data(TOPOLOGY, CONTROLLER_RESOURCES), data(CUSTOM_RESOURCES),
+                        c -> resourceGenerators.generateCustomResources(getGenerationContext(c)))
+                .concurrentStage("autoscaling", data(TOPOLOGY, POLICIES, CONTROLLER_RESOURCES), data(AUTOSCALER_RESOURCES), this::prepareAutoScaling)
+                .stage("cleanup", data(TOPOLOGY), data(TOPOLOGY), c -> {
+                    // remove useless nodes
+                    // TODO bug on node matching view since these nodes are the real matched ones
+                    // TODO then find a way to delete servicesNodes and deloymentNodes as they are not used
+                    serviceNodes.forEach(nodeTemplate -> removeNode(c, nodeTemplate));
+                    deploymentNodes.forEach(nodeTemplate -> removeNode(c, nodeTemplate));
+                    jobNodes.forEach(nodeTemplate -> removeNode(c, nodeTemplate));
+                    statefulSetNodes.forEach(nodeTemplate -> removeNode(c, nodeTemplate));
+                    Set<NodeTemplate> volumes = index.getNodesOfType(K8S_TYPES_VOLUME_BASE, true);
+                    volumes.forEach(nodeTemplate -> removeNode(c, nodeTemplate));
+                    Set<NodeTemplate> containers = index.getNodesOfType(A4C_TYPES_APPLICATION_DOCKER_CONTAINER, true, false);
+                    safe(containers).forEach(nodeTemplate -> removeNode(c, nodeTemplate));
+                })
+                .stage("serialization", data(ENDPOINT_RESOURCES, SERVICE_RESOURCES, CONTROLLER_RESOURCES, CONTAINERS, VOLUMES, AUTOSCALER_RESOURCES,
+                        CUSTOM_RESOURCES), data(RESOURCE_SPECS), this::serializeResourceSpecs)
+                .stage("services cleanup", data(TOPOLOGY), data(TOPOLOGY), this::removeUnusedServices)
+                .run(context, stageExecutor);
+    }
+
+    private void manageContainers(KubernetesModifierContext context) {
+        // for each container, grouped by controller resource
+        Set<NodeTemplate> containerNodes = context.getIndex().getNodesOfType(K8S_TYPES_CONTAINER, false);
+        List<KubeContainerGroup> groups = KubeContainerGroup.groupByControllerResource(context, containerNodes);
+
+        // first the topology changes (dependencies, args, config maps), in a deterministic order
+        Map<String, Map<String, List<NodeTemplate>>> configMapFactoriesPerContainer = Maps.newHashMap();
+        groups.forEach(group -> group.getContainerNodes().forEach(containerNode -> configMapFactoriesPerContainer.put(containerNode.getName(),
+                prepareContainer(context, containerNode, group.getControllerResource()))));
+
+        // then resolve the inputs of the containers, concurrently for each controller resource
+        List<Callable<KubeContainerGroup>> resolutions = groups.stream().map(group -> (Callable<KubeContainerGroup>) () -> {
+            // A function evaluator context will be usefull
+            // FIXME: use topology inputs ?
+            Map<String, AbstractPropertyValue> inputValues = Maps.newHashMap();
+            FunctionEvaluatorContext functionEvaluatorContext = new FunctionEvaluatorContext(context.getTopology(), inputValues);
+            group.getContainerNodes().forEach(containerNode -> resolveContainerInputs(context, group, containerNode, functionEvaluatorContext));
+            return group;
+        }).collect(Collectors.toList());
+        stageExecutor.invokeAll(resolutions);
+
+        // and finally apply them, in the same order
+        groups.forEach(group -> {
+            group.getContainerNodes().forEach(containerNode -> completeContainer(context, group, containerNode,
+                    configMapFactoriesPerContainer.get(containerNode.getName())));
+            // populate the service_dependency_lookups property of the controller resource node
+            String serviceDependencyLookups = group.getServiceDependencyLookups();
+            if (serviceDependencyLookups != null) {
+                setNodePropertyPathValue(context.getCsar(), context.getTopology(), group.getControllerResource(), "service_dependency_lookups",
+                        new ScalarPropertyValue(serviceDependencyLookups));
+            }
+        });
+    }
+
+    /**
+     * Set the 'resource_spec' property of each resource with the JSON content of the resource specification.
+     */
+    private void serializeResourceSpecs(KubernetesModifierContext context) {
+        String providedNamespace = getMetaProperties(context.getFlowExecutionContext()).getNamespace();
         if (providedNamespace != null) {
-            context.getLog().info("All resources will be created into the namespace <" + providedNamespace + ">");
+            context.log().info("All resources will be created into the namespace <" + providedNamespace + ">");
         }
-        // finally set the 'resource_spec' property with the JSON content of the resource specification
-        Set<NodeTemplate> resourceNodes = TopologyNavigationUtil.getNodesOfType(topology, K8S_TYPES_BASE_RESOURCE, true);
+        Set<NodeTemplate> resourceNodes = context.getIndex().getNodesOfType(K8S_TYPES_BASE_RESOURCE, true);
         // also treat job resources
-        Set<NodeTemplate> jobResourceNodes = TopologyNavigationUtil.getNodesOfType(topology, K8S_TYPES_BASE_JOB_RESOURCE, true);
+        Set<NodeTemplate> jobResourceNodes = context.getIndex().getNodesOfType(K8S_TYPES_BASE_JOB_RESOURCE, true);
         for (NodeTemplate jobResourceNode : jobResourceNodes) {
             resourceNodes.add(jobResourceNode);
         }
-        for (NodeTemplate resourceNode : resourceNodes) {
-            Map<String, AbstractPropertyValue> resourceNodeProperties = resourceNodeYamlStructures.get(resourceNode.getName());
-            if (resourceNodeProperties != null && resourceNodeProperties.containsKey("resource_def")) {
-                if (providedNamespace != null) {
-                    feedPropertyValue(resourceNodeProperties, "resource_def.metadata.namespace", providedNamespace, false);
-                    setNodePropertyPathValue(csar, topology, resourceNode, "namespace", new ScalarPropertyValue(providedNamespace));
-                }
-                Object propertyValue = getValue(resourceNodeProperties.get("resource_def"));
-                String serializedPropertyValue = PropertyUtil.serializePropertyValue(propertyValue);
-                setNodePropertyPathValue(csar, topology, resourceNode, "resource_spec", new ScalarPropertyValue(serializedPropertyValue));
-            } else {
-                setNodePropertyPathValue(csar, topology, resourceNode, "resource_spec", new ScalarPropertyValue("N/A"));
-            }
-            if (providedNamespace != null) {
-                setNodePropertyPathValue(csar, topology, resourceNode, "namespace", new ScalarPropertyValue(providedNamespace));
-            }
-        }
+        setResourceSpecs(context, resourceNodes, providedNamespace);
+    }
 
-        // remove services that are no more target of relationships
+    /**
+     * Remove services that are no more target of relationships.
+     */
+    private void removeUnusedServices(KubernetesModifierContext context) {
         Set<NodeTemplate> servicesToRemove = Sets.newHashSet();
-        for (NodeTemplate node : topology.getNodeTemplates().values()) {
-            if (node instanceof ServiceNodeTemplate) {
-                Set<NodeTemplate> sourceNodes = TopologyNavigationUtil.getSourceNodesByRelationshipType(topology, node, NormativeRelationshipConstants.ROOT);
-                if (sourceNodes.isEmpty()) {
-                    servicesToRemove.add(node);
-                }
+        for (NodeTemplate node : context.getTopology().getNodeTemplates().values()) {
+            if (node instanceof ServiceNodeTemplate && !context.getRelationshipIndex().isTargeted(node.getName())) {
+                servicesToRemove.add(node);
             }
         }
-        servicesToRemove.stream().forEach(nodeTemplate -> removeNode(topology, nodeTemplate));
+        servicesToRemove.stream().forEach(nodeTemplate -> removeNode(context, nodeTemplate));
 
     }
 
     /**
      * When several abstract services have been matched to the same named service (service with a fixed service name), we only want one to be created.
      */
-    private Set<NodeTemplate> demultiplexServices(Csar csar, Topology topology, Set<NodeTemplate> serviceNodes, FlowExecutionContext context) {
+    private Set<NodeTemplate> demultiplexServices(KubernetesModifierContext context, Set<NodeTemplate> serviceNodes) {
 
         // feed a map of service_name -> nodes
         Map<String, Set<NodeTemplate>> servicesNamesByName = Maps.newHashMap();
@@ -274,7 +358,7 @@ public class KubernetesFinalTopologyModifier extends AbstractKubernetesModifier
             NodeTemplate nodeToKeep = null;
             for (NodeTemplate nodeToKeepCandidate : e.getValue()) {
                 // we prefer to keep a node that have consumer since we are not able to move relationship
-                Set<NodeTemplate> consumers = TopologyNavigationUtil.getSourceNodesByRelationshipType(topology, nodeToKeepCandidate, NormativeRelationshipConstants.DEPENDS_ON);
+                Set<NodeTemplate> consumers = context.getRelationshipIndex().getSourceNodesByRelationshipType(nodeToKeepCandidate, NormativeRelationshipConstants.DEPENDS_ON);
                 if (consumers != null && !consumers.isEmpty()) {
                     nodeToKeep = nodeToKeepCandidate;
                     break;
@@ -303,23 +387,23 @@ public class KubernetesFinalTopologyModifier extends AbstractKubernetesModifier
                 RelationshipTemplate relationshipToRemove = TopologyNavigationUtil.getTargetRelationships(nodeToKeep, "dependency").iterator().next();
                 if (!relationshipToRemove.getTarget().equals(deploymentUnitNodeName)) {
                     String msg = String.format("Same service name (%s) used for services that target different deployment units (at least %s and %s), please review your matching !", e.getKey(), nodeToKeep.getName(), nodeToRemove.getName());
-                    context.getLog().error(msg);
+                    context.log().error(msg);
                     throw new UnsupportedOperationException();
                 }
                 // check that services with same service name are of the same type
                 String nodeToRemoveServiceType = PropertyUtil.getScalarPropertyValueFromPath(safe(nodeToRemove.getProperties()), "spec.service_type");
                 if (!StringUtils.equals(nodeToKeepServiceType, nodeToRemoveServiceType)) {
                     String msg = String.format("Same service name (%s) used for services that are different service types (%s (%s) != %s (%s)), please review your matching !", e.getKey(), nodeToKeep.getName(), nodeToKeepServiceType, nodeToRemove.getName(), nodeToRemoveServiceType);
-                    context.getLog().error(msg);
+                    context.log().error(msg);
                     throw new UnsupportedOperationException();
                 }
 
-                AbstractPropertyValue serviceNamePV = PropertyUtil.getPropertyValueFromPath(safe(nodeToRemove.getProperties()), "spec.ports");
+                AbstractPropertyValue serviceNamePV = SPEC_PORTS.get(safe(nodeToRemove.getProperties()));
                 if (serviceNamePV instanceof ListPropertyValue) {
                     List<Object> ports = ((ListPropertyValue)serviceNamePV).getValue();
                     if (!ports.isEmpty()) {
                         Object port = ports.iterator().next();
-                        feedPropertyValue(nodeToKeep.getProperties(), "spec.ports", port, true);
+                        SPEC_PORTS.append(nodeToKeep.getProperties(), port);
                         nodesToRemove.add(nodeToRemove);
                         // since this tag is used by modifier elsewhere, we use it's value to set a tag on the node we keep
                         String serviceEndpointTag = getNodeTagValueOrNull(nodeToRemove, A4C_KUBERNETES_MODIFIER_TAG_SERVICE_ENDPOINT);
@@ -331,7 +415,7 @@ public class KubernetesFinalTopologyModifier extends AbstractKubernetesModifier
             nodesToRemove.stream().forEach(s -> {
                 serviceNodes.remove(s);
                 // if the node to remove is the target of dependsOn relationship (a consumer), let's move it to the node we keep
-                removeNode(topology, s);
+                removeNode(context, s);
             });
 
             setNodeTagValue(nodeToKeep, A4C_KUBERNETES_MODIFIER_TAG_SERVICE_ENDPOINTS, nodeToKeepServiceEndpointTag.toString());
@@ -340,344 +424,68 @@ public class KubernetesFinalTopologyModifier extends AbstractKubernetesModifier
         return serviceNodes;
     }
 
-    protected RelationshipTemplate addRelationshipTemplate(Csar csar, Topology topology, NodeTemplate sourceNode, String targetNodeName,
-                                                           String relationshipTypeName, String requirementName, String capabilityName) {
-
-        Set<RelationshipTemplate> targetRelationships = TopologyNavigationUtil.getTargetRelationships(sourceNode, requirementName);
-        for (RelationshipTemplate relationshipTemplate : targetRelationships) {
-            if (relationshipTemplate.getTarget().equals(targetNodeName) && relationshipTemplate.getTargetedCapabilityName().equals(capabilityName)) {
-                return relationshipTemplate;
-            }
-        }
-        return super.addRelationshipTemplate(csar, topology, sourceNode, targetNodeName, relationshipTypeName, requirementName, capabilityName);
-    }
-
-    private void manageEndpoints(FlowExecutionContext context, Csar csar, Topology topology, NodeTemplate endpointNode) {
-        // and enpoint is connected to a regular node (not a container), but maybe to a service that has been matched
-        // we just ensure the port is up-to-date now (after matching)
-        // so we set port property on Endpoint node and the service node that both proxy the a4c service node
-        Set<RelationshipTemplate> targetRelationships = TopologyNavigationUtil.getTargetRelationships(endpointNode, "endpoint");
-        if (targetRelationships == null || targetRelationships.size() > 1) {
-            // should never occur
-            return;
-        }
-        RelationshipTemplate targetRelationship = targetRelationships.iterator().next();
-        NodeTemplate targetNodeTemplate = topology.getNodeTemplates().get(targetRelationship.getTarget());
-        AbstractPropertyValue port = TopologyNavigationUtil.getNodeCapabilityPropertyValue(targetNodeTemplate, targetRelationship.getTargetedCapabilityName(), "port");
-        if (port == null) {
-            context.log().error("Connecting container to an external service requires its endpoint port to be defined. Port of [" + targetNodeTemplate.getName()
-                    + ".capabilities." + targetRelationship.getTargetedCapabilityName() + "] is not defined.");
-            return;
-        }
-
-        Set<NodeTemplate> targetEndpointNodes = TopologyNavigationUtil.getTargetNodes(topology, endpointNode, "endpoint");
-        if (targetEndpointNodes == null || targetEndpointNodes.size() > 1) {
-            // should never occur
-            return;
-        }
-        // this is the K8S targeted service node (maybe an abstract service that has now been matched)
-        NodeTemplate targetEndpointNode = targetEndpointNodes.iterator().next();
-        // now search for the service that depends on this endpoint
-        Set<NodeTemplate> targetServiceNodes = TopologyNavigationUtil.getSourceNodes(topology, endpointNode, "feature");
-        if (targetServiceNodes == null || targetServiceNodes.size() > 1) {
-            // should never occur
-            return;
-        }
-        NodeTemplate targetServiceNode = targetServiceNodes.iterator().next();
-
-        // fill service property
-        Map<String, Object> portEntry = Maps.newHashMap();
-        portEntry.put("port", port);
-        ComplexPropertyValue complexPropertyValue = new ComplexPropertyValue(portEntry);
-        appendNodePropertyPathValue(csar, topology, targetServiceNode, "spec.ports", complexPropertyValue);
-
-        String ipAddress = "#{TARGET_IP_ADDRESS}";
-        if (targetEndpointNode instanceof ServiceNodeTemplate) {
-            ServiceNodeTemplate serviceNodeTemplate = (ServiceNodeTemplate)targetEndpointNode;
-            ipAddress = safe(serviceNodeTemplate.getAttributeValues()).get("capabilities." + targetRelationship.getTargetedCapabilityName() + ".ip_address");
-        }
-
-        // fill endpoint subsets property
-        Map<String, Object> subsetEntry = Maps.newHashMap();
-        Map<String, Object> addresses = Maps.newHashMap();
-        addresses.put("ip", ipAddress);
-        subsetEntry.put("addresses", new ListPropertyValue(Lists.newArrayList(addresses)));
-        Map<String, Object> ports = Maps.newHashMap();
-        ports.put("port", port);
-        subsetEntry.put("ports", new ListPropertyValue(Lists.newArrayList(ports)));
-        ComplexPropertyValue subsetComplexPropertyValue = new ComplexPropertyValue(subsetEntry);
-        ListPropertyValue subsets = new ListPropertyValue(Lists.newArrayList(subsetComplexPropertyValue));
-        setNodePropertyPathValue(csar, topology, endpointNode, "subsets", subsets);
-    }
-
-    private void manageVolume(FlowExecutionContext ctx, Csar csar, Topology topology, NodeTemplate volumeNode, Map<String, NodeTemplate> nodeReplacementMap,
-            Map<String, Map<String, AbstractPropertyValue>> resourceNodeYamlStructures) {
 
-        // FIXME : doesn't support many attachement (1 volume -> many containers) ?)
-        Optional<RelationshipTemplate> relationshipTemplate = TopologyNavigationUtil.getTargetRelationships(volumeNode, "attachment").stream().findFirst();
-        if (!relationshipTemplate.isPresent()) {
-            return;
-        }
-        NodeTemplate targetContainer = topology.getNodeTemplates().get(relationshipTemplate.get().getTarget());
-        // find the deployment that hosts this container
-        NodeTemplate hostOfContainer = TopologyNavigationUtil.getHostOfTypeInHostingHierarchy(topology, targetContainer, K8S_TYPES_DEPLOYMENT);
-        if (hostOfContainer == null) {
-            // find the job that hosts this container
-            hostOfContainer = TopologyNavigationUtil.getHostOfTypeInHostingHierarchy(topology, targetContainer, K8S_TYPES_JOB);
-        }
-        if(hostOfContainer == null){
-            hostOfContainer = TopologyNavigationUtil.getHostOfTypeInHostingHierarchy(topology, targetContainer, K8S_TYPES_STATEFULSET);
-        }
-        if (hostOfContainer == null) {
-            ctx.getLog().error("failed to get controller hosting volume <"+ volumeNode.getName() + ">");
-            return;
-        }
-        // get the deployment resource corresponding to this deployment
-        NodeTemplate controllerResourceNode = nodeReplacementMap.get(hostOfContainer.getName());
-
-        NodeType volumeNodeType = ToscaContext.get(NodeType.class, volumeNode.getType());
-        NodeType hostNodeType = ToscaContext.get(NodeType.class, hostOfContainer.getType());
-        if(ToscaTypeUtils.isOfType(hostNodeType, K8S_TYPES_STATEFULSET)){
-            // If statefulSet does not match a PVC, raise error
-            if(!ToscaTypeUtils.isOfType(volumeNodeType, KubeTopologyUtils.K8S_TYPES_VOLUMES_CLAIM)){
-                ctx.log().error("StatefulSet "+hostOfContainer.getName()+" should match a PersistentVolumeClaim resource !");
-                return;
-            }
-            manageVolumeClaimTemplates(ctx, csar, topology, volumeNode, resourceNodeYamlStructures, controllerResourceNode);
-        }else{
-            managePersistentVolumeClaim(ctx, csar, topology, volumeNode, resourceNodeYamlStructures, controllerResourceNode);
-        }
-
-        Map<String, AbstractPropertyValue> deploymentResourceNodeProperties = resourceNodeYamlStructures.get(controllerResourceNode.getName());
-        Map<String, Object> volumeEntry = Maps.newHashMap();
-        AbstractPropertyValue name = PropertyUtil.getPropertyValueFromPath(volumeNode.getProperties(), "name");
-        AbstractPropertyValue volume_type = PropertyUtil.getPropertyValueFromPath(volumeNode.getProperties(), "volume_type");
-        AbstractPropertyValue volume_spec = PropertyUtil.getPropertyValueFromPath(volumeNode.getProperties(), "spec");
-        volumeEntry.put("name", name);
-        Object volumeSpecObject = volume_spec;
-        if (volume_spec == null) {
-            // if the volume spec is null, we want an empty object (JSON : {}) in the map
-            Map<String, Object> map = Maps.newHashMap();
-            volumeSpecObject = map;
-        }
-        volumeEntry.put(PropertyUtil.getScalarValue(volume_type), volumeSpecObject);
-        feedPropertyValue(deploymentResourceNodeProperties, "resource_def.spec.template.spec.volumes", volumeEntry, true);
-
-        if (ToscaTypeUtils.isOfType(volumeNodeType, KubeTopologyUtils.K8S_TYPES_SECRET_VOLUME)) {
-            // we must create a secret, the deployment should depend on it
-            NodeTemplate secretFactory = addNodeTemplate(csar, topology, volumeNode.getName() + "_Secret", KubeTopologyUtils.K8S_TYPES_SECRET_FACTORY,
-                    K8S_CSAR_VERSION);
-            String secretName = generateUniqueKubeName(ctx, volumeNode.getName());
-            setNodePropertyPathValue(csar, topology, secretFactory, "name", new ScalarPropertyValue(secretName));
-            // we must also define the secretName of the secret
-            TopologyModifierSupport.feedMapOrComplexPropertyEntry(volumeSpecObject, "secretName", secretName);
-
-            Map<String, DeploymentArtifact> artifacts = secretFactory.getArtifacts();
-            if (artifacts == null) {
-                artifacts = Maps.newHashMap();
-                secretFactory.setArtifacts(artifacts);
-            }
-            artifacts.put("resources", volumeNode.getArtifacts().get("resources"));
-            addRelationshipTemplate(csar, topology, controllerResourceNode, secretFactory.getName(), NormativeRelationshipConstants.DEPENDS_ON,
-                    "dependency", "feature");
-        }
-    }
-
-
-    private void manageVolumeClaimTemplates(FlowExecutionContext ctx, Csar csar, Topology topology, NodeTemplate volumeNode,
-    Map<String, Map<String, AbstractPropertyValue>> resourceNodeYamlStructures, NodeTemplate statefulsetResourceNode) {
-        AbstractPropertyValue size = PropertyUtil.getPropertyValueFromPath(volumeNode.getProperties(), "size");
-                if(size ==null){
-                    ctx.log().error("Volume node "+volumeNode.getName()+" should have a size !");
-                }
-
-        NodeType nodeType = ToscaContext.get(NodeType.class, volumeNode.getType());
-        String stsName = statefulsetResourceNode.getName();
-        Map<String, AbstractPropertyValue> stsResourceNodeProperties = resourceNodeYamlStructures.get(stsName);
-
-        //Create a list of claim templates if it doesn't exists
-        AbstractPropertyValue vctpl = PropertyUtil.getPropertyValueFromPath(stsResourceNodeProperties, "resource_def.spec.volumeClaimTemplates");
-        if(vctpl == null)
-            feedPropertyValue(stsResourceNodeProperties, "resource_def.spec.volumeClaimTemplates", new ListPropertyValue(Lists.newArrayList()), false);
-
-        //Feed volume infos
-        Map<String, AbstractPropertyValue> volumeClaimResource = Maps.newHashMap();
-        //String volumeName = generateKubeName(volumeNode.getName());
-        AbstractPropertyValue volumeName = PropertyUtil.getPropertyValueFromPath(volumeNode.getProperties(), "name");
-        feedPropertyValue(volumeClaimResource, "metadata.name", volumeName, false);
-        AbstractPropertyValue accessModesProperty = PropertyUtil.getPropertyValueFromPath(volumeNode.getProperties(), "accessModes");
-        feedPropertyValue(volumeClaimResource, "spec.accessModes", accessModesProperty, true);
-        PropertyDefinition propertyDefinition = nodeType.getProperties().get("size");
-        Object transformedSize = getTransformedValue(size, propertyDefinition, "");
-        feedPropertyValue(volumeClaimResource, "spec.resources.requests.storage", transformedSize, false);
-        NodeType volumeNodeType = ToscaContext.get(NodeType.class, volumeNode.getType());
-        if (ToscaTypeUtils.isOfType(volumeNodeType, KubeTopologyUtils.K8S_TYPES_VOLUMES_CLAIM_SC)) {
-            // add the storage class name to the claim
-            AbstractPropertyValue storageClassNameProperty = PropertyUtil.getPropertyValueFromPath(volumeNode.getProperties(), "storageClassName");
-            feedPropertyValue(volumeClaimResource, "resource_def.spec.storageClassName", storageClassNameProperty, false);
-        }
-
-        //Add one corresponding to the pvc matched into volumeClaimTemplates
-        feedPropertyValue(stsResourceNodeProperties, "resource_def.spec.volumeClaimTemplates", volumeClaimResource, true);
-
-
-    }
-
-    private void managePersistentVolumeClaim(FlowExecutionContext ctx, Csar csar, Topology topology, NodeTemplate volumeNode,
-            Map<String, Map<String, AbstractPropertyValue>> resourceNodeYamlStructures, NodeTemplate deploymentResourceNode) {
-        // in case of empty claimName for a PersistentVolumeClaimSource then create a node of type PersistentVolumeClaim
-        NodeType volumeNodeType = ToscaContext.get(NodeType.class, volumeNode.getType());
-        if (ToscaTypeUtils.isOfType(volumeNodeType, KubeTopologyUtils.K8S_TYPES_VOLUMES_CLAIM)) {
-            AbstractPropertyValue claimNamePV = PropertyUtil.getPropertyValueFromPath(volumeNode.getProperties(), "spec.claimName");
-            if (claimNamePV == null) {
-                NodeTemplate volumeClaimResource = addNodeTemplate(csar, topology, volumeNode.getName() + "_PVC", KubeTopologyUtils.K8S_TYPES_SIMPLE_RESOURCE,
-                        K8S_CSAR_VERSION);
-
-                Map<String, AbstractPropertyValue> volumeClaimResourceNodeProperties = Maps.newHashMap();
-                resourceNodeYamlStructures.put(volumeClaimResource.getName(), volumeClaimResourceNodeProperties);
-
-                String claimName = generateUniqueKubeName(ctx, volumeNode.getName());
-                // fill the node properties
-                feedPropertyValue(volumeClaimResource.getProperties(), "resource_type", new ScalarPropertyValue("pvc"), false);
-                feedPropertyValue(volumeClaimResource.getProperties(), "resource_id", new ScalarPropertyValue(claimName), false);
-                feedPropertyValue(volumeClaimResource.getProperties(), "json_path_expr", new ScalarPropertyValue(".items[0].status.phase"), false);
-                feedPropertyValue(volumeClaimResource.getProperties(), "json_path_value", new ScalarPropertyValue("Bound"), false);
-                // fill the future JSON spec
-                feedPropertyValue(volumeClaimResourceNodeProperties, "resource_def.kind", "PersistentVolumeClaim", false);
-                feedPropertyValue(volumeClaimResourceNodeProperties, "resource_def.apiVersion", "v1", false);
-                feedPropertyValue(volumeClaimResourceNodeProperties, "resource_def.metadata.name", claimName, false);
-                feedPropertyValue(volumeClaimResourceNodeProperties, "resource_def.metadata.labels.a4c_id", claimName, false);
-                AbstractPropertyValue accessModesProperty = PropertyUtil.getPropertyValueFromPath(volumeNode.getProperties(), "accessModes");
-                feedPropertyValue(volumeClaimResourceNodeProperties, "resource_def.spec.accessModes", accessModesProperty, true);
-                // get the size of the volume to define claim storage size
-                NodeType nodeType = ToscaContext.get(NodeType.class, volumeNode.getType());
-                AbstractPropertyValue size = PropertyUtil.getPropertyValueFromPath(volumeNode.getProperties(), "size");
-                if(size ==null){
-                    ctx.log().error("Volume node "+volumeNode.getName()+" should have a size !");
-                }
-                PropertyDefinition propertyDefinition = nodeType.getProperties().get("size");
-                Object transformedSize = getTransformedValue(size, propertyDefinition, "");
-                feedPropertyValue(volumeClaimResourceNodeProperties, "resource_def.spec.resources.requests.storage", transformedSize, false);
-                if (ToscaTypeUtils.isOfType(volumeNodeType, KubeTopologyUtils.K8S_TYPES_VOLUMES_CLAIM_SC)) {
-                    // add the storage class name to the claim
-                    AbstractPropertyValue storageClassNameProperty = PropertyUtil.getPropertyValueFromPath(volumeNode.getProperties(), "storageClassName");
-                    feedPropertyValue(volumeClaimResourceNodeProperties, "resource_def.spec.storageClassName", storageClassNameProperty, false);
-                }
-                // finally set the claimName of the volume node
-                feedPropertyValue(volumeNode.getProperties(), "spec.claimName", claimName, false);
-                // add a relationship between the deployment and this claim
-                addRelationshipTemplate(csar, topology, deploymentResourceNode, volumeClaimResource.getName(), NormativeRelationshipConstants.DEPENDS_ON,
-                        "dependency", "feature");
-            }
-        }
+    /**
+     * Check auto-scaling policies and build the equiv nodes : the policies are resolved when the stage is prepared, the nodes are added on
+     * write-back.
+     */
+    private Consumer<KubernetesModifierContext> prepareAutoScaling(KubernetesModifierContext context) {
+        List<Consumer<KubernetesModifierContext>> writeBacks = Lists.newArrayList();
+        Set<PolicyTemplate> policies = TopologyNavigationUtil.getPoliciesOfType(context.getTopology(), K8S_POLICIES_AUTO_SCALING, true);
+        policies.forEach(policyTemplate -> prepareAutoScaling(context, policyTemplate, writeBacks));
+        return c -> writeBacks.forEach(writeBack -> writeBack.accept(c));
     }
 
-    private void manageAutoScaling(Csar csar, Topology topology, PolicyTemplate policyTemplate, Map<String, NodeTemplate> nodeReplacementMap,
-            Map<String, Map<String, AbstractPropertyValue>> resourceNodeYamlStructures, FlowExecutionContext context) {
+    private void prepareAutoScaling(KubernetesModifierContext context, PolicyTemplate policyTemplate, List<Consumer<KubernetesModifierContext>> writeBacks) {
 
         if (CollectionUtils.isEmpty(policyTemplate.getTargets())) {
-            context.log().warn("Auto-scaling policy <{}> is not correctly configured, at least 1 targets is required. It will be ignored.",
-                    policyTemplate.getName());
+            writeBacks.add(c -> c.log().warn("Auto-scaling policy <{}> is not correctly configured, at least 1 targets is required. It will be ignored.",
+                    policyTemplate.getName()));
             return;
         }
 
         if (safe(policyTemplate.getProperties()).get("spec") == null) {
-            context.log()
-                    .warn("Auto-scaling policy <{}> is not correctly configured, property \"spec\" is required. It will be ignored.", policyTemplate.getName());
+            writeBacks.add(c -> c.log()
+                    .warn("Auto-scaling policy <{}> is not correctly configured, property \"spec\" is required. It will be ignored.", policyTemplate.getName()));
 
             return;
         }
 
-        Set<NodeTemplate> validTargets = getValidTargets(policyTemplate, topology, K8S_TYPES_DEPLOYMENT, invalidName -> context.log()
+        Set<NodeTemplate> validTargets = getValidTargets(policyTemplate, context.getTopology(), K8S_TYPES_DEPLOYMENT, invalidName -> writeBacks.add(c -> c.log()
                 .warn("Auto-scaling policy <{}>: will ignore target <{}> as it IS NOT an instance of <{}>.", policyTemplate.getName(), invalidName,
-                        K8S_TYPES_DEPLOYMENT));
+                        K8S_TYPES_DEPLOYMENT)));
 
         // for each target, add a SimpleResource for HorizontaPodAutoScaler, targeting the related DeploymentResource
-        validTargets.forEach(nodeTemplate -> addHorizontalPodAutoScalingResource(context, csar, topology, policyTemplate, nodeTemplate, nodeReplacementMap,
-                resourceNodeYamlStructures));
-
-    }
-
-    private void addHorizontalPodAutoScalingResource(FlowExecutionContext ctx, Csar csar, Topology topology, PolicyTemplate policyTemplate, NodeTemplate target,
-            Map<String, NodeTemplate> nodeReplacementMap, Map<String, Map<String, AbstractPropertyValue>> resourceNodeYamlStructures) {
-        String resourceBaseName = target.getName() + "_" + policyTemplate.getName();
-        NodeTemplate podAutoScalerResourceNode = addNodeTemplate(csar, topology, resourceBaseName + "_Resource", K8S_TYPES_SIMPLE_RESOURCE, K8S_CSAR_VERSION);
+        // the spec is transformed once, each resource gets a copy-on-write view of it
+        Map<String, Object> transformed = horizontalPodAutoscalerGenerator.getTransformedSpec(getGenerationContext(context), policyTemplate);
+        validTargets.forEach(nodeTemplate -> writeBacks
+                .add(c -> horizontalPodAutoscalerGenerator.generate(getGenerationContext(c), policyTemplate, nodeTemplate, transformed)));
 
-        Map<String, AbstractPropertyValue> podAutoScalerResourceNodeProperties = Maps.newHashMap();
-        resourceNodeYamlStructures.put(podAutoScalerResourceNode.getName(), podAutoScalerResourceNodeProperties);
-
-        NodeTemplate targetDeploymentResourceNode = nodeReplacementMap.get(target.getName());
-        Map<String, AbstractPropertyValue> targetDeploymentResourceNodeProps = resourceNodeYamlStructures.get(targetDeploymentResourceNode.getName());
-        String podAutoScalerName = generateUniqueKubeName(ctx, resourceBaseName);
-
-        feedPropertyValue(podAutoScalerResourceNode.getProperties(), "resource_type", new ScalarPropertyValue("hpa"), false);
-        feedPropertyValue(podAutoScalerResourceNode.getProperties(), "resource_id", new ScalarPropertyValue(podAutoScalerName), false);
-
-        // fill the future JSON spec
-        feedPropertyValue(podAutoScalerResourceNodeProperties, "resource_def.kind", "HorizontalPodAutoscaler", false);
-        feedPropertyValue(podAutoScalerResourceNodeProperties, "resource_def.apiVersion", "autoscaling/v2beta1", false);
-        feedPropertyValue(podAutoScalerResourceNodeProperties, "resource_def.metadata.name", podAutoScalerName, false);
-        feedPropertyValue(podAutoScalerResourceNodeProperties, "resource_def.metadata.labels.a4c_id", podAutoScalerName, false);
-
-        // Do this to make sure integer values are not serialized as string
-        ComplexPropertyValue spec = CloneUtil.clone((ComplexPropertyValue) policyTemplate.getProperties().get("spec"));
-        PolicyType policyType = ToscaContext.get(PolicyType.class, policyTemplate.getType());
-        PropertyDefinition propertyDefinition = policyType.getProperties().get("spec");
-        Map<String, Object> transformed = safe((Map<String, Object>) getTransformedValue(spec, propertyDefinition, ""));
-
-        // get targeted resource identification properties
-        AbstractPropertyValue apiVersionProperty = PropertyUtil.getPropertyValueFromPath(targetDeploymentResourceNodeProps, "resource_def.apiVersion");
-        feedPropertyValue(podAutoScalerResourceNodeProperties, "resource_def.spec.scaleTargetRef.apiVersion", apiVersionProperty, false);
-        AbstractPropertyValue kindProperty = PropertyUtil.getPropertyValueFromPath(targetDeploymentResourceNodeProps, "resource_def.kind");
-        feedPropertyValue(podAutoScalerResourceNodeProperties, "resource_def.spec.scaleTargetRef.kind", kindProperty, false);
-        AbstractPropertyValue nameProperty = PropertyUtil.getPropertyValueFromPath(targetDeploymentResourceNodeProps, "resource_def.metadata.name");
-        feedPropertyValue(podAutoScalerResourceNodeProperties, "resource_def.spec.scaleTargetRef.name", nameProperty, false);
-
-        // min and max replicas from the policy template
-        feedPropertyValue(podAutoScalerResourceNodeProperties, "resource_def.spec.minReplicas", transformed.get("minReplicas"), false);
-        feedPropertyValue(podAutoScalerResourceNodeProperties, "resource_def.spec.maxReplicas", transformed.get("maxReplicas"), false);
-
-        // clear metrics and add
-        feedPropertyValue(podAutoScalerResourceNodeProperties, "resource_def.spec.metrics", cleanMetricsBaseOnType((List<Object>) transformed.get("metrics")),
-                false);
     }
 
-    private List<Object> cleanMetricsBaseOnType(List<Object> metrics) {
-        if (metrics != null) {
-            metrics.forEach(metric -> {
-                String type = (String) MapUtil.get(metric, "type");
-                // remove all entry that does not match the type defined.
-                // see org.alien4cloud.kubernetes.api.datatypes.autoscaler.MetricSpec for details
-                ((Map<String, Object>) metric).entrySet()
-                        .removeIf(entry -> !"type".equals(entry.getKey()) && !StringUtils.equalsAnyIgnoreCase(entry.getKey(), type));
-            });
-        }
-        return metrics;
-    }
-
-    private AbstractPropertyValue resolveContainerInput(Topology topology, NodeTemplate deploymentResource, NodeTemplate nodeTemplate,
+    private AbstractPropertyValue resolveContainerInput(KubernetesModifierContext context, NodeTemplate deploymentResource, NodeTemplate nodeTemplate,
             FunctionEvaluatorContext functionEvaluatorContext, Map<String,
             List<String>> serviceIpAddressesPerDeploymentResource, String inputName,
-            AbstractPropertyValue iValue, FlowExecutionContext context) {
+            AbstractPropertyValue iValue, List<String> warnings) {
         if (iValue instanceof ConcatPropertyValue) {
             ConcatPropertyValue cpv = (ConcatPropertyValue) iValue;
             StringBuilder sb = new StringBuilder();
             for (AbstractPropertyValue param : cpv.getParameters()) {
-                AbstractPropertyValue v = resolveContainerInput(topology, deploymentResource, nodeTemplate, functionEvaluatorContext,
-                        serviceIpAddressesPerDeploymentResource, inputName, param, context);
+                AbstractPropertyValue v = resolveContainerInput(context, deploymentResource, nodeTemplate, functionEvaluatorContext,
+                        serviceIpAddressesPerDeploymentResource, inputName, param, warnings);
                 if (v instanceof ScalarPropertyValue) {
                     sb.append(PropertyUtil.getScalarValue(v));
                 } else {
                     // TODO: we need a AbstractPropertyValue serializer
-                    context.getLog().warn("Some element in concat operation for input <" + inputName + "> (" + serializePropertyValue(param)+ ") of container <" + nodeTemplate.getName() + "> resolved to a complex result. Let's ignore it.");
+                    warnings.add("Some element in concat operation for input <" + inputName + "> (" + serializePropertyValue(param)+ ") of container <" + nodeTemplate.getName() + "> resolved to a complex result. Let's ignore it.");
                 }
             }
             return new ScalarPropertyValue(sb.toString());
         }
-        if (KubeTopologyUtils.isTargetedEndpointProperty(topology, nodeTemplate, iValue)) {
-            return KubeTopologyUtils.getTargetedEndpointProperty(topology, nodeTemplate, iValue);
+        if (KubeTopologyUtils.isTargetedEndpointProperty(context.getTopology(), nodeTemplate, iValue)) {
+            return KubeTopologyUtils.getTargetedEndpointProperty(context.getTopology(), nodeTemplate, iValue);
         }
-        Optional<String> dependencyIpAddress = KubeTopologyUtils.getDependencyIpAddress(topology, nodeTemplate, iValue, serviceIpAddressesPerDeploymentResource, deploymentResource.getName());
+        Optional<String> dependencyIpAddress = KubeTopologyUtils.getDependencyIpAddress(context, nodeTemplate, iValue, serviceIpAddressesPerDeploymentResource, deploymentResource.getName());
         if (dependencyIpAddress.isPresent()) {
             return new ScalarPropertyValue(dependencyIpAddress.get());
         }
@@ -688,11 +496,11 @@ public class KubernetesFinalTopologyModifier extends AbstractKubernetesModifier
                 if (propertyValue instanceof PropertyValue) {
                     return propertyValue;
                 } else {
-                    context.getLog().warn("Property is not PropertyValue but <" + propertyValue.getClass() + "> for input <" + inputName + "> (" + serializePropertyValue(propertyValue)+ ") of container <" + nodeTemplate.getName() + ">");
+                    warnings.add("Property is not PropertyValue but <" + propertyValue.getClass() + "> for input <" + inputName + "> (" + serializePropertyValue(propertyValue)+ ") of container <" + nodeTemplate.getName() + ">");
                 }
             }
         } catch (IllegalArgumentException iae) {
-            context.getLog().warn("Can't resolve value for input <" + inputName + "> (" + serializePropertyValue(iValue)+ ") of container <" + nodeTemplate.getName() + ">, error was : " + iae.getMessage());
+            warnings.add("Can't resolve value for input <" + inputName + "> (" + serializePropertyValue(iValue)+ ") of container <" + nodeTemplate.getName() + ">, error was : " + iae.getMessage());
         }
         return null;
     }
@@ -705,22 +513,20 @@ public class KubernetesFinalTopologyModifier extends AbstractKubernetesModifier
         }
     }
 
-    private void manageContainerDependencies(Csar csar, Topology topology, NodeTemplate containerNode, NodeTemplate controllerResource, Map<String, NodeTemplate> nodeReplacementMap,FlowExecutionContext context) {
+    private void manageContainerDependencies(KubernetesModifierContext context, NodeTemplate containerNode, NodeTemplate controllerResource) {
 
-        Set<NodeTemplate> dependencies = TopologyNavigationUtil.getSourceNodesByRelationshipType(topology, containerNode, NormativeRelationshipConstants.DEPENDS_ON);
+        Set<NodeTemplate> dependencies = context.getRelationshipIndex().getSourceNodesByRelationshipType(containerNode, NormativeRelationshipConstants.DEPENDS_ON);
 
         dependencies.forEach(sourceContainerNode -> {
             // get the hosting node
-            NodeTemplate sourceRuntimeNode = TopologyNavigationUtil.getImmediateHostTemplate(topology,
-                    sourceContainerNode);
+            NodeTemplate sourceRuntimeNode = context.getHostChains().getImmediateHost(sourceContainerNode);
             if (sourceRuntimeNode != null) {
-                NodeTemplate sourceControllerNode = TopologyNavigationUtil.getImmediateHostTemplate(topology,
-                        sourceRuntimeNode);
+                NodeTemplate sourceControllerNode = context.getHostChains().getImmediateHost(sourceRuntimeNode);
                 if (sourceControllerNode != null) {
                     // find the replacer
-                    NodeTemplate sourceControllerResource = nodeReplacementMap.get(sourceControllerNode.getName());
+                    NodeTemplate sourceControllerResource = context.getReplacements().get(sourceControllerNode.getName());
                     if (sourceControllerResource != null) {
-                        RelationshipTemplate relationshipTemplate = addRelationshipTemplate(csar, topology,
+                        RelationshipTemplate relationshipTemplate = addRelationshipTemplate(context,
                                 sourceControllerResource, controllerResource.getName(),
                                 NormativeRelationshipConstants.DEPENDS_ON, "dependency", "feature");
                         setNodeTagValue(relationshipTemplate, A4C_KUBERNETES_MODIFIER_TAG + "_created_from",
@@ -732,227 +538,242 @@ public class KubernetesFinalTopologyModifier extends AbstractKubernetesModifier
 
     }
 
-    private void manageContainer(Csar csar, Topology topology, NodeTemplate containerNode, Map<String, NodeTemplate> nodeReplacementMap,
-            Map<String, Map<String, AbstractPropertyValue>> resourceNodeYamlStructures, FunctionEvaluatorContext functionEvaluatorContext,
-            Map<String, List<String>> serviceIpAddressesPerDeploymentResource, FlowExecutionContext context) {
-        {
-            // get the hosting node
-            NodeTemplate controllerNode = TopologyNavigationUtil.getImmediateHostTemplate(topology, containerNode);
-            // find the replacer
-            NodeTemplate controllerResource = nodeReplacementMap.get(controllerNode.getName());
-            Map<String, AbstractPropertyValue> controllerResourceNodeProperties = resourceNodeYamlStructures.get(controllerResource.getName());
-
-            // if the container if of type ConfigurableDockerContainer we must create a ConfigMapFactory per config_settings entry
-            // a map of input_prefix -> List<NodeTemplate> (where NodeTemplate is an instance of ConfigMapFactory)
-            // we can have several configMapFactory using the same prefix
-            Map<String, List<NodeTemplate>> configMapFactories = Maps.newHashMap();
-
-            // resolve env variables
-            Set<NodeTemplate> hostedContainers = TopologyNavigationUtil.getSourceNodes(topology, containerNode, "host");
-            for (NodeTemplate nodeTemplate : hostedContainers) {
-                // we should have a single hosted docker container
-                manageContainerDependencies(csar, topology, nodeTemplate, controllerResource, nodeReplacementMap, context);
-
-                AbstractPropertyValue propertyValue = PropertyUtil.getPropertyValueFromPath(safe(nodeTemplate.getProperties()), "docker_run_args");
-                if (propertyValue != null) {
-                    if (propertyValue instanceof ListPropertyValue) {
-                        setNodePropertyPathValue(csar, topology, containerNode, "container.args", propertyValue);
-                    } else {
-                        context.getLog().warn("Ignoring args for container <" + nodeTemplate.getName() + ">, it should be a list but it is not");
-                    }
+    /**
+     * Change the topology for the given container : dependencies of its controller resource, args and config maps.
+     *
+     * @return the config map factories of the container, per input prefix.
+     */
+    private Map<String, List<NodeTemplate>> prepareContainer(KubernetesModifierContext context, NodeTemplate containerNode, NodeTemplate controllerResource) {
+        ResourceDocument controllerResourceNodeProperties = context.getYamlResources().get(controllerResource.getName());
+
+        // if the container if of type ConfigurableDockerContainer we must create a ConfigMapFactory per config_settings entry
+        // a map of input_prefix -> List<NodeTemplate> (where NodeTemplate is an instance of ConfigMapFactory)
+        // we can have several configMapFactory using the same prefix
+        Map<String, List<NodeTemplate>> configMapFactories = Maps.newHashMap();
+
+        for (NodeTemplate nodeTemplate : getHostedContainers(context, containerNode)) {
+            // we should have a single hosted docker container
+            manageContainerDependencies(context, nodeTemplate, controllerResource);
+
+            AbstractPropertyValue propertyValue = PropertyUtil.getPropertyValueFromPath(safe(nodeTemplate.getProperties()), "docker_run_args");
+            if (propertyValue != null) {
+                if (propertyValue instanceof ListPropertyValue) {
+                    setNodePropertyPathValue(context.getCsar(), context.getTopology(), containerNode, "container.args", propertyValue);
+                } else {
+                    context.log().warn("Ignoring args for container <" + nodeTemplate.getName() + ">, it should be a list but it is not");
                 }
+            }
 
-                NodeType containerType = ToscaContext.get(NodeType.class, nodeTemplate.getType());
-                if (ToscaTypeUtils.isOfType(containerType, KubeTopologyUtils.A4C_TYPES_APPLICATION_CONFIGURABLE_DOCKER_CONTAINER)) {
-                    AbstractPropertyValue config_settings = safe(nodeTemplate.getProperties()).get("config_settings");
-                    if (config_settings != null && config_settings instanceof ListPropertyValue) {
-                        ListPropertyValue config_settings_list = (ListPropertyValue)config_settings;
-                        for (Object config_setting_obj : config_settings_list.getValue()) {
-                            if (config_setting_obj instanceof Map) {
-                                Map<String, String> config_setting_map = (Map<String, String>)config_setting_obj;
-                                String mount_path = config_setting_map.get("mount_path");
-                                String mount_subPath = config_setting_map.get("mount_subPath");
-                                String input_prefix = config_setting_map.get("input_prefix");
-                                String config_path = config_setting_map.get("config_path");
-
-                                NodeTemplate configMapFactoryNode = addNodeTemplate(csar, topology, nodeTemplate.getName() + "_ConfigMap_" + input_prefix, KubeTopologyUtils.K8S_TYPES_CONFIG_MAP_FACTORY,
-                                        K8S_CSAR_VERSION);
-                                AbstractPropertyValue containerNameAPV = PropertyUtil.getPropertyValueFromPath(safe(containerNode.getProperties()), "container.name");
-                                String containerName = ((ScalarPropertyValue)containerNameAPV).getValue();
-                                String configMapName = generateUniqueKubeName(context, containerName + "_ConfigMap_" + input_prefix);
-                                configMapName = configMapName.replaceAll("--", "-");
-                                configMapName = configMapName.replaceAll("\\.", "-");
-                                if (configMapName.endsWith("-")) {
-                                    configMapName = configMapName.substring(0, configMapName.length() -1);
-                                }
-                                setNodePropertyPathValue(csar, topology, configMapFactoryNode, "name", new ScalarPropertyValue(configMapName));
-                                DeploymentArtifact configsArtifact = configMapFactoryNode.getArtifacts().get("configs");
-                                configsArtifact.setArchiveName(topology.getArchiveName());
-                                configsArtifact.setArchiveVersion(topology.getArchiveVersion());
-                                configsArtifact.setArtifactRepository(ArtifactRepositoryConstants.ALIEN_TOPOLOGY_REPOSITORY);
-                                // the artifact ref using the value found in setting
-                                configsArtifact.setArtifactRef(config_path);
-
-                                List<NodeTemplate> configMapFactoryList = configMapFactories.get(input_prefix);
-                                if (!configMapFactories.containsKey(input_prefix)) {
-                                    configMapFactories.put(input_prefix, Lists.newArrayList());
-                                }
-                                configMapFactories.get(input_prefix).add(configMapFactoryNode);
-
-                                // add the configMap to the deployment
-                                Map<String, Object> volumeEntry = Maps.newHashMap();
-                                Map<String, Object> volumeSpec = Maps.newHashMap();
-                                volumeSpec.put("name", configMapName);
-                                volumeEntry.put("name", configMapName);
-                                volumeEntry.put("configMap", volumeSpec);
-                                feedPropertyValue(controllerResourceNodeProperties, "resource_def.spec.template.spec.volumes", volumeEntry, true);
-
-                                // add the volume to the container
-                                Map<String, Object> containerVolumeEntry = Maps.newHashMap();
-                                containerVolumeEntry.put("name", configMapName);
-                                containerVolumeEntry.put("mountPath", mount_path);
-                                if (StringUtils.isNotEmpty(mount_subPath)) {
-                                    containerVolumeEntry.put("subPath", mount_subPath);
-                                }
-                                appendNodePropertyPathValue(csar, topology, containerNode, "container.volumeMounts", new ComplexPropertyValue(containerVolumeEntry));
-
-                                // add all a dependsOn relationship between the configMapFactory and each dependsOn target of deploymentResource
-                                Set<RelationshipTemplate> dependsOnRelationships = TopologyNavigationUtil.getTargetRelationships(controllerResource, "dependency");
-                                dependsOnRelationships.forEach(dependsOnRelationship -> {
-                                    addRelationshipTemplate(csar, topology, configMapFactoryNode, dependsOnRelationship.getTarget(),
-                                            NormativeRelationshipConstants.DEPENDS_ON, "dependency", "feature");
-                                    removeRelationship(csar, topology, controllerResource.getName(), dependsOnRelationship.getName());
-                                });
-                                // and finally add a dependsOn between the deploymentResource and the configMapFactory
-                                addRelationshipTemplate(csar, topology, controllerResource, configMapFactoryNode.getName(),
-                                        NormativeRelationshipConstants.DEPENDS_ON, "dependency", "feature");
+            if (context.getTypes().isNodeOfType(nodeTemplate.getType(), KubeTopologyUtils.A4C_TYPES_APPLICATION_CONFIGURABLE_DOCKER_CONTAINER)) {
+                AbstractPropertyValue config_settings = safe(nodeTemplate.getProperties()).get("config_settings");
+                if (config_settings != null && config_settings instanceof ListPropertyValue) {
+                    ListPropertyValue config_settings_list = (ListPropertyValue)config_settings;
+                    for (Object config_setting_obj : config_settings_list.getValue()) {
+                        if (config_setting_obj instanceof Map) {
+                            Map<String, String> config_setting_map = (Map<String, String>)config_setting_obj;
+                            String mount_path = config_setting_map.get("mount_path");
+                            String mount_subPath = config_setting_map.get("mount_subPath");
+                            String input_prefix = config_setting_map.get("input_prefix");
+                            String config_path = config_setting_map.get("config_path");
+
+                            NodeTemplate configMapFactoryNode = addNodeTemplate(context, nodeTemplate.getName() + "_ConfigMap_" + input_prefix, KubeTopologyUtils.K8S_TYPES_CONFIG_MAP_FACTORY,
+                                    K8S_CSAR_VERSION);
+                            AbstractPropertyValue containerNameAPV = CONTAINER_NAME.get(safe(containerNode.getProperties()));
+                            String containerName = ((ScalarPropertyValue)containerNameAPV).getValue();
+                            String configMapName = generateUniqueKubeName(context.getFlowExecutionContext(), KubeNameAllocator.ROLE_CONFIG_MAP, containerName + "_ConfigMap_" + input_prefix);
+                            setNodePropertyPathValue(context.getCsar(), context.getTopology(), configMapFactoryNode, "name", new ScalarPropertyValue(configMapName));
+                            DeploymentArtifact configsArtifact = configMapFactoryNode.getArtifacts().get("configs");
+                            configsArtifact.setArchiveName(context.getTopology().getArchiveName());
+                            configsArtifact.setArchiveVersion(context.getTopology().getArchiveVersion());
+                            configsArtifact.setArtifactRepository(ArtifactRepositoryConstants.ALIEN_TOPOLOGY_REPOSITORY);
+                            // the artifact ref using the value found in setting
+                            configsArtifact.setArtifactRef(config_path);
+
+                            List<NodeTemplate> configMapFactoryList = configMapFactories.get(input_prefix);
+                            if (!configMapFactories.containsKey(input_prefix)) {
+                                configMapFactories.put(input_prefix, Lists.newArrayList());
                             }
+                            configMapFactories.get(input_prefix).add(configMapFactoryNode);
+
+                            // add the configMap to the deployment
+                            Map<String, Object> volumeEntry = Maps.newHashMap();
+                            Map<String, Object> volumeSpec = Maps.newHashMap();
+                            volumeSpec.put("name", configMapName);
+                            volumeEntry.put("name", configMapName);
+                            volumeEntry.put("configMap", volumeSpec);
+                            RESOURCE_DEF_SPEC_TEMPLATE_SPEC_VOLUMES.append(controllerResourceNodeProperties, volumeEntry);
+
+                            // add the volume to the container
+                            Map<String, Object> containerVolumeEntry = Maps.newHashMap();
+                            containerVolumeEntry.put("name", configMapName);
+                            containerVolumeEntry.put("mountPath", mount_path);
+                            if (StringUtils.isNotEmpty(mount_subPath)) {
+                                containerVolumeEntry.put("subPath", mount_subPath);
+                            }
+                            appendNodePropertyPathValue(context.getCsar(), context.getTopology(), containerNode, "container.volumeMounts", new ComplexPropertyValue(containerVolumeEntry));
+
+                            // add all a dependsOn relationship between the configMapFactory and each dependsOn target of deploymentResource
+                            Set<RelationshipTemplate> dependsOnRelationships = TopologyNavigationUtil.getTargetRelationships(controllerResource, "dependency");
+                            dependsOnRelationships.forEach(dependsOnRelationship -> {
+                                addRelationshipTemplate(context, configMapFactoryNode, dependsOnRelationship.getTarget(),
+                                        NormativeRelationshipConstants.DEPENDS_ON, "dependency", "feature");
+                                removeRelationship(context, controllerResource.getName(), dependsOnRelationship.getName());
+                            });
+                            // and finally add a dependsOn between the deploymentResource and the configMapFactory
+                            addRelationshipTemplate(context, controllerResource, configMapFactoryNode.getName(),
+                                    NormativeRelationshipConstants.DEPENDS_ON, "dependency", "feature");
                         }
                     }
                 }
+            }
+        }
+        return configMapFactories;
+    }
 
-                Operation createOp = KubeTopologyUtils.getContainerImageOperation(nodeTemplate);
-                if (createOp != null) {
-                    safe(createOp.getInputParameters()).forEach((inputName, iValue) -> {
-                        if (iValue instanceof AbstractPropertyValue) {
-                            AbstractPropertyValue v =
-                                    resolveContainerInput(topology, controllerResource, nodeTemplate, functionEvaluatorContext,
-                                            serviceIpAddressesPerDeploymentResource, inputName, (AbstractPropertyValue) iValue, context);
-                            if (v != null) {
-                                if (inputName.startsWith("ENV_")) {
-                                    String envKey = inputName.substring(4);
-                                    ComplexPropertyValue envEntry = new ComplexPropertyValue();
-                                    envEntry.setValue(Maps.newHashMap());
-                                    envEntry.getValue().put("name", envKey);
-                                    envEntry.getValue().put("value", v);
-                                    try {
-                                        appendNodePropertyPathValue(csar, topology, containerNode, "container.env", envEntry);
-                                        context.getLog().info("Env variable <" + envKey + "> for container <" + nodeTemplate.getName() + "> set to value <" + serializePropertyValue(v) + ">");
-                                    } catch(Exception e) {
-                                        context.getLog().warn("Not able to set env variable <" + envKey + "> to value <" + serializePropertyValue(v) + "> for container <" + nodeTemplate.getName() + ">, error was : " + e.getMessage());
-                                    }
-                                } else if (!configMapFactories.isEmpty()) {
-                                    // maybe it's a config that should be associated with a configMap
-                                    for (Map.Entry<String, List<NodeTemplate>> configMapFactoryEntry : configMapFactories.entrySet()) {
-                                        String inputPrefix = configMapFactoryEntry.getKey();
-                                        if (inputName.startsWith(inputPrefix)) {
-                                            // ok this input is related to this configMapFactory
-                                            String varName = inputName.substring(inputPrefix.length());
-                                            if (!(v instanceof ScalarPropertyValue)) {
-                                                context.getLog().warn("Ignoring INPUT named <" + inputName + "> for container <" + nodeTemplate.getName() + "> because the value is not a scalar (" + serializePropertyValue(v) + ") and cannot be added to a configMap");
-                                            } else {
-                                                for (NodeTemplate configMapFactory : configMapFactoryEntry.getValue()) {
-                                                    try {
-                                                        setNodePropertyPathValue(csar, topology, configMapFactory, "input_variables." + varName, v);
-                                                        context.getLog().info("Successfully set INPUT named <" + inputName + "> with value <" + serializePropertyValue(v) + "> to configMap <" + configMapFactory.getName() + "> for container <" + nodeTemplate.getName() + ">");
-                                                    } catch(Exception e) {
-                                                        context.getLog().warn("Not able to set INPUT named <" + inputName + "> with value <" + serializePropertyValue(v) + "> to configMap, <" + configMapFactory.getName() + "> for container <" + nodeTemplate.getName() + ">, error was : " + e.getMessage());
-                                                    }
-                                                }
-                                            }
-                                            break;
+    /**
+     * Resolve the inputs of the docker containers hosted on the given container. Only reads the topology, so that the containers of
+     * different controller resources can be resolved concurrently.
+     */
+    private void resolveContainerInputs(KubernetesModifierContext context, KubeContainerGroup group, NodeTemplate containerNode,
+            FunctionEvaluatorContext functionEvaluatorContext) {
+        List<KubeContainerGroup.ResolvedInput> resolvedInputs = group.getResolvedInputs(containerNode);
+        for (NodeTemplate nodeTemplate : getHostedContainers(context, containerNode)) {
+            Operation createOp = KubeTopologyUtils.getContainerImageOperation(nodeTemplate);
+            if (createOp != null) {
+                safe(createOp.getInputParameters()).forEach((inputName, iValue) -> {
+                    KubeContainerGroup.ResolvedInput resolvedInput = new KubeContainerGroup.ResolvedInput(nodeTemplate, inputName, iValue);
+                    if (iValue instanceof AbstractPropertyValue) {
+                        resolvedInput.setValue(resolveContainerInput(context, group.getControllerResource(), nodeTemplate, functionEvaluatorContext,
+                                group.getServiceIpAddressesPerDeploymentResource(), inputName, (AbstractPropertyValue) iValue, resolvedInput.getWarnings()));
+                    }
+                    resolvedInputs.add(resolvedInput);
+                });
+            }
+        }
+    }
+
+    private static List<NodeTemplate> getHostedContainers(KubernetesModifierContext context, NodeTemplate containerNode) {
+        return context.getRelationshipIndex().getSourceNodes(containerNode, "host").stream().sorted(Comparator.comparing(NodeTemplate::getName))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Apply the resolved inputs of the given container, then add it to its controller resource.
+     */
+    private void completeContainer(KubernetesModifierContext context, KubeContainerGroup group, NodeTemplate containerNode,
+            Map<String, List<NodeTemplate>> configMapFactories) {
+        NodeTemplate controllerResource = group.getControllerResource();
+        ResourceDocument controllerResourceNodeProperties = context.getYamlResources().get(controllerResource.getName());
+
+        // set env variables
+        for (KubeContainerGroup.ResolvedInput resolvedInput : group.getResolvedInputs(containerNode)) {
+            NodeTemplate nodeTemplate = resolvedInput.getSourceNode();
+            String inputName = resolvedInput.getInputName();
+            Object iValue = resolvedInput.getInputValue();
+            resolvedInput.getWarnings().forEach(warning -> context.log().warn(warning));
+            if (iValue instanceof AbstractPropertyValue) {
+                AbstractPropertyValue v = resolvedInput.getValue();
+                if (v != null) {
+                    if (inputName.startsWith("ENV_")) {
+                        String envKey = inputName.substring(4);
+                        ComplexPropertyValue envEntry = new ComplexPropertyValue();
+                        envEntry.setValue(Maps.newHashMap());
+                        envEntry.getValue().put("name", envKey);
+                        envEntry.getValue().put("value", v);
+                        try {
+                            appendNodePropertyPathValue(context.getCsar(), context.getTopology(), containerNode, "container.env", envEntry);
+                            context.log().info("Env variable <" + envKey + "> for container <" + nodeTemplate.getName() + "> set to value <" + serializePropertyValue(v) + ">");
+                        } catch(Exception e) {
+                            context.log().warn("Not able to set env variable <" + envKey + "> to value <" + serializePropertyValue(v) + "> for container <" + nodeTemplate.getName() + ">, error was : " + e.getMessage());
+                        }
+                    } else if (!configMapFactories.isEmpty()) {
+                        // maybe it's a config that should be associated with a configMap
+                        for (Map.Entry<String, List<NodeTemplate>> configMapFactoryEntry : configMapFactories.entrySet()) {
+                            String inputPrefix = configMapFactoryEntry.getKey();
+                            if (inputName.startsWith(inputPrefix)) {
+                                // ok this input is related to this configMapFactory
+                                String varName = inputName.substring(inputPrefix.length());
+                                if (!(v instanceof ScalarPropertyValue)) {
+                                    context.log().warn("Ignoring INPUT named <" + inputName + "> for container <" + nodeTemplate.getName() + "> because the value is not a scalar (" + serializePropertyValue(v) + ") and cannot be added to a configMap");
+                                } else {
+                                    for (NodeTemplate configMapFactory : configMapFactoryEntry.getValue()) {
+                                        try {
+                                            setNodePropertyPathValue(context.getCsar(), context.getTopology(), configMapFactory, "input_variables." + varName, v);
+                                            context.log().info("Successfully set INPUT named <" + inputName + "> with value <" + serializePropertyValue(v) + "> to configMap <" + configMapFactory.getName() + "> for container <" + nodeTemplate.getName() + ">");
+                                        } catch(Exception e) {
+                                            context.log().warn("Not able to set INPUT named <" + inputName + "> with value <" + serializePropertyValue(v) + "> to configMap, <" + configMapFactory.getName() + "> for container <" + nodeTemplate.getName() + ">, error was : " + e.getMessage());
                                         }
                                     }
                                 }
-                            } else {
-                                context.log().warn("Not able to define value for input <" + inputName + "> (" + serializePropertyValue((AbstractPropertyValue)iValue) + ") of container <" + nodeTemplate.getName() + ">");
+                                break;
                             }
-                        } else {
-                            context.log().warn("Input <" + inputName + "> of container <" + nodeTemplate.getName() + "> is ignored since it's not of type AbstractPropertyValue but " + iValue.getClass().getSimpleName());
                         }
-                    });
+                    }
+                } else {
+                    context.log().warn("Not able to define value for input <" + inputName + "> (" + serializePropertyValue((AbstractPropertyValue)iValue) + ") of container <" + nodeTemplate.getName() + ">");
                 }
+            } else {
+                context.log().warn("Input <" + inputName + "> of container <" + nodeTemplate.getName() + "> is ignored since it's not of type AbstractPropertyValue but " + iValue.getClass().getSimpleName());
             }
+        }
 
-            // populate the service_dependency_lookups property of the deployment resource nodes
-            serviceIpAddressesPerDeploymentResource.forEach((deploymentResourceNodeName, ipAddressLookups) -> {
-                NodeTemplate deploymentResourceNode = topology.getNodeTemplates().get(deploymentResourceNodeName);
-                StringBuilder serviceDependencyDefinitionsValue = new StringBuilder();
-                for (int i = 0; i < ipAddressLookups.size(); i++) {
-                    if (i > 0) {
-                        serviceDependencyDefinitionsValue.append(",");
-                    }
-                    serviceDependencyDefinitionsValue.append("SERVICE_IP_LOOKUP").append(i);
-                    serviceDependencyDefinitionsValue.append(":").append(ipAddressLookups.get(i));
-                }
-                setNodePropertyPathValue(csar, topology, deploymentResourceNode, "service_dependency_lookups",
-                        new ScalarPropertyValue(serviceDependencyDefinitionsValue.toString()));
-                // we set the same property for each configMapFactory if any
-                configMapFactories.forEach((input_prefix, configMapFactoryNodeTemplate) -> {
-                    configMapFactoryNodeTemplate.iterator().forEachRemaining(nodeTemplate -> {
-                        setNodePropertyPathValue(csar, topology, nodeTemplate, "service_dependency_lookups",
-                                new ScalarPropertyValue(serviceDependencyDefinitionsValue.toString()));
-                    });
+        // we set the service_dependency_lookups property of the controller resource for each configMapFactory if any
+        String serviceDependencyLookups = group.getServiceDependencyLookups();
+        if (serviceDependencyLookups != null) {
+            configMapFactories.forEach((input_prefix, configMapFactoryNodeTemplate) -> {
+                configMapFactoryNodeTemplate.iterator().forEachRemaining(nodeTemplate -> {
+                    setNodePropertyPathValue(context.getCsar(), context.getTopology(), nodeTemplate, "service_dependency_lookups",
+                            new ScalarPropertyValue(serviceDependencyLookups));
                 });
             });
+        }
 
-            // add an entry in the deployment resource
-            AbstractPropertyValue propertyValue = PropertyUtil.getPropertyValueFromPath(safe(containerNode.getProperties()), "container");
-            // if a repository is defined concat the repo to the image
-            AbstractPropertyValue repositoryPropertyValue = PropertyUtil.getPropertyValueFromPath(safe(containerNode.getProperties()), "repository");
-            if (repositoryPropertyValue instanceof ScalarPropertyValue && propertyValue instanceof ComplexPropertyValue) {
-                ScalarPropertyValue imagePropValue = (ScalarPropertyValue) ((ComplexPropertyValue) propertyValue).getValue().get("image");
-                String image = ((ScalarPropertyValue) repositoryPropertyValue).getValue() + "/" + imagePropValue.getValue();
-                imagePropValue.setValue(image);
-            }
-            // transform data
-            NodeType nodeType = ToscaContext.get(NodeType.class, containerNode.getType());
-            PropertyDefinition propertyDefinition = nodeType.getProperties().get("container");
-            Object transformedValue = getTransformedValue(propertyValue, propertyDefinition, "");
-            feedPropertyValue(controllerResourceNodeProperties, "resource_def.spec.template.spec.containers", transformedValue, true);
+        // add an entry in the deployment resource
+        AbstractPropertyValue propertyValue = PropertyUtil.getPropertyValueFromPath(safe(containerNode.getProperties()), "container");
+        // if a repository is defined concat the repo to the image
+        AbstractPropertyValue repositoryPropertyValue = PropertyUtil.getPropertyValueFromPath(safe(containerNode.getProperties()), "repository");
+        if (repositoryPropertyValue instanceof ScalarPropertyValue && propertyValue instanceof ComplexPropertyValue) {
+            ScalarPropertyValue imagePropValue = (ScalarPropertyValue) ((ComplexPropertyValue) propertyValue).getValue().get("image");
+            String image = ((ScalarPropertyValue) repositoryPropertyValue).getValue() + "/" + imagePropValue.getValue();
+            imagePropValue.setValue(image);
         }
+        // transform data
+        NodeType nodeType = ToscaContext.get(NodeType.class, containerNode.getType());
+        PropertyDefinition propertyDefinition = nodeType.getProperties().get("container");
+        Object transformedValue = getTransformedValue(propertyValue, propertyDefinition, "");
+        // the container spec is finished : its blocks (resources, probes ...) are shared with the identical ones of the other containers
+        RESOURCE_DEF_SPEC_TEMPLATE_SPEC_CONTAINERS.append(controllerResourceNodeProperties, context.getInterner().intern(transformedValue));
     }
 
 
-    private void createStatefulSetResource(Csar csar, Topology topology, NodeTemplate statefulsetNode, Map<String, NodeTemplate> nodeReplacementMap,
-    Map<String, Map<String, AbstractPropertyValue>> resourceNodeYamlStructures , FlowExecutionContext context){
-        NodeTemplate statefulsetResourceNode = addNodeTemplate(csar, topology, statefulsetNode.getName() + "_Resource", K8S_TYPES_STATEFULSET_RESOURCE,
+    private void createStatefulSetResource(KubernetesModifierContext context, NodeTemplate statefulsetNode){
+        NodeTemplate statefulsetResourceNode = addNodeTemplate(context, statefulsetNode.getName() + "_Resource", K8S_TYPES_STATEFULSET_RESOURCE,
         K8S_CSAR_VERSION);
-        nodeReplacementMap.put(statefulsetNode.getName(), statefulsetResourceNode);
+        context.getReplacements().put(statefulsetNode.getName(), statefulsetResourceNode);
         setNodeTagValue(statefulsetResourceNode, A4C_KUBERNETES_MODIFIER_TAG + "_created_from", statefulsetNode.getName());
 
-        Map<String, AbstractPropertyValue> statefulsetResourceNodeProperties = Maps.newHashMap();
-        resourceNodeYamlStructures.put(statefulsetResourceNode.getName(), statefulsetResourceNodeProperties);
+        ResourceDocument statefulsetResourceNodeProperties = new ResourceDocument();
+        context.getYamlResources().put(statefulsetResourceNode.getName(), statefulsetResourceNodeProperties);
 
-        copyProperty(csar, topology, statefulsetNode, "apiVersion", statefulsetResourceNodeProperties, "resource_def.apiVersion");
-        copyProperty(csar, topology, statefulsetNode, "kind", statefulsetResourceNodeProperties, "resource_def.kind");
-        copyProperty(csar, topology, statefulsetNode, "metadata", statefulsetResourceNodeProperties, "resource_def.metadata");
+        copyProperty(statefulsetNode, "apiVersion", statefulsetResourceNodeProperties, RESOURCE_DEF_API_VERSION);
+        copyProperty(statefulsetNode, "kind", statefulsetResourceNodeProperties, RESOURCE_DEF_KIND);
+        copyProperty(statefulsetNode, "metadata", statefulsetResourceNodeProperties, RESOURCE_DEF_METADATA);
         AbstractPropertyValue volumeDeletable = PropertyUtil.getPropertyValueFromPath(safe(statefulsetNode.getProperties()), "volumeDeletable");
         if(volumeDeletable == null){
             context.log().error("Failed to get volumeDeletable property on "+ statefulsetNode.getName());
         }
-        setNodePropertyPathValue(csar, topology, statefulsetResourceNode, "volumeDeletable", volumeDeletable);
+        setNodePropertyPathValue(context.getCsar(), context.getTopology(), statefulsetResourceNode, "volumeDeletable", volumeDeletable);
 
         // For statefulset, generate an id and name that is consistent
         String stsName = generateConsistentKubeName(statefulsetNode.getName());
-        feedPropertyValue(statefulsetResourceNodeProperties, "resource_def.metadata.name", stsName, false);
-        feedPropertyValue(statefulsetNode.getProperties(), "spec.template.metadata.labels.app", stsName, false);
-        feedPropertyValue(statefulsetNode.getProperties(), "metadata.name", stsName, false);
-        AbstractPropertyValue resource_id = PropertyUtil.getPropertyValueFromPath(safe(statefulsetNode.getProperties()), "metadata.name");
+        RESOURCE_DEF_METADATA_NAME.set(statefulsetResourceNodeProperties, stsName);
+        SPEC_TEMPLATE_METADATA_LABELS_APP.set(statefulsetNode.getProperties(), stsName);
+        METADATA_NAME.set(statefulsetNode.getProperties(), stsName);
+        AbstractPropertyValue resource_id = METADATA_NAME.get(safe(statefulsetNode.getProperties()));
         if(resource_id == null){
             context.log().error("Failed to get metadata.name property on "+ statefulsetNode.getName());
         }
-        setNodePropertyPathValue(csar, topology, statefulsetResourceNode, "resource_id", resource_id);
+        setNodePropertyPathValue(context.getCsar(), context.getTopology(), statefulsetResourceNode, "resource_id", resource_id);
 
         AbstractPropertyValue propertyValue = PropertyUtil.getPropertyValueFromPath(safe(statefulsetNode.getProperties()), "spec");
         if(propertyValue == null){
@@ -964,7 +785,7 @@ public class KubernetesFinalTopologyModifier extends AbstractKubernetesModifier
         }
         PropertyDefinition propertyDefinition = nodeType.getProperties().get("spec");
         Object transformedValue = getTransformedValue(propertyValue, propertyDefinition, "");
-        feedPropertyValue(statefulsetResourceNodeProperties, "resource_def.spec", transformedValue, false);
+        RESOURCE_DEF_SPEC.set(statefulsetResourceNodeProperties, transformedValue);
 
         Capability scalableCapability = safe(statefulsetNode.getCapabilities()).get("scalable");
         if (scalableCapability != null) {
@@ -975,35 +796,33 @@ public class KubernetesFinalTopologyModifier extends AbstractKubernetesModifier
 
 
         // find each node of type Service that targets this statefulset
-        Set<NodeTemplate> sourceCandidates = TopologyNavigationUtil.getSourceNodes(topology, statefulsetNode, "feature");
+        Set<NodeTemplate> sourceCandidates = context.getRelationshipIndex().getSourceNodes(statefulsetNode, "feature");
         if(sourceCandidates == null){
             context.log().error("Failed to get sourceCandidates that target node "+ statefulsetNode.getName());
         }
         for (NodeTemplate sourceCandidate : sourceCandidates) {
-            NodeType sourceCandidateType = ToscaContext.get(NodeType.class, sourceCandidate.getType());
-            if (ToscaTypeUtils.isOfType(sourceCandidateType, K8S_TYPES_SERVICE)) {
+            if (context.getTypes().isNodeOfType(sourceCandidate.getType(), K8S_TYPES_SERVICE)) {
                 // find the replacer
-                NodeTemplate serviceResource = nodeReplacementMap.get(sourceCandidate.getName());
+                NodeTemplate serviceResource = context.getReplacements().get(sourceCandidate.getName());
                 if (!TopologyNavigationUtil.hasRelationship(serviceResource, statefulsetResourceNode.getName(), "dependency", "feature")) {
-                    RelationshipTemplate relationshipTemplate = addRelationshipTemplate(csar, topology, serviceResource, statefulsetResourceNode.getName(),
+                    RelationshipTemplate relationshipTemplate = addRelationshipTemplate(context, serviceResource, statefulsetResourceNode.getName(),
                             NormativeRelationshipConstants.DEPENDS_ON, "dependency", "feature");
                     setNodeTagValue(relationshipTemplate, A4C_KUBERNETES_MODIFIER_TAG + "_created_from",
                             sourceCandidate.getName() + " -> " + statefulsetNode.getName());
                 //Change selector to match the consistent name
-                Map<String, AbstractPropertyValue> serviceResourceNodeProperties = resourceNodeYamlStructures.get(serviceResource.getName());
-                feedPropertyValue(serviceResourceNodeProperties, "resource_def.spec.selector.app", stsName, false);
+                ResourceDocument serviceResourceNodeProperties = context.getYamlResources().get(serviceResource.getName());
+                RESOURCE_DEF_SPEC_SELECTOR_APP.set(serviceResourceNodeProperties, stsName);
                 }
             }
         }
         // find each node of type service this deployment depends on
-        Set<NodeTemplate> targetCandidates = TopologyNavigationUtil.getTargetNodes(topology, statefulsetNode, "dependency");
+        Set<NodeTemplate> targetCandidates = TopologyNavigationUtil.getTargetNodes(context.getTopology(), statefulsetNode, "dependency");
         for (NodeTemplate targetCandidate : targetCandidates) {
-            NodeType targetCandidateType = ToscaContext.get(NodeType.class, targetCandidate.getType());
-            if (ToscaTypeUtils.isOfType(targetCandidateType, K8S_TYPES_SERVICE)) {
+            if (context.getTypes().isNodeOfType(targetCandidate.getType(), K8S_TYPES_SERVICE)) {
                 // find the replacer
-                NodeTemplate serviceResource = nodeReplacementMap.get(targetCandidate.getName());
+                NodeTemplate serviceResource = context.getReplacements().get(targetCandidate.getName());
                 if (!TopologyNavigationUtil.hasRelationship(statefulsetResourceNode, serviceResource.getName(), "dependency", "feature")) {
-                    RelationshipTemplate relationshipTemplate = addRelationshipTemplate(csar, topology, statefulsetResourceNode, serviceResource.getName(),
+                    RelationshipTemplate relationshipTemplate = addRelationshipTemplate(context, statefulsetResourceNode, serviceResource.getName(),
                             NormativeRelationshipConstants.DEPENDS_ON, "dependency", "feature");
                     setNodeTagValue(relationshipTemplate, A4C_KUBERNETES_MODIFIER_TAG + "_created_from",
                     statefulsetNode.getName() + " -> " + targetCandidate.getName());
@@ -1013,54 +832,31 @@ public class KubernetesFinalTopologyModifier extends AbstractKubernetesModifier
     }
 
 
-    private void createJobResource(Csar csar, Topology topology, NodeTemplate jobNode, Map<String, NodeTemplate> nodeReplacementMap,
-            Map<String, Map<String, AbstractPropertyValue>> resourceNodeYamlStructures) {
-        NodeTemplate jobResourceNode = addNodeTemplate(csar, topology, jobNode.getName() + "_Resource", K8S_TYPES_JOB_RESOURCE,
+    private void createDeploymentResource(KubernetesModifierContext context, NodeTemplate deploymentNode) {
+        NodeTemplate deploymentResourceNode = addNodeTemplate(context, deploymentNode.getName() + "_Resource", K8S_TYPES_DEPLOYMENT_RESOURCE,
                 K8S_CSAR_VERSION);
-        nodeReplacementMap.put(jobNode.getName(), jobResourceNode);
-        setNodeTagValue(jobResourceNode, A4C_KUBERNETES_MODIFIER_TAG + "_created_from", jobNode.getName());
-
-        Map<String, AbstractPropertyValue> jobResourceNodeProperties = Maps.newHashMap();
-        resourceNodeYamlStructures.put(jobResourceNode.getName(), jobResourceNodeProperties);
-
-        copyProperty(csar, topology, jobNode, "apiVersion", jobResourceNodeProperties, "resource_def.apiVersion");
-        copyProperty(csar, topology, jobNode, "kind", jobResourceNodeProperties, "resource_def.kind");
-        copyProperty(csar, topology, jobNode, "metadata", jobResourceNodeProperties, "resource_def.metadata");
-
-        AbstractPropertyValue propertyValue = PropertyUtil.getPropertyValueFromPath(safe(jobNode.getProperties()), "spec");
-        NodeType nodeType = ToscaContext.get(NodeType.class, jobNode.getType());
-        PropertyDefinition propertyDefinition = nodeType.getProperties().get("spec");
-        Object transformedValue = getTransformedValue(propertyValue, propertyDefinition, "");
-        feedPropertyValue(jobResourceNodeProperties, "resource_def.spec", transformedValue, false);
-
-    }
-
-    private void createDeploymentResource(Csar csar, Topology topology, NodeTemplate deploymentNode, Map<String, NodeTemplate> nodeReplacementMap,
-            Map<String, Map<String, AbstractPropertyValue>> resourceNodeYamlStructures) {
-        NodeTemplate deploymentResourceNode = addNodeTemplate(csar, topology, deploymentNode.getName() + "_Resource", K8S_TYPES_DEPLOYMENT_RESOURCE,
-                K8S_CSAR_VERSION);
-        nodeReplacementMap.put(deploymentNode.getName(), deploymentResourceNode);
+        context.getReplacements().put(deploymentNode.getName(), deploymentResourceNode);
         setNodeTagValue(deploymentResourceNode, A4C_KUBERNETES_MODIFIER_TAG + "_created_from", deploymentNode.getName());
 
         // ensure a policy that targets the deployment will now target the resource
         // not very necessary because the policy here doesn't mean nothing ...
         // changePolicyTarget(topology, deploymentNode, deploymentResourceNode);
 
-        Map<String, AbstractPropertyValue> deploymentResourceNodeProperties = Maps.newHashMap();
-        resourceNodeYamlStructures.put(deploymentResourceNode.getName(), deploymentResourceNodeProperties);
+        ResourceDocument deploymentResourceNodeProperties = new ResourceDocument();
+        context.getYamlResources().put(deploymentResourceNode.getName(), deploymentResourceNodeProperties);
 
-        copyProperty(csar, topology, deploymentNode, "apiVersion", deploymentResourceNodeProperties, "resource_def.apiVersion");
-        copyProperty(csar, topology, deploymentNode, "kind", deploymentResourceNodeProperties, "resource_def.kind");
-        copyProperty(csar, topology, deploymentNode, "metadata", deploymentResourceNodeProperties, "resource_def.metadata");
+        copyProperty(deploymentNode, "apiVersion", deploymentResourceNodeProperties, RESOURCE_DEF_API_VERSION);
+        copyProperty(deploymentNode, "kind", deploymentResourceNodeProperties, RESOURCE_DEF_KIND);
+        copyProperty(deploymentNode, "metadata", deploymentResourceNodeProperties, RESOURCE_DEF_METADATA);
 
-        AbstractPropertyValue resource_id = PropertyUtil.getPropertyValueFromPath(safe(deploymentNode.getProperties()), "metadata.name");
-        setNodePropertyPathValue(csar, topology, deploymentResourceNode, "resource_id", resource_id);
+        AbstractPropertyValue resource_id = METADATA_NAME.get(safe(deploymentNode.getProperties()));
+        setNodePropertyPathValue(context.getCsar(), context.getTopology(), deploymentResourceNode, "resource_id", resource_id);
 
         AbstractPropertyValue propertyValue = PropertyUtil.getPropertyValueFromPath(safe(deploymentNode.getProperties()), "spec");
         NodeType nodeType = ToscaContext.get(NodeType.class, deploymentNode.getType());
         PropertyDefinition propertyDefinition = nodeType.getProperties().get("spec");
         Object transformedValue = getTransformedValue(propertyValue, propertyDefinition, "");
-        feedPropertyValue(deploymentResourceNodeProperties, "resource_def.spec", transformedValue, false);
+        RESOURCE_DEF_SPEC.set(deploymentResourceNodeProperties, transformedValue);
 
         // Copy scalable property of the deployment node into the cluster controller capability of the deployment node.
         Capability scalableCapability = safe(deploymentNode.getCapabilities()).get("scalable");
@@ -1071,14 +867,13 @@ public class KubernetesFinalTopologyModifier extends AbstractKubernetesModifier
         }
 
         // find each node of type Service that targets this deployment
-        Set<NodeTemplate> sourceCandidates = TopologyNavigationUtil.getSourceNodes(topology, deploymentNode, "feature");
+        Set<NodeTemplate> sourceCandidates = context.getRelationshipIndex().getSourceNodes(deploymentNode, "feature");
         for (NodeTemplate sourceCandidate : sourceCandidates) {
-            NodeType sourceCandidateType = ToscaContext.get(NodeType.class, sourceCandidate.getType());
-            if (ToscaTypeUtils.isOfType(sourceCandidateType, K8S_TYPES_SERVICE)) {
+            if (context.getTypes().isNodeOfType(sourceCandidate.getType(), K8S_TYPES_SERVICE)) {
                 // find the replacer
-                NodeTemplate serviceResource = nodeReplacementMap.get(sourceCandidate.getName());
+                NodeTemplate serviceResource = context.getReplacements().get(sourceCandidate.getName());
                 if (!TopologyNavigationUtil.hasRelationship(serviceResource, deploymentResourceNode.getName(), "dependency", "feature")) {
-                    RelationshipTemplate relationshipTemplate = addRelationshipTemplate(csar, topology, serviceResource, deploymentResourceNode.getName(),
+                    RelationshipTemplate relationshipTemplate = addRelationshipTemplate(context, serviceResource, deploymentResourceNode.getName(),
                             NormativeRelationshipConstants.DEPENDS_ON, "dependency", "feature");
                     setNodeTagValue(relationshipTemplate, A4C_KUBERNETES_MODIFIER_TAG + "_created_from",
                             sourceCandidate.getName() + " -> " + deploymentNode.getName());
@@ -1086,14 +881,13 @@ public class KubernetesFinalTopologyModifier extends AbstractKubernetesModifier
             }
         }
         // find each node of type service this deployment depends on
-        Set<NodeTemplate> targetCandidates = TopologyNavigationUtil.getTargetNodes(topology, deploymentNode, "dependency");
+        Set<NodeTemplate> targetCandidates = TopologyNavigationUtil.getTargetNodes(context.getTopology(), deploymentNode, "dependency");
         for (NodeTemplate targetCandidate : targetCandidates) {
-            NodeType targetCandidateType = ToscaContext.get(NodeType.class, targetCandidate.getType());
-            if (ToscaTypeUtils.isOfType(targetCandidateType, K8S_TYPES_SERVICE)) {
+            if (context.getTypes().isNodeOfType(targetCandidate.getType(), K8S_TYPES_SERVICE)) {
                 // find the replacer
-                NodeTemplate serviceResource = nodeReplacementMap.get(targetCandidate.getName());
+                NodeTemplate serviceResource = context.getReplacements().get(targetCandidate.getName());
                 if (!TopologyNavigationUtil.hasRelationship(deploymentResourceNode, serviceResource.getName(), "dependency", "feature")) {
-                    RelationshipTemplate relationshipTemplate = addRelationshipTemplate(csar, topology, deploymentResourceNode, serviceResource.getName(),
+                    RelationshipTemplate relationshipTemplate = addRelationshipTemplate(context, deploymentResourceNode, serviceResource.getName(),
                             NormativeRelationshipConstants.DEPENDS_ON, "dependency", "feature");
                     setNodeTagValue(relationshipTemplate, A4C_KUBERNETES_MODIFIER_TAG + "_created_from",
                             deploymentNode.getName() + " -> " + targetCandidate.getName());
@@ -1102,30 +896,29 @@ public class KubernetesFinalTopologyModifier extends AbstractKubernetesModifier
         }
     }
 
-    private void createServiceResource(Csar csar, Topology topology, NodeTemplate serviceNode, Map<String, NodeTemplate> nodeReplacementMap,
-            Map<String, Map<String, AbstractPropertyValue>> resourceNodeYamlStructures, FlowExecutionContext context) {
+    private void createServiceResource(KubernetesModifierContext context, NodeTemplate serviceNode) {
 
         // if the matched service has a property service_name, then we replace the autogenerated name by it
         AbstractPropertyValue serviceNamePV = PropertyUtil.getPropertyValueFromPath(safe(serviceNode.getProperties()), "service_name");
         if (serviceNamePV != null && serviceNamePV instanceof ScalarPropertyValue) {
             String serviceName = ((ScalarPropertyValue)serviceNamePV).getValue();
             if (StringUtils.isNoneEmpty(serviceName)) {
-                feedPropertyValue(safe(serviceNode.getProperties()), "metadata.name", serviceName, false);
+                METADATA_NAME.set(safe(serviceNode.getProperties()), serviceName);
             }
         }
 
-        NodeTemplate serviceResourceNode = addNodeTemplate(csar, topology, serviceNode.getName() + "_Resource", K8S_TYPES_SERVICE_RESOURCE, K8S_CSAR_VERSION);
+        NodeTemplate serviceResourceNode = addNodeTemplate(context, serviceNode.getName() + "_Resource", K8S_TYPES_SERVICE_RESOURCE, K8S_CSAR_VERSION);
 
         // prepare attributes
-        Map<String, Set<String>> topologyAttributes = topology.getOutputAttributes();
+        Map<String, Set<String>> topologyAttributes = context.getTopology().getOutputAttributes();
         if (topologyAttributes == null) {
             topologyAttributes = Maps.newHashMap();
-            topology.setOutputAttributes(topologyAttributes);
+            context.getTopology().setOutputAttributes(topologyAttributes);
         }
-        Set<String> nodeAttributes = topology.getOutputAttributes().get(serviceResourceNode.getName());
+        Set<String> nodeAttributes = context.getTopology().getOutputAttributes().get(serviceResourceNode.getName());
         if (nodeAttributes == null) {
             nodeAttributes = Sets.newHashSet();
-            topology.getOutputAttributes().put(serviceResourceNode.getName(), nodeAttributes);
+            context.getTopology().getOutputAttributes().put(serviceResourceNode.getName(), nodeAttributes);
         }
         // add an output attribute with the node_port
         nodeAttributes.add("node_port");
@@ -1134,14 +927,14 @@ public class KubernetesFinalTopologyModifier extends AbstractKubernetesModifier
         String port = getNodeTagValueOrNull(serviceNode, A4C_KUBERNETES_MODIFIER_TAG_SERVICE_ENDPOINT_PORT);
         String portName = getNodeTagValueOrNull(serviceNode, A4C_KUBERNETES_MODIFIER_TAG_SERVICE_ENDPOINT_PORT_NAME);
         if (port != null) {
-            setNodeCappabilityPropertyPathValue(csar, topology, serviceResourceNode, "cluster_endpoint", "port", new ScalarPropertyValue(port), false);
+            setNodeCappabilityPropertyPathValue(context.getCsar(), context.getTopology(), serviceResourceNode, "cluster_endpoint", "port", new ScalarPropertyValue(port), false);
         }
         String exposedCapabilityName = getNodeTagValueOrNull(serviceNode, A4C_KUBERNETES_MODIFIER_TAG_EXPOSED_AS_CAPA);
         if (exposedCapabilityName != null) {
             // a container capability is exposed for substitution
             // we replace the substitutionTarget by this service's 'cluster_endpoint'
             // by this way we can expose the clusterIp:clusterPort of this service to proxy the container's endpoint
-            SubstitutionTarget substitutionTarget = topology.getSubstitutionMapping().getCapabilities().get(exposedCapabilityName);
+            SubstitutionTarget substitutionTarget = context.getTopology().getSubstitutionMapping().getCapabilities().get(exposedCapabilityName);
             substitutionTarget.setNodeTemplateName(serviceResourceNode.getName());
             substitutionTarget.setTargetId("cluster_endpoint");
             nodeAttributes.add("ip_address");
@@ -1152,17 +945,17 @@ public class KubernetesFinalTopologyModifier extends AbstractKubernetesModifier
             setNodeTagValue(serviceResourceNode, A4C_MODIFIER_TAG_EXPOSED_ATTRIBUTE_ALIAS, "ip_address:capabilities." + exposedCapabilityName + ".ip_address");
         }
 
-        nodeReplacementMap.put(serviceNode.getName(), serviceResourceNode);
+        context.getReplacements().put(serviceNode.getName(), serviceResourceNode);
         setNodeTagValue(serviceResourceNode, A4C_KUBERNETES_MODIFIER_TAG + "_created_from", serviceNode.getName());
-        Map<String, AbstractPropertyValue> serviceResourceNodeProperties = Maps.newHashMap();
-        resourceNodeYamlStructures.put(serviceResourceNode.getName(), serviceResourceNodeProperties);
+        ResourceDocument serviceResourceNodeProperties = new ResourceDocument();
+        context.getYamlResources().put(serviceResourceNode.getName(), serviceResourceNodeProperties);
 
-        copyProperty(csar, topology, serviceNode, "apiVersion", serviceResourceNodeProperties, "resource_def.apiVersion");
-        copyProperty(csar, topology, serviceNode, "kind", serviceResourceNodeProperties, "resource_def.kind");
-        copyProperty(csar, topology, serviceNode, "metadata", serviceResourceNodeProperties, "resource_def.metadata");
+        copyProperty(serviceNode, "apiVersion", serviceResourceNodeProperties, RESOURCE_DEF_API_VERSION);
+        copyProperty(serviceNode, "kind", serviceResourceNodeProperties, RESOURCE_DEF_KIND);
+        copyProperty(serviceNode, "metadata", serviceResourceNodeProperties, RESOURCE_DEF_METADATA);
 
-        AbstractPropertyValue namePropertyValue = PropertyUtil.getPropertyValueFromPath(safe(serviceNode.getProperties()), "metadata.name");
-        setNodePropertyPathValue(csar, topology, serviceResourceNode, "service_name", namePropertyValue);
+        AbstractPropertyValue namePropertyValue = METADATA_NAME.get(safe(serviceNode.getProperties()));
+        setNodePropertyPathValue(context.getCsar(), context.getTopology(), serviceResourceNode, "service_name", namePropertyValue);
 
         AbstractPropertyValue propertyValue = PropertyUtil.getPropertyValueFromPath(safe(serviceNode.getProperties()), "spec");
         NodeType nodeType = ToscaContext.get(NodeType.class, serviceNode.getType());
@@ -1170,31 +963,31 @@ public class KubernetesFinalTopologyModifier extends AbstractKubernetesModifier
         Object transformedValue = getTransformedValue(propertyValue, propertyDefinition, "");
         // rename entry service_type to type
         renameProperty(transformedValue, "service_type", "type");
-        feedPropertyValue(serviceResourceNodeProperties, "resource_def.spec", transformedValue, false);
+        RESOURCE_DEF_SPEC.set(serviceResourceNodeProperties, transformedValue);
 
         // copy all dependency relationships between services and endpoints (hybrid connection)
-        Set<NodeTemplate> dependencyTargets = TopologyNavigationUtil.getTargetNodes(topology, serviceNode, "dependency");
+        Set<NodeTemplate> dependencyTargets = TopologyNavigationUtil.getTargetNodes(context.getTopology(), serviceNode, "dependency");
         for (NodeTemplate dependencyTarget : dependencyTargets) {
             if (dependencyTarget.getType().equals(K8S_TYPES_ENDPOINT_RESOURCE)) {
-                addRelationshipTemplate(csar, topology, serviceResourceNode, dependencyTarget.getName(), NormativeRelationshipConstants.DEPENDS_ON,
+                addRelationshipTemplate(context, serviceResourceNode, dependencyTarget.getName(), NormativeRelationshipConstants.DEPENDS_ON,
                         "dependency", "feature");
             }
         }
 
         if (serviceNode.getType().equals(K8S_TYPES_SERVICE_INGRESS)) {
-            createIngress(context, csar, topology, serviceNode, serviceResourceNode, portName, namePropertyValue, resourceNodeYamlStructures, context);
+            createIngress(context, serviceNode, serviceResourceNode, portName, namePropertyValue);
         }
     }
 
-    private void createIngress(FlowExecutionContext ctx, Csar csar, Topology topology, NodeTemplate serviceNode, NodeTemplate serviceResourcesNode, String portName, AbstractPropertyValue serviceName, Map<String, Map<String, AbstractPropertyValue>> resourceNodeYamlStructures, FlowExecutionContext context) {
+    private void createIngress(KubernetesModifierContext context, NodeTemplate serviceNode, NodeTemplate serviceResourcesNode, String portName, AbstractPropertyValue serviceName) {
         AbstractPropertyValue ingressHost = PropertyUtil.getPropertyValueFromPath(safe(serviceNode.getProperties()), "host");
 
-        NodeTemplate ingressResourceNode = addNodeTemplate(csar, topology, serviceNode.getName() + "_Ingress", K8S_TYPES_SIMPLE_RESOURCE, K8S_CSAR_VERSION);
+        NodeTemplate ingressResourceNode = addNodeTemplate(context, serviceNode.getName() + "_Ingress", K8S_TYPES_SIMPLE_RESOURCE, K8S_CSAR_VERSION);
 
-        Map<String, AbstractPropertyValue> ingressResourceNodeProperties = Maps.newHashMap();
-        resourceNodeYamlStructures.put(ingressResourceNode.getName(), ingressResourceNodeProperties);
+        ResourceDocument ingressResourceNodeProperties = new ResourceDocument();
+        context.getYamlResources().put(ingressResourceNode.getName(), ingressResourceNodeProperties);
 
-        String ingressName = generateUniqueKubeName(ctx, ingressResourceNode.getName());
+        String ingressName = generateUniqueKubeName(context.getFlowExecutionContext(), KubeNameAllocator.ROLE_INGRESS, ingressResourceNode.getName());
 
         feedPropertyValue(ingressResourceNode.getProperties(), "resource_type", new ScalarPropertyValue("ing"), false);
         feedPropertyValue(ingressResourceNode.getProperties(), "resource_id", new ScalarPropertyValue(ingressName), false);
@@ -1216,10 +1009,10 @@ public class KubernetesFinalTopologyModifier extends AbstractKubernetesModifier
          */
 
         // fill the future JSON spec
-        feedPropertyValue(ingressResourceNodeProperties, "resource_def.kind", "Ingress", false);
-        feedPropertyValue(ingressResourceNodeProperties, "resource_def.apiVersion", "extensions/v1beta1", false);
-        feedPropertyValue(ingressResourceNodeProperties, "resource_def.metadata.name", ingressName, false);
-        feedPropertyValue(ingressResourceNodeProperties, "resource_def.metadata.labels.a4c_id", ingressName, false);
+        RESOURCE_DEF_KIND.set(ingressResourceNodeProperties, "Ingress");
+        RESOURCE_DEF_API_VERSION.set(ingressResourceNodeProperties, "extensions/v1beta1");
+        RESOURCE_DEF_METADATA_NAME.set(ingressResourceNodeProperties, ingressName);
+        RESOURCE_DEF_METADATA_LABELS_A4C_ID.set(ingressResourceNodeProperties, ingressName);
 
         Map<String, Object> rule = Maps.newHashMap();
         rule.put("host", ingressHost);
@@ -1234,10 +1027,10 @@ public class KubernetesFinalTopologyModifier extends AbstractKubernetesModifier
         List<Object> paths = Lists.newArrayList();
         paths.add(path);
         http.put("paths", paths);
-        feedPropertyValue(ingressResourceNodeProperties, "resource_def.spec.rules", rule, true);
+        RESOURCE_DEF_SPEC_RULES.append(ingressResourceNodeProperties, rule);
 
         // add a dependency between the ingress and the service
-        addRelationshipTemplate(csar, topology, ingressResourceNode, serviceResourcesNode.getName(), NormativeRelationshipConstants.DEPENDS_ON,
+        addRelationshipTemplate(context, ingressResourceNode, serviceResourcesNode.getName(), NormativeRelationshipConstants.DEPENDS_ON,
                 "dependency", "feature");
 
         // if the Ingress service has both tls_crt and tls_key then we should create a secret and activate TLS on Ingress
@@ -1253,12 +1046,12 @@ public class KubernetesFinalTopologyModifier extends AbstractKubernetesModifier
         }
         if (StringUtils.isNoneEmpty(ingressCrt) && StringUtils.isNoneEmpty(ingressKey)) {
             // create the secret
-            NodeTemplate secretResourceNode = addNodeTemplate(csar, topology, serviceNode.getName() + "_IngressSecret", K8S_TYPES_SIMPLE_RESOURCE, K8S_CSAR_VERSION);
+            NodeTemplate secretResourceNode = addNodeTemplate(context, serviceNode.getName() + "_IngressSecret", K8S_TYPES_SIMPLE_RESOURCE, K8S_CSAR_VERSION);
 
-            Map<String, AbstractPropertyValue> ingressSecretResourceNodeProperties = Maps.newHashMap();
-            resourceNodeYamlStructures.put(secretResourceNode.getName(), ingressSecretResourceNodeProperties);
+            ResourceDocument ingressSecretResourceNodeProperties = new ResourceDocument();
+            context.getYamlResources().put(secretResourceNode.getName(), ingressSecretResourceNodeProperties);
 
-            String ingressSecretName = generateUniqueKubeName(ctx, secretResourceNode.getName());
+            String ingressSecretName = generateUniqueKubeName(context.getFlowExecutionContext(), KubeNameAllocator.ROLE_SECRET, secretResourceNode.getName());
 
             feedPropertyValue(secretResourceNode.getProperties(), "resource_type", new ScalarPropertyValue("secrets"), false);
             feedPropertyValue(secretResourceNode.getProperties(), "resource_id", new ScalarPropertyValue(ingressSecretName), false);
@@ -1280,20 +1073,20 @@ public class KubernetesFinalTopologyModifier extends AbstractKubernetesModifier
             data.put("tls.key", ingressKey);
 
             // fill the future JSON spec
-            feedPropertyValue(ingressSecretResourceNodeProperties, "resource_def.kind", "Secret", false);
-            feedPropertyValue(ingressSecretResourceNodeProperties, "resource_def.apiVersion", "v1", false);
-            feedPropertyValue(ingressSecretResourceNodeProperties, "resource_def.metadata.name", ingressSecretName, false);
-            feedPropertyValue(ingressSecretResourceNodeProperties, "resource_def.metadata.labels.a4c_id", ingressSecretName, false);
-            feedPropertyValue(ingressSecretResourceNodeProperties, "resource_def.type", "Opaque", false);
-            feedPropertyValue(ingressSecretResourceNodeProperties, "resource_def.data", data, false);
+            RESOURCE_DEF_KIND.set(ingressSecretResourceNodeProperties, "Secret");
+            RESOURCE_DEF_API_VERSION.set(ingressSecretResourceNodeProperties, "v1");
+            RESOURCE_DEF_METADATA_NAME.set(ingressSecretResourceNodeProperties, ingressSecretName);
+            RESOURCE_DEF_METADATA_LABELS_A4C_ID.set(ingressSecretResourceNodeProperties, ingressSecretName);
+            RESOURCE_DEF_TYPE.set(ingressSecretResourceNodeProperties, "Opaque");
+            RESOURCE_DEF_DATA.set(ingressSecretResourceNodeProperties, data);
 
             // add the TLS config to the Ingress
             Map<String, Object> tls = Maps.newHashMap();
             tls.put("secretName", ingressSecretName);
-            feedPropertyValue(ingressResourceNodeProperties, "resource_def.spec.tls", tls, true);
+            RESOURCE_DEF_SPEC_TLS.append(ingressResourceNodeProperties, tls);
 
             // add a relation between the Ingress and the secret
-            addRelationshipTemplate(csar, topology, ingressResourceNode, secretResourceNode.getName(), NormativeRelationshipConstants.DEPENDS_ON,
+            addRelationshipTemplate(context, ingressResourceNode, secretResourceNode.getName(), NormativeRelationshipConstants.DEPENDS_ON,
                     "dependency", "feature");
         } else if (StringUtils.isNoneEmpty(ingressCrt) || StringUtils.isNoneEmpty(ingressKey)) {
             context.log().warn("tls_crt or tls_key is provided for service  <" + serviceNode + "> but both are needed in order to create a secured Ingress. A non secured Ingress is created !");
@@ -1310,10 +1103,4 @@ public class KubernetesFinalTopologyModifier extends AbstractKubernetesModifier
         }
     }
 
-    private void copyProperty(Csar csar, Topology topology, NodeTemplate sourceTemplate, String sourcePath, Map<String, AbstractPropertyValue> propertyValues,
-            String targetPath) {
-        AbstractPropertyValue propertyValue = PropertyUtil.getPropertyValueFromPath(safe(sourceTemplate.getProperties()), sourcePath);
-        feedPropertyValue(propertyValues, targetPath, propertyValue, false);
-    }
-
 }
@@ -17,9 +17,13 @@ import static org.alien4cloud.plugin.kubernetes.modifier.KubeTopologyUtils.K8S_T
 import static org.alien4cloud.plugin.kubernetes.modifier.KubeTopologyUtils.K8S_TYPES_ABSTRACT_VOLUME_BASE;
 import static org.alien4cloud.plugin.kubernetes.modifier.KubeTopologyUtils.K8S_TYPES_ENDPOINT_RESOURCE;
 import static org.alien4cloud.plugin.kubernetes.modifier.KubeTopologyUtils.K8S_TYPES_RSENDPOINT;
+import static org.alien4cloud.plugin.kubernetes.modifier.KubeTopologyUtils.METADATA_NAME;
+import static org.alien4cloud.plugin.kubernetes.modifier.KubeTopologyUtils.RESOURCE_DEF_API_VERSION;
+import static org.alien4cloud.plugin.kubernetes.modifier.KubeTopologyUtils.RESOURCE_DEF_KIND;
+import static org.alien4cloud.plugin.kubernetes.modifier.KubeTopologyUtils.RESOURCE_DEF_METADATA_LABELS_A4C_ID;
+import static org.alien4cloud.plugin.kubernetes.modifier.KubeTopologyUtils.RESOURCE_DEF_METADATA_NAME;
 import static org.alien4cloud.plugin.kubernetes.modifier.KubeTopologyUtils.generateKubeName;
 import static org.alien4cloud.plugin.kubernetes.modifier.KubeTopologyUtils.getContainerImageName;
-import static org.alien4cloud.plugin.kubernetes.modifier.KubeTopologyUtils.getValue;
 import static org.alien4cloud.tosca.utils.ToscaTypeUtils.isOfType;
 
 import java.util.List;
@@ -49,13 +53,11 @@ import org.alien4cloud.tosca.normative.constants.NormativeCapabilityTypes;
 import org.alien4cloud.tosca.normative.constants.NormativeRelationshipConstants;
 import org.alien4cloud.tosca.utils.NodeTemplateUtils;
 import org.alien4cloud.tosca.utils.TopologyNavigationUtil;
-import org.alien4cloud.tosca.utils.ToscaTypeUtils;
 import org.springframework.stereotype.Component;
 
 import alien4cloud.paas.wf.validation.WorkflowValidator;
 import alien4cloud.tosca.context.ToscaContext;
 import alien4cloud.tosca.context.ToscaContextual;
-import alien4cloud.utils.CloneUtil;
 import alien4cloud.utils.PropertyUtil;
 import lombok.extern.java.Log;
 
@@ -87,6 +89,8 @@ public class KubernetesLocationTopologyModifier extends AbstractKubernetesModifi
 
     public static final String A4C_KUBERNETES_LOCATION_MODIFIER_TAG = "a4c_kubernetes-location-modifier";
 
+    private static final PropertyPath RESOURCE_DEF_SUBSETS = PropertyPath.of("resource_def.subsets");
+
     @Override
     @ToscaContextual
     public void process(Topology topology, FlowExecutionContext context) {
@@ -94,7 +98,14 @@ public class KubernetesLocationTopologyModifier extends AbstractKubernetesModifi
 
         try {
             WorkflowValidator.disableValidationThreadLocal.set(true);
+            String runCacheKey = getRunCacheKey(A4C_KUBERNETES_LOCATION_MODIFIER_TAG, topology, context);
+            if (runCache.replay(runCacheKey, topology)) {
+                log.info("Topology " + topology.getId() + " has already been processed, replaying the previous result");
+                return;
+            }
+            int problemCount = KubeModifierRunCache.getProblemCount(context);
             doProcess(topology, context);
+            runCache.store(runCacheKey, topology, context, problemCount);
         } catch (Exception e) {
             context.getLog().error("Couldn't process " + A4C_KUBERNETES_MODIFIER_TAG);
             log.log(Level.WARNING, "Couldn't process " + A4C_KUBERNETES_MODIFIER_TAG, e);
@@ -134,12 +145,13 @@ public class KubernetesLocationTopologyModifier extends AbstractKubernetesModifi
 
         // targetNode -> (capabilityName -> sourceNodes)
         Map<NodeTemplate, Map<String, List<NodeTemplate>>> hybridConnections = Maps.newHashMap();
+        KubeTypeRegistry types = KubeTypeRegistry.get(context);
 
         containerNodeTemplates.forEach(containerNodeTemplate -> {
             for (Map.Entry<String, RelationshipTemplate> e : safe(containerNodeTemplate.getRelationships()).entrySet()) {
                 NodeTemplate targetNodeTemplate = topology.getNodeTemplates().get(e.getValue().getTarget());
                 NodeType targetNodeType = ToscaContext.getOrFail(NodeType.class, targetNodeTemplate.getType());
-                if (ToscaTypeUtils.isOfType(targetNodeType, A4C_TYPES_APPLICATION_DOCKER_CONTAINER) || targetNodeType.isAbstract()) {
+                if (types.isNodeOfType(targetNodeTemplate.getType(), A4C_TYPES_APPLICATION_DOCKER_CONTAINER) || targetNodeType.isAbstract()) {
                     // only consider targets that are not containers
                     // don't consider targets that are abstract (they are services and will resolved as services)
                     continue;
@@ -147,7 +159,7 @@ public class KubernetesLocationTopologyModifier extends AbstractKubernetesModifi
                 String endpointName = e.getValue().getTargetedCapabilityName();
                 Capability capability = targetNodeTemplate.getCapabilities().get(endpointName);
                 CapabilityType capabilityType = ToscaContext.getOrFail(CapabilityType.class, capability.getType());
-                if (ToscaTypeUtils.isOfType(capabilityType, NormativeCapabilityTypes.ENDPOINT)) {
+                if (types.isCapabilityOfType(capability.getType(), NormativeCapabilityTypes.ENDPOINT)) {
                     // TODO: add service and endpoint resource
                     Map<String, List<NodeTemplate>> endpointsSources = hybridConnections.get(targetNodeTemplate);
                     if (endpointsSources == null) {
@@ -180,7 +192,7 @@ public class KubernetesLocationTopologyModifier extends AbstractKubernetesModifi
         setNodeTagValue(serviceNode, A4C_KUBERNETES_MODIFIER_TAG_SERVICE_ENDPOINT, endpointName);
 
         // fill properties of service
-        String serviceName = generateUniqueKubeName(context, serviceNode.getName());
+        String serviceName = generateUniqueKubeName(context, KubeNameAllocator.ROLE_SERVICE, serviceNode.getName());
         setNodePropertyPathValue(csar, topology, serviceNode, "metadata.name", new ScalarPropertyValue(serviceName));
         setNodePropertyPathValue(csar, topology, serviceNode, "spec.service_type", new ScalarPropertyValue("ClusterIP"));
 
@@ -203,19 +215,19 @@ public class KubernetesLocationTopologyModifier extends AbstractKubernetesModifi
         addRelationshipTemplate(csar, topology, serviceNode, endpointNode.getName(), NormativeRelationshipConstants.DEPENDS_ON, "dependency", "feature");
 
         // now fill the JSON property
-        Map<String, AbstractPropertyValue> resourceNodeProperties = Maps.newHashMap();
-        feedPropertyValue(resourceNodeProperties, "resource_def.kind", "Endpoints", false);
-        feedPropertyValue(resourceNodeProperties, "resource_def.apiVersion", "v1", false);
-        feedPropertyValue(resourceNodeProperties, "resource_def.metadata.name", serviceName, false);
-        feedPropertyValue(resourceNodeProperties, "resource_def.metadata.labels.a4c_id", serviceName, false);
-        ListPropertyValue spec = CloneUtil.clone((ListPropertyValue) endpointNode.getProperties().get("subsets"));
+        ResourceDocument resourceNodeProperties = new ResourceDocument();
+        RESOURCE_DEF_KIND.set(resourceNodeProperties, "Endpoints");
+        RESOURCE_DEF_API_VERSION.set(resourceNodeProperties, "v1");
+        RESOURCE_DEF_METADATA_NAME.set(resourceNodeProperties, serviceName);
+        RESOURCE_DEF_METADATA_LABELS_A4C_ID.set(resourceNodeProperties, serviceName);
+        // the transformation copies the subsets, the endpoint node is not modified
+        ListPropertyValue spec = (ListPropertyValue) endpointNode.getProperties().get("subsets");
         NodeType nodeType = ToscaContext.get(NodeType.class, endpointNode.getType());
         PropertyDefinition propertyDefinition = nodeType.getProperties().get("subsets");
         List<Object> transformed = (List<Object>) getTransformedValue(spec, propertyDefinition, "");
-        feedPropertyValue(resourceNodeProperties, "resource_def.subsets", transformed, false);
+        RESOURCE_DEF_SUBSETS.set(resourceNodeProperties, transformed);
 
-        Object propertyValue = getValue(resourceNodeProperties.get("resource_def"));
-        String serializedPropertyValue = PropertyUtil.serializePropertyValue(propertyValue);
+        String serializedPropertyValue = KubeSpecSerializer.toSpec(resourceNodeProperties.get("resource_def"));
         setNodePropertyPathValue(csar, topology, endpointNode, "resource_spec", new ScalarPropertyValue(serializedPropertyValue));
 
     }
@@ -298,7 +310,7 @@ public class KubernetesLocationTopologyModifier extends AbstractKubernetesModifi
         AbstractPropertyValue defaultInstances = TopologyNavigationUtil.getNodeCapabilityPropertyValue(nodeTemplate, "scalable", "default_instances");
         // feed the replica property
         setNodePropertyPathValue(csar, topology, nodeTemplate, "spec.replicas", defaultInstances);
-        ScalarPropertyValue deploymentName = new ScalarPropertyValue(generateUniqueKubeName(context, nodeTemplate.getName()));
+        ScalarPropertyValue deploymentName = new ScalarPropertyValue(generateUniqueKubeName(context, KubeNameAllocator.ROLE_DEPLOYMENT, nodeTemplate.getName()));
         setNodePropertyPathValue(csar, topology, nodeTemplate, "metadata.name", deploymentName);
         setNodePropertyPathValue(csar, topology, nodeTemplate, "spec.template.metadata.labels.app", deploymentName);
     }
@@ -311,7 +323,7 @@ public class KubernetesLocationTopologyModifier extends AbstractKubernetesModifi
         nodeTemplate = replaceNode(csar, topology, nodeTemplate, K8S_TYPES_ABSTRACT_JOB, K8S_CSAR_VERSION);
         setNodeTagValue(nodeTemplate, A4C_KUBERNETES_MODIFIER_TAG, "Replacement of a " + A4C_TYPES_CONTAINER_JOB_UNIT);
 
-        ScalarPropertyValue jobName = new ScalarPropertyValue(generateUniqueKubeName(context, nodeTemplate.getName()));
+        ScalarPropertyValue jobName = new ScalarPropertyValue(generateUniqueKubeName(context, KubeNameAllocator.ROLE_JOB, nodeTemplate.getName()));
         setNodePropertyPathValue(csar, topology, nodeTemplate, "metadata.name", jobName);
         setNodePropertyPathValue(csar, topology, nodeTemplate, "spec.template.metadata.labels.app", jobName);
     }
@@ -324,7 +336,7 @@ public class KubernetesLocationTopologyModifier extends AbstractKubernetesModifi
         setNodeTagValue(hostNode, A4C_KUBERNETES_MODIFIER_TAG, "Created to host " + nodeTemplate.getName());
 
         // set a generated name to the K8S object
-        ScalarPropertyValue deploymentName = new ScalarPropertyValue(generateUniqueKubeName(context, hostNode.getName()));
+        ScalarPropertyValue deploymentName = new ScalarPropertyValue(generateUniqueKubeName(context, KubeNameAllocator.ROLE_DEPLOYMENT, hostNode.getName()));
         setNodePropertyPathValue(csar, topology, hostNode, "metadata.name", deploymentName);
         setNodePropertyPathValue(csar, topology, hostNode, "spec.template.metadata.labels.app", deploymentName);
         Set<NodeTemplate> hostedContainers = TopologyNavigationUtil.getSourceNodes(topology, nodeTemplate, "host");
@@ -384,7 +396,7 @@ public class KubernetesLocationTopologyModifier extends AbstractKubernetesModifi
         }
         setNodePropertyPathValue(csar, topology, containerRuntimeNodeTemplate, "container.image", new ScalarPropertyValue(imageName));
         setNodePropertyPathValue(csar, topology, containerRuntimeNodeTemplate, "container.name",
-                new ScalarPropertyValue(generateUniqueKubeName(context, containerNodeTemplate.getName())));
+                new ScalarPropertyValue(generateUniqueKubeName(context, KubeNameAllocator.ROLE_CONTAINER, containerNodeTemplate.getName())));
         AbstractPropertyValue docker_run_cmd = PropertyUtil.getPropertyValueFromPath(properties, "docker_run_cmd");
         if (docker_run_cmd != null) {
             List<Object> values = Lists.newArrayList();
@@ -408,10 +420,10 @@ public class KubernetesLocationTopologyModifier extends AbstractKubernetesModifi
     private void manageContainerEndpoints(Csar csar, Topology topology, NodeTemplate containerNodeTemplate, NodeTemplate containerRuntimeNodeTemplate,
             NodeTemplate controllerNodeTemplate, Set<NodeTemplate> allContainerNodes, FlowExecutionContext context) {
         // find every endpoint
+        KubeTypeRegistry types = KubeTypeRegistry.get(context);
         Set<String> endpointNames = Sets.newHashSet();
         for (Map.Entry<String, Capability> e : safe(containerNodeTemplate.getCapabilities()).entrySet()) {
-            CapabilityType capabilityType = ToscaContext.get(CapabilityType.class, e.getValue().getType());
-            if (isOfType(capabilityType, NormativeCapabilityTypes.ENDPOINT)) {
+            if (types.isCapabilityOfType(e.getValue().getType(), NormativeCapabilityTypes.ENDPOINT)) {
                 endpointNames.add(e.getKey());
             }
         }
@@ -471,11 +483,11 @@ public class KubernetesLocationTopologyModifier extends AbstractKubernetesModifi
             // Create the service
             NodeTemplate serviceNode = addNodeTemplate(csar, topology, containerNodeTemplate.getName() + "_" + controllerNodeTemplate.getName() + "_Service",
             K8S_TYPES_ABSTRACT_SERVICE, K8S_CSAR_VERSION);
-            setNodePropertyPathValue(csar, topology, serviceNode, "metadata.name", new ScalarPropertyValue(generateUniqueKubeName(context, serviceNode.getName())));
+            setNodePropertyPathValue(csar, topology, serviceNode, "metadata.name", new ScalarPropertyValue(generateUniqueKubeName(context, KubeNameAllocator.ROLE_SERVICE, serviceNode.getName())));
             setNodePropertyPathValue(csar, topology, serviceNode, "spec.service_type", new ScalarPropertyValue("NodePort"));
             // fill properties of service
             // get the "controller name"
-            AbstractPropertyValue controllerName = PropertyUtil.getPropertyValueFromPath(safe(controllerNodeTemplate.getProperties()), "metadata.name");
+            AbstractPropertyValue controllerName = METADATA_NAME.get(safe(controllerNodeTemplate.getProperties()));
             setNodePropertyPathValue(csar, topology, serviceNode, "spec.selector.app", controllerName);
 
             for (String endpointName : endpointNames) {
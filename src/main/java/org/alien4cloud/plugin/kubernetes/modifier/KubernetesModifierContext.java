@@ -6,7 +6,6 @@ import lombok.Setter;
 import org.alien4cloud.alm.deployment.configuration.flow.FlowExecutionContext;
 import org.alien4cloud.alm.deployment.configuration.flow.FlowExecutionLog;
 import org.alien4cloud.tosca.model.Csar;
-import org.alien4cloud.tosca.model.definitions.AbstractPropertyValue;
 import org.alien4cloud.tosca.model.templates.NodeTemplate;
 import org.alien4cloud.tosca.model.templates.Topology;
 
@@ -33,13 +32,47 @@ public class KubernetesModifierContext {
      * these yaml structure will become the JSON resource spec after JSON serialization
      * these yaml structures can not be stored in node since they can't respect any TOSCA contract
      */
-    Map<String, Map<String, AbstractPropertyValue>> yamlResources = Maps.newHashMap();
+    Map<String, ResourceDocument> yamlResources = Maps.newHashMap();
+
+    /**
+     * Index of the topology nodes by type, maintained when nodes are added or removed through the context.
+     */
+    private final KubeTopologyIndex index;
+
+    /**
+     * Index of the relationships by target node, maintained when nodes or relationships are added or removed through the context.
+     */
+    private final KubeRelationshipIndex relationshipIndex;
+
+    /**
+     * Cache of the hosting hierarchy of the nodes, invalidated when nodes or relationships are replaced or removed through the context.
+     */
+    private final KubeHostChainCache hostChains;
+
+    /**
+     * Type hierarchies of the flow, used for type checks.
+     */
+    private final KubeTypeRegistry types;
+
+    /**
+     * Namespace defined by a <code>KubeNamespace</code> node of the topology, if any.
+     */
+    private String namespace;
+
+    /**
+     * Canonical instances of the finished parts of the specs, shared by the resources of the run.
+     */
+    private final KubeValueInterner interner = new KubeValueInterner();
 
     public KubernetesModifierContext(Topology toplogy, FlowExecutionContext flowExecutionContext) {
         this.topology = toplogy;
         this.flowExecutionContext = flowExecutionContext;
 
         this.csar = new Csar(topology.getArchiveName(), topology.getArchiveVersion());
+        this.types = KubeTypeRegistry.get(flowExecutionContext);
+        this.index = new KubeTopologyIndex(topology);
+        this.relationshipIndex = new KubeRelationshipIndex(topology, types);
+        this.hostChains = new KubeHostChainCache(topology, types);
     }
 
     public FlowExecutionLog log() {
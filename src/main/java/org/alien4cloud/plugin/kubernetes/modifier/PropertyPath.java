@@ -0,0 +1,123 @@
+package org.alien4cloud.plugin.kubernetes.modifier;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.alien4cloud.tosca.model.definitions.AbstractPropertyValue;
+import org.alien4cloud.tosca.model.definitions.ComplexPropertyValue;
+import org.alien4cloud.tosca.model.definitions.ListPropertyValue;
+import org.alien4cloud.tosca.model.definitions.PropertyValue;
+import org.alien4cloud.tosca.model.definitions.ScalarPropertyValue;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * A dotted property path (<code>resource_def.spec.template.spec.volumes</code>) split once, to walk property values without splitting the path
+ * on each access.
+ * <p>
+ * Paths are interned : use {@link #of(String)} for the constant paths (static fields), and the string based methods
+ * (<code>PropertyUtil.getPropertyValueFromPath</code>, <code>feedPropertyValue</code>) for the paths built at runtime.
+ * <p>
+ * The operations behave as their string based equivalents : intermediate entries are property values or maps, missing ones are created as
+ * {@link ComplexPropertyValue}s, or as objects and arrays inside a {@link ResourceDocument}.
+ */
+public final class PropertyPath {
+
+    private static final ConcurrentMap<String, PropertyPath> PATHS = new ConcurrentHashMap<>();
+
+    private final String path;
+
+    private final String[] segments;
+
+    private PropertyPath(String path) {
+        this.path = path;
+        this.segments = path.split("\\.");
+        for (int i = 0; i < segments.length; i++) {
+            segments[i] = segments[i].intern();
+        }
+    }
+
+    public static PropertyPath of(String path) {
+        return PATHS.computeIfAbsent(path, PropertyPath::new);
+    }
+
+    /**
+     * @return the value found at this path (scalar, list and map values found inside a property value are wrapped), null if none.
+     */
+    public AbstractPropertyValue get(Map<String, ?> values) {
+        Object value = values == null ? null : values.get(segments[0]);
+        for (int i = 1; i < segments.length && value != null; i++) {
+            Map<String, Object> map = asMap(value);
+            value = map == null ? null : map.get(segments[i]);
+        }
+        if (value == null || value instanceof AbstractPropertyValue) {
+            return (AbstractPropertyValue) value;
+        } else if (value instanceof Map) {
+            return new ComplexPropertyValue((Map<String, Object>) value);
+        } else if (value instanceof List) {
+            return new ListPropertyValue((List<Object>) value);
+        }
+        return new ScalarPropertyValue(value.toString());
+    }
+
+    /**
+     * Set the value at this path, creating the missing intermediate entries.
+     */
+    public void set(Map<String, ?> values, Object value) {
+        getParent(values).put(getLastSegment(), value);
+    }
+
+    /**
+     * Add the value to the list found at this path, creating the list (and the missing intermediate entries) if needed.
+     */
+    public void append(Map<String, ?> values, Object value) {
+        Map<String, Object> parent = getParent(values);
+        Object list = parent.get(getLastSegment());
+        if (list == null && parent instanceof ResourceDocument) {
+            list = ((ResourceDocument) parent).putArray(getLastSegment());
+        } else if (list == null) {
+            list = new ListPropertyValue(Lists.newArrayList());
+            parent.put(getLastSegment(), list);
+        }
+        if (list instanceof ListPropertyValue) {
+            ((ListPropertyValue) list).getValue().add(value);
+        } else {
+            ((List<Object>) list).add(value);
+        }
+    }
+
+    public String getLastSegment() {
+        return segments[segments.length - 1];
+    }
+
+    @Override
+    public String toString() {
+        return path;
+    }
+
+    private Map<String, Object> getParent(Map<String, ?> values) {
+        Map<String, Object> current = (Map<String, Object>) values;
+        for (int i = 0; i < segments.length - 1; i++) {
+            Object value = current.get(segments[i]);
+            Map<String, Object> map = asMap(value);
+            if (map == null && current instanceof ResourceDocument) {
+                map = ((ResourceDocument) current).putObject(segments[i]);
+            } else if (map == null) {
+                map = Maps.newHashMap();
+                current.put(segments[i], new ComplexPropertyValue(map));
+            }
+            current = map;
+        }
+        return current;
+    }
+
+    private static Map<String, Object> asMap(Object value) {
+        if (value instanceof PropertyValue) {
+            value = ((PropertyValue) value).getValue();
+        }
+        return value instanceof Map ? (Map<String, Object>) value : null;
+    }
+}
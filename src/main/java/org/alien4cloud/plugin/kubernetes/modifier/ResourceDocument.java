@@ -0,0 +1,554 @@
+package org.alien4cloud.plugin.kubernetes.modifier;
+
+import java.io.IOException;
+import java.util.AbstractList;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+import java.util.Set;
+
+import org.alien4cloud.tosca.model.definitions.PropertyValue;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+
+import alien4cloud.utils.YamlParserUtil;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * An ordered JSON object of a generated Kubernetes resource (the <code>yamlResources</code> of the modifier context).
+ * <p>
+ * The entries keep their insertion order and are stored in typed slots : strings, numbers and booleans are stored as such (property values are
+ * unwrapped, numbers are not boxed), objects and arrays created through the document are {@link ResourceDocument}s and
+ * {@link ResourceDocument.Array}s. Other values (maps, lists, property values of the topology) are kept as they are, and written as they are.
+ * <p>
+ * Documents are maps, so the {@link PropertyPath}s can be used to build them : the missing objects and arrays of a path are created as documents.
+ * They are written straight to JSON (or to YAML, or with any object mapper) without being converted first.
+ * <p>
+ * A document or an array shared by several resources (see {@link KubeValueInterner}) is frozen : modifying it throws an
+ * {@link UnsupportedOperationException}.
+ */
+@Slf4j
+@JsonSerialize(using = ResourceDocument.Serializer.class)
+public final class ResourceDocument extends AbstractMap<String, Object> {
+
+    private static final String[] NO_KEYS = {};
+
+    private String[] keys = NO_KEYS;
+
+    private final Slots slots = new Slots();
+
+    /**
+     * @return the given tree, which objects and arrays are converted into documents (property values are unwrapped).
+     */
+    public static Object of(Object value) {
+        if (value instanceof PropertyValue) {
+            return of(((PropertyValue) value).getValue());
+        } else if (value instanceof Map<?, ?>) {
+            ResourceDocument document = new ResourceDocument();
+            ((Map<?, ?>) value).forEach((key, child) -> document.put(String.valueOf(key), of(child)));
+            return document;
+        } else if (value instanceof List<?>) {
+            Array array = new Array();
+            ((List<?>) value).forEach(child -> array.add(of(child)));
+            return array;
+        }
+        return value;
+    }
+
+    @Override
+    public int size() {
+        return slots.size;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return indexOf(key) >= 0;
+    }
+
+    @Override
+    public Object get(Object key) {
+        int index = indexOf(key);
+        return index < 0 ? null : slots.get(index);
+    }
+
+    @Override
+    public Object put(String key, Object value) {
+        int index = indexOf(key);
+        if (index >= 0) {
+            Object previous = slots.get(index);
+            slots.set(index, value);
+            return previous;
+        }
+        slots.add(value);
+        addKey(key);
+        return null;
+    }
+
+    public void put(String key, long value) {
+        slots.setLong(slotOf(key), value);
+    }
+
+    public void put(String key, double value) {
+        slots.setDouble(slotOf(key), value);
+    }
+
+    public void put(String key, boolean value) {
+        slots.setBoolean(slotOf(key), value);
+    }
+
+    /**
+     * @return a new empty object, set for the given key.
+     */
+    public ResourceDocument putObject(String key) {
+        ResourceDocument document = new ResourceDocument();
+        put(key, document);
+        return document;
+    }
+
+    /**
+     * @return a new empty array, set for the given key.
+     */
+    public Array putArray(String key) {
+        Array array = new Array();
+        put(key, array);
+        return array;
+    }
+
+    @Override
+    public Object remove(Object key) {
+        int index = indexOf(key);
+        if (index < 0) {
+            return null;
+        }
+        Object previous = slots.get(index);
+        removeAt(index);
+        return previous;
+    }
+
+    @Override
+    public void clear() {
+        slots.clear();
+        keys = NO_KEYS;
+    }
+
+    /**
+     * Make this document unmodifiable (its children are not frozen).
+     */
+    void freeze() {
+        slots.frozen = true;
+    }
+
+    @Override
+    public Set<Entry<String, Object>> entrySet() {
+        return new AbstractSet<Entry<String, Object>>() {
+            @Override
+            public Iterator<Entry<String, Object>> iterator() {
+                return new EntryIterator();
+            }
+
+            @Override
+            public int size() {
+                return slots.size;
+            }
+        };
+    }
+
+    /**
+     * Write this document using the given generator.
+     */
+    public void write(JsonGenerator generator) throws IOException {
+        write(generator, false);
+    }
+
+    /**
+     * Write this document, or its canonical form (keys sorted), using the given generator.
+     */
+    public void write(JsonGenerator generator, boolean canonical) throws IOException {
+        generator.writeStartObject();
+        if (canonical) {
+            Integer[] order = new Integer[slots.size];
+            for (int i = 0; i < order.length; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, (left, right) -> keys[left].compareTo(keys[right]));
+            for (int i : order) {
+                generator.writeFieldName(keys[i]);
+                slots.write(i, generator, true);
+            }
+        } else {
+            for (int i = 0; i < slots.size; i++) {
+                generator.writeFieldName(keys[i]);
+                slots.write(i, generator, false);
+            }
+        }
+        generator.writeEndObject();
+    }
+
+    public String toJson() {
+        return KubeJsonWriter.toJson(this);
+    }
+
+    public String toYaml() {
+        try {
+            return YamlParserUtil.toYaml(this);
+        } catch (Exception e) {
+            log.error("Not able to serialize resource document", e);
+            return null;
+        }
+    }
+
+    private int indexOf(Object key) {
+        if (key == null) {
+            return -1;
+        }
+        for (int i = 0; i < slots.size; i++) {
+            if (key.equals(keys[i])) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return the index of the key, which is added if missing.
+     */
+    private int slotOf(String key) {
+        int index = indexOf(key);
+        if (index < 0) {
+            slots.add(null);
+            addKey(key);
+            index = slots.size - 1;
+        }
+        return index;
+    }
+
+    private void addKey(String key) {
+        if (slots.size > keys.length) {
+            keys = Arrays.copyOf(keys, slots.capacity());
+        }
+        keys[slots.size - 1] = key;
+    }
+
+    private void removeAt(int index) {
+        slots.checkModifiable();
+        System.arraycopy(keys, index + 1, keys, index, slots.size - index - 1);
+        keys[slots.size - 1] = null;
+        slots.remove(index);
+    }
+
+    private class EntryIterator implements Iterator<Entry<String, Object>> {
+        private int next;
+        private int last = -1;
+
+        @Override
+        public boolean hasNext() {
+            return next < slots.size;
+        }
+
+        @Override
+        public Entry<String, Object> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            last = next++;
+            int index = last;
+            return new SimpleEntry<String, Object>(keys[index], slots.get(index)) {
+                @Override
+                public Object setValue(Object value) {
+                    slots.set(index, value);
+                    return super.setValue(value);
+                }
+            };
+        }
+
+        @Override
+        public void remove() {
+            if (last < 0) {
+                throw new IllegalStateException();
+            }
+            removeAt(last);
+            next = last;
+            last = -1;
+        }
+    }
+
+    /**
+     * An ordered JSON array of a {@link ResourceDocument}, which entries are stored in typed slots as the ones of the documents.
+     */
+    @JsonSerialize(using = ResourceDocument.Serializer.class)
+    public static final class Array extends AbstractList<Object> implements RandomAccess {
+
+        private final Slots slots = new Slots();
+
+        @Override
+        public int size() {
+            return slots.size;
+        }
+
+        @Override
+        public Object get(int index) {
+            checkIndex(index);
+            return slots.get(index);
+        }
+
+        @Override
+        public Object set(int index, Object value) {
+            checkIndex(index);
+            Object previous = slots.get(index);
+            slots.set(index, value);
+            return previous;
+        }
+
+        @Override
+        public void add(int index, Object value) {
+            if (index < 0 || index > slots.size) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + slots.size);
+            }
+            slots.add(value);
+            for (int i = slots.size - 1; i > index; i--) {
+                slots.move(i - 1, i);
+            }
+            slots.set(index, value);
+            modCount++;
+        }
+
+        public void add(long value) {
+            slots.add(null);
+            slots.setLong(slots.size - 1, value);
+            modCount++;
+        }
+
+        @Override
+        public Object remove(int index) {
+            checkIndex(index);
+            Object previous = slots.get(index);
+            slots.remove(index);
+            modCount++;
+            return previous;
+        }
+
+        @Override
+        public void clear() {
+            slots.clear();
+            modCount++;
+        }
+
+        /**
+         * Make this array unmodifiable (its children are not frozen).
+         */
+        void freeze() {
+            slots.frozen = true;
+        }
+
+        /**
+         * @return a new empty object, added at the end of this array.
+         */
+        public ResourceDocument addObject() {
+            ResourceDocument document = new ResourceDocument();
+            add(document);
+            return document;
+        }
+
+        /**
+         * Write this array using the given generator.
+         */
+        public void write(JsonGenerator generator) throws IOException {
+            write(generator, false);
+        }
+
+        /**
+         * Write this array, or its canonical form (keys of its objects sorted), using the given generator.
+         */
+        public void write(JsonGenerator generator, boolean canonical) throws IOException {
+            generator.writeStartArray();
+            for (int i = 0; i < slots.size; i++) {
+                slots.write(i, generator, canonical);
+            }
+            generator.writeEndArray();
+        }
+
+        private void checkIndex(int index) {
+            if (index < 0 || index >= slots.size) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + slots.size);
+            }
+        }
+    }
+
+    /**
+     * Write documents and arrays with any object mapper (JSON, YAML ...).
+     */
+    public static class Serializer extends JsonSerializer<Object> {
+        @Override
+        public void serialize(Object value, JsonGenerator generator, SerializerProvider serializers) throws IOException {
+            KubeJsonWriter.write(generator, value);
+        }
+    }
+
+    /**
+     * The typed values of a document or an array.
+     */
+    private static final class Slots {
+        private static final byte NULL = 0;
+        private static final byte STRING = 1;
+        private static final byte LONG = 2;
+        private static final byte DOUBLE = 3;
+        private static final byte FLOAT = 4;
+        private static final byte BOOLEAN = 5;
+        private static final byte NODE = 6;
+
+        private static final int INITIAL_CAPACITY = 4;
+
+        private byte[] types = new byte[0];
+        /** The numbers and booleans. */
+        private long[] primitives = new long[0];
+        /** The strings, documents, arrays and foreign values. */
+        private Object[] references = new Object[0];
+        private int size;
+        private boolean frozen;
+
+        private int capacity() {
+            return types.length;
+        }
+
+        private void checkModifiable() {
+            if (frozen) {
+                throw new UnsupportedOperationException("The shared documents can't be modified");
+            }
+        }
+
+        private void add(Object value) {
+            checkModifiable();
+            if (size == types.length) {
+                int capacity = Math.max(INITIAL_CAPACITY, size + (size >> 1));
+                types = Arrays.copyOf(types, capacity);
+                primitives = Arrays.copyOf(primitives, capacity);
+                references = Arrays.copyOf(references, capacity);
+            }
+            size++;
+            set(size - 1, value);
+        }
+
+        private void set(int index, Object value) {
+            checkModifiable();
+            if (value instanceof PropertyValue) {
+                // scalars are stored as strings, complex and list values are kept as they are
+                Object unwrapped = ((PropertyValue) value).getValue();
+                if (unwrapped == null || unwrapped instanceof String) {
+                    value = unwrapped;
+                }
+            }
+            references[index] = null;
+            primitives[index] = 0;
+            if (value == null) {
+                types[index] = NULL;
+            } else if (value instanceof String) {
+                types[index] = STRING;
+                references[index] = value;
+            } else if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+                setLong(index, ((Number) value).longValue());
+            } else if (value instanceof Double) {
+                setDouble(index, (Double) value);
+            } else if (value instanceof Float) {
+                types[index] = FLOAT;
+                primitives[index] = Float.floatToRawIntBits((Float) value);
+            } else if (value instanceof Boolean) {
+                setBoolean(index, (Boolean) value);
+            } else {
+                types[index] = NODE;
+                references[index] = value;
+            }
+        }
+
+        private void setLong(int index, long value) {
+            checkModifiable();
+            types[index] = LONG;
+            references[index] = null;
+            primitives[index] = value;
+        }
+
+        private void setDouble(int index, double value) {
+            checkModifiable();
+            types[index] = DOUBLE;
+            references[index] = null;
+            primitives[index] = Double.doubleToRawLongBits(value);
+        }
+
+        private void setBoolean(int index, boolean value) {
+            checkModifiable();
+            types[index] = BOOLEAN;
+            references[index] = null;
+            primitives[index] = value ? 1 : 0;
+        }
+
+        private Object get(int index) {
+            switch (types[index]) {
+            case LONG:
+                return primitives[index];
+            case DOUBLE:
+                return Double.longBitsToDouble(primitives[index]);
+            case FLOAT:
+                return Float.intBitsToFloat((int) primitives[index]);
+            case BOOLEAN:
+                return primitives[index] != 0;
+            default:
+                return references[index];
+            }
+        }
+
+        private void move(int from, int to) {
+            types[to] = types[from];
+            primitives[to] = primitives[from];
+            references[to] = references[from];
+        }
+
+        private void remove(int index) {
+            checkModifiable();
+            for (int i = index; i < size - 1; i++) {
+                move(i + 1, i);
+            }
+            size--;
+            types[size] = NULL;
+            primitives[size] = 0;
+            references[size] = null;
+        }
+
+        private void clear() {
+            checkModifiable();
+            Arrays.fill(references, 0, size, null);
+            size = 0;
+        }
+
+        private void write(int index, JsonGenerator generator, boolean canonical) throws IOException {
+            switch (types[index]) {
+            case NULL:
+                generator.writeNull();
+                break;
+            case STRING:
+                generator.writeString((String) references[index]);
+                break;
+            case LONG:
+                generator.writeNumber(primitives[index]);
+                break;
+            case DOUBLE:
+                generator.writeNumber(Double.longBitsToDouble(primitives[index]));
+                break;
+            case FLOAT:
+                generator.writeNumber(Float.intBitsToFloat((int) primitives[index]));
+                break;
+            case BOOLEAN:
+                generator.writeBoolean(primitives[index] != 0);
+                break;
+            default:
+                KubeJsonWriter.write(generator, references[index], canonical);
+            }
+        }
+    }
+}
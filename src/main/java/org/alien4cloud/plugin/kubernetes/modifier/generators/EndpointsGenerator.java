@@ -0,0 +1,91 @@
+package org.alien4cloud.plugin.kubernetes.modifier.generators;
+
+import static alien4cloud.utils.AlienUtils.safe;
+
+import java.util.Map;
+import java.util.Set;
+
+import org.alien4cloud.plugin.kubernetes.modifier.KubernetesModifierContext;
+import org.alien4cloud.tosca.model.definitions.AbstractPropertyValue;
+import org.alien4cloud.tosca.model.definitions.ComplexPropertyValue;
+import org.alien4cloud.tosca.model.definitions.ListPropertyValue;
+import org.alien4cloud.tosca.model.templates.NodeTemplate;
+import org.alien4cloud.tosca.model.templates.RelationshipTemplate;
+import org.alien4cloud.tosca.model.templates.ServiceNodeTemplate;
+import org.alien4cloud.tosca.utils.TopologyNavigationUtil;
+import org.springframework.stereotype.Component;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * Fill the endpoints (and the ports of the service in front of them) that proxy a node which is not a container.
+ */
+@Component
+public class EndpointsGenerator implements NodeResourceGenerator {
+
+    @Override
+    public String getKind() {
+        return "Endpoints";
+    }
+
+    @Override
+    public void generate(ResourceGenerationContext generationContext, NodeTemplate endpointNode) {
+        KubernetesModifierContext context = generationContext.getContext();
+        // and enpoint is connected to a regular node (not a container), but maybe to a service that has been matched
+        // we just ensure the port is up-to-date now (after matching)
+        // so we set port property on Endpoint node and the service node that both proxy the a4c service node
+        Set<RelationshipTemplate> targetRelationships = TopologyNavigationUtil.getTargetRelationships(endpointNode, "endpoint");
+        if (targetRelationships == null || targetRelationships.size() > 1) {
+            // should never occur
+            return;
+        }
+        RelationshipTemplate targetRelationship = targetRelationships.iterator().next();
+        NodeTemplate targetNodeTemplate = context.getTopology().getNodeTemplates().get(targetRelationship.getTarget());
+        AbstractPropertyValue port = TopologyNavigationUtil.getNodeCapabilityPropertyValue(targetNodeTemplate, targetRelationship.getTargetedCapabilityName(), "port");
+        if (port == null) {
+            context.log().error("Connecting container to an external service requires its endpoint port to be defined. Port of [" + targetNodeTemplate.getName()
+                    + ".capabilities." + targetRelationship.getTargetedCapabilityName() + "] is not defined.");
+            return;
+        }
+
+        Set<NodeTemplate> targetEndpointNodes = TopologyNavigationUtil.getTargetNodes(context.getTopology(), endpointNode, "endpoint");
+        if (targetEndpointNodes == null || targetEndpointNodes.size() > 1) {
+            // should never occur
+            return;
+        }
+        // this is the K8S targeted service node (maybe an abstract service that has now been matched)
+        NodeTemplate targetEndpointNode = targetEndpointNodes.iterator().next();
+        // now search for the service that depends on this endpoint
+        Set<NodeTemplate> targetServiceNodes = context.getRelationshipIndex().getSourceNodes(endpointNode, "feature");
+        if (targetServiceNodes == null || targetServiceNodes.size() > 1) {
+            // should never occur
+            return;
+        }
+        NodeTemplate targetServiceNode = targetServiceNodes.iterator().next();
+
+        // fill service property
+        Map<String, Object> portEntry = Maps.newHashMap();
+        portEntry.put("port", port);
+        ComplexPropertyValue complexPropertyValue = new ComplexPropertyValue(portEntry);
+        generationContext.appendNodePropertyPathValue(targetServiceNode, "spec.ports", complexPropertyValue);
+
+        String ipAddress = "#{TARGET_IP_ADDRESS}";
+        if (targetEndpointNode instanceof ServiceNodeTemplate) {
+            ServiceNodeTemplate serviceNodeTemplate = (ServiceNodeTemplate)targetEndpointNode;
+            ipAddress = safe(serviceNodeTemplate.getAttributeValues()).get("capabilities." + targetRelationship.getTargetedCapabilityName() + ".ip_address");
+        }
+
+        // fill endpoint subsets property
+        Map<String, Object> subsetEntry = Maps.newHashMap();
+        Map<String, Object> addresses = Maps.newHashMap();
+        addresses.put("ip", ipAddress);
+        subsetEntry.put("addresses", new ListPropertyValue(Lists.newArrayList(addresses)));
+        Map<String, Object> ports = Maps.newHashMap();
+        ports.put("port", port);
+        subsetEntry.put("ports", new ListPropertyValue(Lists.newArrayList(ports)));
+        ComplexPropertyValue subsetComplexPropertyValue = new ComplexPropertyValue(subsetEntry);
+        ListPropertyValue subsets = new ListPropertyValue(Lists.newArrayList(subsetComplexPropertyValue));
+        generationContext.setNodePropertyPathValue(endpointNode, "subsets", subsets);
+    }
+}
@@ -0,0 +1,117 @@
+package org.alien4cloud.plugin.kubernetes.modifier.generators;
+
+import static alien4cloud.utils.AlienUtils.safe;
+import static org.alien4cloud.alm.deployment.configuration.flow.TopologyModifierSupport.feedPropertyValue;
+import static org.alien4cloud.plugin.kubernetes.modifier.KubeTopologyUtils.K8S_TYPES_SIMPLE_RESOURCE;
+import static org.alien4cloud.plugin.kubernetes.modifier.KubeTopologyUtils.RESOURCE_DEF_API_VERSION;
+import static org.alien4cloud.plugin.kubernetes.modifier.KubeTopologyUtils.RESOURCE_DEF_KIND;
+import static org.alien4cloud.plugin.kubernetes.modifier.KubeTopologyUtils.RESOURCE_DEF_METADATA_LABELS_A4C_ID;
+import static org.alien4cloud.plugin.kubernetes.modifier.KubeTopologyUtils.RESOURCE_DEF_METADATA_NAME;
+
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+import org.alien4cloud.plugin.kubernetes.modifier.CopyOnWritePropertyTree;
+import org.alien4cloud.plugin.kubernetes.modifier.KubeNameAllocator;
+import org.alien4cloud.plugin.kubernetes.modifier.KubernetesModifierContext;
+import org.alien4cloud.plugin.kubernetes.modifier.PropertyPath;
+import org.alien4cloud.plugin.kubernetes.modifier.ResourceDocument;
+import org.alien4cloud.tosca.model.definitions.AbstractPropertyValue;
+import org.alien4cloud.tosca.model.definitions.ComplexPropertyValue;
+import org.alien4cloud.tosca.model.definitions.PropertyDefinition;
+import org.alien4cloud.tosca.model.definitions.ScalarPropertyValue;
+import org.alien4cloud.tosca.model.templates.NodeTemplate;
+import org.alien4cloud.tosca.model.templates.PolicyTemplate;
+import org.alien4cloud.tosca.model.types.PolicyType;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.stereotype.Component;
+
+import alien4cloud.tosca.context.ToscaContext;
+
+/**
+ * Add a horizontal pod autoscaler resource, targeting the resource of a deployment, for an auto-scaling policy.
+ * <p>
+ * The spec of the policy is transformed using {@link #getTransformedSpec(ResourceGenerationContext, PolicyTemplate)}, which only reads the context
+ * and can then be called while preparing a concurrent stage. The transformed spec is shared by the resources of all the targets of the policy :
+ * each resource gets a copy-on-write view of it.
+ */
+@Component
+public class HorizontalPodAutoscalerGenerator implements ResourceGenerator {
+
+    private static final PropertyPath RESOURCE_DEF_SPEC_MAX_REPLICAS = PropertyPath.of("resource_def.spec.maxReplicas");
+    private static final PropertyPath RESOURCE_DEF_SPEC_METRICS = PropertyPath.of("resource_def.spec.metrics");
+    private static final PropertyPath RESOURCE_DEF_SPEC_MIN_REPLICAS = PropertyPath.of("resource_def.spec.minReplicas");
+    private static final PropertyPath RESOURCE_DEF_SPEC_SCALE_TARGET_REF_API_VERSION = PropertyPath.of("resource_def.spec.scaleTargetRef.apiVersion");
+    private static final PropertyPath RESOURCE_DEF_SPEC_SCALE_TARGET_REF_KIND = PropertyPath.of("resource_def.spec.scaleTargetRef.kind");
+    private static final PropertyPath RESOURCE_DEF_SPEC_SCALE_TARGET_REF_NAME = PropertyPath.of("resource_def.spec.scaleTargetRef.name");
+
+    @Override
+    public String getKind() {
+        return "HorizontalPodAutoscaler";
+    }
+
+    public Map<String, Object> getTransformedSpec(ResourceGenerationContext generationContext, PolicyTemplate policyTemplate) {
+        // Do this to make sure integer values are not serialized as string (the transformation copies the spec, the policy is not modified)
+        ComplexPropertyValue spec = (ComplexPropertyValue) policyTemplate.getProperties().get("spec");
+        PolicyType policyType = ToscaContext.get(PolicyType.class, policyTemplate.getType());
+        PropertyDefinition propertyDefinition = policyType.getProperties().get("spec");
+        return safe((Map<String, Object>) generationContext.getTransformedValue(spec, propertyDefinition, ""));
+    }
+
+    public void generate(ResourceGenerationContext generationContext, PolicyTemplate policyTemplate, NodeTemplate target, Map<String, Object> transformed) {
+        KubernetesModifierContext context = generationContext.getContext();
+        String resourceBaseName = target.getName() + "_" + policyTemplate.getName();
+        NodeTemplate podAutoScalerResourceNode = generationContext.addResourceNode(resourceBaseName + "_Resource", K8S_TYPES_SIMPLE_RESOURCE);
+
+        ResourceDocument podAutoScalerResourceNodeProperties = new ResourceDocument();
+        context.getYamlResources().put(podAutoScalerResourceNode.getName(), podAutoScalerResourceNodeProperties);
+
+        NodeTemplate targetDeploymentResourceNode = context.getReplacements().get(target.getName());
+        ResourceDocument targetDeploymentResourceNodeProps = context.getYamlResources().get(targetDeploymentResourceNode.getName());
+        String podAutoScalerName = generationContext.generateUniqueKubeName(KubeNameAllocator.ROLE_AUTOSCALER, resourceBaseName);
+
+        feedPropertyValue(podAutoScalerResourceNode.getProperties(), "resource_type", new ScalarPropertyValue("hpa"), false);
+        feedPropertyValue(podAutoScalerResourceNode.getProperties(), "resource_id", new ScalarPropertyValue(podAutoScalerName), false);
+
+        // fill the future JSON spec
+        RESOURCE_DEF_KIND.set(podAutoScalerResourceNodeProperties, getKind());
+        RESOURCE_DEF_API_VERSION.set(podAutoScalerResourceNodeProperties, "autoscaling/v2beta1");
+        RESOURCE_DEF_METADATA_NAME.set(podAutoScalerResourceNodeProperties, podAutoScalerName);
+        RESOURCE_DEF_METADATA_LABELS_A4C_ID.set(podAutoScalerResourceNodeProperties, podAutoScalerName);
+
+        // get targeted resource identification properties
+        AbstractPropertyValue apiVersionProperty = RESOURCE_DEF_API_VERSION.get(targetDeploymentResourceNodeProps);
+        RESOURCE_DEF_SPEC_SCALE_TARGET_REF_API_VERSION.set(podAutoScalerResourceNodeProperties, apiVersionProperty);
+        AbstractPropertyValue kindProperty = RESOURCE_DEF_KIND.get(targetDeploymentResourceNodeProps);
+        RESOURCE_DEF_SPEC_SCALE_TARGET_REF_KIND.set(podAutoScalerResourceNodeProperties, kindProperty);
+        AbstractPropertyValue nameProperty = RESOURCE_DEF_METADATA_NAME.get(targetDeploymentResourceNodeProps);
+        RESOURCE_DEF_SPEC_SCALE_TARGET_REF_NAME.set(podAutoScalerResourceNodeProperties, nameProperty);
+
+        // min and max replicas from the policy template
+        CopyOnWritePropertyTree spec = CopyOnWritePropertyTree.of(transformed);
+        RESOURCE_DEF_SPEC_MIN_REPLICAS.set(podAutoScalerResourceNodeProperties, spec.get("minReplicas"));
+        RESOURCE_DEF_SPEC_MAX_REPLICAS.set(podAutoScalerResourceNodeProperties, spec.get("maxReplicas"));
+
+        // clear metrics and add
+        cleanMetricsBaseOnType(spec);
+        RESOURCE_DEF_SPEC_METRICS.set(podAutoScalerResourceNodeProperties, spec.get("metrics"));
+    }
+
+    private void cleanMetricsBaseOnType(CopyOnWritePropertyTree spec) {
+        List<Object> metrics = (List<Object>) spec.get("metrics");
+        if (metrics == null) {
+            return;
+        }
+        for (int i = 0; i < metrics.size(); i++) {
+            String type = (String) spec.get("metrics", i, "type");
+            // remove all entry that does not match the type defined.
+            // see org.alien4cloud.kubernetes.api.datatypes.autoscaler.MetricSpec for details
+            Predicate<String> ignored = key -> !"type".equals(key) && !StringUtils.equalsAnyIgnoreCase(key, type);
+            Map<String, Object> metric = (Map<String, Object>) spec.get("metrics", i);
+            if (metric != null && metric.keySet().stream().anyMatch(ignored)) {
+                spec.editMap("metrics", i).keySet().removeIf(ignored);
+            }
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package org.alien4cloud.plugin.kubernetes.modifier.generators;
+
+import static alien4cloud.utils.AlienUtils.safe;
+import static org.alien4cloud.plugin.kubernetes.modifier.KubeTopologyUtils.K8S_TYPES_JOB_RESOURCE;
+import static org.alien4cloud.plugin.kubernetes.modifier.KubeTopologyUtils.RESOURCE_DEF_API_VERSION;
+import static org.alien4cloud.plugin.kubernetes.modifier.KubeTopologyUtils.RESOURCE_DEF_KIND;
+import static org.alien4cloud.plugin.kubernetes.modifier.KubeTopologyUtils.RESOURCE_DEF_METADATA;
+import static org.alien4cloud.plugin.kubernetes.modifier.KubeTopologyUtils.RESOURCE_DEF_SPEC;
+import static org.alien4cloud.plugin.kubernetes.modifier.KubeTopologyUtils.copyProperty;
+
+import org.alien4cloud.plugin.kubernetes.modifier.KubernetesModifierContext;
+import org.alien4cloud.plugin.kubernetes.modifier.ResourceDocument;
+import org.alien4cloud.tosca.model.definitions.AbstractPropertyValue;
+import org.alien4cloud.tosca.model.definitions.PropertyDefinition;
+import org.alien4cloud.tosca.model.templates.NodeTemplate;
+import org.alien4cloud.tosca.model.types.NodeType;
+import org.springframework.stereotype.Component;
+
+import alien4cloud.tosca.context.ToscaContext;
+import alien4cloud.utils.PropertyUtil;
+
+/**
+ * Replace a job node by a job resource.
+ */
+@Component
+public class JobGenerator implements NodeResourceGenerator {
+
+    @Override
+    public String getKind() {
+        return "Job";
+    }
+
+    @Override
+    public void generate(ResourceGenerationContext generationContext, NodeTemplate jobNode) {
+        KubernetesModifierContext context = generationContext.getContext();
+        NodeTemplate jobResourceNode = generationContext.addResourceNode(jobNode.getName() + "_Resource", K8S_TYPES_JOB_RESOURCE);
+        context.getReplacements().put(jobNode.getName(), jobResourceNode);
+        generationContext.setNodeTagValue(jobResourceNode, generationContext.getModifierTag() + "_created_from", jobNode.getName());
+
+        ResourceDocument jobResourceNodeProperties = new ResourceDocument();
+        context.getYamlResources().put(jobResourceNode.getName(), jobResourceNodeProperties);
+
+        copyProperty(jobNode, "apiVersion", jobResourceNodeProperties, RESOURCE_DEF_API_VERSION);
+        copyProperty(jobNode, "kind", jobResourceNodeProperties, RESOURCE_DEF_KIND);
+        copyProperty(jobNode, "metadata", jobResourceNodeProperties, RESOURCE_DEF_METADATA);
+
+        AbstractPropertyValue propertyValue = PropertyUtil.getPropertyValueFromPath(safe(jobNode.getProperties()), "spec");
+        NodeType nodeType = ToscaContext.get(NodeType.class, jobNode.getType());
+        PropertyDefinition propertyDefinition = nodeType.getProperties().get("spec");
+        Object transformedValue = generationContext.getTransformedValue(propertyValue, propertyDefinition, "");
+        RESOURCE_DEF_SPEC.set(jobResourceNodeProperties, transformedValue);
+    }
+}
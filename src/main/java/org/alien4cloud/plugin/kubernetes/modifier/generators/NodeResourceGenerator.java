@@ -0,0 +1,23 @@
+package org.alien4cloud.plugin.kubernetes.modifier.generators;
+
+import org.alien4cloud.tosca.model.templates.NodeTemplate;
+
+/**
+ * Generator of the resources related to a single node of the topology.
+ */
+public interface NodeResourceGenerator extends ResourceGenerator {
+
+    /**
+     * @return the type of the nodes the modifiers apply this generator to (once the controller resources, their containers and their volumes
+     *         are generated), null if the generator is only called by the stages of the modifiers.
+     */
+    default String getSourceNodeType() {
+        return null;
+    }
+
+    /**
+     * Generate the resources of the given node : add the resource nodes to the topology and their future JSON spec to
+     * {@link org.alien4cloud.plugin.kubernetes.modifier.KubernetesModifierContext#getYamlResources()}.
+     */
+    void generate(ResourceGenerationContext context, NodeTemplate sourceNode);
+}
@@ -0,0 +1,56 @@
+package org.alien4cloud.plugin.kubernetes.modifier.generators;
+
+import org.alien4cloud.plugin.kubernetes.modifier.KubernetesModifierContext;
+import org.alien4cloud.tosca.model.definitions.AbstractPropertyValue;
+import org.alien4cloud.tosca.model.definitions.PropertyDefinition;
+import org.alien4cloud.tosca.model.templates.AbstractTemplate;
+import org.alien4cloud.tosca.model.templates.NodeTemplate;
+import org.alien4cloud.tosca.model.templates.RelationshipTemplate;
+
+/**
+ * What a {@link ResourceGenerator} can do on the topology being transformed, backed by the modifier calling it : the topology changes keep the
+ * indexes of the {@link KubernetesModifierContext} up to date, and what differs between the modifiers (tags, initialization of the resource
+ * nodes, controllers of the containers) is decided by the modifier.
+ */
+public interface ResourceGenerationContext {
+
+    KubernetesModifierContext getContext();
+
+    /**
+     * @return the tag of the modifier, used to tag the nodes it creates.
+     */
+    String getModifierTag();
+
+    /**
+     * @return the node (deployment, job, statefulset ...) that controls the given container, null if none.
+     */
+    NodeTemplate getControllerNode(NodeTemplate containerNode);
+
+    /**
+     * Add a resource node of the given type (and of the version of the plugin archive), initialized as the modifier does for its own resources.
+     */
+    NodeTemplate addResourceNode(String desiredNodeName, String nodeType);
+
+    void removeNode(NodeTemplate nodeTemplate);
+
+    /**
+     * Add a <code>DependsOn</code> relationship from the source node to the target node.
+     */
+    RelationshipTemplate addDependency(NodeTemplate sourceNode, String targetNodeName);
+
+    void setNodePropertyPathValue(NodeTemplate nodeTemplate, String propertyPath, AbstractPropertyValue propertyValue);
+
+    void appendNodePropertyPathValue(NodeTemplate nodeTemplate, String propertyPath, AbstractPropertyValue propertyValue);
+
+    void setNodeTagValue(AbstractTemplate template, String name, String value);
+
+    /**
+     * @return the kubernetes name of the object of the given role (see <code>KubeNameAllocator</code>) made for the node named by the prefix.
+     */
+    String generateUniqueKubeName(String role, String prefix);
+
+    /**
+     * Transform the given value as it should be found in a JSON spec (see <code>AbstractKubernetesModifier.getTransformedValue</code>).
+     */
+    Object getTransformedValue(Object value, PropertyDefinition propertyDefinition, String path);
+}
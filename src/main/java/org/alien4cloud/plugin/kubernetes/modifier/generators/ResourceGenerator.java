@@ -0,0 +1,16 @@
+package org.alien4cloud.plugin.kubernetes.modifier.generators;
+
+/**
+ * Generates the Kubernetes resources of a given kind, for both the adapter and the final modifiers.
+ * <p>
+ * Generators are Spring components. The built-in ones are called by the stages of the modifiers, the ones applied to a type of source node
+ * (see {@link NodeResourceGenerator#getSourceNodeType()}) are called by the <code>custom resources</code> stage of both modifiers, which lets
+ * a plugin add a kind without changing the modifiers.
+ */
+public interface ResourceGenerator {
+
+    /**
+     * @return the kind of the generated resources, as set in their <code>resource_def.kind</code>.
+     */
+    String getKind();
+}
@@ -0,0 +1,43 @@
+package org.alien4cloud.plugin.kubernetes.modifier.generators;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.alien4cloud.tosca.model.templates.NodeTemplate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * The {@link ResourceGenerator}s known by the Spring context.
+ */
+@Slf4j
+@Component
+public class ResourceGenerators {
+
+    @Autowired(required = false)
+    private List<ResourceGenerator> generators = Collections.emptyList();
+
+    public List<ResourceGenerator> getGenerators() {
+        return Collections.unmodifiableList(generators);
+    }
+
+    /**
+     * Apply each generator having a source node type to the nodes of this type, generators and nodes being sorted by name so that the generated
+     * names don't depend on the order of the beans or of the nodes.
+     */
+    public void generateCustomResources(ResourceGenerationContext context) {
+        List<NodeResourceGenerator> customGenerators = generators.stream().filter(generator -> generator instanceof NodeResourceGenerator)
+                .map(generator -> (NodeResourceGenerator) generator).filter(generator -> generator.getSourceNodeType() != null)
+                .sorted(Comparator.comparing(generator -> generator.getClass().getName())).collect(Collectors.toList());
+        for (NodeResourceGenerator generator : customGenerators) {
+            List<NodeTemplate> sourceNodes = context.getContext().getIndex().getNodesOfType(generator.getSourceNodeType(), true).stream()
+                    .sorted(Comparator.comparing(NodeTemplate::getName)).collect(Collectors.toList());
+            log.debug("Generating {} resources for {} nodes of type {}", generator.getKind(), sourceNodes.size(), generator.getSourceNodeType());
+            sourceNodes.forEach(sourceNode -> generator.generate(context, sourceNode));
+        }
+    }
+}
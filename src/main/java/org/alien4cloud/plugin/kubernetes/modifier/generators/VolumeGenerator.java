@@ -0,0 +1,207 @@
+package org.alien4cloud.plugin.kubernetes.modifier.generators;
+
+import static org.alien4cloud.alm.deployment.configuration.flow.TopologyModifierSupport.feedPropertyValue;
+import static org.alien4cloud.plugin.kubernetes.modifier.KubeTopologyUtils.K8S_TYPES_SECRET_FACTORY;
+import static org.alien4cloud.plugin.kubernetes.modifier.KubeTopologyUtils.K8S_TYPES_SECRET_VOLUME;
+import static org.alien4cloud.plugin.kubernetes.modifier.KubeTopologyUtils.K8S_TYPES_SIMPLE_RESOURCE;
+import static org.alien4cloud.plugin.kubernetes.modifier.KubeTopologyUtils.K8S_TYPES_STATEFULSET;
+import static org.alien4cloud.plugin.kubernetes.modifier.KubeTopologyUtils.K8S_TYPES_VOLUMES_CLAIM;
+import static org.alien4cloud.plugin.kubernetes.modifier.KubeTopologyUtils.K8S_TYPES_VOLUMES_CLAIM_SC;
+import static org.alien4cloud.plugin.kubernetes.modifier.KubeTopologyUtils.METADATA_NAME;
+import static org.alien4cloud.plugin.kubernetes.modifier.KubeTopologyUtils.RESOURCE_DEF_API_VERSION;
+import static org.alien4cloud.plugin.kubernetes.modifier.KubeTopologyUtils.RESOURCE_DEF_KIND;
+import static org.alien4cloud.plugin.kubernetes.modifier.KubeTopologyUtils.RESOURCE_DEF_METADATA_LABELS_A4C_ID;
+import static org.alien4cloud.plugin.kubernetes.modifier.KubeTopologyUtils.RESOURCE_DEF_METADATA_NAME;
+import static org.alien4cloud.plugin.kubernetes.modifier.KubeTopologyUtils.RESOURCE_DEF_SPEC_TEMPLATE_SPEC_VOLUMES;
+
+import java.util.Map;
+import java.util.Optional;
+
+import org.alien4cloud.alm.deployment.configuration.flow.TopologyModifierSupport;
+import org.alien4cloud.plugin.kubernetes.modifier.KubeNameAllocator;
+import org.alien4cloud.plugin.kubernetes.modifier.KubernetesModifierContext;
+import org.alien4cloud.plugin.kubernetes.modifier.PropertyPath;
+import org.alien4cloud.plugin.kubernetes.modifier.ResourceDocument;
+import org.alien4cloud.tosca.model.definitions.AbstractPropertyValue;
+import org.alien4cloud.tosca.model.definitions.DeploymentArtifact;
+import org.alien4cloud.tosca.model.definitions.ListPropertyValue;
+import org.alien4cloud.tosca.model.definitions.PropertyDefinition;
+import org.alien4cloud.tosca.model.definitions.ScalarPropertyValue;
+import org.alien4cloud.tosca.model.templates.NodeTemplate;
+import org.alien4cloud.tosca.model.templates.RelationshipTemplate;
+import org.alien4cloud.tosca.model.types.NodeType;
+import org.alien4cloud.tosca.utils.TopologyNavigationUtil;
+import org.springframework.stereotype.Component;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import alien4cloud.tosca.context.ToscaContext;
+import alien4cloud.utils.PropertyUtil;
+
+/**
+ * Populate the <code>volumes</code> of the controller resource hosting the container a volume is attached to, and create the resources the volume
+ * needs : the persistent volume claim (or the volume claim template of a statefulset) and the secret of a secret volume.
+ */
+@Component
+public class VolumeGenerator implements NodeResourceGenerator {
+
+    private static final PropertyPath RESOURCE_DEF_SPEC_ACCESS_MODES = PropertyPath.of("resource_def.spec.accessModes");
+    private static final PropertyPath RESOURCE_DEF_SPEC_RESOURCES_REQUESTS_STORAGE = PropertyPath.of("resource_def.spec.resources.requests.storage");
+    private static final PropertyPath RESOURCE_DEF_SPEC_STORAGE_CLASS_NAME = PropertyPath.of("resource_def.spec.storageClassName");
+    private static final PropertyPath RESOURCE_DEF_SPEC_VOLUME_CLAIM_TEMPLATES = PropertyPath.of("resource_def.spec.volumeClaimTemplates");
+    private static final PropertyPath SPEC_ACCESS_MODES = PropertyPath.of("spec.accessModes");
+    private static final PropertyPath SPEC_CLAIM_NAME = PropertyPath.of("spec.claimName");
+    private static final PropertyPath SPEC_RESOURCES_REQUESTS_STORAGE = PropertyPath.of("spec.resources.requests.storage");
+
+    @Override
+    public String getKind() {
+        return "PersistentVolumeClaim";
+    }
+
+    @Override
+    public void generate(ResourceGenerationContext generationContext, NodeTemplate volumeNode) {
+        KubernetesModifierContext context = generationContext.getContext();
+
+        // FIXME : doesn't support many attachement (1 volume -> many containers) ?)
+        Optional<RelationshipTemplate> relationshipTemplate = TopologyNavigationUtil.getTargetRelationships(volumeNode, "attachment").stream().findFirst();
+        if (!relationshipTemplate.isPresent()) {
+            return;
+        }
+        NodeTemplate targetContainer = context.getTopology().getNodeTemplates().get(relationshipTemplate.get().getTarget());
+        // find the controller (deployment, job, statefulset) that hosts this container
+        NodeTemplate hostOfContainer = generationContext.getControllerNode(targetContainer);
+        if (hostOfContainer == null) {
+            context.log().error("failed to get controller hosting volume <" + volumeNode.getName() + ">");
+            return;
+        }
+        // get the resource corresponding to this controller
+        NodeTemplate controllerResourceNode = context.getReplacements().get(hostOfContainer.getName());
+
+        if (context.getTypes().isNodeOfType(hostOfContainer.getType(), K8S_TYPES_STATEFULSET)) {
+            // If statefulSet does not match a PVC, raise error
+            if (!context.getTypes().isNodeOfType(volumeNode.getType(), K8S_TYPES_VOLUMES_CLAIM)) {
+                context.log().error("StatefulSet " + hostOfContainer.getName() + " should match a PersistentVolumeClaim resource !");
+                return;
+            }
+            manageVolumeClaimTemplates(generationContext, volumeNode, controllerResourceNode);
+        } else {
+            managePersistentVolumeClaim(generationContext, volumeNode, controllerResourceNode);
+        }
+
+        ResourceDocument controllerResourceNodeProperties = context.getYamlResources().get(controllerResourceNode.getName());
+        Map<String, Object> volumeEntry = Maps.newHashMap();
+        AbstractPropertyValue name = PropertyUtil.getPropertyValueFromPath(volumeNode.getProperties(), "name");
+        AbstractPropertyValue volume_type = PropertyUtil.getPropertyValueFromPath(volumeNode.getProperties(), "volume_type");
+        AbstractPropertyValue volume_spec = PropertyUtil.getPropertyValueFromPath(volumeNode.getProperties(), "spec");
+        volumeEntry.put("name", name);
+        Object volumeSpecObject = volume_spec;
+        if (volume_spec == null) {
+            // if the volume spec is null, we want an empty object (JSON : {}) in the map
+            Map<String, Object> map = Maps.newHashMap();
+            volumeSpecObject = map;
+        }
+        volumeEntry.put(PropertyUtil.getScalarValue(volume_type), volumeSpecObject);
+        RESOURCE_DEF_SPEC_TEMPLATE_SPEC_VOLUMES.append(controllerResourceNodeProperties, volumeEntry);
+
+        if (context.getTypes().isNodeOfType(volumeNode.getType(), K8S_TYPES_SECRET_VOLUME)) {
+            // we must create a secret, the deployment should depend on it
+            NodeTemplate secretFactory = generationContext.addResourceNode(volumeNode.getName() + "_Secret", K8S_TYPES_SECRET_FACTORY);
+            String secretName = generationContext.generateUniqueKubeName(KubeNameAllocator.ROLE_SECRET, volumeNode.getName());
+            generationContext.setNodePropertyPathValue(secretFactory, "name", new ScalarPropertyValue(secretName));
+            // we must also define the secretName of the secret
+            TopologyModifierSupport.feedMapOrComplexPropertyEntry(volumeSpecObject, "secretName", secretName);
+
+            Map<String, DeploymentArtifact> artifacts = secretFactory.getArtifacts();
+            if (artifacts == null) {
+                artifacts = Maps.newHashMap();
+                secretFactory.setArtifacts(artifacts);
+            }
+            artifacts.put("resources", volumeNode.getArtifacts().get("resources"));
+            generationContext.addDependency(controllerResourceNode, secretFactory.getName());
+        }
+    }
+
+    private void manageVolumeClaimTemplates(ResourceGenerationContext generationContext, NodeTemplate volumeNode, NodeTemplate statefulsetResourceNode) {
+        KubernetesModifierContext context = generationContext.getContext();
+        AbstractPropertyValue size = getSize(context, volumeNode);
+
+        ResourceDocument stsResourceNodeProperties = context.getYamlResources().get(statefulsetResourceNode.getName());
+
+        //Create a list of claim templates if it doesn't exists
+        AbstractPropertyValue vctpl = RESOURCE_DEF_SPEC_VOLUME_CLAIM_TEMPLATES.get(stsResourceNodeProperties);
+        if (vctpl == null) {
+            RESOURCE_DEF_SPEC_VOLUME_CLAIM_TEMPLATES.set(stsResourceNodeProperties, new ListPropertyValue(Lists.newArrayList()));
+        }
+
+        //Feed volume infos
+        ResourceDocument volumeClaimResource = new ResourceDocument();
+        AbstractPropertyValue volumeName = PropertyUtil.getPropertyValueFromPath(volumeNode.getProperties(), "name");
+        METADATA_NAME.set(volumeClaimResource, volumeName);
+        AbstractPropertyValue accessModesProperty = PropertyUtil.getPropertyValueFromPath(volumeNode.getProperties(), "accessModes");
+        SPEC_ACCESS_MODES.append(volumeClaimResource, accessModesProperty);
+        SPEC_RESOURCES_REQUESTS_STORAGE.set(volumeClaimResource, getTransformedSize(generationContext, volumeNode, size));
+        if (context.getTypes().isNodeOfType(volumeNode.getType(), K8S_TYPES_VOLUMES_CLAIM_SC)) {
+            // add the storage class name to the claim
+            AbstractPropertyValue storageClassNameProperty = PropertyUtil.getPropertyValueFromPath(volumeNode.getProperties(), "storageClassName");
+            RESOURCE_DEF_SPEC_STORAGE_CLASS_NAME.set(volumeClaimResource, storageClassNameProperty);
+        }
+
+        //Add one corresponding to the pvc matched into volumeClaimTemplates
+        RESOURCE_DEF_SPEC_VOLUME_CLAIM_TEMPLATES.append(stsResourceNodeProperties, volumeClaimResource);
+    }
+
+    private void managePersistentVolumeClaim(ResourceGenerationContext generationContext, NodeTemplate volumeNode, NodeTemplate controllerResourceNode) {
+        KubernetesModifierContext context = generationContext.getContext();
+        // in case of empty claimName for a PersistentVolumeClaimSource then create a node of type PersistentVolumeClaim
+        if (context.getTypes().isNodeOfType(volumeNode.getType(), K8S_TYPES_VOLUMES_CLAIM)) {
+            AbstractPropertyValue claimNamePV = SPEC_CLAIM_NAME.get(volumeNode.getProperties());
+            if (claimNamePV == null) {
+                NodeTemplate volumeClaimResource = generationContext.addResourceNode(volumeNode.getName() + "_PVC", K8S_TYPES_SIMPLE_RESOURCE);
+
+                ResourceDocument volumeClaimResourceNodeProperties = new ResourceDocument();
+                context.getYamlResources().put(volumeClaimResource.getName(), volumeClaimResourceNodeProperties);
+
+                String claimName = generationContext.generateUniqueKubeName(KubeNameAllocator.ROLE_VOLUME_CLAIM, volumeNode.getName());
+                // fill the node properties
+                feedPropertyValue(volumeClaimResource.getProperties(), "resource_type", new ScalarPropertyValue("pvc"), false);
+                feedPropertyValue(volumeClaimResource.getProperties(), "resource_id", new ScalarPropertyValue(claimName), false);
+                feedPropertyValue(volumeClaimResource.getProperties(), "json_path_expr", new ScalarPropertyValue(".items[0].status.phase"), false);
+                feedPropertyValue(volumeClaimResource.getProperties(), "json_path_value", new ScalarPropertyValue("Bound"), false);
+                // fill the future JSON spec
+                RESOURCE_DEF_KIND.set(volumeClaimResourceNodeProperties, getKind());
+                RESOURCE_DEF_API_VERSION.set(volumeClaimResourceNodeProperties, "v1");
+                RESOURCE_DEF_METADATA_NAME.set(volumeClaimResourceNodeProperties, claimName);
+                RESOURCE_DEF_METADATA_LABELS_A4C_ID.set(volumeClaimResourceNodeProperties, claimName);
+                AbstractPropertyValue accessModesProperty = PropertyUtil.getPropertyValueFromPath(volumeNode.getProperties(), "accessModes");
+                RESOURCE_DEF_SPEC_ACCESS_MODES.append(volumeClaimResourceNodeProperties, accessModesProperty);
+                // get the size of the volume to define claim storage size
+                AbstractPropertyValue size = getSize(context, volumeNode);
+                RESOURCE_DEF_SPEC_RESOURCES_REQUESTS_STORAGE.set(volumeClaimResourceNodeProperties, getTransformedSize(generationContext, volumeNode, size));
+                if (context.getTypes().isNodeOfType(volumeNode.getType(), K8S_TYPES_VOLUMES_CLAIM_SC)) {
+                    // add the storage class name to the claim
+                    AbstractPropertyValue storageClassNameProperty = PropertyUtil.getPropertyValueFromPath(volumeNode.getProperties(), "storageClassName");
+                    RESOURCE_DEF_SPEC_STORAGE_CLASS_NAME.set(volumeClaimResourceNodeProperties, storageClassNameProperty);
+                }
+                // finally set the claimName of the volume node
+                SPEC_CLAIM_NAME.set(volumeNode.getProperties(), claimName);
+                // add a relationship between the controller and this claim
+                generationContext.addDependency(controllerResourceNode, volumeClaimResource.getName());
+            }
+        }
+    }
+
+    private AbstractPropertyValue getSize(KubernetesModifierContext context, NodeTemplate volumeNode) {
+        AbstractPropertyValue size = PropertyUtil.getPropertyValueFromPath(volumeNode.getProperties(), "size");
+        if (size == null) {
+            context.log().error("Volume node " + volumeNode.getName() + " should have a size !");
+        }
+        return size;
+    }
+
+    private Object getTransformedSize(ResourceGenerationContext generationContext, NodeTemplate volumeNode, AbstractPropertyValue size) {
+        NodeType nodeType = ToscaContext.get(NodeType.class, volumeNode.getType());
+        PropertyDefinition propertyDefinition = nodeType.getProperties().get("size");
+        return generationContext.getTransformedValue(size, propertyDefinition, "");
+    }
+}
@@ -14,7 +14,7 @@ import java.util.List;
 import java.util.Map;
 
 import static alien4cloud.utils.AlienUtils.safe;
-import static org.alien4cloud.plugin.kubernetes.modifier.KubeTopologyUtils.generateKubeName;
+import static org.alien4cloud.plugin.kubernetes.modifier.KubeNameService.toLabelKey;
 
 public class AffinitiyHelper {
 
@@ -47,7 +47,7 @@ public class AffinitiyHelper {
 
     private static void addMatchExpression(List<Object> list, String label, String... labelSelectorValues) {
         Map<String, Object> me = Maps.newLinkedHashMap();
-        me.put("key", generateKubeName(label));
+        me.put("key", toLabelKey(label));
         me.put("operator", "In");
         List<String> values = (List<String>) me.compute("values", (s, o) -> Lists.<String> newArrayList());
         values.addAll(Sets.newHashSet(labelSelectorValues));
@@ -15,6 +15,7 @@ import java.util.Set;
 import java.util.stream.Collectors;
 
 import static alien4cloud.utils.AlienUtils.safe;
+import static org.alien4cloud.plugin.kubernetes.modifier.KubeTopologyUtils.METADATA_NAME;
 import static org.alien4cloud.plugin.kubernetes.modifier.KubeTopologyUtils.generateKubeName;
 import static org.alien4cloud.plugin.kubernetes.policies.KubePoliciesConstants.POD_ANTI_AFFINITY_PREFERRED_DURING_SCHE_IGNORED_DURING_EXEC_PATH;
 
@@ -57,7 +58,7 @@ public class AntiAffinityHelper {
     }
 
     private static String getDeploymentNodeName(NodeTemplate nodeTemplate) {
-        return PropertyUtil.getScalarValue(PropertyUtil.getPropertyValueFromPath(nodeTemplate.getProperties(), "metadata.name"));
+        return PropertyUtil.getScalarValue(METADATA_NAME.get(nodeTemplate.getProperties()));
     }
 
     private static String levelToTopologyKey(String level) {
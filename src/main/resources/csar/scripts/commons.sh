@@ -2,11 +2,20 @@
 
 # configuration
 KUBE_ADMIN_CONFIG_PATH=/etc/kubernetes/admin.conf
+# the directory of the kube configs stored once per deployment, named by their hash
+KUBE_CONFIG_STORE=${KUBE_CONFIG_STORE:-$HOME/.a4c/kubeconfigs}
 if [ ! -z "$KUBE_CONFIG" ]; then
    # the KUBE_CONFIG var contains the kube configuration
    KUBE_ADMIN_CONFIG_FILE=$(mktemp)
    echo "$KUBE_CONFIG" > "$KUBE_ADMIN_CONFIG_FILE"
    KUBE_ADMIN_CONFIG_PATH="$KUBE_ADMIN_CONFIG_FILE"
+elif [ ! -z "$KUBE_CONFIG_REF" ]; then
+   # the KUBE_CONFIG_REF var contains the hash of the kube configuration stored by the KubeConfigStore node of the deployment
+   KUBE_ADMIN_CONFIG_PATH="${KUBE_CONFIG_STORE}/${KUBE_CONFIG_REF}"
+   if [ ! -f "$KUBE_ADMIN_CONFIG_PATH" ]; then
+       echo "The kube config ${KUBE_CONFIG_REF} has not been stored in ${KUBE_CONFIG_STORE}"
+       exit 1
+   fi
 fi
 echo "Using kube config in $KUBE_ADMIN_CONFIG_PATH"
 
@@ -15,4 +24,53 @@ function clear_resources(){
         echo "Removing kube config file in $KUBE_ADMIN_CONFIG_FILE"
 	    rm -f "$KUBE_ADMIN_CONFIG_FILE"
 	fi
-}
\ No newline at end of file
+}
+
+# Print the name of the live object described by the given spec file when it already carries the a4c_spec_hash annotation of the spec
+# (the spec didn't change since the object was created), print nothing otherwise.
+function get_unchanged_resource_name(){
+    spec_hash=$(grep -o '"a4c_spec_hash":"[0-9a-f]*"' "$1" | head -n 1 | cut -d '"' -f 4)
+    if [ -z "$spec_hash" ]; then
+        return
+    fi
+    live_hash=$(kubectl --kubeconfig "${KUBE_ADMIN_CONFIG_PATH}" get -f "$1" -o=jsonpath='{.metadata.annotations.a4c_spec_hash}' 2>/dev/null)
+    if [ "$spec_hash" == "$live_hash" ]; then
+        kubectl --kubeconfig "${KUBE_ADMIN_CONFIG_PATH}" get -f "$1" -o=jsonpath='{.metadata.name}' 2>/dev/null
+    fi
+}
+
+# Create the objects described by the given spec file, or apply the spec when they already exist (their spec changed since they were created,
+# see get_unchanged_resource_name). The other arguments are passed to kubectl.
+function create_or_apply_resource(){
+    local spec_file=$1
+    shift
+    if kubectl --kubeconfig "${KUBE_ADMIN_CONFIG_PATH}" get -f "${spec_file}" >/dev/null 2>&1; then
+        kubectl --kubeconfig "${KUBE_ADMIN_CONFIG_PATH}" apply -f "${spec_file}" "$@"
+    else
+        kubectl --kubeconfig "${KUBE_ADMIN_CONFIG_PATH}" create -f "${spec_file}" "$@"
+    fi
+}
+
+# Wait until the given jsonpath expression prints the expected value for an object selected by the given kubectl get arguments, for at most the
+# given number of seconds (returns 1 on timeout). The objects are watched : the wait ends as soon as the object changes, without polling.
+function wait_for_jsonpath(){
+    local timeout_seconds=$1 expected=$2 json_path=$3
+    shift 3
+    local deadline=$((SECONDS + timeout_seconds)) line watch_pid
+    while [ "${SECONDS}" -lt "${deadline}" ]; do
+        exec 3< <(exec timeout "$((deadline - SECONDS))" kubectl --kubeconfig "${KUBE_ADMIN_CONFIG_PATH}" get "$@" --watch -o=jsonpath="{${json_path}}{\"\n\"}" 2>/dev/null)
+        watch_pid=$!
+        while IFS= read -r -u 3 line; do
+            if [ "${line}" == "${expected}" ]; then
+                kill "${watch_pid}" 2>/dev/null
+                exec 3<&-
+                return 0
+            fi
+            echo "Waiting for ${json_path} to be ${expected} (currently ${line})"
+        done
+        exec 3<&-
+        # the watch has been closed (by the server, or kubectl failed), watch again
+        sleep 1
+    done
+    return 1
+}
@@ -0,0 +1,68 @@
+#!/bin/bash
+
+# configuration
+source $commons
+
+# Provided variables:
+# KUBE_MANIFEST: the multi-document manifest of the resources of the bundle
+# KUBE_WAIT_DEPLOYMENTS: the space separated names of the deployments to wait for
+# KUBE_WAIT_CONDITIONS: a line per other resource to wait for: resource type, a4c_id label, expected value, JSON path expression
+# NAMESPACE: optional namespace
+
+NAMESPACE_OPTION=""
+if [ ! -z "$NAMESPACE" ]; then
+    NAMESPACE_OPTION="-n $NAMESPACE "
+fi
+
+function apply_bundle(){
+    MANIFEST_TMP_FILE=$(mktemp)
+
+    # all the resources of the bundle are applied at once
+    echo "${KUBE_MANIFEST}" > "${MANIFEST_TMP_FILE}"
+    kubectl --kubeconfig "${KUBE_ADMIN_CONFIG_PATH}" apply -f "${MANIFEST_TMP_FILE}"
+    APPLY_STATUS=$?
+
+    # cleanup
+    rm "${MANIFEST_TMP_FILE}"
+
+    if [ "${APPLY_STATUS}" -ne 0 ]; then
+        echo "Failed to apply the bundle"
+        clear_resources
+        exit "${APPLY_STATUS}"
+    fi
+}
+
+function wait_until_done_or_exit {
+  timeout_seconds=$1
+  deadline=$((SECONDS + timeout_seconds))
+
+  # a single wait for all the deployments of the bundle
+  if [ -n "${KUBE_WAIT_DEPLOYMENTS}" ]; then
+    deployments=""
+    for deployment in ${KUBE_WAIT_DEPLOYMENTS}; do
+      deployments="${deployments} deployment/${deployment}"
+    done
+    if ! kubectl --kubeconfig "${KUBE_ADMIN_CONFIG_PATH}" ${NAMESPACE_OPTION}wait --for=condition=Available --timeout="${timeout_seconds}s" ${deployments} ; then
+      echo "Giving up waiting for deployments to be available. Reached timeout (=${timeout_seconds}s)"
+      clear_resources
+      exit 1
+    fi
+  fi
+
+  # the other resources are watched one by one, the expression of the first item of the list applies to each of them
+  while read -r -u 4 resource_type resource_id json_path_value json_path_expr; do
+    if [ -z "${resource_type}" ]; then
+      continue
+    fi
+    if ! wait_for_jsonpath "$((deadline > SECONDS ? deadline - SECONDS : 0))" "${json_path_value}" "${json_path_expr#.items\[0\]}" ${NAMESPACE_OPTION}${resource_type} -l "a4c_id=${resource_id}" ; then
+      echo "Giving up waiting for ${resource_type} ${resource_id} to be in the expected status. Reached timeout (=${timeout_seconds}s)"
+      clear_resources
+      exit 1
+    fi
+  done 4<<< "${KUBE_WAIT_CONDITIONS}"
+  echo "Success"
+}
+
+apply_bundle
+wait_until_done_or_exit "${KUBE_WAIT_TIMEOUT:-300}"
+clear_resources
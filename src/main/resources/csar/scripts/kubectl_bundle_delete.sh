@@ -0,0 +1,28 @@
+#!/bin/bash
+
+# configuration
+source $commons
+
+# Provided variables:
+# KUBE_MANIFEST: the multi-document manifest of the resources of the bundle
+# NAMESPACE: optional namespace
+
+function delete_bundle(){
+    MANIFEST_TMP_FILE=$(mktemp)
+
+    echo "${KUBE_MANIFEST}" > "${MANIFEST_TMP_FILE}"
+    kubectl --kubeconfig "${KUBE_ADMIN_CONFIG_PATH}" delete -f "${MANIFEST_TMP_FILE}" --ignore-not-found
+    BUNDLE_DELETE_STATUS=$?
+
+    # cleanup
+    rm "${MANIFEST_TMP_FILE}"
+
+    if [ "${BUNDLE_DELETE_STATUS}" -ne 0 ]; then
+        echo "Failed to delete the bundle"
+        clear_resources
+        exit "${BUNDLE_DELETE_STATUS}"
+    fi
+}
+
+delete_bundle
+clear_resources
@@ -0,0 +1,40 @@
+#!/bin/bash
+
+# configuration
+source $commons
+
+# provided variables:
+# KUBE_CONFIG: contains the kube config to store
+# KUBE_CONFIG_HASH: the hash of the kube config, name of the file in which it is stored
+# KUBE_CONFIG_STORE_REF: the id of the deployment that stores the kube config
+
+# the stored files are named by their content, they can be shared by deployments : each deployment records a reference to the file, which is
+# removed once the last deployment referring to it is undeployed (see kubectl_config_store_delete.sh)
+KUBE_CONFIG_STORE_FILE="${KUBE_CONFIG_STORE}/${KUBE_CONFIG_HASH}"
+KUBE_CONFIG_STORE_REFS="${KUBE_CONFIG_STORE_FILE}.refs"
+
+function store_kube_config(){
+    mkdir -p "${KUBE_CONFIG_STORE_REFS}" && touch "${KUBE_CONFIG_STORE_REFS}/${KUBE_CONFIG_STORE_REF}" || return 1
+    if [ -f "${KUBE_CONFIG_STORE_FILE}" ]; then
+        return 0
+    fi
+    # write then move, so that a resource never reads a partial kube config
+    KUBE_CONFIG_TMP_FILE=$(mktemp "${KUBE_CONFIG_STORE}/.XXXXXX") || return 1
+    chmod 600 "${KUBE_CONFIG_TMP_FILE}" && echo "$KUBE_CONFIG" > "${KUBE_CONFIG_TMP_FILE}" && mv -f "${KUBE_CONFIG_TMP_FILE}" "${KUBE_CONFIG_STORE_FILE}"
+}
+
+mkdir -p "${KUBE_CONFIG_STORE}" && chmod 700 "${KUBE_CONFIG_STORE}"
+cmd_code=$?
+if [ "${cmd_code}" -eq 0 ]; then
+    # the deployments sharing the file are serialized
+    ( flock 9 && store_kube_config ) 9> "${KUBE_CONFIG_STORE}/.lock"
+    cmd_code=$?
+fi
+
+clear_resources
+
+if [ "${cmd_code}" -ne 0 ]; then
+    echo "Failed to store the kube config in ${KUBE_CONFIG_STORE_FILE}"
+    exit "${cmd_code}"
+fi
+echo "Kube config stored in ${KUBE_CONFIG_STORE_FILE}"
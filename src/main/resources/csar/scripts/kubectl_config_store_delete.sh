@@ -0,0 +1,37 @@
+#!/bin/bash
+
+# configuration
+source $commons
+
+# provided variables:
+# KUBE_CONFIG_HASH: the hash of the kube config, name of the file in which it is stored
+# KUBE_CONFIG_STORE_REF: the id of the deployment that stores the kube config
+
+KUBE_CONFIG_STORE_FILE="${KUBE_CONFIG_STORE}/${KUBE_CONFIG_HASH}"
+KUBE_CONFIG_STORE_REFS="${KUBE_CONFIG_STORE_FILE}.refs"
+
+# remove the reference of the deployment, and the kube config once no deployment refers to it
+function release_kube_config(){
+    rm -f "${KUBE_CONFIG_STORE_REFS}/${KUBE_CONFIG_STORE_REF}" || return 1
+    if rmdir "${KUBE_CONFIG_STORE_REFS}" 2>/dev/null || [ ! -d "${KUBE_CONFIG_STORE_REFS}" ]; then
+        rm -f "${KUBE_CONFIG_STORE_FILE}"
+    fi
+}
+
+cmd_code=0
+if [ -d "${KUBE_CONFIG_STORE}" ]; then
+    ( flock 9 && release_kube_config ) 9> "${KUBE_CONFIG_STORE}/.lock"
+    cmd_code=$?
+fi
+
+clear_resources
+
+if [ "${cmd_code}" -ne 0 ]; then
+    echo "Failed to remove the kube config ${KUBE_CONFIG_STORE_FILE}"
+    exit "${cmd_code}"
+fi
+if [ -f "${KUBE_CONFIG_STORE_FILE}" ]; then
+    echo "Kube config ${KUBE_CONFIG_STORE_FILE} kept, other deployments refer to it"
+else
+    echo "Kube config ${KUBE_CONFIG_STORE_FILE} removed"
+fi
@@ -36,18 +36,25 @@ function deploy_resource(){
     # create resource deployment definition
     echo "${KUBE_RESOURCE_DEPLOYMENT_CONFIG}" > "${DEPLOYMENT_TMP_FILE}"
 
-    # deploy
-    export KUBE_DEPLOYMENT_ID=$(kubectl --kubeconfig "${KUBE_ADMIN_CONFIG_PATH}" create -f "${DEPLOYMENT_TMP_FILE}" -o jsonpath="{.metadata.name}")
-    export DEPLOYMENT_STATUS=$?
+    # deploy, unless the live deployment already has the same spec (the spec of a deployment depending on services is resolved here, so it
+    # is always created or applied)
+    if [ -z "${KUBE_SERVICE_DEPENDENCIES}" ]; then
+        export KUBE_DEPLOYMENT_ID=$(get_unchanged_resource_name "${DEPLOYMENT_TMP_FILE}")
+    fi
+    if [ -n "${KUBE_DEPLOYMENT_ID}" ]; then
+        echo "Deployment ${KUBE_DEPLOYMENT_ID} is unchanged, not created again"
+        export DEPLOYMENT_STATUS=0
+    else
+        export KUBE_DEPLOYMENT_ID=$(create_or_apply_resource "${DEPLOYMENT_TMP_FILE}" -o jsonpath="{.metadata.name}")
+        export DEPLOYMENT_STATUS=$?
+    fi
 
     # cleanup
     rm "${DEPLOYMENT_TMP_FILE}"
 
     exit_if_error
 
-    command="kubectl --kubeconfig "${KUBE_ADMIN_CONFIG_PATH}" ${NAMESPACE_OPTION}get deployment ${KUBE_DEPLOYMENT_ID} -o=jsonpath='{.status.conditions[?(@.type==\"Available\")].status}'"
-
-    wait_until_done_or_exit "$command" 60
+    wait_until_done_or_exit "${KUBE_WAIT_TIMEOUT:-300}"
 }
 
 function scale_resource() {
@@ -55,31 +62,15 @@ function scale_resource() {
 }
 
 function wait_until_done_or_exit {
-  command=$1
-  max_retries=$2
-
-  retries=0
-  cmd_output=$(echo $command | sh)
-  cmd_code=$?
-  while [ "${cmd_code}" -eq "0" ] && [ "${retries}" -lt "${max_retries}" ] ; do
-    if [ "${cmd_output}" == "True" ] ; then
-      # Deployment is available
-      echo "Success"
-      break
-    fi
-
-    echo "Waiting for deployment to be available ... (${retries}/${max_retries})"
-    sleep 5
-    retries=$((${retries}+1))
-    cmd_output=$(echo $command | sh)
-    cmd_code=$?
-  done
+  timeout_seconds=$1
 
-  if [ "${retries}" -eq "${max_retries}" ] ; then
-    echo "Giving up waiting for deployment to available. Reached max retries (=$max_retries)"
+  if ! wait_for_jsonpath "${timeout_seconds}" "True" '.status.conditions[?(@.type=="Available")].status' ${NAMESPACE_OPTION}deployment "${KUBE_DEPLOYMENT_ID}" ; then
+    echo "Giving up waiting for deployment to available. Reached timeout (=${timeout_seconds}s)"
+    clear_resources
     exit 1
   fi
-  echo $cmd_output
+  # Deployment is available
+  echo "Success"
 }
 
 function exit_if_error(){
@@ -18,9 +18,15 @@ function deploy_resource(){
     # create resource deployment definition
     echo "${KUBE_RESOURCE_CONFIG}" > "${DEPLOYMENT_TMP_FILE}"
 
-    # deploy
-    export KUBE_RESOURCE_ID=$(kubectl --kubeconfig "${KUBE_ADMIN_CONFIG_PATH}" create -f "${DEPLOYMENT_TMP_FILE}" | sed -r 's/.+ "([a-zA-Z0-9\-]*)" created/\1/')
-    export DEPLOYMENT_STATUS=$?
+    # deploy, unless the live resource already has the same spec
+    export KUBE_RESOURCE_ID=$(get_unchanged_resource_name "${DEPLOYMENT_TMP_FILE}")
+    if [ -n "${KUBE_RESOURCE_ID}" ]; then
+        echo "Resource ${KUBE_RESOURCE_ID} is unchanged, not created again"
+        export DEPLOYMENT_STATUS=0
+    else
+        export KUBE_RESOURCE_ID=$(create_or_apply_resource "${DEPLOYMENT_TMP_FILE}" | sed -r 's/.+ "([a-zA-Z0-9\-]*)" (created|configured)/\1/')
+        export DEPLOYMENT_STATUS=$?
+    fi
 
     # cleanup
     rm "${DEPLOYMENT_TMP_FILE}"
@@ -28,33 +34,22 @@ function deploy_resource(){
     exit_if_error
 
     if [ -n "$KUBE_JSON_PATH_EXPR" ]; then
-        command="kubectl --kubeconfig "${KUBE_ADMIN_CONFIG_PATH}" ${NAMESPACE_OPTION}get ${KUBE_RESOURCE_TYPE} -l a4c_id=${KUBE_RESOURCE_ID} -o=jsonpath={${KUBE_JSON_PATH_EXPR}}"
-        wait_until_done_or_exit "$command" 60
+        wait_until_done_or_exit "${KUBE_WAIT_TIMEOUT:-300}"
     fi
 
 }
 
 function wait_until_done_or_exit {
-  command=$1
-  max_retries=$2
-
-  retries=0
-  cmd_output=$(echo $command | sh)
-  cmd_code=$?
-  while [ "${cmd_code}" -eq "0" ] && [ "${retries}" -lt "${max_retries}" ] && [ "${cmd_output}" != "${KUBE_JSON_PATH_VALUE}" ] ; do
-    echo "Waiting for resource to be in the expected status ... (${retries}/${max_retries})"
-    sleep 5
-    retries=$((${retries}+1))
-    cmd_output=$(echo $command | sh)
-    cmd_code=$?
-  done
+  timeout_seconds=$1
 
-  clear_resources
-  if [ "${retries}" -eq "${max_retries}" ] ; then
-    echo "Giving up waiting for resource to be in the expected status. Reached max retries (=$max_retries)"
+  # the resources are watched one by one, the expression of the first item of the list applies to each of them
+  if ! wait_for_jsonpath "${timeout_seconds}" "${KUBE_JSON_PATH_VALUE}" "${KUBE_JSON_PATH_EXPR#.items\[0\]}" ${NAMESPACE_OPTION}${KUBE_RESOURCE_TYPE} -l "a4c_id=${KUBE_RESOURCE_ID}" ; then
+    clear_resources
+    echo "Giving up waiting for resource to be in the expected status. Reached timeout (=${timeout_seconds}s)"
     exit 1
   fi
-  echo $cmd_output
+  clear_resources
+  echo "${KUBE_JSON_PATH_VALUE}"
 }
 
 function exit_if_error(){
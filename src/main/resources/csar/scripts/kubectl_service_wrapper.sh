@@ -18,9 +18,15 @@ function deploy_service(){
     # create kube service config file
     echo "${KUBE_SERVICE_CONFIG}" > "${SERVICE_CONFIG_TMP_FILE}"
 
-    # deploy service
-    kubectl --kubeconfig "${KUBE_ADMIN_CONFIG_PATH}" create -f "${SERVICE_CONFIG_TMP_FILE}"
-    SERVICE_DEPLOY_STATUS=$?
+    # deploy service, unless the live service already has the same spec
+    UNCHANGED_SERVICE=$(get_unchanged_resource_name "${SERVICE_CONFIG_TMP_FILE}")
+    if [ -n "${UNCHANGED_SERVICE}" ]; then
+        echo "Service ${UNCHANGED_SERVICE} is unchanged, not created again"
+        SERVICE_DEPLOY_STATUS=0
+    else
+        create_or_apply_resource "${SERVICE_CONFIG_TMP_FILE}"
+        SERVICE_DEPLOY_STATUS=$?
+    fi
 
     # cleanup
     rm "${SERVICE_CONFIG_TMP_FILE}"
@@ -0,0 +1,145 @@
+package org.alien4cloud.plugin.kubernetes;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.google.common.collect.ImmutableMap;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Runs the wrapper scripts against a fake kubectl, which makes the watched resource ready a while after it has been created and then keeps the
+ * watch open, and checks that the scripts end as soon as the resource is ready (long before the watch ends), with a single watch. The fake kubectl
+ * can also have a live object with another spec hash, which the scripts must apply instead of creating it again.
+ */
+@Slf4j
+public class KubectlWaitTest {
+
+    private static final File SCRIPTS = new File("src/main/resources/csar/scripts");
+
+    /** The time the fake watch stays open once the resource is ready. */
+    private static final int WATCH_SECONDS = 30;
+
+    /** Generous bound of the time between the moment the resource is ready and the end of the script. */
+    private static final long MAX_LATENCY_MS = 10000;
+
+    private static final String FAKE_KUBECTL = "#!/bin/bash\n"
+            + "echo \"$@\" >> \"$FAKE_KUBECTL_LOG\"\n"
+            + "case \"$*\" in\n"
+            + "  *--watch*)\n"
+            + "    echo Pending\n"
+            + "    sleep 0.5\n"
+            + "    date +%s%N > \"$FAKE_KUBECTL_READY\"\n"
+            + "    echo \"$FAKE_KUBECTL_READY_VALUE\"\n"
+            + "    sleep " + WATCH_SECONDS + " ;;\n"
+            + "  *\"get -f\"*)\n"
+            + "    [ -n \"$FAKE_KUBECTL_LIVE_HASH\" ] || exit 1\n"
+            + "    case \"$*\" in *a4c_spec_hash*) echo \"$FAKE_KUBECTL_LIVE_HASH\" ;; esac ;;\n"
+            + "  *\"create -f\"*)\n"
+            + "    if [ -n \"$FAKE_KUBECTL_LIVE_HASH\" ]; then echo 'Error from server (AlreadyExists)' >&2; exit 1; fi\n"
+            + "    echo \"$FAKE_KUBECTL_CREATE_OUTPUT\" ;;\n"
+            + "  *\"apply -f\"*)\n"
+            + "    echo \"$FAKE_KUBECTL_APPLY_OUTPUT\" ;;\n"
+            + "  *)\n"
+            + "    exit 1 ;;\n"
+            + "esac\n";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File kubectlLog;
+
+    private File ready;
+
+    @Before
+    public void setUp() throws IOException {
+        File kubectl = folder.newFile("kubectl");
+        Files.write(kubectl.toPath(), FAKE_KUBECTL.getBytes(StandardCharsets.UTF_8));
+        assertTrue(kubectl.setExecutable(true));
+        kubectlLog = new File(folder.getRoot(), "kubectl.log");
+        ready = new File(folder.getRoot(), "ready");
+    }
+
+    @Test
+    public void resourceIsReadyAsSoonAsWatched() throws Exception {
+        long latency = run("kubectl_resource_wrapper.sh", ImmutableMap.<String, String> builder().put("FAKE_KUBECTL_READY_VALUE", "Bound")
+                .put("FAKE_KUBECTL_CREATE_OUTPUT", "persistentvolumeclaim \"pvc-1\" created").put("KUBE_RESOURCE_CONFIG", "{}")
+                .put("KUBE_RESOURCE_TYPE", "pvc").put("KUBE_JSON_PATH_EXPR", ".items[0].status.phase").put("KUBE_JSON_PATH_VALUE", "Bound")
+                .put("NAMESPACE", "ns").build());
+        log.info("Resource ready, script ended {} ms later", latency);
+        assertTrue(latency < MAX_LATENCY_MS);
+        // the claims are watched one by one
+        assertTrue(readKubectlLog().contains("get -n ns pvc -l a4c_id=pvc-1 --watch -o=jsonpath={.status.phase}{\"\\n\"}"));
+        assertEquals(1, countWatches());
+    }
+
+    @Test
+    public void deploymentIsAvailableAsSoonAsWatched() throws Exception {
+        long latency = run("kubectl_deployment_create.sh", ImmutableMap.of("FAKE_KUBECTL_READY_VALUE", "True", "FAKE_KUBECTL_CREATE_OUTPUT", "deployment-1",
+                "KUBE_RESOURCE_DEPLOYMENT_CONFIG", "{}"));
+        log.info("Deployment available, script ended {} ms later", latency);
+        assertTrue(latency < MAX_LATENCY_MS);
+        assertEquals(1, countWatches());
+    }
+
+    @Test
+    public void changedSpecsAreApplied() throws Exception {
+        String spec = "{\"metadata\":{\"annotations\":{\"a4c_spec_hash\":\"0a1b\"}}}";
+        run("kubectl_deployment_create.sh", ImmutableMap.of("FAKE_KUBECTL_READY_VALUE", "True", "FAKE_KUBECTL_LIVE_HASH", "2c3d",
+                "FAKE_KUBECTL_APPLY_OUTPUT", "deployment-1", "KUBE_RESOURCE_DEPLOYMENT_CONFIG", spec));
+        run("kubectl_resource_wrapper.sh", ImmutableMap.<String, String> builder().put("FAKE_KUBECTL_READY_VALUE", "Bound")
+                .put("FAKE_KUBECTL_LIVE_HASH", "2c3d").put("FAKE_KUBECTL_APPLY_OUTPUT", "persistentvolumeclaim \"pvc-1\" configured")
+                .put("KUBE_RESOURCE_CONFIG", spec).put("KUBE_RESOURCE_TYPE", "pvc").put("KUBE_JSON_PATH_EXPR", ".items[0].status.phase")
+                .put("KUBE_JSON_PATH_VALUE", "Bound").build());
+        List<String> calls = Files.readAllLines(kubectlLog.toPath(), StandardCharsets.UTF_8);
+        assertEquals(2, calls.stream().filter(line -> line.contains("apply -f")).count());
+        assertFalse(calls.stream().anyMatch(line -> line.contains("create -f")));
+        // the applied claim is the one watched
+        assertTrue(calls.stream().anyMatch(line -> line.contains("pvc -l a4c_id=pvc-1 --watch")));
+    }
+
+    /**
+     * @return the number of ms between the moment the resource is ready and the end of the script.
+     */
+    private long run(String script, Map<String, String> environment) throws Exception {
+        ProcessBuilder builder = new ProcessBuilder("bash", new File(SCRIPTS, script).getAbsolutePath()).redirectErrorStream(true);
+        builder.environment().putAll(environment);
+        builder.environment().put("PATH", folder.getRoot().getAbsolutePath() + File.pathSeparator + System.getenv("PATH"));
+        builder.environment().put("commons", new File(SCRIPTS, "commons.sh").getAbsolutePath());
+        builder.environment().put("FAKE_KUBECTL_LOG", kubectlLog.getAbsolutePath());
+        builder.environment().put("FAKE_KUBECTL_READY", ready.getAbsolutePath());
+        builder.redirectOutput(new File(folder.getRoot(), script + ".out"));
+        Process process = builder.start();
+        // the script must not wait for the end of the watch
+        assertTrue(process.waitFor(WATCH_SECONDS - 5, TimeUnit.SECONDS));
+        long end = System.currentTimeMillis();
+        assertEquals(0, process.exitValue());
+        long readyAt = Long.parseLong(new String(Files.readAllBytes(ready.toPath()), StandardCharsets.UTF_8).trim()) / 1000000;
+        return end - readyAt;
+    }
+
+    private String readKubectlLog() throws IOException {
+        return new String(Files.readAllBytes(kubectlLog.toPath()), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return the number of watches started by the script.
+     */
+    private long countWatches() throws IOException {
+        return Files.readAllLines(kubectlLog.toPath(), StandardCharsets.UTF_8).stream().filter(line -> line.contains("--watch")).count();
+    }
+}
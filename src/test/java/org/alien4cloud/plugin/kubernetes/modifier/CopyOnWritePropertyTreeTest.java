@@ -0,0 +1,60 @@
+package org.alien4cloud.plugin.kubernetes.modifier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.List;
+import java.util.Map;
+
+import org.alien4cloud.tosca.model.definitions.ComplexPropertyValue;
+import org.alien4cloud.tosca.model.definitions.ListPropertyValue;
+import org.alien4cloud.tosca.model.definitions.ScalarPropertyValue;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * Checks that {@link CopyOnWritePropertyTree} only copies the modified paths and never modifies the shared tree.
+ */
+public class CopyOnWritePropertyTreeTest {
+
+    @Test
+    public void onlyTheModifiedPathIsCopied() {
+        Map<String, Object> resource = Maps.newHashMap();
+        resource.put("type", "Resource");
+        resource.put("Resource", Maps.newHashMap());
+        resource.put("Pods", Maps.newHashMap());
+        Map<String, Object> pods = Maps.newHashMap();
+        pods.put("type", "Pods");
+        List<Object> metrics = Lists.newArrayList(new ComplexPropertyValue(resource), pods);
+        Map<String, Object> spec = Maps.newHashMap();
+        spec.put("metrics", new ListPropertyValue(metrics));
+        spec.put("maxReplicas", new ScalarPropertyValue("3"));
+
+        CopyOnWritePropertyTree tree = CopyOnWritePropertyTree.of(spec);
+        assertSame(spec, tree.getRoot());
+        assertEquals("3", tree.get("maxReplicas"));
+        assertEquals("Pods", tree.get("metrics", 1, "type"));
+        assertNull(tree.get("metrics", 2, "type"));
+
+        tree.editMap("metrics", 0).remove("Pods");
+        // a second edit of the same path doesn't copy again
+        tree.editMap("metrics", 0).put("edited", true);
+
+        // the shared tree is not modified
+        assertEquals(3, resource.size());
+        assertSame(metrics, ((ListPropertyValue) spec.get("metrics")).getValue());
+        // the view copied the path to the modified map, the rest is shared
+        Map<String, Object> root = (Map<String, Object>) tree.getRoot();
+        assertNotSame(spec, root);
+        List<Object> viewMetrics = (List<Object>) root.get("metrics");
+        assertNotSame(metrics, viewMetrics);
+        assertEquals(3, ((Map<String, Object>) viewMetrics.get(0)).size());
+        assertSame(resource.get("Resource"), tree.get("metrics", 0, "Resource"));
+        assertSame(pods, viewMetrics.get(1));
+        assertSame(spec.get("maxReplicas"), root.get("maxReplicas"));
+    }
+}
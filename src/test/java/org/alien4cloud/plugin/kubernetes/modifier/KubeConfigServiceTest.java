@@ -0,0 +1,86 @@
+package org.alien4cloud.plugin.kubernetes.modifier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import alien4cloud.utils.YamlParserUtil;
+
+/**
+ * Checks that the namespaces are set in the right context of the kube configs.
+ */
+public class KubeConfigServiceTest {
+
+    private static final String KUBE_CONFIG = "apiVersion: v1\n"
+            + "kind: Config\n"
+            + "clusters:\n"
+            + "- name: dev\n"
+            + "  cluster:\n"
+            + "    server: https://dev:6443\n"
+            + "- name: prod\n"
+            + "  cluster:\n"
+            + "    server: https://prod:6443\n"
+            + "contexts:\n"
+            + "- name: dev\n"
+            + "  context:\n"
+            + "    cluster: dev\n"
+            + "    user: admin\n"
+            + "- name: prod\n"
+            + "  context:\n"
+            + "    cluster: prod\n"
+            + "    user: admin\n"
+            + "    namespace: default\n"
+            + "current-context: prod\n";
+
+    @Test
+    public void namespaceIsSetInTheActiveContext() {
+        assertEquals("prod", KubeConfigService.getCurrentContext(KUBE_CONFIG));
+        String rewritten = KubeConfigService.withNamespace(KUBE_CONFIG, "team-a");
+        assertEquals("team-a", getNamespace(rewritten, "prod"));
+        assertNull(getNamespace(rewritten, "dev"));
+        // the rewritten configs are cached
+        assertSame(rewritten, KubeConfigService.withNamespace(KUBE_CONFIG, "team-a"));
+        assertEquals("team-b", getNamespace(KubeConfigService.withNamespace(KUBE_CONFIG, "team-b"), "prod"));
+
+        // a namespace per context, the parsed config is not changed by the previous rewrites
+        String dev = KubeConfigService.withNamespace(KUBE_CONFIG, "dev", "team-c");
+        assertEquals("team-c", getNamespace(dev, "dev"));
+        assertEquals("default", getNamespace(dev, "prod"));
+        // unchanged namespace
+        assertSame(KUBE_CONFIG, KubeConfigService.withNamespace(KUBE_CONFIG, "default"));
+    }
+
+    @Test
+    public void firstContextIsUsedWithoutCurrentContext() {
+        String kubeConfig = KUBE_CONFIG.replace("current-context: prod\n", "");
+        assertEquals("dev", KubeConfigService.getCurrentContext(kubeConfig));
+        assertEquals("team-a", getNamespace(KubeConfigService.withNamespace(kubeConfig, "team-a"), "dev"));
+    }
+
+    @Test
+    public void unexpectedConfigsAreUsedAsTheyAre() {
+        String noContext = "apiVersion: v1\nkind: Config\n";
+        assertSame(noContext, KubeConfigService.withNamespace(noContext, "team-a"));
+        String unknownContext = KUBE_CONFIG.replace("current-context: prod", "current-context: qa");
+        assertSame(unknownContext, KubeConfigService.withNamespace(unknownContext, "team-a"));
+        String notYaml = "contexts: [a";
+        assertSame(notYaml, KubeConfigService.withNamespace(notYaml, "team-a"));
+        assertNull(KubeConfigService.getCurrentContext(notYaml));
+    }
+
+    private static String getNamespace(String kubeConfig, String contextName) {
+        Map<String, Object> config = (Map<String, Object>) YamlParserUtil.load(kubeConfig);
+        for (Object context : (List<Object>) config.get("contexts")) {
+            Map<String, Object> contextMap = (Map<String, Object>) context;
+            if (contextName.equals(contextMap.get("name"))) {
+                return (String) ((Map<String, Object>) contextMap.get("context")).get("namespace");
+            }
+        }
+        return null;
+    }
+}
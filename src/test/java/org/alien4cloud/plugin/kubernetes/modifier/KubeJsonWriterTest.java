@@ -0,0 +1,128 @@
+package org.alien4cloud.plugin.kubernetes.modifier;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.function.Function;
+
+import org.alien4cloud.tosca.model.definitions.AbstractPropertyValue;
+import org.alien4cloud.tosca.model.definitions.ComplexPropertyValue;
+import org.alien4cloud.tosca.model.definitions.ListPropertyValue;
+import org.alien4cloud.tosca.model.definitions.ScalarPropertyValue;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import alien4cloud.utils.PropertyUtil;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Checks that {@link KubeJsonWriter} writes the same JSON as the copy then serialize path, and measures the allocations of both on the
+ * <code>resource_def</code> of a 200 containers deployment.
+ */
+@Slf4j
+public class KubeJsonWriterTest {
+
+    private static final PropertyPath KIND = PropertyPath.of("resource_def.kind");
+    private static final PropertyPath NAME = PropertyPath.of("resource_def.metadata.name");
+    private static final PropertyPath REPLICAS = PropertyPath.of("resource_def.spec.replicas");
+    private static final PropertyPath CONTAINERS = PropertyPath.of("resource_def.spec.template.spec.containers");
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @Test
+    public void writesTheSameJsonAsTheCopy() throws IOException {
+        Object resourceDef = deployment(200).get("resource_def");
+        String expected = PropertyUtil.serializePropertyValue(KubeTopologyUtils.getValue(resourceDef));
+        String actual = KubeJsonWriter.toJson(resourceDef);
+        assertEquals(mapper.readTree(expected), mapper.readTree(actual));
+        // the buffer is reused
+        assertEquals(actual, KubeJsonWriter.toJson(resourceDef));
+    }
+
+    @Test
+    public void canonicalJsonDoesNotDependOnTheOrderOfTheMaps() throws IOException {
+        Map<String, Object> resources = Maps.newLinkedHashMap();
+        resources.put("requests", ImmutableMap.of("memory", 1024L, "cpu", "500m"));
+        resources.put("limits", ImmutableMap.of("memory", 2048L));
+        ResourceDocument container = new ResourceDocument();
+        container.put("name", "nginx");
+        container.put("resources", resources);
+        container.put("args", Lists.newArrayList("b", "a"));
+
+        String expected = "{\"args\":[\"b\",\"a\"],\"name\":\"nginx\",\"resources\":{\"limits\":{\"memory\":2048},"
+                + "\"requests\":{\"cpu\":\"500m\",\"memory\":1024}}}";
+        assertEquals(expected, KubeJsonWriter.toCanonicalJson(container));
+        assertEquals(expected, KubeJsonWriter.toCanonicalJson(ResourceDocument.of(mapper.readValue(container.toJson(), Map.class))));
+        assertEquals(mapper.readTree(container.toJson()), mapper.readTree(expected));
+    }
+
+    /**
+     * Not a strict benchmark (JMH is not available here) : the bytes allocated by the current thread (when the JVM can measure them) and the
+     * timings of both paths are logged.
+     */
+    @Test
+    public void streamingAllocatesLessThanTheCopy() {
+        Object resourceDef = deployment(200).get("resource_def");
+        Function<Object, String> copy = value -> PropertyUtil.serializePropertyValue(KubeTopologyUtils.getValue(value));
+        Function<Object, String> streaming = KubeJsonWriter::toJson;
+        // warm up
+        for (int i = 0; i < 200; i++) {
+            copy.apply(resourceDef);
+            streaming.apply(resourceDef);
+        }
+        measure("copy then serialize", copy, resourceDef, 1000);
+        measure("streaming", streaming, resourceDef, 1000);
+    }
+
+    private static void measure(String name, Function<Object, String> serializer, Object resourceDef, int iterations) {
+        long allocatedBefore = getAllocatedBytes();
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            serializer.apply(resourceDef);
+        }
+        long duration = System.nanoTime() - start;
+        long allocated = getAllocatedBytes() - allocatedBefore;
+        log.info("{} : {} bytes allocated per spec, {} ms for {} specs", name, allocatedBefore < 0 ? "?" : allocated / iterations, duration / 1000000,
+                iterations);
+    }
+
+    private static long getAllocatedBytes() {
+        java.lang.management.ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+        if (threadMXBean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) threadMXBean).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+
+    private static Map<String, AbstractPropertyValue> deployment(int containerCount) {
+        Map<String, AbstractPropertyValue> properties = Maps.newHashMap();
+        KIND.set(properties, new ScalarPropertyValue("Deployment"));
+        NAME.set(properties, new ScalarPropertyValue("deployment"));
+        REPLICAS.set(properties, 2L);
+        for (int i = 0; i < containerCount; i++) {
+            Map<String, Object> limits = Maps.newHashMap();
+            limits.put("cpu", 0.5F);
+            limits.put("memory", 134217728L);
+            Map<String, Object> resources = Maps.newHashMap();
+            resources.put("limits", limits);
+            Map<String, Object> port = Maps.newHashMap();
+            port.put("containerPort", 8080 + i);
+            port.put("name", "http");
+            Map<String, Object> container = Maps.newHashMap();
+            container.put("name", new ScalarPropertyValue("container-" + i));
+            container.put("image", "nginx:latest");
+            container.put("tty", true);
+            container.put("resources", new ComplexPropertyValue(resources));
+            container.put("ports", new ListPropertyValue(Lists.newArrayList(port)));
+            container.put("args", Lists.newArrayList("--verbose", "--port=" + (8080 + i)));
+            CONTAINERS.append(properties, new ComplexPropertyValue(container));
+        }
+        return properties;
+    }
+}
@@ -0,0 +1,81 @@
+package org.alien4cloud.plugin.kubernetes.modifier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Map;
+import java.util.Optional;
+
+import org.alien4cloud.alm.deployment.configuration.flow.FlowExecutionContext;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+
+import alien4cloud.common.MetaPropertiesService;
+import alien4cloud.model.common.MetaPropertyTarget;
+import alien4cloud.model.orchestrators.locations.Location;
+
+/**
+ * Checks that the meta-properties are loaded once per flow, and that their keys are resolved once for all the flows.
+ */
+public class KubeMetaPropertySnapshotTest {
+
+    private MetaPropertiesService metaPropertiesService;
+
+    private KubeMetaPropertyKeys keys;
+
+    @Before
+    public void setUp() {
+        metaPropertiesService = mock(MetaPropertiesService.class);
+        when(metaPropertiesService.getMetapropertykeyByName(KubeMetaPropertySnapshot.K8S_NAMESPACE_METAPROP_NAME, MetaPropertyTarget.LOCATION))
+                .thenReturn("namespace-key");
+        when(metaPropertiesService.getMetapropertykeyByName(KubeMetaPropertySnapshot.K8S_PREFIX_METAPROP_NAME, MetaPropertyTarget.LOCATION))
+                .thenReturn("prefix-key");
+        keys = new KubeMetaPropertyKeys();
+        ReflectionTestUtils.setField(keys, "metaPropertiesService", metaPropertiesService);
+        ReflectionTestUtils.setField(keys, "ttl", 60000L);
+    }
+
+    @Test
+    public void metaPropertiesAreLoadedOncePerFlow() {
+        FlowExecutionContext firstFlow = flow(ImmutableMap.of("namespace-key", "team-a", "prefix-key", ""));
+        KubeMetaPropertySnapshot snapshot = KubeMetaPropertySnapshot.get(firstFlow, keys);
+        assertEquals("team-a", snapshot.getNamespace());
+        // empty values are not provided
+        assertNull(snapshot.getPrefix());
+        assertSame(snapshot, KubeMetaPropertySnapshot.get(firstFlow, keys));
+
+        assertEquals("team-b", KubeMetaPropertySnapshot.get(flow(ImmutableMap.of("namespace-key", "team-b")), keys).getNamespace());
+        // the keys have been resolved by the first flow only
+        verify(metaPropertiesService, times(1)).getMetapropertykeyByName(KubeMetaPropertySnapshot.K8S_NAMESPACE_METAPROP_NAME,
+                MetaPropertyTarget.LOCATION);
+    }
+
+    @Test
+    public void keysExpire() {
+        ReflectionTestUtils.setField(keys, "ttl", 0L);
+        keys.getKey(KubeMetaPropertySnapshot.K8S_PREFIX_METAPROP_NAME, MetaPropertyTarget.LOCATION);
+        keys.getKey(KubeMetaPropertySnapshot.K8S_PREFIX_METAPROP_NAME, MetaPropertyTarget.LOCATION);
+        verify(metaPropertiesService, times(2)).getMetapropertykeyByName(KubeMetaPropertySnapshot.K8S_PREFIX_METAPROP_NAME,
+                MetaPropertyTarget.LOCATION);
+    }
+
+    private static FlowExecutionContext flow(Map<String, String> locationMetaProperties) {
+        Location location = new Location();
+        location.setMetaProperties(Maps.newHashMap(locationMetaProperties));
+        Map<String, Object> executionCache = Maps.newHashMap();
+        executionCache.put(FlowExecutionContext.DEPLOYMENT_LOCATIONS_MAP_CACHE_KEY, ImmutableMap.of("_A4C_ALL", location));
+        FlowExecutionContext context = mock(FlowExecutionContext.class);
+        when(context.getExecutionCache()).thenReturn(executionCache);
+        when(context.getEnvironmentContext()).thenReturn(Optional.empty());
+        return context;
+    }
+}
@@ -0,0 +1,145 @@
+package org.alien4cloud.plugin.kubernetes.modifier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Date;
+
+import org.alien4cloud.alm.deployment.configuration.flow.FlowExecutionContext;
+import org.alien4cloud.alm.deployment.configuration.flow.FlowExecutionLog;
+import org.alien4cloud.tosca.model.definitions.ScalarPropertyValue;
+import org.alien4cloud.tosca.model.templates.NodeTemplate;
+import org.alien4cloud.tosca.model.templates.PolicyTemplate;
+import org.alien4cloud.tosca.model.templates.Topology;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+/**
+ * Checks the hits, misses and evictions of the {@link KubeModifierRunCache}, and the values its keys depend on.
+ */
+public class KubeModifierRunCacheTest {
+
+    private KubeModifierRunCache runCache;
+
+    private FlowExecutionContext context;
+
+    @Before
+    public void setUp() {
+        runCache = new KubeModifierRunCache();
+        ReflectionTestUtils.setField(runCache, "enabled", true);
+        ReflectionTestUtils.setField(runCache, "maxEntries", 2);
+        ReflectionTestUtils.setField(runCache, "expireAfterAccessMinutes", 10L);
+        runCache.init();
+        context = mock(FlowExecutionContext.class);
+        when(context.log()).thenReturn(new FlowExecutionLog());
+    }
+
+    @Test
+    public void outputIsReplayedOnHit() {
+        String key = runCache.getKey("modifier", topology("Input"), "environment");
+        assertFalse(runCache.replay(key, topology("Input")));
+
+        runCache.store(key, topology("Output"), context, KubeModifierRunCache.getProblemCount(context));
+        Topology replayed = topology("Input");
+        assertTrue(runCache.replay(key, replayed));
+        assertEquals("Output", replayed.getNodeTemplates().keySet().iterator().next());
+        assertEquals(1, runCache.getHitCount());
+        assertEquals(1, runCache.getMissCount());
+    }
+
+    @Test
+    public void leastRecentlyUsedRunsAreEvicted() {
+        runCache.store("a", topology("A"), context, 0);
+        runCache.store("b", topology("B"), context, 0);
+        assertTrue(runCache.replay("a", new Topology()));
+        runCache.store("c", topology("C"), context, 0);
+
+        assertEquals(2, runCache.size());
+        assertFalse(runCache.replay("b", new Topology()));
+        assertTrue(runCache.replay("a", new Topology()));
+        assertTrue(runCache.replay("c", new Topology()));
+    }
+
+    @Test
+    public void runsLoggingProblemsAreNotStored() {
+        int problemCount = KubeModifierRunCache.getProblemCount(context);
+        context.log().warn("Port not found");
+        runCache.store("a", topology("A"), context, problemCount);
+        assertEquals(0, runCache.size());
+        assertFalse(runCache.replay("a", new Topology()));
+
+        // the problems logged before the run don't prevent it from being stored
+        runCache.store("a", topology("A"), context, KubeModifierRunCache.getProblemCount(context));
+        assertTrue(runCache.replay("a", new Topology()));
+    }
+
+    @Test
+    public void keyDependsOnModifierParametersAndTopology() {
+        String key = runCache.getKey("modifier", topology("A"), "environment-1", "namespace");
+        assertEquals(key, runCache.getKey("modifier", topology("A"), "environment-1", "namespace"));
+        assertNotEquals(key, runCache.getKey("other-modifier", topology("A"), "environment-1", "namespace"));
+        assertNotEquals(key, runCache.getKey("modifier", topology("A"), "environment-2", "namespace"));
+        assertNotEquals(key, runCache.getKey("modifier", topology("A"), "environment-1", null));
+        assertNotEquals(key, runCache.getKey("modifier", topology("B"), "environment-1", "namespace"));
+        // the parameters are separated
+        assertNotEquals(runCache.getKey("modifier", topology("A"), "a", "bc"), runCache.getKey("modifier", topology("A"), "ab", "c"));
+
+        // the dates don't change the result of a run
+        Topology updated = topology("A");
+        updated.setLastUpdateDate(new Date(0));
+        assertEquals(key, runCache.getKey("modifier", updated, "environment-1", "namespace"));
+    }
+
+    @Test
+    public void keyChangesWhenANodeOrAPolicyChanges() {
+        Topology topology = topology("A");
+        String key = runCache.getKey("modifier", topology);
+
+        Topology changedNode = topology("A");
+        changedNode.getNodeTemplates().get("A").setProperties(Maps.newHashMap());
+        changedNode.getNodeTemplates().get("A").getProperties().put("image", new ScalarPropertyValue("nginx:1.19"));
+        assertNotEquals(key, runCache.getKey("modifier", changedNode));
+
+        PolicyTemplate policyTemplate = new PolicyTemplate();
+        policyTemplate.setName("AutoScaling");
+        policyTemplate.setType("org.alien4cloud.kubernetes.api.policies.AutoScalingPolicy");
+        policyTemplate.setTargets(Sets.newHashSet("A"));
+        topology.setPolicies(Maps.newHashMap());
+        topology.getPolicies().put(policyTemplate.getName(), policyTemplate);
+        String withPolicy = runCache.getKey("modifier", topology);
+        assertNotEquals(key, withPolicy);
+        policyTemplate.setProperties(Maps.newHashMap());
+        policyTemplate.getProperties().put("max_instances", new ScalarPropertyValue("5"));
+        assertNotEquals(withPolicy, runCache.getKey("modifier", topology));
+    }
+
+    @Test
+    public void nothingIsCachedWhenDisabled() {
+        ReflectionTestUtils.setField(runCache, "enabled", false);
+        String key = runCache.getKey("modifier", topology("A"));
+        assertNull(key);
+        runCache.store(key, topology("A"), context, 0);
+        assertFalse(runCache.replay(key, new Topology()));
+        assertEquals(0, runCache.size());
+    }
+
+    private static Topology topology(String nodeName) {
+        NodeTemplate nodeTemplate = new NodeTemplate();
+        nodeTemplate.setName(nodeName);
+        nodeTemplate.setType("tosca.nodes.Root");
+        Topology topology = new Topology();
+        topology.setId("topology:1.0.0-SNAPSHOT");
+        topology.setNodeTemplates(Maps.newLinkedHashMap());
+        topology.getNodeTemplates().put(nodeName, nodeTemplate);
+        return topology;
+    }
+}
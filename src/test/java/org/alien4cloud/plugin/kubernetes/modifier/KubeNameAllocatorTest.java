@@ -0,0 +1,58 @@
+package org.alien4cloud.plugin.kubernetes.modifier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Set;
+
+import org.apache.commons.lang3.StringUtils;
+import org.junit.Test;
+
+import com.google.common.collect.Sets;
+
+/**
+ * Checks that {@link KubeNameAllocator} gives the same names on every run of an environment, and only valid and distinct names.
+ */
+public class KubeNameAllocatorTest {
+
+    @Test
+    public void namesAreStableAcrossRuns() {
+        KubeNameAllocator firstRun = new KubeNameAllocator("env-1");
+        KubeNameAllocator secondRun = new KubeNameAllocator("env-1");
+        String name = firstRun.allocate(KubeNameAllocator.ROLE_DEPLOYMENT, "App_Deployment");
+        assertTrue(name.matches("app-deployment-[0-9a-f]{8}"));
+        assertEquals(name, secondRun.allocate(KubeNameAllocator.ROLE_DEPLOYMENT, "App_Deployment"));
+        // an identity requested again gets the same name
+        assertEquals(name, firstRun.allocate(KubeNameAllocator.ROLE_DEPLOYMENT, "App_Deployment"));
+        // another role of the same node gets its own name
+        assertNotEquals(name, firstRun.allocate(KubeNameAllocator.ROLE_SERVICE, "App_Deployment"));
+        // another environment gets other names
+        assertNotEquals(name, new KubeNameAllocator("env-2").allocate(KubeNameAllocator.ROLE_DEPLOYMENT, "App_Deployment"));
+    }
+
+    @Test
+    public void namesDontDependOnTheOtherRequests() {
+        KubeNameAllocator firstRun = new KubeNameAllocator("env-1");
+        firstRun.allocate(KubeNameAllocator.ROLE_CONTAINER, "App");
+        String deployment = firstRun.allocate(KubeNameAllocator.ROLE_DEPLOYMENT, "App");
+        String container = firstRun.allocate(KubeNameAllocator.ROLE_CONTAINER, "App");
+
+        // a replayed run skips some requests, the other names are unchanged
+        KubeNameAllocator secondRun = new KubeNameAllocator("env-1");
+        assertEquals(container, secondRun.allocate(KubeNameAllocator.ROLE_CONTAINER, "App"));
+        assertEquals(deployment, new KubeNameAllocator("env-1").allocate(KubeNameAllocator.ROLE_DEPLOYMENT, "App"));
+    }
+
+    @Test
+    public void namesAreDistinctAndShortEnough() {
+        KubeNameAllocator allocator = new KubeNameAllocator("env");
+        Set<String> names = Sets.newHashSet();
+        String longPrefix = StringUtils.repeat("LongContainerName_", 10);
+        for (int i = 0; i < 10000; i++) {
+            String name = allocator.allocate(KubeNameAllocator.ROLE_CONTAINER, (i % 2 == 0 ? longPrefix : "svc") + i);
+            assertTrue(name, name.length() <= KubeNameAllocator.MAX_LENGTH);
+            assertTrue(name, names.add(name));
+        }
+    }
+}
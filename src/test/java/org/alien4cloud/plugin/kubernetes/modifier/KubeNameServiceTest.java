@@ -0,0 +1,80 @@
+package org.alien4cloud.plugin.kubernetes.modifier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Arrays;
+
+import org.apache.commons.lang3.StringUtils;
+import org.junit.Test;
+
+/**
+ * Checks that {@link KubeNameService} gives valid DNS labels.
+ */
+public class KubeNameServiceTest {
+
+    @Test
+    public void candidatesAreSanitized() {
+        assertEquals("my-app", KubeNameService.toLabel("My_App"));
+        assertEquals("nginx-conf-d", KubeNameService.toLabel("nginx.conf.d"));
+        assertEquals("svc", KubeNameService.toLabel("__svc__"));
+        assertEquals("a--b", KubeNameService.toLabel("a_.b"));
+        assertEquals("a4c", KubeNameService.toLabel("___"));
+        assertEquals("a4c", KubeNameService.toLabel(""));
+
+        String longName = KubeNameService.toLabel(StringUtils.repeat("LongContainerName_", 10));
+        assertEquals(KubeNameService.MAX_LABEL_LENGTH, longName.length());
+        assertTrue(longName, KubeNameService.isValidLabel(longName));
+        assertTrue(longName.startsWith("longcontainername-"));
+        assertTrue(longName.endsWith("-longcontainername"));
+
+        String abbreviated = KubeNameService.toLabel("Deployment_Of_My_App", 10);
+        assertTrue(abbreviated, abbreviated.length() <= 10 && KubeNameService.isValidLabel(abbreviated));
+
+        // a cached label is the same as a sanitized one
+        String candidate = "Cached_" + System.nanoTime();
+        assertEquals(KubeNameService.toLabel(candidate), KubeNameService.toLabel(candidate));
+        assertEquals("cached-" + candidate.substring("Cached_".length()), KubeNameService.toLabel(candidate));
+    }
+
+    @Test
+    public void labelsAndSubdomainsAreValidated() {
+        assertTrue(KubeNameService.isValidLabel("a"));
+        assertTrue(KubeNameService.isValidLabel("my-app-2"));
+        assertTrue(KubeNameService.isValidLabel("a--b"));
+        assertFalse(KubeNameService.isValidLabel(""));
+        assertFalse(KubeNameService.isValidLabel(null));
+        assertFalse(KubeNameService.isValidLabel("-app"));
+        assertFalse(KubeNameService.isValidLabel("app-"));
+        assertFalse(KubeNameService.isValidLabel("My-App"));
+        assertFalse(KubeNameService.isValidLabel("my.app"));
+        assertFalse(KubeNameService.isValidLabel(StringUtils.repeat("a", 64)));
+
+        assertTrue(KubeNameService.isValidSubdomain("my.app"));
+        assertTrue(KubeNameService.isValidSubdomain("app"));
+        assertFalse(KubeNameService.isValidSubdomain("my..app"));
+        assertFalse(KubeNameService.isValidSubdomain(".app"));
+        assertFalse(KubeNameService.isValidSubdomain("app."));
+        assertFalse(KubeNameService.isValidSubdomain("my_app.svc"));
+    }
+
+    @Test
+    public void consistentLabelsAreUnchanged() throws Exception {
+        for (String name : Arrays.asList("Statefulset", "my_statefulset", "db0", "Cassandra_Cluster_1")) {
+            assertEquals(formerConsistentName(name), KubeNameService.toConsistentLabel(name));
+        }
+        assertEquals("label-key-io/zone", KubeNameService.toLabelKey("Label_Key-IO/zone"));
+    }
+
+    /**
+     * The consistent names as they were computed before {@link KubeNameService}.
+     */
+    private static String formerConsistentName(String resourceName) throws Exception {
+        byte[] b = MessageDigest.getInstance("SHA-1").digest(resourceName.getBytes(StandardCharsets.UTF_8));
+        return String.format("%s-%X", resourceName, new BigInteger(1, Arrays.copyOfRange(b, 0, 6))).toLowerCase().replaceAll("_", "-");
+    }
+}
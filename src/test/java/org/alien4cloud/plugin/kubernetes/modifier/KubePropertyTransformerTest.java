@@ -0,0 +1,53 @@
+package org.alien4cloud.plugin.kubernetes.modifier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.List;
+import java.util.Map;
+
+import org.alien4cloud.tosca.model.definitions.ComplexPropertyValue;
+import org.alien4cloud.tosca.model.definitions.PropertyDefinition;
+import org.alien4cloud.tosca.model.definitions.ScalarPropertyValue;
+import org.alien4cloud.tosca.normative.types.ToscaTypes;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * Checks the transformation of primitive definitions (no data type, so no TOSCA context is needed).
+ */
+public class KubePropertyTransformerTest {
+
+    private final KubePropertyTransformer transformer = new KubePropertyTransformer();
+
+    @Test
+    public void scalarsAreParsedFollowingTheEntrySchema() {
+        Map<String, Object> value = Maps.newHashMap();
+        value.put("memory", new ScalarPropertyValue("1 KiB"));
+        value.put("disk", "2 MiB");
+        Object transformed = transformer.transform(new ComplexPropertyValue(value), definition(ToscaTypes.MAP, definition(ToscaTypes.SIZE, null)));
+        assertEquals(ImmutableMap.of("memory", 1024L, "disk", 2097152L), transformed);
+
+        List<Object> flags = Lists.newArrayList("true", new ScalarPropertyValue("false"));
+        assertEquals(Lists.newArrayList(true, false), transformer.transform(flags, definition(ToscaTypes.LIST, definition(ToscaTypes.BOOLEAN, null))));
+        assertEquals(12, transformer.transform("12", definition(ToscaTypes.INTEGER, null)));
+        assertEquals("500m", transformer.transform(new ScalarPropertyValue("0.5"), definition(KubeTopologyUtils.K8S_DATATYPES_CPU_QUANTITY, null)));
+    }
+
+    @Test
+    public void valuesWithoutDefinitionAreKept() {
+        Map<String, Object> value = ImmutableMap.of("port", "80");
+        assertEquals(value, transformer.transform(new ComplexPropertyValue(value), null));
+        assertNull(transformer.transform(null, definition(ToscaTypes.STRING, null)));
+    }
+
+    private static PropertyDefinition definition(String type, PropertyDefinition entrySchema) {
+        PropertyDefinition definition = new PropertyDefinition();
+        definition.setType(type);
+        definition.setEntrySchema(entrySchema);
+        return definition;
+    }
+}
@@ -0,0 +1,64 @@
+package org.alien4cloud.plugin.kubernetes.modifier;
+
+import static org.alien4cloud.plugin.kubernetes.modifier.KubeQuantity.INVALID;
+import static org.junit.Assert.assertEquals;
+
+import org.alien4cloud.tosca.normative.primitives.Size;
+import org.alien4cloud.tosca.normative.primitives.SizeUnit;
+import org.alien4cloud.tosca.normative.types.SizeType;
+import org.junit.Test;
+
+/**
+ * Checks the parsing of sizes and CPU quantities.
+ */
+public class KubeQuantityTest {
+
+    private static final String[] SIZES = { "1 B", "10 kB", "1 KiB", "1.5 KiB", "512 MB", "512 MiB", "1 GB", "2 TiB" };
+
+    @Test
+    public void toscaSizesAreParsedAsTheToscaSizeType() throws Exception {
+        for (String size : SIZES) {
+            assertEquals(size, parseWithSizeType(size), KubeQuantity.parseBytes(size));
+        }
+    }
+
+    @Test
+    public void kubernetesQuantitiesAreParsed() {
+        assertEquals(134217728L, KubeQuantity.parseBytes("128Mi"));
+        assertEquals(1000000000L, KubeQuantity.parseBytes("1G"));
+        assertEquals(129000000L, KubeQuantity.parseBytes("129M"));
+        assertEquals(123000L, KubeQuantity.parseBytes("123e3"));
+        assertEquals(1000000000000000000L, KubeQuantity.parseBytes("1E"));
+        // TOSCA units are case insensitive
+        assertEquals(1073741824L, KubeQuantity.parseBytes("1 gib"));
+        assertEquals(42L, KubeQuantity.parseBytes("42"));
+        // fractions of bytes are rounded up
+        assertEquals(1L, KubeQuantity.parseBytes("100m"));
+
+        assertEquals(500L, KubeQuantity.parseMillicores("500m"));
+        assertEquals(500L, KubeQuantity.parseMillicores("0.5"));
+        assertEquals(2000L, KubeQuantity.parseMillicores("2"));
+        assertEquals(1L, KubeQuantity.parseMillicores("100u"));
+        assertEquals(1500L, KubeQuantity.parseMillicores("1.5e0"));
+    }
+
+    @Test
+    public void invalidQuantitiesAreKept() {
+        for (String invalid : new String[] { "", "m", "12 parsecs", "1K", "1ki", "1..5", "99999999999999999999", "8Ei" }) {
+            assertEquals(invalid, INVALID, KubeQuantity.parseBytes(invalid));
+            assertEquals(invalid, INVALID, KubeQuantity.parseMillicores(invalid));
+        }
+        // byte units are not CPU units
+        assertEquals(INVALID, KubeQuantity.parseMillicores("1 GB"));
+        assertEquals("12 parsecs", KubeQuantity.toBytes("12 parsecs"));
+        assertEquals(1073741824L, KubeQuantity.toBytes("1 GiB"));
+        assertEquals("500m", KubeQuantity.toCpu("0.5"));
+        assertEquals("2", KubeQuantity.toCpu("2000m"));
+        assertEquals("one", KubeQuantity.toCpu("one"));
+    }
+
+    private static long parseWithSizeType(String value) throws Exception {
+        Size size = new SizeType().parse(value);
+        return size.convert(SizeUnit.B.toString()).longValue();
+    }
+}
@@ -0,0 +1,173 @@
+package org.alien4cloud.plugin.kubernetes.modifier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Map;
+import java.util.Set;
+
+import org.alien4cloud.tosca.model.templates.NodeTemplate;
+import org.alien4cloud.tosca.model.templates.RelationshipTemplate;
+import org.alien4cloud.tosca.model.templates.ServiceNodeTemplate;
+import org.alien4cloud.tosca.model.templates.Topology;
+import org.alien4cloud.tosca.normative.constants.NormativeRelationshipConstants;
+import org.junit.Test;
+
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Checks the {@link KubeRelationshipIndex} lookups and measures the "remove services that are no more target of relationships" stage on synthetic
+ * topologies, using the index and using a scan of all the relationships for each service (as the modifiers used to do).
+ */
+@Slf4j
+public class KubeRelationshipIndexTest {
+
+    private static final String DEPENDS_ON = NormativeRelationshipConstants.DEPENDS_ON;
+
+    @Test
+    public void sourceNodesAreFoundByCapabilityAndByType() {
+        Topology topology = createTopology(10);
+        KubeRelationshipIndex index = new KubeRelationshipIndex(topology, new KubeTypeRegistry());
+
+        NodeTemplate service = topology.getNodeTemplates().get("Service_3");
+        Set<NodeTemplate> sources = index.getSourceNodes(service, "feature");
+        assertEquals(1, sources.size());
+        assertEquals("Deployment_3", sources.iterator().next().getName());
+        assertTrue(index.getSourceNodes(service, "host").isEmpty());
+        assertEquals(sources, index.getSourceNodesByRelationshipType(service, DEPENDS_ON));
+        assertEquals(sources, index.getSourceNodesByRelationshipType(service, NormativeRelationshipConstants.ROOT));
+        assertFalse(index.isTargeted("OrphanService_3"));
+    }
+
+    @Test
+    public void indexIsMaintainedWhenRelationshipsAndNodesAreRemoved() {
+        Topology topology = createTopology(10);
+        KubeRelationshipIndex index = new KubeRelationshipIndex(topology, new KubeTypeRegistry());
+
+        index.removeRelationship("Deployment_1", "dependsOnService_1");
+        assertFalse(index.isTargeted("Service_1"));
+
+        NodeTemplate deployment = topology.getNodeTemplates().get("Deployment_1");
+        RelationshipTemplate relationship = relationship("dependsOnOrphan_1", "OrphanService_1");
+        deployment.getRelationships().put(relationship.getName(), relationship);
+        index.addRelationship(deployment.getName(), relationship);
+        assertTrue(index.isTargeted("OrphanService_1"));
+
+        topology.getNodeTemplates().remove("Deployment_2");
+        index.removeNode("Deployment_2");
+        assertFalse(index.isTargeted("Service_2"));
+
+        topology.getNodeTemplates().remove("Service_4");
+        index.removeNode("Service_4");
+        assertFalse(index.isTargeted("Service_4"));
+        assertTrue(index.getSourceNodes(topology.getNodeTemplates().get("Service_5"), "feature").contains(topology.getNodeTemplates().get("Deployment_5")));
+    }
+
+    /**
+     * Not a strict benchmark (JMH is not available here) : the timings are logged so that the linear growth of the indexed version can be compared
+     * with the quadratic growth of the scan.
+     */
+    @Test
+    public void unusedServicesCleanupScalesLinearly() {
+        int[] sizes = { 1000, 2000, 4000, 8000 };
+        // warm up
+        for (int i = 0; i < 3; i++) {
+            findUnusedServicesWithIndex(createTopology(1000));
+            findUnusedServicesWithScan(createTopology(1000));
+        }
+        for (int size : sizes) {
+            Topology topology = createTopology(size);
+            long start = System.nanoTime();
+            Set<NodeTemplate> withIndex = findUnusedServicesWithIndex(topology);
+            long indexDuration = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            Set<NodeTemplate> withScan = findUnusedServicesWithScan(topology);
+            long scanDuration = System.nanoTime() - start;
+
+            assertEquals(size, withIndex.size());
+            assertEquals(withScan, withIndex);
+            log.info("{} deployments : index {} ms, scan {} ms", size, indexDuration / 1000000, scanDuration / 1000000);
+        }
+    }
+
+    private static Set<NodeTemplate> findUnusedServicesWithIndex(Topology topology) {
+        KubeRelationshipIndex index = new KubeRelationshipIndex(topology, new KubeTypeRegistry());
+        Set<NodeTemplate> servicesToRemove = Sets.newHashSet();
+        for (NodeTemplate node : topology.getNodeTemplates().values()) {
+            if (node instanceof ServiceNodeTemplate && !index.isTargeted(node.getName())) {
+                servicesToRemove.add(node);
+            }
+        }
+        return servicesToRemove;
+    }
+
+    private static Set<NodeTemplate> findUnusedServicesWithScan(Topology topology) {
+        Set<NodeTemplate> servicesToRemove = Sets.newHashSet();
+        for (NodeTemplate node : topology.getNodeTemplates().values()) {
+            if (node instanceof ServiceNodeTemplate && !isTargeted(topology, node)) {
+                servicesToRemove.add(node);
+            }
+        }
+        return servicesToRemove;
+    }
+
+    private static boolean isTargeted(Topology topology, NodeTemplate node) {
+        for (NodeTemplate source : topology.getNodeTemplates().values()) {
+            if (source.getRelationships() != null) {
+                for (RelationshipTemplate relationshipTemplate : source.getRelationships().values()) {
+                    if (relationshipTemplate.getTarget().equals(node.getName())) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Each deployment depends on its own service, plus as many services that are not targeted by anything.
+     */
+    private static Topology createTopology(int size) {
+        Map<String, NodeTemplate> nodeTemplates = Maps.newLinkedHashMap();
+        for (int i = 0; i < size; i++) {
+            NodeTemplate service = serviceNode("Service_" + i);
+            nodeTemplates.put(service.getName(), service);
+            NodeTemplate orphan = serviceNode("OrphanService_" + i);
+            nodeTemplates.put(orphan.getName(), orphan);
+
+            NodeTemplate deployment = new NodeTemplate();
+            deployment.setName("Deployment_" + i);
+            deployment.setType(KubeTopologyUtils.K8S_TYPES_DEPLOYMENT_RESOURCE);
+            Map<String, RelationshipTemplate> relationships = Maps.newLinkedHashMap();
+            RelationshipTemplate relationship = relationship("dependsOnService_" + i, service.getName());
+            relationships.put(relationship.getName(), relationship);
+            deployment.setRelationships(relationships);
+            nodeTemplates.put(deployment.getName(), deployment);
+        }
+        Topology topology = new Topology();
+        topology.setNodeTemplates(nodeTemplates);
+        return topology;
+    }
+
+    private static NodeTemplate serviceNode(String name) {
+        ServiceNodeTemplate service = new ServiceNodeTemplate();
+        service.setName(name);
+        service.setType(KubeTopologyUtils.K8S_TYPES_SERVICE_RESOURCE);
+        return service;
+    }
+
+    private static RelationshipTemplate relationship(String name, String target) {
+        RelationshipTemplate relationshipTemplate = new RelationshipTemplate();
+        relationshipTemplate.setName(name);
+        relationshipTemplate.setType(DEPENDS_ON);
+        relationshipTemplate.setTarget(target);
+        relationshipTemplate.setRequirementName("dependency");
+        relationshipTemplate.setTargetedCapabilityName("feature");
+        return relationshipTemplate;
+    }
+}
@@ -0,0 +1,128 @@
+package org.alien4cloud.plugin.kubernetes.modifier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.alien4cloud.tosca.model.templates.NodeTemplate;
+import org.alien4cloud.tosca.model.templates.RelationshipTemplate;
+import org.alien4cloud.tosca.normative.constants.NormativeRelationshipConstants;
+import org.junit.Test;
+
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * Checks the dependency waves of the bundled resources.
+ */
+public class KubeResourceBundlesTest {
+
+    @Test
+    public void resourcesAreGroupedByDependencyWave() {
+        NodeTemplate namespace = node("Namespace");
+        NodeTemplate claim = node("Claim", "Namespace");
+        NodeTemplate secret = node("Secret", "Namespace");
+        NodeTemplate deployment = node("Deployment", "Claim", "Secret", "ServiceResource");
+        NodeTemplate ingress = node("Ingress", "Secret", "ServiceResource");
+        NodeTemplate autoscaler = node("Autoscaler", "Deployment");
+
+        List<NodeTemplate> nodes = Arrays.asList(autoscaler, ingress, deployment, secret, claim, namespace);
+        List<List<NodeTemplate>> waves = KubeResourceBundles.getWaves(nodes, topology(nodes));
+        // the relationships to nodes that are not in the topology (ServiceResource) are ignored
+        assertEquals(Arrays.asList(Arrays.asList("Namespace"), Arrays.asList("Claim", "Secret"), Arrays.asList("Deployment", "Ingress"),
+                Arrays.asList("Autoscaler")), names(waves));
+        assertTrue(KubeResourceBundles.isAcyclicOnceBundled(waves, topology(nodes)));
+
+        // the bundled nodes don't depend on each other
+        assertEquals(Arrays.asList(Arrays.asList("Deployment", "Ingress")),
+                names(KubeResourceBundles.getWaves(Arrays.asList(ingress, deployment), topology(nodes))));
+    }
+
+    /**
+     * The config map factory of a deployment takes over its other dependencies, and the connection of two deployments goes through the service
+     * exposing the target.
+     */
+    @Test
+    public void dependenciesThroughNodesThatAreNotBundledAreKept() {
+        NodeTemplate claim = node("Claim");
+        NodeTemplate configMapFactory = node("ConfigMapFactory", "Claim");
+        NodeTemplate deployment = node("Deployment", "ConfigMapFactory");
+        NodeTemplate backend = node("Backend");
+        NodeTemplate service = node("ServiceResource", "Backend");
+        NodeTemplate frontend = node("Frontend", "ServiceResource");
+        List<NodeTemplate> bundled = Arrays.asList(claim, deployment, backend, frontend);
+        Map<String, NodeTemplate> topology = topology(Arrays.asList(claim, configMapFactory, deployment, backend, service, frontend));
+
+        List<List<NodeTemplate>> waves = KubeResourceBundles.getWaves(bundled, topology);
+        assertEquals(Arrays.asList(Arrays.asList("Backend", "Claim"), Arrays.asList("Deployment", "Frontend")), names(waves));
+        assertTrue(KubeResourceBundles.isAcyclicOnceBundled(waves, topology));
+
+        // in a single bundle, both the config map factory and the service would depend on the bundle depending on them
+        assertFalse(KubeResourceBundles.isAcyclicOnceBundled(Arrays.asList(Arrays.asList(claim, deployment)), topology));
+        assertFalse(KubeResourceBundles.isAcyclicOnceBundled(Arrays.asList(Arrays.asList(backend, frontend)), topology));
+    }
+
+    @Test
+    public void cyclesAreNotBundled() {
+        List<NodeTemplate> nodes = Arrays.asList(node("A", "B"), node("B", "C"), node("C", "A"), node("D"));
+        assertNull(KubeResourceBundles.getWaves(nodes, topology(nodes)));
+
+        // through a node that is not bundled
+        List<NodeTemplate> bundled = Arrays.asList(node("E", "X"), node("F", "E"));
+        assertNull(KubeResourceBundles.getWaves(bundled, topology(Lists.newArrayList(Iterables.concat(bundled, Arrays.asList(node("X", "F")))))));
+    }
+
+    @Test
+    public void manifestHasADocumentPerSpec() {
+        assertEquals("---\n{\"kind\":\"Deployment\"}\n---\n{\"kind\":\"Ingress\"}\n",
+                KubeResourceBundles.toManifest(Arrays.asList("{\"kind\":\"Deployment\"}", "{\"kind\":\"Ingress\"}")));
+    }
+
+    /**
+     * Each application is made of a claim, a deployment using it and an autoscaler for the deployment : whatever the number of applications, the
+     * resources are applied by 3 kubectl calls.
+     */
+    @Test
+    public void kubectlCallsDependOnTheNumberOfWaves() {
+        for (int applications : new int[] { 1, 10, 1000 }) {
+            List<NodeTemplate> nodes = Lists.newArrayList();
+            for (int i = 0; i < applications; i++) {
+                nodes.add(node("Claim_" + i));
+                nodes.add(node("Deployment_" + i, "Claim_" + i));
+                nodes.add(node("Autoscaler_" + i, "Deployment_" + i));
+            }
+            assertEquals(3, KubeResourceBundles.getWaves(nodes, topology(nodes)).size());
+        }
+    }
+
+    private static List<List<String>> names(List<List<NodeTemplate>> waves) {
+        return waves.stream().map(wave -> wave.stream().map(NodeTemplate::getName).collect(Collectors.toList())).collect(Collectors.toList());
+    }
+
+    private static Map<String, NodeTemplate> topology(List<NodeTemplate> nodes) {
+        Map<String, NodeTemplate> nodeTemplates = Maps.newHashMap();
+        nodes.forEach(nodeTemplate -> nodeTemplates.put(nodeTemplate.getName(), nodeTemplate));
+        return nodeTemplates;
+    }
+
+    private static NodeTemplate node(String name, String... targets) {
+        NodeTemplate nodeTemplate = new NodeTemplate();
+        nodeTemplate.setName(name);
+        nodeTemplate.setRelationships(Maps.newHashMap());
+        for (String target : targets) {
+            RelationshipTemplate relationshipTemplate = new RelationshipTemplate();
+            relationshipTemplate.setName("dependsOn" + target);
+            relationshipTemplate.setType(NormativeRelationshipConstants.DEPENDS_ON);
+            relationshipTemplate.setTarget(target);
+            nodeTemplate.getRelationships().put(relationshipTemplate.getName(), relationshipTemplate);
+        }
+        return nodeTemplate;
+    }
+}
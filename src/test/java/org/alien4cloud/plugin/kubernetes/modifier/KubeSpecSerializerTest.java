@@ -0,0 +1,54 @@
+package org.alien4cloud.plugin.kubernetes.modifier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Map;
+
+import org.alien4cloud.tosca.model.definitions.ScalarPropertyValue;
+import org.junit.Test;
+
+import com.google.common.collect.Maps;
+
+/**
+ * Checks that the specs are canonical and carry the hash of their content.
+ */
+public class KubeSpecSerializerTest {
+
+    private static final PropertyPath SPEC_HASH = PropertyPath.of("metadata.annotations." + KubeSpecSerializer.SPEC_HASH_ANNOTATION);
+
+    @Test
+    public void theSameResourceGetsTheSameSpec() {
+        String spec = KubeSpecSerializer.toSpec(service("nginx", Maps.newHashMap()));
+        assertEquals(spec, KubeSpecSerializer.toSpec(service("nginx", new ResourceDocument())));
+        assertEquals(spec, KubeSpecSerializer.toSpec(service("nginx", Maps.newTreeMap())));
+        assertTrue(spec.startsWith("{\"apiVersion\":\"v1\",\"kind\":\"Service\",\"metadata\":{\"annotations\":{\"a4c_spec_hash\":\""));
+
+        // the hash is computed from the content, not from a previous hash
+        Map<String, Object> resourceDef = service("nginx", new ResourceDocument());
+        KubeSpecSerializer.toSpec(resourceDef);
+        String hash = getHash(resourceDef);
+        assertEquals(64, hash.length());
+        assertEquals(spec, KubeSpecSerializer.toSpec(resourceDef));
+
+        Map<String, Object> other = service("httpd", new ResourceDocument());
+        KubeSpecSerializer.toSpec(other);
+        assertNotEquals(hash, getHash(other));
+    }
+
+    private static String getHash(Map<String, Object> resourceDef) {
+        return ((ScalarPropertyValue) SPEC_HASH.get(resourceDef)).getValue();
+    }
+
+    private static Map<String, Object> service(String name, Map<String, Object> resourceDef) {
+        ResourceDocument port = new ResourceDocument();
+        port.put("port", 80);
+        PropertyPath.of("spec.ports").append(resourceDef, port);
+        PropertyPath.of("spec.selector.app").set(resourceDef, name);
+        PropertyPath.of("metadata.name").set(resourceDef, name);
+        resourceDef.put("kind", "Service");
+        resourceDef.put("apiVersion", "v1");
+        return resourceDef;
+    }
+}
@@ -0,0 +1,145 @@
+package org.alien4cloud.plugin.kubernetes.modifier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.alien4cloud.tosca.model.definitions.ComplexPropertyValue;
+import org.alien4cloud.tosca.model.definitions.ScalarPropertyValue;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Checks that {@link KubeValueInterner} keeps the content of the trees while sharing their identical parts, and measures the footprint of the
+ * container specs of a synthetic 1000 deployments topology.
+ */
+@Slf4j
+public class KubeValueInternerTest {
+
+    private static final int DEPLOYMENTS = 1000;
+
+    @Test
+    public void identicalBlocksAreShared() {
+        KubeValueInterner interner = new KubeValueInterner();
+        Map<String, Object> first = (Map<String, Object>) interner.intern(container(0));
+        Map<String, Object> second = (Map<String, Object>) interner.intern(container(1));
+
+        assertEquals(KubeTopologyUtils.getValue(container(0)), first);
+        assertSame(first.get("resources"), second.get("resources"));
+        assertSame(first.get("livenessProbe"), second.get("livenessProbe"));
+        assertSame(first.get("ports"), second.get("ports"));
+        assertSame(first, interner.intern(container(0)));
+        // the interned trees are documents, which don't box the numbers
+        assertTrue(first instanceof ResourceDocument);
+        assertTrue(first.get("ports") instanceof ResourceDocument.Array);
+        assertEquals(8080L, ((Map<String, Object>) ((List<Object>) first.get("ports")).get(0)).get("containerPort"));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void internedTreesAreUnmodifiable() {
+        Map<String, Object> container = (Map<String, Object>) new KubeValueInterner().intern(container(0));
+        ((Map<String, Object>) container.get("resources")).put("limits", null);
+    }
+
+    /**
+     * Not a strict measure (the heap used is sampled after a GC) : the number of distinct objects of the trees is checked, and the heap used by
+     * the plain and the interned trees is logged.
+     */
+    @Test
+    public void internedSpecsAreSmaller() {
+        long baseline = getUsedHeap();
+        List<Object> plain = Lists.newArrayList();
+        for (int i = 0; i < DEPLOYMENTS; i++) {
+            plain.add(KubeTopologyUtils.getValue(container(i)));
+        }
+        long plainHeap = getUsedHeap() - baseline;
+        int plainObjects = countObjects(plain);
+
+        KubeValueInterner interner = new KubeValueInterner();
+        List<Object> interned = Lists.newArrayList();
+        for (int i = 0; i < DEPLOYMENTS; i++) {
+            interned.add(interner.intern(container(i)));
+        }
+        plain.clear();
+        long internedHeap = getUsedHeap() - baseline;
+        int internedObjects = countObjects(interned);
+
+        log.info("{} deployments : plain specs {} objects ({} KB), interned specs {} objects ({} KB)", DEPLOYMENTS, plainObjects, plainHeap / 1024,
+                internedObjects, internedHeap / 1024);
+        assertTrue(internedObjects * 3 < plainObjects);
+    }
+
+    private static long getUsedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static int countObjects(Object tree) {
+        Set<Object> objects = Collections.newSetFromMap(new IdentityHashMap<>());
+        countObjects(tree, objects);
+        return objects.size();
+    }
+
+    private static void countObjects(Object value, Set<Object> objects) {
+        if (value == null || !objects.add(value)) {
+            return;
+        }
+        if (value instanceof Map) {
+            ((Map<?, ?>) value).forEach((key, child) -> {
+                objects.add(key);
+                countObjects(child, objects);
+            });
+        } else if (value instanceof List) {
+            ((List<?>) value).forEach(child -> countObjects(child, objects));
+        }
+    }
+
+    /**
+     * A container spec as found in a transformed <code>container</code> property : only the name differs from a deployment to the other.
+     */
+    private static Map<String, Object> container(int i) {
+        Map<String, Object> limits = Maps.newHashMap();
+        limits.put("cpu", new String("500m"));
+        limits.put("memory", 134217728L);
+        Map<String, Object> resources = Maps.newHashMap();
+        resources.put(new String("limits"), limits);
+        resources.put(new String("requests"), Maps.newHashMap(limits));
+
+        Map<String, Object> httpGet = Maps.newHashMap();
+        httpGet.put("path", new String("/health"));
+        httpGet.put("port", 8080L);
+        Map<String, Object> probe = Maps.newHashMap();
+        probe.put("httpGet", httpGet);
+        probe.put("initialDelaySeconds", 10L);
+        probe.put("periodSeconds", 5L);
+
+        Map<String, Object> port = Maps.newHashMap();
+        port.put("containerPort", 8080L);
+        port.put("name", new String("http"));
+        port.put("protocol", new String("TCP"));
+
+        Map<String, Object> container = Maps.newHashMap();
+        container.put("name", new ScalarPropertyValue("container-" + i));
+        container.put("image", new String("registry.local/nginx:1.17"));
+        container.put("imagePullPolicy", new String("IfNotPresent"));
+        container.put("resources", new ComplexPropertyValue(resources));
+        container.put("livenessProbe", probe);
+        container.put("readinessProbe", Maps.newHashMap(probe));
+        container.put("ports", Lists.newArrayList(port));
+        container.put("args", Lists.newArrayList(new String("--port"), new String("8080")));
+        return container;
+    }
+}
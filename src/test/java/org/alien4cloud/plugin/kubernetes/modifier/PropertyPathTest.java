@@ -0,0 +1,127 @@
+package org.alien4cloud.plugin.kubernetes.modifier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.Map;
+
+import org.alien4cloud.alm.deployment.configuration.flow.TopologyModifierSupport;
+import org.alien4cloud.tosca.model.definitions.AbstractPropertyValue;
+import org.alien4cloud.tosca.model.definitions.ScalarPropertyValue;
+import org.junit.Test;
+
+import com.google.common.collect.Maps;
+
+import alien4cloud.utils.PropertyUtil;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Checks that {@link PropertyPath} builds and reads the same trees as the string based calls, and measures both on the paths used for each
+ * container of a deployment.
+ */
+@Slf4j
+public class PropertyPathTest {
+
+    private static final PropertyPath VOLUMES = PropertyPath.of("resource_def.spec.template.spec.volumes");
+    private static final PropertyPath CONTAINERS = PropertyPath.of("resource_def.spec.template.spec.containers");
+    private static final PropertyPath NAME = PropertyPath.of("resource_def.metadata.name");
+    private static final PropertyPath SELECTOR = PropertyPath.of("resource_def.spec.selector.matchLabels.app");
+
+    @Test
+    public void pathsAreInterned() {
+        assertSame(VOLUMES, PropertyPath.of(new String("resource_def.spec.template.spec.volumes")));
+        assertEquals("volumes", VOLUMES.getLastSegment());
+        assertEquals("resource_def.spec.template.spec.volumes", VOLUMES.toString());
+    }
+
+    @Test
+    public void setAndAppendBuildTheSameTreeAsFeedPropertyValue() {
+        Map<String, AbstractPropertyValue> withStrings = Maps.newHashMap();
+        Map<String, AbstractPropertyValue> withPaths = Maps.newHashMap();
+        for (int i = 0; i < 3; i++) {
+            feedWithStrings(withStrings, i);
+            feedWithPaths(withPaths, i);
+        }
+        assertEquals(KubeTopologyUtils.getValue(withStrings), KubeTopologyUtils.getValue(withPaths));
+    }
+
+    @Test
+    public void getFindsTheSameValuesAsGetPropertyValueFromPath() {
+        Map<String, AbstractPropertyValue> properties = Maps.newHashMap();
+        feedWithStrings(properties, 0);
+        for (String path : new String[] { "resource_def.metadata.name", "resource_def.spec.selector.matchLabels.app", "resource_def.spec.template.spec.volumes",
+                "resource_def.spec.template", "resource_def" }) {
+            assertEquals(PropertyUtil.getPropertyValueFromPath(properties, path), PropertyPath.of(path).get(properties));
+        }
+        assertNull(PropertyPath.of("resource_def.spec.unknown.name").get(properties));
+        assertNull(PropertyPath.of("resource_def.metadata.name.unknown").get(properties));
+        assertNull(NAME.get(null));
+    }
+
+    /**
+     * Not a strict benchmark (JMH is not available here) : the timings of the string based calls and of the compiled paths are logged.
+     */
+    @Test
+    public void compiledPathsAreFasterThanStrings() {
+        int[] sizes = { 10000, 100000, 200000 };
+        // warm up
+        for (int i = 0; i < 5; i++) {
+            runWithStrings(10000);
+            runWithPaths(10000);
+        }
+        for (int size : sizes) {
+            long start = System.nanoTime();
+            runWithStrings(size);
+            long stringsDuration = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            runWithPaths(size);
+            long pathsDuration = System.nanoTime() - start;
+
+            log.info("{} containers : strings {} ms, compiled paths {} ms", size, stringsDuration / 1000000, pathsDuration / 1000000);
+        }
+    }
+
+    private static void runWithStrings(int size) {
+        Map<String, AbstractPropertyValue> properties = Maps.newHashMap();
+        for (int i = 0; i < size; i++) {
+            feedWithStrings(properties, i);
+            PropertyUtil.getPropertyValueFromPath(properties, "resource_def.metadata.name");
+        }
+    }
+
+    private static void runWithPaths(int size) {
+        Map<String, AbstractPropertyValue> properties = Maps.newHashMap();
+        for (int i = 0; i < size; i++) {
+            feedWithPaths(properties, i);
+            NAME.get(properties);
+        }
+    }
+
+    private static void feedWithStrings(Map<String, AbstractPropertyValue> properties, int i) {
+        TopologyModifierSupport.feedPropertyValue(properties, "resource_def.metadata.name", new ScalarPropertyValue("deployment"), false);
+        TopologyModifierSupport.feedPropertyValue(properties, "resource_def.spec.selector.matchLabels.app", new ScalarPropertyValue("app"), false);
+        TopologyModifierSupport.feedPropertyValue(properties, "resource_def.spec.template.spec.containers", container(i), true);
+        TopologyModifierSupport.feedPropertyValue(properties, "resource_def.spec.template.spec.volumes", volume(i), true);
+    }
+
+    private static void feedWithPaths(Map<String, AbstractPropertyValue> properties, int i) {
+        NAME.set(properties, new ScalarPropertyValue("deployment"));
+        SELECTOR.set(properties, new ScalarPropertyValue("app"));
+        CONTAINERS.append(properties, container(i));
+        VOLUMES.append(properties, volume(i));
+    }
+
+    private static Map<String, Object> container(int i) {
+        Map<String, Object> container = Maps.newHashMap();
+        container.put("name", "container-" + i);
+        return container;
+    }
+
+    private static Map<String, Object> volume(int i) {
+        Map<String, Object> volume = Maps.newHashMap();
+        volume.put("name", "volume-" + i);
+        return volume;
+    }
+}
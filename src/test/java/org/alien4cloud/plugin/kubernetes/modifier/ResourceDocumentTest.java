@@ -0,0 +1,170 @@
+package org.alien4cloud.plugin.kubernetes.modifier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.alien4cloud.tosca.model.definitions.ComplexPropertyValue;
+import org.alien4cloud.tosca.model.definitions.ListPropertyValue;
+import org.alien4cloud.tosca.model.definitions.ScalarPropertyValue;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import alien4cloud.utils.PropertyUtil;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Checks that a {@link ResourceDocument} behaves as an ordered map, is built by the {@link PropertyPath}s and writes the same JSON as the maps
+ * it replaces, and measures the heap used by the documents of a synthetic 1000 deployments topology.
+ */
+@Slf4j
+public class ResourceDocumentTest {
+
+    private static final PropertyPath KIND = PropertyPath.of("resource_def.kind");
+    private static final PropertyPath NAME = PropertyPath.of("resource_def.metadata.name");
+    private static final PropertyPath REPLICAS = PropertyPath.of("resource_def.spec.replicas");
+    private static final PropertyPath CONTAINERS = PropertyPath.of("resource_def.spec.template.spec.containers");
+
+    private static final int DEPLOYMENTS = 1000;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @Test
+    public void entriesAreTypedAndOrdered() {
+        ResourceDocument document = new ResourceDocument();
+        document.put("kind", new ScalarPropertyValue("Deployment"));
+        document.put("replicas", 3);
+        document.put("cpu", 0.5);
+        document.put("paused", false);
+        document.put("memory", (Object) 134217728L);
+        document.putArray("args").add(8080);
+        document.putObject("metadata").put("name", "deployment");
+        document.put("replicas", 2);
+
+        assertEquals(Lists.newArrayList("kind", "replicas", "cpu", "paused", "memory", "args", "metadata"), Lists.newArrayList(document.keySet()));
+        assertEquals("Deployment", document.get("kind"));
+        assertEquals(2L, document.get("replicas"));
+        assertEquals(0.5, document.get("cpu"));
+        assertEquals(false, document.get("paused"));
+        assertEquals(Lists.newArrayList(8080L), document.get("args"));
+        assertEquals(ImmutableMap.of("name", "deployment"), document.get("metadata"));
+        assertEquals("{\"kind\":\"Deployment\",\"replicas\":2,\"cpu\":0.5,\"paused\":false,\"memory\":134217728,\"args\":[8080],"
+                + "\"metadata\":{\"name\":\"deployment\"}}", document.toJson());
+
+        Iterator<Map.Entry<String, Object>> entries = document.entrySet().iterator();
+        while (entries.hasNext()) {
+            if (entries.next().getValue() instanceof Number) {
+                entries.remove();
+            }
+        }
+        assertEquals(Lists.newArrayList("kind", "paused", "args", "metadata"), Lists.newArrayList(document.keySet()));
+        assertNull(document.remove("replicas"));
+        assertEquals("Deployment", document.remove("kind"));
+        assertEquals(3, document.size());
+    }
+
+    @Test
+    public void pathsCreateDocuments() {
+        ResourceDocument document = new ResourceDocument();
+        Map<String, Object> container = Maps.newHashMap();
+        container.put("name", "nginx");
+        CONTAINERS.append(document, container);
+        NAME.set(document, "deployment");
+
+        Object resourceDef = document.get("resource_def");
+        assertTrue(resourceDef instanceof ResourceDocument);
+        List<Object> containers = ((ListPropertyValue) CONTAINERS.get(document)).getValue();
+        assertTrue(containers instanceof ResourceDocument.Array);
+        // the values that are not documents are kept as they are
+        assertSame(container, containers.get(0));
+        assertEquals("deployment", ((ScalarPropertyValue) NAME.get(document)).getValue());
+    }
+
+    @Test
+    public void writesTheSameJsonAsTheMaps() throws IOException {
+        Map<String, Object> properties = deployment(0, Maps.newHashMap());
+        ResourceDocument document = (ResourceDocument) ResourceDocument.of(properties);
+
+        // the conversion keeps the order of the entries
+        String expected = KubeJsonWriter.toJson(properties);
+        assertEquals(expected, document.toJson());
+        // any object mapper uses the serializer of the documents
+        assertEquals(expected, mapper.writeValueAsString(document));
+        assertEquals(mapper.readTree(PropertyUtil.serializePropertyValue(KubeTopologyUtils.getValue(properties))), mapper.readTree(expected));
+        // a document built in place is written as the maps, in the order of its entries
+        assertEquals(mapper.readTree(expected), mapper.readTree(KubeJsonWriter.toJson(deployment(0, new ResourceDocument()))));
+    }
+
+    /**
+     * Not a strict measure (the heap used is sampled after a GC) : the heap used by the maps and by the documents is logged.
+     */
+    @Test
+    public void documentsAreSmaller() {
+        long baseline = getUsedHeap();
+        List<Object> maps = Lists.newArrayList();
+        for (int i = 0; i < DEPLOYMENTS; i++) {
+            maps.add(deployment(i, Maps.newHashMap()));
+        }
+        long mapsHeap = getUsedHeap() - baseline;
+        maps.clear();
+
+        baseline = getUsedHeap();
+        List<Object> documents = Lists.newArrayList();
+        for (int i = 0; i < DEPLOYMENTS; i++) {
+            documents.add(deployment(i, new ResourceDocument()));
+        }
+        long documentsHeap = getUsedHeap() - baseline;
+
+        log.info("{} deployments : maps {} KB, documents {} KB", DEPLOYMENTS, mapsHeap / 1024, documentsHeap / 1024);
+        assertEquals(DEPLOYMENTS, documents.size());
+    }
+
+    private static long getUsedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    /**
+     * The resource of a deployment, built as the modifiers do : the maps of the transformed values are documents when the resource is a
+     * document.
+     */
+    private static Map<String, Object> deployment(int i, Map<String, Object> properties) {
+        boolean documents = properties instanceof ResourceDocument;
+        KIND.set(properties, "Deployment");
+        NAME.set(properties, "deployment-" + i);
+        REPLICAS.set(properties, 2L);
+        for (int c = 0; c < 3; c++) {
+            Map<String, Object> limits = documents ? new ResourceDocument() : Maps.newLinkedHashMap();
+            limits.put("cpu", "500m");
+            limits.put("memory", 134217728L + c);
+            Map<String, Object> resources = documents ? new ResourceDocument() : Maps.newLinkedHashMap();
+            resources.put("limits", limits);
+            Map<String, Object> port = documents ? new ResourceDocument() : Maps.newLinkedHashMap();
+            port.put("containerPort", 8080L + c);
+            port.put("name", "http");
+            port.put("hostNetwork", false);
+            List<Object> ports = documents ? new ResourceDocument.Array() : Lists.newArrayList();
+            ports.add(port);
+            Map<String, Object> container = documents ? new ResourceDocument() : Maps.newLinkedHashMap();
+            container.put("name", "container-" + c);
+            container.put("image", "nginx:latest");
+            container.put("resources", documents ? resources : new ComplexPropertyValue(resources));
+            container.put("ports", ports);
+            CONTAINERS.append(properties, container);
+        }
+        return properties;
+    }
+}